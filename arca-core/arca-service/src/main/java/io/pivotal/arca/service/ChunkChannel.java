@@ -0,0 +1,104 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+// A bounded hand-off from a streaming task's networking to its processing,
+// which takes chunks until the channel is closed.
+public class ChunkChannel<T> {
+
+	private final Queue<T> mChunks = new LinkedList<T>();
+	private final int mCapacity;
+
+	private boolean mClosed;
+	private boolean mAbandoned;
+	private Exception mFailure;
+
+	public ChunkChannel(final int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+
+		mCapacity = capacity;
+	}
+
+	public synchronized void put(final T chunk) throws InterruptedException, ServiceException {
+		if (chunk == null)
+			throw new IllegalArgumentException("Chunk cannot be null.");
+
+		while (mChunks.size() >= mCapacity && !mAbandoned) {
+			wait();
+		}
+
+		if (mAbandoned) {
+			throw new ServiceException(new ServiceError(ServiceError.Codes.ABANDONED, ServiceError.Messages.ABANDONED));
+		}
+
+		if (mClosed) {
+			throw new IllegalStateException("Cannot put a chunk into a closed channel.");
+		}
+
+		mChunks.add(chunk);
+		notifyAll();
+	}
+
+	// Returns null once the channel is closed and every chunk has been taken.
+	public synchronized T take() throws InterruptedException, ServiceException {
+		while (mChunks.isEmpty() && !mClosed) {
+			wait();
+		}
+
+		if (mFailure instanceof ServiceException) {
+			throw (ServiceException) mFailure;
+		} else if (mFailure != null) {
+			throw new ServiceException(new ServiceError(mFailure));
+		}
+
+		final T chunk = mChunks.poll();
+		if (chunk != null) {
+			notifyAll();
+		}
+		return chunk;
+	}
+
+	public synchronized int size() {
+		return mChunks.size();
+	}
+
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	synchronized void close() {
+		mClosed = true;
+		notifyAll();
+	}
+
+	// Chunks that were not taken yet are discarded.
+	synchronized void fail(final Exception failure) {
+		mFailure = failure;
+		mClosed = true;
+		mChunks.clear();
+		notifyAll();
+	}
+
+	synchronized void abandon() {
+		mAbandoned = true;
+		mChunks.clear();
+		notifyAll();
+	}
+}
@@ -17,22 +17,60 @@ package io.pivotal.arca.service;
 
 import io.pivotal.arca.threading.Identifier;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 class IdentifierMap<T> extends HashMap<Identifier<?>, Set<T>> {
 	private static final long serialVersionUID = 2219124556989041435L;
 
+	private static final int MAX_FREE_SETS = 32;
+
+	private final List<Set<T>> mFreeSets = new ArrayList<Set<T>>();
+	private final boolean mRecycling;
+
+	public IdentifierMap() {
+		this(false);
+	}
+
+	public IdentifierMap(final boolean recycling) {
+		mRecycling = recycling;
+	}
+
 	public void add(final Identifier<?> identifier, final T object) {
 		final Set<T> set = getOrCreate(identifier);
 		set.add(object);
 	}
 
+	public boolean removeObject(final Identifier<?> identifier, final T object) {
+		final Set<T> set = get(identifier);
+		if (set == null || !set.remove(object)) {
+			return false;
+		}
+		if (set.isEmpty()) {
+			remove(identifier);
+			recycle(set);
+		}
+		return true;
+	}
+
+	// Sets taken out with remove() can be handed back once the caller is
+	// done with them. With recycling on, they are kept for the next
+	// identifier, so completing a request does not leave one behind.
+	public void recycle(final Set<T> set) {
+		set.clear();
+		if (mRecycling && mFreeSets.size() < MAX_FREE_SETS) {
+			mFreeSets.add(set);
+		}
+	}
+
 	private Set<T> getOrCreate(final Identifier<?> identifier) {
 		Set<T> set = get(identifier);
 		if (set == null) {
-			set = new HashSet<T>();
+			final int size = mFreeSets.size();
+			set = size > 0 ? mFreeSets.remove(size - 1) : new HashSet<T>();
 			put(identifier, set);
 		}
 		return set;
@@ -0,0 +1,31 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import java.util.Collection;
+
+// Tasks that do not implement this are untagged, never cached and never
+// retried.
+public interface ManagedNetworkingTask<T> extends NetworkingTask<T> {
+	public Collection<?> getTags();
+
+	// How long, in nanoseconds, a successful result may be served to later
+	// requests with the same identifier. Zero disables caching.
+	public long getCacheTimeToLive();
+
+	// Failed attempts are only retried when a policy is returned.
+	public RetryPolicy getRetryPolicy();
+}
@@ -0,0 +1,26 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import java.util.Collection;
+
+// Tasks that do not implement this are untagged, and each gets a lane of
+// its own.
+public interface ManagedProcessingTask<T> extends ProcessingTask<T> {
+	public Object getLaneKey();
+
+	public Collection<?> getTags();
+}
@@ -19,20 +19,49 @@ import io.pivotal.arca.threading.Identifier;
 import io.pivotal.arca.threading.Prioritizable;
 import io.pivotal.arca.utils.Logger;
 
+import java.util.Collection;
+
 public class NetworkingPrioritizable<T> extends Prioritizable {
 
-	private final NetworkingTask<T> mTask;
+	private NetworkingTask<T> mTask;
+	private Identifier<?> mIdentifier;
+	private int mAttempt;
 
 	private ServiceError mError;
 	private T mData;
 
 	public NetworkingPrioritizable(final NetworkingTask<T> task) {
+		this(task, null, 1);
+	}
+
+	// A request identifier other than the task's keeps the request from
+	// being merged with those of other tasks.
+	NetworkingPrioritizable(final NetworkingTask<T> task, final Identifier<?> identifier, final int attempt) {
 		mTask = task;
+		mIdentifier = identifier;
+		mAttempt = attempt;
+	}
+
+	void reuse(final NetworkingTask<T> task, final Identifier<?> identifier) {
+		mTask = task;
+		mIdentifier = identifier;
+		mAttempt = 1;
+		mError = null;
+		mData = null;
+	}
+
+	NetworkingPrioritizable<T> newAttempt() {
+		return new NetworkingPrioritizable<T>(mTask, mIdentifier, mAttempt + 1);
 	}
 
 	@Override
 	public Identifier<?> getIdentifier() {
-		return mTask.getIdentifier();
+		return mIdentifier != null ? mIdentifier : mTask.getIdentifier();
+	}
+
+	@Override
+	public Collection<?> getTags() {
+		return mTask instanceof ManagedNetworkingTask ? ((ManagedNetworkingTask<T>) mTask).getTags() : super.getTags();
 	}
 
 	@Override
@@ -48,6 +77,18 @@ public class NetworkingPrioritizable<T> extends Prioritizable {
 		}
 	}
 
+	public long getCacheTimeToLive() {
+		return mTask instanceof ManagedNetworkingTask ? ((ManagedNetworkingTask<T>) mTask).getCacheTimeToLive() : 0;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return mTask instanceof ManagedNetworkingTask ? ((ManagedNetworkingTask<T>) mTask).getRetryPolicy() : null;
+	}
+
+	public int getAttemptCount() {
+		return mAttempt;
+	}
+
 	public Object getData() {
 		return mData;
 	}
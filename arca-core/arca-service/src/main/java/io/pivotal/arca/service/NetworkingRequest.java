@@ -15,17 +15,49 @@
  */
 package io.pivotal.arca.service;
 
+import io.pivotal.arca.threading.Identifier;
 import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.RequestFuture;
 
 public class NetworkingRequest<T> extends PrioritizableRequest {
 
-	private final NetworkingPrioritizableObserver<T> mObserver;
+	private NetworkingPrioritizableObserver<T> mObserver;
+	private RequestFuture<T> mFuture;
+	private boolean mPooled;
 
 	public NetworkingRequest(final NetworkingPrioritizable<?> prioritizable, final int accessorIndex, final NetworkingPrioritizableObserver<T> observer) {
 		super(prioritizable, accessorIndex);
 		mObserver = observer;
 	}
 
+	void setFuture(final RequestFuture<T> future) {
+		mFuture = future;
+	}
+
+	// Sets up a pooled request for another task.
+	@SuppressWarnings("unchecked")
+	void reuse(final NetworkingTask<T> task, final Identifier<?> identifier, final int accessorIndex, final NetworkingPrioritizableObserver<T> observer) {
+		((NetworkingPrioritizable<T>) getPrioritizable()).reuse(task, identifier);
+		resetForReuse(accessorIndex);
+		mObserver = observer;
+		mFuture = null;
+		mPooled = true;
+	}
+
+	// Only pooled requests without a future go back to the pool, since
+	// nothing outside the executor holds on to them.
+	boolean isRecyclable() {
+		return mPooled && mFuture == null;
+	}
+
+	// The next attempt reports to the same observer and future.
+	NetworkingRequest<T> newRetry() {
+		final NetworkingRequest<T> retry = new NetworkingRequest<T>(getPrioritizable().newAttempt(), getAccessorIndex(), mObserver);
+		retry.setDeadline(getDeadline());
+		retry.setFuture(mFuture);
+		return retry;
+	}
+
 	@SuppressWarnings("unchecked")
 	public void notifyComplete(final Object data, final ServiceError error) {
 		if (error == null) {
@@ -33,6 +65,14 @@ public class NetworkingRequest<T> extends PrioritizableRequest {
 		} else {
 			mObserver.onNetworkingFailure(error);
 		}
+
+		if (mFuture != null) {
+			if (error == null) {
+				mFuture.complete((T) data);
+			} else {
+				mFuture.fail(new ServiceException(error));
+			}
+		}
 	}
 
 	@Override
@@ -40,6 +80,18 @@ public class NetworkingRequest<T> extends PrioritizableRequest {
 		return (NetworkingPrioritizable<?>) super.getPrioritizable();
 	}
 
+	public long getCacheTimeToLive() {
+		return getPrioritizable().getCacheTimeToLive();
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return getPrioritizable().getRetryPolicy();
+	}
+
+	public int getAttemptCount() {
+		return getPrioritizable().getAttemptCount();
+	}
+
 	public Object getData() {
 		return getPrioritizable().getData();
 	}
@@ -39,6 +39,7 @@ public abstract class Operation implements Parcelable, TaskObserver {
 
 	private OperationObserver mObserver;
 	private RequestExecutor mExecutor;
+	private TaskGraph mGraph;
 
 	private Context mContext;
 	private ServiceError mError;
@@ -61,10 +62,21 @@ public abstract class Operation implements Parcelable, TaskObserver {
 		return mUri;
 	}
 
+	public Object getLaneKey() {
+		if (mUri == null) {
+			return null;
+		}
+		return mUri.getAuthority() + mUri.getPath();
+	}
+
 	public final ServiceError getError() {
 		return mError;
 	}
 
+	public final TaskGraph getTaskGraph() {
+		return mGraph;
+	}
+
 	public void setContext(final Context context) {
 		mContext = context;
 	}
@@ -83,12 +95,22 @@ public abstract class Operation implements Parcelable, TaskObserver {
 	}
 
 	private void checkTasks(final Set<Task<?>> tasks) {
-		if (tasks != null && !tasks.isEmpty()) {
-			addTasksToPending(tasks);
-			executeTasks(tasks);
-		} else {
+		if (tasks == null || tasks.isEmpty()) {
+			notifyComplete();
+			return;
+		}
+
+		mGraph = new TaskGraph(tasks);
+		if (mGraph.hasCycle()) {
+			mError = new ServiceError(ServiceError.Codes.CYCLE, ServiceError.Messages.CYCLE);
 			notifyComplete();
+			return;
 		}
+
+		// Every task is pending up front, so the operation cannot complete
+		// while dependents have yet to start.
+		addTasksToPending(mGraph.getTasks());
+		mGraph.start(mPriority);
 	}
 
 	private void addTasksToPending(final Set<Task<?>> tasks) {
@@ -97,12 +119,6 @@ public abstract class Operation implements Parcelable, TaskObserver {
 		}
 	}
 
-	private void executeTasks(final Set<Task<?>> tasks) {
-		for (final Task<?> task : tasks) {
-            task.execute();
-		}
-	}
-
 	// ======================================================
 
 	public abstract Set<Task<?>> onCreateTasks();
@@ -146,9 +162,14 @@ public abstract class Operation implements Parcelable, TaskObserver {
 		}
 	}
 
+	// Dependencies added while the task ran are not part of the graph yet,
+	// and have to be pending before the completion check.
 	private void handleTaskDependencies(final Task<?> task) {
-		final Set<Task<?>> tasks = task.getDependencies();
-		addTasksToPending(tasks);
+		for (final Task<?> dependency : task.getDependencies()) {
+			if (!mGraph.contains(dependency)) {
+				addTaskToPending(dependency);
+			}
+		}
 	}
 
 	private void handleTaskFailure(final ServiceError error) {
@@ -164,6 +185,9 @@ public abstract class Operation implements Parcelable, TaskObserver {
             task.setRequestExecutor(mExecutor);
             task.setPriority(mPriority);
             task.setContext(mContext);
+            if (!task.hasLaneKey()) {
+                task.setLaneKey(getLaneKey());
+            }
 			mPendingTasks.add(task);
 		}
 	}
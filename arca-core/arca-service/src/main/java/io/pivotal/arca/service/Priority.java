@@ -15,13 +15,27 @@
  */
 package io.pivotal.arca.service;
 
+import io.pivotal.arca.threading.AgingSchedulingPolicy;
+import io.pivotal.arca.threading.ConcurrentQueuePriorityAccessor;
+import io.pivotal.arca.threading.ConcurrentStackPriorityAccessor;
+import io.pivotal.arca.threading.DeadlinePriorityAccessor;
 import io.pivotal.arca.threading.PriorityAccessor;
 import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.SchedulingPolicy;
 import io.pivotal.arca.threading.StackPriorityAccessor;
+import io.pivotal.arca.threading.WeightedSchedulingPolicy;
+
+import java.util.concurrent.TimeUnit;
 
 public enum Priority {
 	LIVE, HIGH, MEDIUM, LOW;
 
+	// The live lane is a stack in both the default and the concurrent
+	// accessor arrays, so its requests run in the reverse of submission.
+	public boolean isLastInFirstOut() {
+		return this == LIVE;
+	}
+
 	public static PriorityAccessor[] newAccessorArray() {
 		return new PriorityAccessor[] { 
 				new StackPriorityAccessor(), // live
@@ -30,4 +44,44 @@ public enum Priority {
 				new QueuePriorityAccessor() // low
 		};
 	}
+
+	public static PriorityAccessor[] newConcurrentAccessorArray() {
+		return new PriorityAccessor[] { 
+				new ConcurrentStackPriorityAccessor(), // live
+				new ConcurrentQueuePriorityAccessor(), // high
+				new ConcurrentQueuePriorityAccessor(), // med
+				new ConcurrentQueuePriorityAccessor() // low
+		};
+	}
+
+	public static PriorityAccessor[] newDeadlineAccessorArray() {
+		return new PriorityAccessor[] { 
+				new DeadlinePriorityAccessor(), // live
+				new DeadlinePriorityAccessor(), // high
+				new DeadlinePriorityAccessor(), // med
+				new DeadlinePriorityAccessor() // low
+		};
+	}
+
+	public static SchedulingPolicy newAgingSchedulingPolicy() {
+		return newAgingSchedulingPolicy(2000, 10000, 30000, TimeUnit.MILLISECONDS);
+	}
+
+	public static SchedulingPolicy newAgingSchedulingPolicy(final long highMaxWait, final long mediumMaxWait, final long lowMaxWait, final TimeUnit timeUnit) {
+		return new AgingSchedulingPolicy(new long[] { 
+				Long.MAX_VALUE, // live
+				highMaxWait, // high
+				mediumMaxWait, // med
+				lowMaxWait // low
+		}, timeUnit);
+	}
+
+	public static WeightedSchedulingPolicy newWeightedSchedulingPolicy(final int liveWeight, final int highWeight, final int mediumWeight, final int lowWeight) {
+		return new WeightedSchedulingPolicy(new int[] { 
+				liveWeight, // live
+				highWeight, // high
+				mediumWeight, // med
+				lowWeight // low
+		});
+	}
 }
@@ -0,0 +1,158 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DrainableAuxiliaryExecutor;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs ready processing requests together in one transaction. Streaming
+// requests keep their own transaction open, so they run after the batch.
+public class ProcessingBatcher {
+
+	public static interface Config {
+		public static final int MAX_BATCH_SIZE = 20;
+		public static final long MAX_LINGER_TIME = 0;
+	}
+
+	private final ProcessingTransaction mTransaction;
+	private final int mMaxBatchSize;
+	private final long mMaxLingerTime;
+
+	private DrainableAuxiliaryExecutor mExecutor;
+
+	public ProcessingBatcher(final ProcessingTransaction transaction) {
+		this(transaction, Config.MAX_BATCH_SIZE, Config.MAX_LINGER_TIME, TimeUnit.MILLISECONDS);
+	}
+
+	public ProcessingBatcher(final ProcessingTransaction transaction, final int maxBatchSize, final long maxLingerTime, final TimeUnit unit) {
+		if (transaction == null)
+			throw new IllegalArgumentException("Transaction cannot be null.");
+
+		if (maxBatchSize <= 0)
+			throw new IllegalArgumentException("Max batch size must be positive.");
+
+		if (maxLingerTime < 0)
+			throw new IllegalArgumentException("Max linger time cannot be negative.");
+
+		mTransaction = transaction;
+		mMaxBatchSize = maxBatchSize;
+		mMaxLingerTime = unit.toNanos(maxLingerTime);
+	}
+
+	public int getMaxBatchSize() {
+		return mMaxBatchSize;
+	}
+
+	void setExecutor(final AuxiliaryExecutor executor) {
+		if (!(executor instanceof DrainableAuxiliaryExecutor))
+			throw new IllegalStateException("Processing batches require an executor that can drain its queue.");
+
+		mExecutor = (DrainableAuxiliaryExecutor) executor;
+	}
+
+	void execute(final ProcessingRequest<?> first) {
+		final List<PrioritizableRequest> drained = new ArrayList<PrioritizableRequest>();
+		if (mExecutor != null && mMaxBatchSize > 1) {
+			mExecutor.drainTo(drained, mMaxBatchSize - 1, mMaxLingerTime, TimeUnit.NANOSECONDS);
+		}
+
+		final List<ProcessingRequest<?>> batch = new ArrayList<ProcessingRequest<?>>();
+		final List<ProcessingRequest<?>> streaming = new ArrayList<ProcessingRequest<?>>();
+		(isStreaming(first) ? streaming : batch).add(first);
+		for (final PrioritizableRequest request : drained) {
+			final ProcessingRequest<?> processing = (ProcessingRequest<?>) request;
+			(isStreaming(processing) ? streaming : batch).add(processing);
+		}
+
+		try {
+			runInTransaction(batch);
+			for (final ProcessingRequest<?> request : streaming) {
+				request.runUnbatched();
+			}
+		} finally {
+			for (final PrioritizableRequest request : drained) {
+				mExecutor.finishDrained(request);
+			}
+		}
+	}
+
+	private void runInTransaction(final List<ProcessingRequest<?>> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		try {
+			mTransaction.begin();
+		} catch (final RuntimeException e) {
+			Logger.ex(e);
+			for (final ProcessingRequest<?> request : batch) {
+				request.runUnbatched();
+			}
+			return;
+		}
+
+		boolean committed = false;
+		try {
+			for (int i = 0; i < batch.size(); i++) {
+				runInSavepoint(batch.get(i), "batch_" + i);
+			}
+			mTransaction.setSuccessful();
+		} catch (final RuntimeException e) {
+			Logger.ex(e);
+		} finally {
+			committed = end();
+		}
+
+		// Nothing the batch wrote was kept, including the work of requests
+		// that succeeded or never got to run.
+		if (!committed) {
+			final ServiceError error = new ServiceError(ServiceError.Codes.ROLLED_BACK, ServiceError.Messages.ROLLED_BACK);
+			for (final ProcessingRequest<?> request : batch) {
+				request.failBatch(error);
+			}
+		}
+	}
+
+	private boolean end() {
+		try {
+			return mTransaction.end();
+		} catch (final RuntimeException e) {
+			Logger.ex(e);
+			return false;
+		}
+	}
+
+	private void runInSavepoint(final ProcessingRequest<?> request, final String savepoint) {
+		mTransaction.setSavepoint(savepoint);
+		request.runUnbatched();
+		// Rolling back to a savepoint also releases it.
+		if (request.getError() != null) {
+			mTransaction.rollbackToSavepoint(savepoint);
+		} else {
+			mTransaction.releaseSavepoint(savepoint);
+		}
+	}
+
+	private static boolean isStreaming(final ProcessingRequest<?> request) {
+		return request.getData() instanceof ChunkChannel;
+	}
+}
@@ -19,21 +19,46 @@ import io.pivotal.arca.threading.Identifier;
 import io.pivotal.arca.threading.Prioritizable;
 import io.pivotal.arca.utils.Logger;
 
+import java.util.Collection;
+
 public class ProcessingPrioritizable<T> extends Prioritizable {
 
-	private final ProcessingTask<T> mTask;
-	private final T mData;
+	private ProcessingTask<T> mTask;
+	private Identifier<?> mIdentifier;
+	private T mData;
 
 	private ServiceError mError;
 
 	public ProcessingPrioritizable(final ProcessingTask<T> task, final T data) {
+		this(task, null, data);
+	}
+
+	ProcessingPrioritizable(final ProcessingTask<T> task, final Identifier<?> identifier, final T data) {
+		mTask = task;
+		mIdentifier = identifier;
+		mData = data;
+	}
+
+	void reuse(final ProcessingTask<T> task, final Identifier<?> identifier, final T data) {
 		mTask = task;
+		mIdentifier = identifier;
 		mData = data;
+		mError = null;
 	}
 
 	@Override
 	public Identifier<?> getIdentifier() {
-		return mTask.getIdentifier();
+		return mIdentifier != null ? mIdentifier : mTask.getIdentifier();
+	}
+
+	@Override
+	public Collection<?> getTags() {
+		return mTask instanceof ManagedProcessingTask ? ((ManagedProcessingTask<T>) mTask).getTags() : super.getTags();
+	}
+
+	@Override
+	public Object getLaneKey() {
+		return mTask instanceof ManagedProcessingTask ? ((ManagedProcessingTask<T>) mTask).getLaneKey() : super.getLaneKey();
 	}
 
 	@Override
@@ -57,4 +82,8 @@ public class ProcessingPrioritizable<T> extends Prioritizable {
 		return mError;
 	}
 
+	void setError(final ServiceError error) {
+		mError = error;
+	}
+
 }
\ No newline at end of file
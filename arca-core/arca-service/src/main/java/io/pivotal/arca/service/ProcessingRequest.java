@@ -15,23 +15,81 @@
  */
 package io.pivotal.arca.service;
 
+import io.pivotal.arca.threading.Identifier;
 import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.RequestFuture;
 
 public class ProcessingRequest<T> extends PrioritizableRequest {
 
-	private final ProcessingPrioritizableObserver<T> mObserver;
+	private ProcessingPrioritizableObserver<T> mObserver;
+	private RequestFuture<Void> mFuture;
+	private ProcessingBatcher mBatcher;
+	private boolean mPooled;
 
 	public ProcessingRequest(final ProcessingPrioritizable<?> prioritizable, final int accessorIndex, final ProcessingPrioritizableObserver<T> observer) {
 		super(prioritizable, accessorIndex);
 		mObserver = observer;
 	}
 
+	void setFuture(final RequestFuture<Void> future) {
+		mFuture = future;
+	}
+
+	void setBatcher(final ProcessingBatcher batcher) {
+		mBatcher = batcher;
+	}
+
+	// Sets up a pooled request for another task.
+	@SuppressWarnings("unchecked")
+	void reuse(final ProcessingTask<T> task, final Identifier<?> identifier, final T data, final int accessorIndex, final ProcessingPrioritizableObserver<T> observer) {
+		((ProcessingPrioritizable<T>) getPrioritizable()).reuse(task, identifier, data);
+		resetForReuse(accessorIndex);
+		mObserver = observer;
+		mFuture = null;
+		mBatcher = null;
+		mPooled = true;
+	}
+
+	// Batched requests complete with the rest of their batch, so only
+	// pooled requests run on their own go back to the pool.
+	boolean isRecyclable() {
+		return mPooled && mFuture == null && mBatcher == null;
+	}
+
+	@Override
+	public void run() {
+		if (mBatcher != null) {
+			mBatcher.execute(this);
+		} else {
+			super.run();
+		}
+	}
+
+	void runUnbatched() {
+		super.run();
+	}
+
+	// Keeps the request's own failure if it had one.
+	void failBatch(final ServiceError error) {
+		if (getError() == null) {
+			getPrioritizable().setError(error);
+		}
+	}
+
 	public void notifyComplete(final ServiceError error) {
 		if (error == null) {
 			mObserver.onProcessingComplete();
 		} else {
 			mObserver.onProcessingFailure(error);
 		}
+
+		if (mFuture != null) {
+			if (error == null) {
+				mFuture.complete(null);
+			} else {
+				mFuture.fail(new ServiceException(error));
+			}
+		}
 	}
 
 	@Override
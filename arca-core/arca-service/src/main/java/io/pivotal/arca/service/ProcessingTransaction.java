@@ -0,0 +1,34 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+// Each request in a batch runs under its own savepoint.
+public interface ProcessingTransaction {
+
+	public void begin();
+
+	public void setSavepoint(String name);
+
+	public void releaseSavepoint(String name);
+
+	// Undoes the savepoint's writes and releases it.
+	public void rollbackToSavepoint(String name);
+
+	public void setSuccessful();
+
+	// Returns whether the transaction was committed.
+	public boolean end();
+}
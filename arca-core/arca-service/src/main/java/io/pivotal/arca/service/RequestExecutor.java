@@ -15,12 +15,27 @@
  */
 package io.pivotal.arca.service;
 
+import io.pivotal.arca.threading.AdaptivePoolController;
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
 import io.pivotal.arca.threading.AuxiliaryExecutor;
-import io.pivotal.arca.threading.AuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.ExecutorMetrics;
 import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
 import io.pivotal.arca.threading.PrioritizableRequest;
-
+import io.pivotal.arca.threading.RequestFuture;
+import io.pivotal.arca.threading.SchedulingPolicy;
+import io.pivotal.arca.threading.StrictSchedulingPolicy;
+import io.pivotal.arca.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public interface RequestExecutor {
@@ -43,46 +58,116 @@ public interface RequestExecutor {
 		}
 	}
 
-	public static class ThreadedRequestExecutor implements RequestExecutor, RequestObserver, AuxiliaryExecutorObserver {
+	public static class ThreadedRequestExecutor implements RequestExecutor, ManagedRequestObserver, ManagedAuxiliaryExecutorObserver {
 
 		public static interface Config {
 			public static final int NUM_NETWORK_THREADS = 2;
 			public static final int NUM_PROCESSING_THREADS = 1;
 			public static final long THREAD_KEEP_ALIVE_TIME = 15;
+			public static final int MAX_NETWORK_THREADS = 6;
+			public static final long TARGET_NETWORK_QUEUE_WAIT = 250;
+			public static final int NUM_PROCESSING_LANE_THREADS = 3;
 		}
 
-		private final IdentifierMap<NetworkingRequest<?>> mNetworkMap = new IdentifierMap<NetworkingRequest<?>>();
-		private final IdentifierMap<ProcessingRequest<?>> mProcessingMap = new IdentifierMap<ProcessingRequest<?>>();
+		private final IdentifierMap<NetworkingRequest<?>> mNetworkMap;
+		private final IdentifierMap<ProcessingRequest<?>> mProcessingMap;
+		private final RequestPool<NetworkingRequest<?>> mNetworkPool;
+		private final RequestPool<ProcessingRequest<?>> mProcessingPool;
+		private final Map<Identifier<?>, NetworkingRequest<?>> mRetries = new HashMap<Identifier<?>, NetworkingRequest<?>>();
 
 		private final AuxiliaryExecutor mNetworkExecutor;
 		private final AuxiliaryExecutor mProcessingExecutor;
+		private final ResultCache mResultCache;
+		private final ProcessingBatcher mProcessingBatcher;
+		private final boolean mRecycling;
 
 		public ThreadedRequestExecutor() {
+			mRecycling = isRecyclingEnabled();
+			mNetworkMap = new IdentifierMap<NetworkingRequest<?>>(mRecycling);
+			mProcessingMap = new IdentifierMap<ProcessingRequest<?>>(mRecycling);
+			mNetworkPool = mRecycling ? new RequestPool<NetworkingRequest<?>>() : null;
+			mProcessingPool = mRecycling ? new RequestPool<ProcessingRequest<?>>() : null;
+
 			mNetworkExecutor = onCreateNetworkingExecutor();
 			mProcessingExecutor = onCreateProcessingExecutor();
+			mResultCache = onCreateNetworkingResultCache();
+			mProcessingBatcher = onCreateProcessingBatcher();
+
+			if (mProcessingBatcher != null) {
+				mProcessingBatcher.setExecutor(mProcessingExecutor);
+			}
 		}
 
 		protected AuxiliaryExecutor onCreateNetworkingExecutor() {
 			final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this);
+			builder.setSchedulingPolicy(onCreateNetworkingSchedulingPolicy());
 			builder.setKeepAliveTime(Config.THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS);
 			builder.setCorePoolSize(Config.NUM_NETWORK_THREADS);
+			builder.setPoolController(onCreateNetworkingPoolController());
 			builder.allowCoreThreadTimeOut();
+			if (mRecycling) {
+				builder.useRecycling();
+			}
 			return builder.create();
 		}
 
 		protected AuxiliaryExecutor onCreateProcessingExecutor() {
 			final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this);
+			builder.setSchedulingPolicy(onCreateProcessingSchedulingPolicy());
 			builder.setKeepAliveTime(Config.THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS);
 			builder.setCorePoolSize(Config.NUM_PROCESSING_THREADS);
+			builder.setPoolController(onCreateProcessingPoolController());
 			builder.allowCoreThreadTimeOut();
+			if (mRecycling) {
+				builder.useRecycling();
+			}
 			return builder.create();
 		}
 
+		protected SchedulingPolicy onCreateNetworkingSchedulingPolicy() {
+			return new StrictSchedulingPolicy();
+		}
+
+		protected SchedulingPolicy onCreateProcessingSchedulingPolicy() {
+			return new StrictSchedulingPolicy();
+		}
+
+		// Network latency varies enough to make the pool size swing, so the
+		// pool stays fixed unless a subclass opts in, for example with
+		// MAX_NETWORK_THREADS and TARGET_NETWORK_QUEUE_WAIT.
+		protected AdaptivePoolController onCreateNetworkingPoolController() {
+			return null;
+		}
+
+		protected AdaptivePoolController onCreateProcessingPoolController() {
+			// Processing usually writes to a single database, so it stays fixed.
+			return null;
+		}
+
+		// Results are only cached for tasks that set a time to live, and
+		// without a cache every request goes to the network.
+		protected ResultCache onCreateNetworkingResultCache() {
+			return null;
+		}
+
+		// Without a batcher, each processing request commits on its own.
+		protected ProcessingBatcher onCreateProcessingBatcher() {
+			return null;
+		}
+
+		// Recycling reuses the requests of completed tasks, along with the
+		// executors' queue nodes and the sets tracking duplicates, so large
+		// syncs churn less garbage. It is called before the executors are
+		// created, so it cannot depend on the subclass's own fields.
+		protected boolean isRecyclingEnabled() {
+			return false;
+		}
+
 		// ======================================================
 
 		public int getRequestCount() {
 			synchronized (ThreadedRequestExecutor.this) {
-				final int networkCount = mNetworkExecutor.getQueue().size() + mNetworkExecutor.getActiveCount();
+				final int networkCount = mNetworkExecutor.getQueue().size() + mNetworkExecutor.getActiveCount() + countWaitingRetries();
 				final int processingCount = mProcessingExecutor.getQueue().size() + mProcessingExecutor.getActiveCount();
 				return networkCount + processingCount;
 			}
@@ -92,26 +177,169 @@ public interface RequestExecutor {
 			return getRequestCount() == 0;
 		}
 
+		public ExecutorMetrics getNetworkingMetrics() {
+			return getMetrics(mNetworkExecutor);
+		}
+
+		public ExecutorMetrics getProcessingMetrics() {
+			return getMetrics(mProcessingExecutor);
+		}
+
+		public ResultCache getNetworkingResultCache() {
+			return mResultCache;
+		}
+
+		// Queued requests with the tag are removed and their tasks fail with a
+		// cancelled error. Requests that have already started run to completion.
+		// The executors report cancellations back through this executor's lock,
+		// so they are called without holding it.
+		public int cancel(final Object tag) {
+			final List<Identifier<?>> networking;
+			final List<Identifier<?>> processing;
+			synchronized (ThreadedRequestExecutor.this) {
+				networking = findTagged(mNetworkMap, tag);
+				processing = findTagged(mProcessingMap, tag);
+			}
+
+			final int cancelled = cancel(mNetworkExecutor, mNetworkMap, networking, tag) + cancel(mProcessingExecutor, mProcessingMap, processing, tag);
+
+			synchronized (ThreadedRequestExecutor.this) {
+				for (final Identifier<?> identifier : networking) {
+					releaseCancelledNetworking(identifier, tag);
+				}
+				for (final Identifier<?> identifier : processing) {
+					releaseCancelledProcessing(identifier, tag);
+				}
+			}
+			return cancelled;
+		}
+
+		// The future settles with the same result the request's observer gets,
+		// so every duplicate submitted for an identifier completes at once.
+		// Cancelling it withdraws the request if it has not started yet.
+		public <T> RequestFuture<T> submitNetworkingRequest(final NetworkingRequest<T> request) {
+			final RequestFuture<T> future = new RequestFuture<T>() {
+				@Override
+				protected void onCancelled() {
+					cancelNetworkingRequest(request);
+				}
+			};
+			request.setFuture(future);
+			executeNetworkingRequest(request);
+			return future;
+		}
+
+		public RequestFuture<Void> submitProcessingRequest(final ProcessingRequest<?> request) {
+			final RequestFuture<Void> future = new RequestFuture<Void>() {
+				@Override
+				protected void onCancelled() {
+					cancelProcessingRequest(request);
+				}
+			};
+			request.setFuture(future);
+			executeProcessingRequest(request);
+			return future;
+		}
+
+		// Tasks take their requests from here, so completed ones can be reused.
+		@SuppressWarnings("unchecked")
+		<T> NetworkingRequest<T> obtainNetworkingRequest(final NetworkingTask<T> task, final Identifier<?> identifier, final int accessorIndex, final NetworkingPrioritizableObserver<T> observer) {
+			if (mNetworkPool == null) {
+				return new NetworkingRequest<T>(new NetworkingPrioritizable<T>(task, identifier, 1), accessorIndex, observer);
+			}
+			NetworkingRequest<T> request = (NetworkingRequest<T>) mNetworkPool.obtain();
+			if (request == null) {
+				request = new NetworkingRequest<T>(new NetworkingPrioritizable<T>(task, identifier, 1), accessorIndex, observer);
+			}
+			request.reuse(task, identifier, accessorIndex, observer);
+			return request;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> ProcessingRequest<T> obtainProcessingRequest(final ProcessingTask<T> task, final Identifier<?> identifier, final T data, final int accessorIndex, final ProcessingPrioritizableObserver<T> observer) {
+			if (mProcessingPool == null) {
+				return new ProcessingRequest<T>(new ProcessingPrioritizable<T>(task, identifier, data), accessorIndex, observer);
+			}
+			ProcessingRequest<T> request = (ProcessingRequest<T>) mProcessingPool.obtain();
+			if (request == null) {
+				request = new ProcessingRequest<T>(new ProcessingPrioritizable<T>(task, identifier, data), accessorIndex, observer);
+			}
+			request.reuse(task, identifier, data, accessorIndex, observer);
+			return request;
+		}
+
 		// ======================================================
 
 		@Override
 		public void executeNetworkingRequest(final NetworkingRequest<?> request) {
-			synchronized (ThreadedRequestExecutor.this) {
-				final Identifier<?> identifier = request.getIdentifier();
-				mNetworkMap.add(identifier, request);
-				mNetworkExecutor.execute(request);
+			// A cached result goes straight to processing without a network thread.
+			final ResultCache.Entry cached = mResultCache != null ? mResultCache.get(request.getIdentifier()) : null;
+			if (cached != null) {
+				request.notifyComplete(cached.getData(), null);
+				return;
+			}
+
+			// Registration and enqueueing happen together under the lock, so a
+			// completion can never slip between them. A queue that blocks its
+			// callers is waited on without the lock, since completions need it.
+			final Identifier<?> identifier = request.getIdentifier();
+			while (true) {
+				synchronized (ThreadedRequestExecutor.this) {
+					// Duplicates of a request waiting to retry wait with it.
+					if (mRetries.containsKey(identifier)) {
+						mNetworkMap.add(identifier, request);
+						return;
+					}
+
+					if (hasRoomFor(mNetworkExecutor, request)) {
+						mNetworkMap.add(identifier, request);
+						try {
+							mNetworkExecutor.execute(request);
+						} catch (final RejectedExecutionException e) {
+							onNetworkingRequestDropped(request, DropReason.REJECTED);
+						}
+						return;
+					}
+				}
+
+				if (!awaitRoomFor(mNetworkExecutor, request)) {
+					request.notifyComplete(null, newDroppedError(DropReason.REJECTED));
+					return;
+				}
 			}
 		}
 
 		@Override
 		public void executeProcessingRequest(final ProcessingRequest<?> request) {
-			synchronized (ThreadedRequestExecutor.this) {
-				final Identifier<?> identifier = request.getIdentifier();
-				mProcessingMap.add(identifier, request);
-				mProcessingExecutor.execute(request);
+			request.setBatcher(mProcessingBatcher);
+
+			final Identifier<?> identifier = request.getIdentifier();
+			while (true) {
+				synchronized (ThreadedRequestExecutor.this) {
+					if (hasRoomFor(mProcessingExecutor, request)) {
+						mProcessingMap.add(identifier, request);
+						try {
+							mProcessingExecutor.execute(request);
+						} catch (final RejectedExecutionException e) {
+							onProcessingRequestDropped(request, DropReason.REJECTED);
+						}
+						return;
+					}
+				}
+
+				if (!awaitRoomFor(mProcessingExecutor, request)) {
+					request.notifyComplete(newDroppedError(DropReason.REJECTED));
+					return;
+				}
 			}
 		}
 
+		// Whether a task's processing can run while its networking is still
+		// going, which needs separate threads for the two.
+		public boolean canProcessWhileNetworking() {
+			return true;
+		}
+
 		@Override
 		public void onComplete(final PrioritizableRequest request) {
 
@@ -136,21 +364,54 @@ public interface RequestExecutor {
 			}
 		}
 
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+
+			if (request instanceof NetworkingRequest) {
+				onNetworkingRequestDropped((NetworkingRequest<?>) request, reason);
+			}
+
+			if (request instanceof ProcessingRequest) {
+				onProcessingRequestDropped((ProcessingRequest<?>) request, reason);
+			}
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			Logger.v("Resized executor %s from %d to %d threads", executor, previousSize, newSize);
+		}
+
 		@Override
 		public void onNetworkingRequestComplete(final NetworkingRequest<?> request) {
+			final NetworkingRequest<?> retry = takeRetry(request);
+			if (retry != null) {
+				scheduleRetry(retry);
+				recycle(request);
+				return;
+			}
+
 			synchronized (ThreadedRequestExecutor.this) {
 				final Object data = request.getData();
 				final ServiceError error = request.getError();
 
 				final Identifier<?> identifier = request.getIdentifier();
 				final Set<NetworkingRequest<?>> set = mNetworkMap.remove(identifier);
+				removeRetry(request);
+
+				if (mResultCache != null && error == null) {
+					mResultCache.put(identifier, data, request.getCacheTimeToLive(), TimeUnit.NANOSECONDS);
+				}
 
-				for (final NetworkingRequest<?> prioritizable : set) {
-					prioritizable.notifyComplete(data, error);
+				if (set != null) {
+					for (final NetworkingRequest<?> prioritizable : set) {
+						prioritizable.notifyComplete(data, error);
+					}
+					mNetworkMap.recycle(set);
 				}
 
 				mNetworkExecutor.notifyRequestComplete(identifier);
 			}
+			recycle(request);
 		}
 
 		@Override
@@ -161,23 +422,340 @@ public interface RequestExecutor {
 				final Identifier<?> identifier = request.getIdentifier();
 				final Set<ProcessingRequest<?>> set = mProcessingMap.remove(identifier);
 
-				for (final ProcessingRequest<?> prioritizable : set) {
-					prioritizable.notifyComplete(error);
+				if (set != null) {
+					for (final ProcessingRequest<?> prioritizable : set) {
+						prioritizable.notifyComplete(error);
+					}
+					mProcessingMap.recycle(set);
 				}
 
 				mProcessingExecutor.notifyRequestComplete(identifier);
 			}
+			recycle(request);
 		}
 
 		@Override
 		public void onNetworkingRequestCancelled(final NetworkingRequest<?> request) {
-			// do nothing
+			synchronized (ThreadedRequestExecutor.this) {
+				if (removeRetry(request)) {
+					releaseAll(mNetworkMap.remove(request.getIdentifier()), newCancelledError());
+				}
+			}
 		}
 
+		// Duplicates cancelled by the executor are completed by the request
+		// they were waiting on, and tagged requests are released by cancel().
 		@Override
 		public void onProcessingRequestCancelled(final ProcessingRequest<?> request) {
-			// do nothing
 		}
 
+		@Override
+		public void onNetworkingRequestDropped(final NetworkingRequest<?> request, final DropReason reason) {
+			mNetworkExecutor.remove(request);
+
+			synchronized (ThreadedRequestExecutor.this) {
+				final Identifier<?> identifier = request.getIdentifier();
+
+				// Duplicates waiting on a retry have nothing else to wait on.
+				if (removeRetry(request)) {
+					releaseAll(mNetworkMap.remove(identifier), newDroppedError(reason));
+					return;
+				}
+
+				if (mNetworkMap.removeObject(identifier, request)) {
+					request.notifyComplete(null, newDroppedError(reason));
+				}
+			}
+		}
+
+		@Override
+		public void onProcessingRequestDropped(final ProcessingRequest<?> request, final DropReason reason) {
+			mProcessingExecutor.remove(request);
+
+			synchronized (ThreadedRequestExecutor.this) {
+				final Identifier<?> identifier = request.getIdentifier();
+
+				if (mProcessingMap.removeObject(identifier, request)) {
+					request.notifyComplete(newDroppedError(reason));
+				}
+			}
+		}
+
+		private void cancelNetworkingRequest(final NetworkingRequest<?> request) {
+			final Identifier<?> identifier = request.getIdentifier();
+			synchronized (ThreadedRequestExecutor.this) {
+				if (!mNetworkMap.removeObject(identifier, request)) {
+					return;
+				}
+			}
+
+			if (mNetworkExecutor.remove(request)) {
+				synchronized (ThreadedRequestExecutor.this) {
+					releaseCancelledNetworking(identifier, null);
+				}
+			}
+		}
+
+		private void cancelProcessingRequest(final ProcessingRequest<?> request) {
+			final Identifier<?> identifier = request.getIdentifier();
+			synchronized (ThreadedRequestExecutor.this) {
+				if (!mProcessingMap.removeObject(identifier, request)) {
+					return;
+				}
+			}
+
+			if (mProcessingExecutor.remove(request)) {
+				synchronized (ThreadedRequestExecutor.this) {
+					releaseCancelledProcessing(identifier, null);
+				}
+			}
+		}
+
+		// Only the cancelled requests with the tag fail. Duplicates without it
+		// keep waiting on whichever request for the identifier is still live,
+		// since the executor queues them again in place of a withdrawn one.
+		// Cancelled duplicates with nothing left to wait on fail as well.
+		private void releaseCancelledNetworking(final Identifier<?> identifier, final Object tag) {
+			if (tag != null) {
+				for (final NetworkingRequest<?> cancelled : takeCancelled(mNetworkMap, identifier, tag)) {
+					cancelled.notifyComplete(null, newCancelledError());
+				}
+			}
+			if (!hasLiveRequest(mNetworkMap, identifier)) {
+				for (final NetworkingRequest<?> cancelled : takeCancelled(mNetworkMap, identifier, null)) {
+					cancelled.notifyComplete(null, newCancelledError());
+				}
+			}
+		}
+
+		private void releaseCancelledProcessing(final Identifier<?> identifier, final Object tag) {
+			if (tag != null) {
+				for (final ProcessingRequest<?> cancelled : takeCancelled(mProcessingMap, identifier, tag)) {
+					cancelled.notifyComplete(newCancelledError());
+				}
+			}
+			if (!hasLiveRequest(mProcessingMap, identifier)) {
+				for (final ProcessingRequest<?> cancelled : takeCancelled(mProcessingMap, identifier, null)) {
+					cancelled.notifyComplete(newCancelledError());
+				}
+			}
+		}
+
+		// The retry replaces the failed attempt in its identifier's set, so
+		// duplicates keep waiting on it instead of failing with the attempt.
+		private NetworkingRequest<?> takeRetry(final NetworkingRequest<?> request) {
+			final ServiceError error = request.getError();
+			if (error == null) {
+				return null;
+			}
+
+			final RetryPolicy policy = request.getRetryPolicy();
+			if (policy == null || !policy.shouldRetry(error, request.getAttemptCount())) {
+				return null;
+			}
+
+			synchronized (ThreadedRequestExecutor.this) {
+				final Identifier<?> identifier = request.getIdentifier();
+				if (!mNetworkMap.removeObject(identifier, request)) {
+					return null;
+				}
+
+				final NetworkingRequest<?> retry = request.newRetry();
+				mNetworkMap.add(identifier, retry);
+				mRetries.put(identifier, retry);
+				mNetworkExecutor.notifyRequestComplete(identifier);
+				return retry;
+			}
+		}
+
+		private void scheduleRetry(final NetworkingRequest<?> retry) {
+			final long backoff = retry.getRetryPolicy().getBackoff(retry.getAttemptCount() - 1);
+			Logger.v("Retrying %s in %d ms (attempt %d)", retry.getIdentifier(), TimeUnit.NANOSECONDS.toMillis(backoff), retry.getAttemptCount());
+
+			try {
+				if (mNetworkExecutor instanceof ManagedAuxiliaryExecutor) {
+					((ManagedAuxiliaryExecutor) mNetworkExecutor).schedule(retry, backoff, TimeUnit.NANOSECONDS);
+				} else {
+					// Executors that cannot schedule run the retry straight away.
+					mNetworkExecutor.execute(retry);
+				}
+			} catch (final RejectedExecutionException e) {
+				onNetworkingRequestDropped(retry, DropReason.REJECTED);
+			}
+		}
+
+		// Retries waiting out their backoff have not reached the executor's
+		// queue yet.
+		private int countWaitingRetries() {
+			int count = 0;
+			for (final NetworkingRequest<?> retry : mRetries.values()) {
+				if (retry.getQueuedTime() == 0) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		// Only requests that ran to completion are reused. Cancelled and
+		// dropped ones may still be referenced by whoever withdrew them.
+		private void recycle(final NetworkingRequest<?> request) {
+			if (mNetworkPool != null && request.isRecyclable()) {
+				mNetworkPool.release(request);
+			}
+		}
+
+		private void recycle(final ProcessingRequest<?> request) {
+			if (mProcessingPool != null && request.isRecyclable()) {
+				mProcessingPool.release(request);
+			}
+		}
+
+		private boolean removeRetry(final NetworkingRequest<?> request) {
+			final Identifier<?> identifier = request.getIdentifier();
+			if (mRetries.get(identifier) != request) {
+				return false;
+			}
+			mRetries.remove(identifier);
+			return true;
+		}
+
+		private void releaseAll(final Set<NetworkingRequest<?>> set, final ServiceError error) {
+			if (set != null) {
+				for (final NetworkingRequest<?> request : set) {
+					request.notifyComplete(null, error);
+				}
+				mNetworkMap.recycle(set);
+			}
+		}
+
+		// Executors without a tag index of their own have the tagged requests
+		// removed one at a time.
+		private <T extends PrioritizableRequest> int cancel(final AuxiliaryExecutor executor, final IdentifierMap<T> map, final List<Identifier<?>> identifiers, final Object tag) {
+			if (executor instanceof ManagedAuxiliaryExecutor) {
+				return ((ManagedAuxiliaryExecutor) executor).cancel(tag);
+			}
+
+			final List<T> tagged = new ArrayList<T>();
+			synchronized (ThreadedRequestExecutor.this) {
+				for (final Identifier<?> identifier : identifiers) {
+					final Set<T> set = map.get(identifier);
+					if (set != null) {
+						for (final T request : set) {
+							if (request.getTags().contains(tag)) {
+								tagged.add(request);
+							}
+						}
+					}
+				}
+			}
+
+			int cancelled = 0;
+			for (final T request : tagged) {
+				if (executor.remove(request)) {
+					cancelled++;
+				}
+			}
+			return cancelled;
+		}
+
+		private static boolean hasRoomFor(final AuxiliaryExecutor executor, final PrioritizableRequest request) {
+			final BlockingQueue<Runnable> queue = executor.getQueue();
+			return !(queue instanceof AuxiliaryBlockingQueue) || ((AuxiliaryBlockingQueue) queue).hasRoomFor(request);
+		}
+
+		private static boolean awaitRoomFor(final AuxiliaryExecutor executor, final PrioritizableRequest request) {
+			final BlockingQueue<Runnable> queue = executor.getQueue();
+			if (queue instanceof AuxiliaryBlockingQueue) {
+				try {
+					((AuxiliaryBlockingQueue) queue).awaitRoomFor(request);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static ExecutorMetrics getMetrics(final AuxiliaryExecutor executor) {
+			return executor instanceof ManagedAuxiliaryExecutor ? ((ManagedAuxiliaryExecutor) executor).getMetrics() : null;
+		}
+
+		private static <T extends PrioritizableRequest> List<Identifier<?>> findTagged(final IdentifierMap<T> map, final Object tag) {
+			final List<Identifier<?>> identifiers = new ArrayList<Identifier<?>>();
+			for (final Map.Entry<Identifier<?>, Set<T>> entry : map.entrySet()) {
+				for (final T request : entry.getValue()) {
+					if (request.getTags().contains(tag)) {
+						identifiers.add(entry.getKey());
+						break;
+					}
+				}
+			}
+			return identifiers;
+		}
+
+		private static <T extends PrioritizableRequest> List<T> takeCancelled(final IdentifierMap<T> map, final Identifier<?> identifier, final Object tag) {
+			final List<T> cancelled = new ArrayList<T>();
+			final Set<T> set = map.get(identifier);
+			if (set != null) {
+				for (final T request : set) {
+					if (request.isCancelled() && (tag == null || request.getTags().contains(tag))) {
+						cancelled.add(request);
+					}
+				}
+				for (final T request : cancelled) {
+					map.removeObject(identifier, request);
+				}
+			}
+			return cancelled;
+		}
+
+		private static <T extends PrioritizableRequest> boolean hasLiveRequest(final IdentifierMap<T> map, final Identifier<?> identifier) {
+			final Set<T> set = map.get(identifier);
+			if (set != null) {
+				for (final T request : set) {
+					if (!request.isCancelled()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private static ServiceError newCancelledError() {
+			return new ServiceError(ServiceError.Codes.CANCELLED, ServiceError.Messages.CANCELLED);
+		}
+
+		private static ServiceError newDroppedError(final DropReason reason) {
+			switch (reason) {
+			case EXPIRED:
+				return new ServiceError(ServiceError.Codes.EXPIRED, ServiceError.Messages.EXPIRED);
+			case EVICTED:
+				return new ServiceError(ServiceError.Codes.EVICTED, ServiceError.Messages.EVICTED);
+			case REJECTED:
+				return new ServiceError(ServiceError.Codes.REJECTED, ServiceError.Messages.REJECTED);
+			default:
+				return new ServiceError(ServiceError.Messages.UNKNOWN);
+			}
+		}
+
+	}
+
+	public static class KeyedThreadedRequestExecutor extends ThreadedRequestExecutor {
+
+		// Processing requests that share a lane key, by default the authority
+		// and path of their operation's Uri, are still applied in order.
+		@Override
+		protected AuxiliaryExecutor onCreateProcessingExecutor() {
+			final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this);
+			builder.setSchedulingPolicy(onCreateProcessingSchedulingPolicy());
+			builder.setKeepAliveTime(Config.THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS);
+			builder.setCorePoolSize(Config.NUM_PROCESSING_LANE_THREADS);
+			builder.allowCoreThreadTimeOut();
+			builder.useKeyedLanes();
+			if (isRecyclingEnabled()) {
+				builder.useRecycling();
+			}
+			return builder.create();
+		}
 	}
 }
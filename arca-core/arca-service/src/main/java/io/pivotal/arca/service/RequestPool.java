@@ -0,0 +1,48 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.ArrayDeque;
+
+// Completed requests are kept for reuse by later tasks. The executor that
+// ran a request still reads it after its observer returns, so a released
+// request only becomes free once the same thread releases another one.
+class RequestPool<T extends PrioritizableRequest> {
+
+	private static final int MAX_POOLED_REQUESTS = 32;
+
+	private final ArrayDeque<T> mFree = new ArrayDeque<T>(MAX_POOLED_REQUESTS);
+	private final ThreadLocal<T> mRetiring = new ThreadLocal<T>();
+
+	public synchronized T obtain() {
+		return mFree.poll();
+	}
+
+	public void release(final T request) {
+		final T retired = mRetiring.get();
+		mRetiring.set(request);
+
+		if (retired != null) {
+			synchronized (this) {
+				if (mFree.size() < MAX_POOLED_REQUESTS) {
+					mFree.push(retired);
+				}
+			}
+		}
+	}
+}
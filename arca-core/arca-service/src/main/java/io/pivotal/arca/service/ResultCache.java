@@ -0,0 +1,143 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import io.pivotal.arca.threading.Identifier;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Evicts the least recently used results once the total size passes the
+// bound. Each result counts as one unless sizeOf() is overridden.
+public class ResultCache {
+
+	public static final class Entry {
+		private final Object mData;
+		private final long mExpiresAt;
+		private final int mSize;
+
+		Entry(final Object data, final long expiresAt, final int size) {
+			mData = data;
+			mExpiresAt = expiresAt;
+			mSize = size;
+		}
+
+		public Object getData() {
+			return mData;
+		}
+
+		boolean isExpired(final long now) {
+			return now - mExpiresAt >= 0;
+		}
+	}
+
+	private final LinkedHashMap<Identifier<?>, Entry> mEntries = new LinkedHashMap<Identifier<?>, Entry>(16, 0.75f, true);
+	private final int mMaxSize;
+	private int mSize;
+	private int mHitCount;
+	private int mMissCount;
+
+	public ResultCache(final int maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("Max size must be positive.");
+
+		mMaxSize = maxSize;
+	}
+
+	protected int sizeOf(final Identifier<?> identifier, final Object data) {
+		return 1;
+	}
+
+	public synchronized Entry get(final Identifier<?> identifier) {
+		final Entry entry = mEntries.get(identifier);
+		if (entry != null && entry.isExpired(System.nanoTime())) {
+			remove(identifier);
+		} else if (entry != null) {
+			mHitCount++;
+			return entry;
+		}
+		mMissCount++;
+		return null;
+	}
+
+	public synchronized void put(final Identifier<?> identifier, final Object data, final long timeToLive, final TimeUnit unit) {
+		remove(identifier);
+
+		final int size = sizeOf(identifier, data);
+		if (timeToLive <= 0 || size > mMaxSize) {
+			return;
+		}
+
+		mEntries.put(identifier, new Entry(data, System.nanoTime() + unit.toNanos(timeToLive), size));
+		mSize += size;
+		trimToSize();
+	}
+
+	public synchronized boolean remove(final Identifier<?> identifier) {
+		final Entry entry = mEntries.remove(identifier);
+		if (entry != null) {
+			mSize -= entry.mSize;
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized void clear() {
+		mEntries.clear();
+		mSize = 0;
+	}
+
+	public synchronized int size() {
+		return mSize;
+	}
+
+	public int getMaxSize() {
+		return mMaxSize;
+	}
+
+	public synchronized int getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return mMissCount;
+	}
+
+	// Expired results go first, then the least recently used ones.
+	private void trimToSize() {
+		if (mSize <= mMaxSize) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+		final Iterator<Map.Entry<Identifier<?>, Entry>> expired = mEntries.entrySet().iterator();
+		while (expired.hasNext()) {
+			final Entry entry = expired.next().getValue();
+			if (entry.isExpired(now)) {
+				mSize -= entry.mSize;
+				expired.remove();
+			}
+		}
+
+		final Iterator<Map.Entry<Identifier<?>, Entry>> eldest = mEntries.entrySet().iterator();
+		while (mSize > mMaxSize && eldest.hasNext()) {
+			mSize -= eldest.next().getValue().mSize;
+			eldest.remove();
+		}
+	}
+}
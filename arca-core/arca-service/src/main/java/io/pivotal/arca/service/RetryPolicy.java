@@ -0,0 +1,138 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Jitter shortens each backoff by a random fraction, so requests that
+// failed together do not retry together.
+public class RetryPolicy {
+
+	private final int mMaxAttempts;
+	private final long mInitialBackoff;
+	private final long mMaxBackoff;
+	private final double mMultiplier;
+	private final double mJitter;
+	private final Set<Integer> mRetryableCodes;
+	private final Random mRandom = new Random();
+
+	private RetryPolicy(final Builder builder) {
+		mMaxAttempts = builder.mMaxAttempts;
+		mInitialBackoff = builder.mInitialBackoff;
+		mMaxBackoff = builder.mMaxBackoff;
+		mMultiplier = builder.mMultiplier;
+		mJitter = builder.mJitter;
+		mRetryableCodes = new HashSet<Integer>(builder.mRetryableCodes);
+
+		if (mRetryableCodes.isEmpty()) {
+			mRetryableCodes.add(ServiceError.Codes.UNKNOWN);
+		}
+	}
+
+	public int getMaxAttempts() {
+		return mMaxAttempts;
+	}
+
+	public boolean isRetryable(final ServiceError error) {
+		return mRetryableCodes.contains(error.getCode());
+	}
+
+	public boolean shouldRetry(final ServiceError error, final int attempt) {
+		return attempt < mMaxAttempts && isRetryable(error);
+	}
+
+	// The delay, in nanoseconds, before the attempt after the given one.
+	public long getBackoff(final int attempt) {
+		double backoff = mInitialBackoff;
+		for (int i = 1; i < attempt && backoff < mMaxBackoff; i++) {
+			backoff *= mMultiplier;
+		}
+		backoff = Math.min(backoff, mMaxBackoff);
+
+		final double jitter;
+		synchronized (mRandom) {
+			jitter = mJitter * mRandom.nextDouble();
+		}
+		return (long) (backoff * (1 - jitter));
+	}
+
+	public static class Builder {
+
+		private int mMaxAttempts = 3;
+		private long mInitialBackoff = TimeUnit.SECONDS.toNanos(1);
+		private long mMaxBackoff = TimeUnit.SECONDS.toNanos(30);
+		private double mMultiplier = 2;
+		private double mJitter = 0.5;
+		private final Set<Integer> mRetryableCodes = new HashSet<Integer>();
+
+		public Builder setMaxAttempts(final int maxAttempts) {
+			if (maxAttempts <= 0)
+				throw new IllegalArgumentException("Max attempts must be positive.");
+
+			mMaxAttempts = maxAttempts;
+			return this;
+		}
+
+		public Builder setInitialBackoff(final long backoff, final TimeUnit unit) {
+			if (backoff < 0)
+				throw new IllegalArgumentException("Backoff cannot be negative.");
+
+			mInitialBackoff = unit.toNanos(backoff);
+			return this;
+		}
+
+		public Builder setMaxBackoff(final long backoff, final TimeUnit unit) {
+			if (backoff < 0)
+				throw new IllegalArgumentException("Backoff cannot be negative.");
+
+			mMaxBackoff = unit.toNanos(backoff);
+			return this;
+		}
+
+		public Builder setMultiplier(final double multiplier) {
+			if (multiplier < 1)
+				throw new IllegalArgumentException("Multiplier cannot be less than one.");
+
+			mMultiplier = multiplier;
+			return this;
+		}
+
+		public Builder setJitter(final double jitter) {
+			if (jitter < 0 || jitter > 1)
+				throw new IllegalArgumentException("Jitter must be between zero and one.");
+
+			mJitter = jitter;
+			return this;
+		}
+
+		// Without any retryable codes, only unknown errors, which include
+		// exceptions thrown while networking, are retried.
+		public Builder addRetryableCode(final int code) {
+			mRetryableCodes.add(code);
+			return this;
+		}
+
+		public RetryPolicy create() {
+			if (mMaxBackoff < mInitialBackoff) {
+				throw new IllegalStateException("Max backoff cannot be less than the initial backoff.");
+			}
+			return new RetryPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Build;
+
+// Only covers writes to a database in this process, which is where a
+// ContentResolver call on the processing thread ends up.
+public class SQLiteProcessingTransaction implements ProcessingTransaction, SQLiteTransactionListener {
+
+	private static final int ROLLBACK_TO_SAVEPOINT_SDK_INT = 28;
+
+	private final SQLiteDatabase mDatabase;
+	private boolean mCommitted;
+
+	public SQLiteProcessingTransaction(final SQLiteDatabase database) {
+		if (database == null)
+			throw new IllegalArgumentException("Database cannot be null.");
+
+		mDatabase = database;
+	}
+
+	// The listener learns whether Android commits or rolls back, which it
+	// does silently when a nested transaction inside the batch failed.
+	@Override
+	public void begin() {
+		mCommitted = false;
+		mDatabase.beginTransactionWithListener(this);
+	}
+
+	@Override
+	public void setSavepoint(final String name) {
+		mDatabase.execSQL("SAVEPOINT " + name);
+	}
+
+	@Override
+	public void releaseSavepoint(final String name) {
+		mDatabase.execSQL("RELEASE SAVEPOINT " + name);
+	}
+
+	// Rolling back leaves the savepoint open, so it is released as well and
+	// the batch carries on in the enclosing transaction. Before API 28,
+	// Android treats any statement starting with ROLLBACK as the end of the
+	// whole transaction, and the leading semicolon hides it from that check.
+	@Override
+	public void rollbackToSavepoint(final String name) {
+		final String rollback = "ROLLBACK TRANSACTION TO SAVEPOINT " + name;
+		mDatabase.execSQL(Build.VERSION.SDK_INT < ROLLBACK_TO_SAVEPOINT_SDK_INT ? ";" + rollback : rollback);
+		mDatabase.execSQL("RELEASE SAVEPOINT " + name);
+	}
+
+	@Override
+	public void setSuccessful() {
+		mDatabase.setTransactionSuccessful();
+	}
+
+	@Override
+	public boolean end() {
+		mDatabase.endTransaction();
+		return mCommitted;
+	}
+
+	@Override
+	public void onBegin() {
+	}
+
+	@Override
+	public void onCommit() {
+		mCommitted = true;
+	}
+
+	@Override
+	public void onRollback() {
+		mCommitted = false;
+	}
+}
@@ -24,10 +24,24 @@ public class ServiceError implements Parcelable {
 
 	public static interface Codes {
 		public static final int UNKNOWN = 100;
+		public static final int EXPIRED = 101;
+		public static final int EVICTED = 102;
+		public static final int REJECTED = 103;
+		public static final int CANCELLED = 104;
+		public static final int CYCLE = 105;
+		public static final int ABANDONED = 106;
+		public static final int ROLLED_BACK = 107;
 	}
 
 	public static interface Messages {
 		public static final String UNKNOWN = "An unknown error occured.";
+		public static final String EXPIRED = "The request's deadline passed before it could be executed.";
+		public static final String EVICTED = "The request was evicted from a full queue.";
+		public static final String REJECTED = "The request was rejected by a full queue.";
+		public static final String CANCELLED = "The request was cancelled before it could be executed.";
+		public static final String CYCLE = "The operation's tasks depend on each other in a cycle.";
+		public static final String ABANDONED = "Processing stopped before every chunk was delivered.";
+		public static final String ROLLED_BACK = "The batch the request was processed in was rolled back.";
 	}
 
 	private final int mCode;
@@ -0,0 +1,103 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import android.content.Context;
+
+import io.pivotal.arca.threading.Identifier;
+
+// Streamed chunks are consumed as they arrive, so they are neither cached
+// nor retried. Early processing holds a processing thread until the stream
+// ends, so use KeyedThreadedRequestExecutor to keep other lanes moving.
+public abstract class StreamingTask<C> extends Task<ChunkChannel<C>> {
+
+	public static interface Config {
+		public static final int CHANNEL_CAPACITY = 4;
+	}
+
+	private final Identifier<StreamingTask<C>> mRequestIdentifier = new Identifier<StreamingTask<C>>(this);
+	private int mChannelCapacity = Config.CHANNEL_CAPACITY;
+	private volatile ChunkChannel<C> mChannel;
+
+	public void setChannelCapacity(final int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Channel capacity must be positive.");
+
+		mChannelCapacity = capacity;
+	}
+
+	// ======================================================
+
+	public abstract void onStreamNetworking(Context context, ChunkChannel<C> channel) throws Exception;
+
+	public abstract void onProcessChunk(Context context, C chunk) throws Exception;
+
+	// ======================================================
+
+	@Override
+	public final ChunkChannel<C> onExecuteNetworking(final Context context) throws Exception {
+		final boolean early = canProcessEarly();
+		final ChunkChannel<C> channel = new ChunkChannel<C>(early ? mChannelCapacity : Integer.MAX_VALUE);
+		mChannel = channel;
+
+		if (early) {
+			startProcessingEarly(channel);
+		}
+
+		try {
+			onStreamNetworking(context, channel);
+			channel.close();
+		} catch (final Exception e) {
+			channel.fail(e);
+			throw e;
+		}
+		return channel;
+	}
+
+	@Override
+	public final void onExecuteProcessing(final Context context, final ChunkChannel<C> channel) throws Exception {
+		C chunk;
+		while ((chunk = channel.take()) != null) {
+			onProcessChunk(context, chunk);
+		}
+	}
+
+	// Each stream has its own channel and consumer, so its requests are
+	// never merged with those of another task with the same identifier.
+	@Override
+	Identifier<?> getRequestIdentifier() {
+		return mRequestIdentifier;
+	}
+
+	// Unblocks networking if processing stopped before taking every chunk.
+	@Override
+	void onProcessingFinished() {
+		final ChunkChannel<C> channel = mChannel;
+		if (channel != null) {
+			channel.abandon();
+		}
+	}
+
+	@Override
+	public final long getCacheTimeToLive() {
+		return 0;
+	}
+
+	@Override
+	public final RetryPolicy getRetryPolicy() {
+		return null;
+	}
+}
@@ -21,10 +21,12 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.PrioritizableRequest;
 
-public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritizableObserver<T>, ProcessingTask<T>, ProcessingPrioritizableObserver<T> {
+public abstract class Task<T> implements ManagedNetworkingTask<T>, NetworkingPrioritizableObserver<T>, ManagedProcessingTask<T>, ProcessingPrioritizableObserver<T> {
 
     protected static interface Messages {
 		public static final String NO_EXECUTOR = "Cannot execute request. No request executor found.";
@@ -34,14 +36,22 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
     private final Set<Task<?>> mPrerequisites = new HashSet<Task<?>>();
     private final Set<Task<?>> mDependencies = new HashSet<Task<?>>();
     private final List<ServiceError> mErrors = new ArrayList<ServiceError>();
+    private final Set<Object> mTags = new HashSet<Object>();
 
     private Priority mPriority = Priority.MEDIUM;
+    private long mDeadline = PrioritizableRequest.NO_DEADLINE;
+    private long mCacheTimeToLive;
+    private RetryPolicy mRetryPolicy;
+    private volatile int mAttemptCount;
+    private volatile boolean mProcessingStarted;
     private Identifier<?> mIdentifier;
+    private Object mLaneKey;
     private boolean mFinished;
 
     private TaskObserver mObserver;
     private RequestExecutor mExecutor;
-	private Context mContext;
+    private TaskGraph mGraph;
+    private Context mContext;
 
 	@Override
 	public final Identifier<?> getIdentifier() {
@@ -51,6 +61,28 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
         return mIdentifier;
 	}
 
+	@Override
+	public Object getLaneKey() {
+		return mLaneKey != null ? mLaneKey : getIdentifier();
+	}
+
+	public boolean hasLaneKey() {
+		return mLaneKey != null;
+	}
+
+	public void setLaneKey(final Object laneKey) {
+		mLaneKey = laneKey;
+	}
+
+	@Override
+	public Set<Object> getTags() {
+		return mTags;
+	}
+
+	public void addTag(final Object tag) {
+		mTags.add(tag);
+	}
+
 	public Set<Task<?>> getPrerequisites() {
 		return mPrerequisites;
 	}
@@ -67,6 +99,38 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 		mPriority = priority;
 	}
 
+	public Priority getPriority() {
+		return mPriority;
+	}
+
+	public void setDeadline(final long timeout, final TimeUnit unit) {
+		mDeadline = System.nanoTime() + unit.toNanos(timeout);
+	}
+
+	public void setCacheTimeToLive(final long timeToLive, final TimeUnit unit) {
+		mCacheTimeToLive = unit.toNanos(timeToLive);
+	}
+
+	@Override
+	public long getCacheTimeToLive() {
+		return mCacheTimeToLive;
+	}
+
+	public void setRetryPolicy(final RetryPolicy policy) {
+		mRetryPolicy = policy;
+	}
+
+	@Override
+	public RetryPolicy getRetryPolicy() {
+		return mRetryPolicy;
+	}
+
+	// Counts the networking attempts this task made itself. A task whose
+	// request was shared with a duplicate may report none.
+	public int getAttemptCount() {
+		return mAttemptCount;
+	}
+
 	public void setTaskObserver(final TaskObserver observer) {
 		mObserver = observer;
 	}
@@ -75,6 +139,12 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 		mExecutor = executor;
 	}
 
+	// Once a task belongs to a graph, the graph decides when it starts and
+	// its prerequisite sets are left as a description of the graph.
+	void setTaskGraph(final TaskGraph graph) {
+		mGraph = graph;
+	}
+
 	public void execute() {
         checkExecution();
     }
@@ -127,6 +197,18 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 
 	// ======================================================
 
+	void onPrerequisitesFinished(final ServiceError error) {
+		if (mFinished) {
+			return;
+		}
+		if (error != null) {
+			notifyFailure(error);
+		} else {
+			notifyStarted();
+			startNetworkingRequest();
+		}
+	}
+
 	protected void onPrerequisiteComplete(final Task<?> task) {
 		synchronized (mTaskLock) {
 			mPrerequisites.remove(task);
@@ -146,8 +228,8 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 
 	private void startNetworkingRequest() {
 		if (mExecutor != null) {
-			final NetworkingPrioritizable<T> prioritizable = new NetworkingPrioritizable<T>(this);
-			final NetworkingRequest<T> request = new NetworkingRequest<T>(prioritizable, mPriority.ordinal(), this);
+			final NetworkingRequest<T> request = newNetworkingRequest();
+			request.setDeadline(mDeadline);
 			mExecutor.executeNetworkingRequest(request);
 		} else {
 			notifyFailure(new ServiceError(Messages.NO_EXECUTOR));
@@ -156,31 +238,69 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 
 	@Override
 	public final T executeNetworking() throws Exception {
+		mAttemptCount++;
 		return onExecuteNetworking(mContext);
 	}
 
 	@Override
 	public final void onNetworkingComplete(final T data) {
-		startProcessingRequest(data);
+		if (!mProcessingStarted) {
+			startProcessingRequest(data);
+		}
 	}
 
+	// Once processing has started early, it reports the task's result.
 	@Override
 	public final void onNetworkingFailure(final ServiceError error) {
-		notifyFailure(error);
+		if (!mProcessingStarted) {
+			notifyFailure(error);
+		}
+	}
+
+	// Requests of tasks that share an identifier are merged unless this
+	// gives them their own.
+	Identifier<?> getRequestIdentifier() {
+		return null;
+	}
+
+	boolean canProcessEarly() {
+		return mExecutor instanceof RequestExecutor.ThreadedRequestExecutor && ((RequestExecutor.ThreadedRequestExecutor) mExecutor).canProcessWhileNetworking();
+	}
+
+	void startProcessingEarly(final T data) {
+		mProcessingStarted = true;
+		startProcessingRequest(data);
+	}
+
+	void onProcessingFinished() {
 	}
 
 	// ======================================================
 
 	private void startProcessingRequest(final T data) {
 		if (mExecutor != null) {
-			final ProcessingPrioritizable<T> prioritizable = new ProcessingPrioritizable<T>(this, data);
-			final ProcessingRequest<T> request = new ProcessingRequest<T>(prioritizable, mPriority.ordinal(), this);
+			final ProcessingRequest<T> request = newProcessingRequest(data);
 			mExecutor.executeProcessingRequest(request);
 		} else {
 			notifyFailure(new ServiceError(Messages.NO_EXECUTOR));
 		}
 	}
 
+	// A threaded executor may hand out a request it has recycled.
+	private NetworkingRequest<T> newNetworkingRequest() {
+		if (mExecutor instanceof RequestExecutor.ThreadedRequestExecutor) {
+			return ((RequestExecutor.ThreadedRequestExecutor) mExecutor).obtainNetworkingRequest(this, getRequestIdentifier(), mPriority.ordinal(), this);
+		}
+		return new NetworkingRequest<T>(new NetworkingPrioritizable<T>(this, getRequestIdentifier(), 1), mPriority.ordinal(), this);
+	}
+
+	private ProcessingRequest<T> newProcessingRequest(final T data) {
+		if (mExecutor instanceof RequestExecutor.ThreadedRequestExecutor) {
+			return ((RequestExecutor.ThreadedRequestExecutor) mExecutor).obtainProcessingRequest(this, getRequestIdentifier(), data, mPriority.ordinal(), this);
+		}
+		return new ProcessingRequest<T>(new ProcessingPrioritizable<T>(this, getRequestIdentifier(), data), mPriority.ordinal(), this);
+	}
+
 	@Override
 	public final void executeProcessing(final T data) throws Exception {
 		onExecuteProcessing(mContext, data);
@@ -188,11 +308,13 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 
 	@Override
 	public final void onProcessingComplete() {
+		onProcessingFinished();
 		notifyComplete();
 	}
 
 	@Override
 	public final void onProcessingFailure(final ServiceError error) {
+		onProcessingFinished();
 		notifyFailure(error);
 	}
 
@@ -223,6 +345,10 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 	}
 
 	private void notifyDependentsOfCompletion() {
+		if (mGraph != null) {
+			mGraph.onTaskFinished(this, null);
+			return;
+		}
 		synchronized (mTaskLock) {
 			for (final Task<?> dependant : mDependencies) {
 				dependant.onPrerequisiteComplete(this);
@@ -231,6 +357,10 @@ public abstract class Task<T> implements NetworkingTask<T>, NetworkingPrioritiza
 	}
 
 	private void notifyDependentsOfFailure(final ServiceError error) {
+		if (mGraph != null) {
+			mGraph.onTaskFinished(this, error);
+			return;
+		}
 		synchronized (mTaskLock) {
 			for (final Task<?> dependant : mDependencies) {
 				dependant.onPrerequisiteFailure(this, error);
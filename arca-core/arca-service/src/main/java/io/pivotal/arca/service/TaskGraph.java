@@ -0,0 +1,290 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Tasks on a longest chain run one priority higher, unless every chain is
+// as long, and ready tasks are queued longest chain first.
+public class TaskGraph {
+
+	private static final class Node {
+		final Task<?> task;
+		final List<Node> dependents = new ArrayList<Node>();
+		int numPrerequisites;
+		int depth;
+		int remaining;
+		int pending;
+		boolean finished;
+		ServiceError error;
+
+		Node(final Task<?> task) {
+			this.task = task;
+		}
+	}
+
+	// Tasks in the same lane are submitted in the order the lane hands them
+	// out, longest remaining chain first.
+	private static final Comparator<Node> SUBMISSION_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(final Node lhs, final Node rhs) {
+			final Priority priority = lhs.task.getPriority();
+			if (priority != rhs.task.getPriority()) {
+				return priority.ordinal() - rhs.task.getPriority().ordinal();
+			}
+			final int order = rhs.remaining < lhs.remaining ? -1 : (rhs.remaining > lhs.remaining ? 1 : 0);
+			return priority.isLastInFirstOut() ? -order : order;
+		}
+	};
+
+	private final Map<Task<?>, Node> mNodes = new HashMap<Task<?>, Node>();
+	private final int mCriticalPathLength;
+	private final boolean mHasShorterPath;
+	private final boolean mHasCycle;
+	private int mNumFinished;
+	private long mStartTime;
+	private long mFinishTime;
+
+	// The graph includes every task reachable from the given ones through
+	// either prerequisites or dependencies.
+	public TaskGraph(final Collection<Task<?>> tasks) {
+		final ArrayDeque<Task<?>> unvisited = new ArrayDeque<Task<?>>(tasks);
+		Task<?> task;
+		while ((task = unvisited.poll()) != null) {
+			if (!mNodes.containsKey(task)) {
+				mNodes.put(task, new Node(task));
+				unvisited.addAll(task.getPrerequisites());
+				unvisited.addAll(task.getDependencies());
+			}
+		}
+
+		for (final Node node : mNodes.values()) {
+			for (final Task<?> dependent : node.task.getDependencies()) {
+				final Node dependentNode = mNodes.get(dependent);
+				node.dependents.add(dependentNode);
+				dependentNode.numPrerequisites++;
+			}
+		}
+
+		final List<Node> order = sortTopologically();
+		mHasCycle = order.size() < mNodes.size();
+		mCriticalPathLength = mHasCycle ? 0 : computePathLengths(order);
+		mHasShorterPath = hasPathShorterThan(mNodes.values(), mCriticalPathLength);
+	}
+
+	public boolean hasCycle() {
+		return mHasCycle;
+	}
+
+	public Set<Task<?>> getTasks() {
+		return Collections.unmodifiableSet(mNodes.keySet());
+	}
+
+	public int getCriticalPathLength() {
+		return mCriticalPathLength;
+	}
+
+	public int getCriticalPathLength(final Task<?> task) {
+		final Node node = mNodes.get(task);
+		return node != null ? node.remaining : 0;
+	}
+
+	// Only a chain strictly longer than some other one is critical, so a
+	// flat or evenly balanced graph keeps the operation's priority.
+	public boolean isCritical(final Task<?> task) {
+		final Node node = mNodes.get(task);
+		return node != null && !mHasCycle && mHasShorterPath && node.depth + node.remaining == mCriticalPathLength;
+	}
+
+	public synchronized boolean isFinished() {
+		return mNumFinished == mNodes.size();
+	}
+
+	// The time from start() until the last task completed or failed.
+	public synchronized long getMakespan(final TimeUnit unit) {
+		if (mStartTime == 0 || !isFinished()) {
+			return -1;
+		}
+		return unit.convert(mFinishTime - mStartTime, TimeUnit.NANOSECONDS);
+	}
+
+	public void start(final Priority priority) {
+		if (mHasCycle)
+			throw new IllegalStateException("Cannot start a task graph that contains a cycle.");
+
+		final List<Node> ready = new ArrayList<Node>();
+		synchronized (this) {
+			mStartTime = System.nanoTime();
+			for (final Node node : mNodes.values()) {
+				node.task.setPriority(isCritical(node.task) ? raise(priority) : priority);
+				node.task.setTaskGraph(this);
+				node.pending = node.numPrerequisites;
+				if (node.pending == 0) {
+					ready.add(node);
+				}
+			}
+		}
+		startTasks(ready);
+	}
+
+	void onTaskFinished(final Task<?> task, final ServiceError error) {
+		final List<Node> ready = new ArrayList<Node>();
+		synchronized (this) {
+			final Node node = mNodes.get(task);
+			if (node == null || node.finished) {
+				return;
+			}
+			node.finished = true;
+
+			for (final Node dependent : node.dependents) {
+				if (error != null && dependent.error == null) {
+					dependent.error = error;
+				}
+				if (--dependent.pending == 0) {
+					ready.add(dependent);
+				}
+			}
+
+			if (error == null) {
+				addDynamicDependencies(task, ready);
+			}
+
+			if (++mNumFinished == mNodes.size()) {
+				mFinishTime = System.nanoTime();
+			}
+		}
+		startTasks(ready);
+	}
+
+	public synchronized boolean contains(final Task<?> task) {
+		return mNodes.containsKey(task);
+	}
+
+	// ======================================================
+
+	// Tasks may add dependencies while they run. Those join the graph when
+	// their prerequisite finishes, with no known path beyond themselves.
+	private void addDynamicDependencies(final Task<?> task, final List<Node> ready) {
+		final List<Node> added = new ArrayList<Node>();
+		final ArrayDeque<Task<?>> unvisited = new ArrayDeque<Task<?>>(task.getDependencies());
+		Task<?> next;
+		while ((next = unvisited.poll()) != null) {
+			if (!mNodes.containsKey(next)) {
+				final Node node = new Node(next);
+				node.remaining = 1;
+				mNodes.put(next, node);
+				added.add(node);
+				unvisited.addAll(next.getDependencies());
+			}
+		}
+
+		for (final Node node : added) {
+			node.task.setTaskGraph(this);
+			for (final Task<?> prerequisite : node.task.getPrerequisites()) {
+				final Node prerequisiteNode = mNodes.get(prerequisite);
+				if (prerequisiteNode == null) {
+					continue;
+				}
+				prerequisiteNode.dependents.add(node);
+				if (!prerequisiteNode.finished) {
+					node.pending++;
+				}
+			}
+			if (node.pending == 0) {
+				ready.add(node);
+			}
+		}
+	}
+
+	private static void startTasks(final List<Node> ready) {
+		Collections.sort(ready, SUBMISSION_ORDER);
+		for (final Node node : ready) {
+			node.task.onPrerequisitesFinished(node.error);
+		}
+	}
+
+	private static Priority raise(final Priority priority) {
+		// Only LIVE work belongs in the LIVE lane, so HIGH is as far as a
+		// critical task is raised.
+		if (priority.ordinal() > Priority.HIGH.ordinal()) {
+			return Priority.values()[priority.ordinal() - 1];
+		}
+		return priority;
+	}
+
+	private List<Node> sortTopologically() {
+		final Map<Node, Integer> counts = new HashMap<Node, Integer>();
+		final ArrayDeque<Node> ready = new ArrayDeque<Node>();
+		for (final Node node : mNodes.values()) {
+			counts.put(node, node.numPrerequisites);
+			if (node.numPrerequisites == 0) {
+				ready.add(node);
+			}
+		}
+
+		final List<Node> order = new ArrayList<Node>(mNodes.size());
+		Node node;
+		while ((node = ready.poll()) != null) {
+			order.add(node);
+			for (final Node dependent : node.dependents) {
+				final int count = counts.get(dependent) - 1;
+				counts.put(dependent, count);
+				if (count == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		return order;
+	}
+
+	private static boolean hasPathShorterThan(final Collection<Node> nodes, final int length) {
+		for (final Node node : nodes) {
+			if (node.depth + node.remaining < length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int computePathLengths(final List<Node> order) {
+		for (final Node node : order) {
+			for (final Node dependent : node.dependents) {
+				dependent.depth = Math.max(dependent.depth, node.depth + 1);
+			}
+		}
+
+		int longest = 0;
+		for (int i = order.size() - 1; i >= 0; i--) {
+			final Node node = order.get(i);
+			int remaining = 0;
+			for (final Node dependent : node.dependents) {
+				remaining = Math.max(remaining, dependent.remaining);
+			}
+			node.remaining = remaining + 1;
+			longest = Math.max(longest, node.depth + node.remaining);
+		}
+		return longest;
+	}
+}
@@ -0,0 +1,251 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.ProcessingBatcher;
+import io.pivotal.arca.service.ProcessingPrioritizable;
+import io.pivotal.arca.service.ProcessingPrioritizableObserver;
+import io.pivotal.arca.service.ProcessingRequest;
+import io.pivotal.arca.service.ProcessingTask;
+import io.pivotal.arca.service.ProcessingTransaction;
+import io.pivotal.arca.service.RequestExecutor;
+import io.pivotal.arca.service.ServiceError;
+import io.pivotal.arca.threading.Identifier;
+
+public class ProcessingBatcherTest extends AndroidTestCase {
+
+	private final List<String> mTransaction = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> mFailed = Collections.synchronizedList(new ArrayList<String>());
+	private final List<Integer> mErrorCodes = Collections.synchronizedList(new ArrayList<Integer>());
+	private CountDownLatch mLatch;
+
+	public void testReadyRequestsShareOneTransaction() throws Exception {
+		mLatch = new CountDownLatch(4);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor(10);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, false));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("a", null, false));
+		executor.executeProcessingRequest(newRequest("b", null, false));
+		executor.executeProcessingRequest(newRequest("c", null, false));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, Collections.frequency(mTransaction, "begin"));
+		assertEquals(2, Collections.frequency(mTransaction, "commit"));
+		assertEquals(4, Collections.frequency(mTransaction, "savepoint"));
+		assertEquals(4, mCompleted.size());
+	}
+
+	public void testFailedRequestIsRolledBackAlone() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor(10);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, false));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("failed", null, true));
+		executor.executeProcessingRequest(newRequest("kept", null, false));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, Collections.frequency(mTransaction, "rollback"));
+		assertEquals(2, Collections.frequency(mTransaction, "release"));
+		assertEquals(2, Collections.frequency(mTransaction, "commit"));
+		assertEquals(Collections.singletonList("failed"), mFailed);
+		assertTrue(mCompleted.contains("kept"));
+	}
+
+	public void testBatchSizeIsLimited() throws Exception {
+		mLatch = new CountDownLatch(5);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor(2);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, false));
+		Thread.sleep(50);
+		for (final String identifier : new String[] { "a", "b", "c", "d" }) {
+			executor.executeProcessingRequest(newRequest(identifier, null, false));
+		}
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(3, Collections.frequency(mTransaction, "commit"));
+	}
+
+	public void testBatchFailsWhenTransactionIsNotCommitted() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor(new RecordingTransaction(false), 10);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, false));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("failed", null, true));
+		executor.executeProcessingRequest(newRequest("rolled back", null, false));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(mCompleted.isEmpty());
+		assertEquals(3, mFailed.size());
+		assertEquals(2, Collections.frequency(mErrorCodes, ServiceError.Codes.ROLLED_BACK));
+	}
+
+	public void testRequestsThatNeverRanFailWhenTransactionBreaks() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final RecordingTransaction transaction = new RecordingTransaction(true) {
+
+			@Override
+			public void setSavepoint(final String name) {
+				if (name.equals("batch_1")) {
+					throw new IllegalStateException("Savepoint failed");
+				}
+				super.setSavepoint(name);
+			}
+		};
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor(transaction, 10);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, false));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("first", null, false));
+		executor.executeProcessingRequest(newRequest("second", null, false));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("blocking"), mCompleted);
+		assertEquals(2, Collections.frequency(mErrorCodes, ServiceError.Codes.ROLLED_BACK));
+		assertEquals(1, Collections.frequency(mTransaction, "commit"));
+	}
+
+	public void testBatcherRequiresAnExecutorThatCanDrain() {
+		try {
+			new RequestExecutor.KeyedThreadedRequestExecutor() {
+
+				@Override
+				protected ProcessingBatcher onCreateProcessingBatcher() {
+					return new ProcessingBatcher(new RecordingTransaction(true));
+				}
+			};
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	// ======================================================
+
+	private RequestExecutor.ThreadedRequestExecutor newExecutor(final int maxBatchSize) {
+		return newExecutor(new RecordingTransaction(true), maxBatchSize);
+	}
+
+	private RequestExecutor.ThreadedRequestExecutor newExecutor(final ProcessingTransaction transaction, final int maxBatchSize) {
+		return new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected ProcessingBatcher onCreateProcessingBatcher() {
+				return new ProcessingBatcher(transaction, maxBatchSize, 0, TimeUnit.MILLISECONDS);
+			}
+		};
+	}
+
+	private ProcessingRequest<String> newRequest(final String identifier, final CountDownLatch gate, final boolean fails) {
+		final ProcessingTask<String> task = new ProcessingTask<String>() {
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(identifier);
+			}
+
+			@Override
+			public void executeProcessing(final String data) throws Exception {
+				if (gate != null) {
+					gate.await();
+				}
+				if (fails) {
+					throw new Exception("Processing failed");
+				}
+			}
+		};
+
+		return new ProcessingRequest<String>(new ProcessingPrioritizable<String>(task, identifier), 0, new ProcessingPrioritizableObserver<String>() {
+
+			@Override
+			public void onProcessingComplete() {
+				mCompleted.add(identifier);
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onProcessingFailure(final ServiceError error) {
+				mFailed.add(identifier);
+				mErrorCodes.add(error.getCode());
+				mLatch.countDown();
+			}
+		});
+	}
+
+	private class RecordingTransaction implements ProcessingTransaction {
+
+		private final boolean mCommits;
+		private boolean mSuccessful;
+
+		public RecordingTransaction(final boolean commits) {
+			mCommits = commits;
+		}
+
+		@Override
+		public void begin() {
+			mSuccessful = false;
+			mTransaction.add("begin");
+		}
+
+		@Override
+		public void setSavepoint(final String name) {
+			mTransaction.add("savepoint");
+		}
+
+		@Override
+		public void releaseSavepoint(final String name) {
+			mTransaction.add("release");
+		}
+
+		@Override
+		public void rollbackToSavepoint(final String name) {
+			mTransaction.add("rollback");
+		}
+
+		@Override
+		public void setSuccessful() {
+			mSuccessful = true;
+			mTransaction.add("commit");
+		}
+
+		@Override
+		public boolean end() {
+			mTransaction.add("end");
+			return mSuccessful && mCommits;
+		}
+	}
+}
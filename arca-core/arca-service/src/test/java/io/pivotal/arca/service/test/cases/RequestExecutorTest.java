@@ -15,20 +15,50 @@
  */
 package io.pivotal.arca.service.test.cases;
 
+import android.content.Context;
 import android.test.AndroidTestCase;
 
+import io.pivotal.arca.service.NetworkingPrioritizable;
+import io.pivotal.arca.service.NetworkingPrioritizableObserver;
 import io.pivotal.arca.service.NetworkingRequest;
+import io.pivotal.arca.service.NetworkingTask;
 import io.pivotal.arca.service.ProcessingRequest;
+import io.pivotal.arca.service.ServiceError;
+import io.pivotal.arca.service.ServiceException;
+import io.pivotal.arca.service.test.mock.TestAuxiliaryExecutor;
 import io.pivotal.arca.service.test.mock.TestNetworkingPrioritizable;
 import io.pivotal.arca.service.test.mock.TestNetworkingRequest;
 import io.pivotal.arca.service.test.mock.TestProcessingPrioritizable;
 import io.pivotal.arca.service.test.mock.TestProcessingRequest;
+import io.pivotal.arca.service.test.mock.TestTask;
 import io.pivotal.arca.service.test.mock.TestThreadedRequestExecutor;
 import io.pivotal.arca.service.test.utils.AssertionLatch;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.Assert;
 
+import io.pivotal.arca.service.Priority;
 import io.pivotal.arca.service.RequestExecutor;
+import io.pivotal.arca.service.ResultCache;
+import io.pivotal.arca.service.RetryPolicy;
+import io.pivotal.arca.service.Task;
+import io.pivotal.arca.service.TaskObserver;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.ExecutorMetrics;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.RejectionPolicy;
+import io.pivotal.arca.threading.RequestFuture;
 
 public class RequestExecutorTest extends AndroidTestCase {
 
@@ -144,6 +174,530 @@ public class RequestExecutorTest extends AndroidTestCase {
 
 	// =============================================
 
+	public void testRequestExecutorNetworkingRequestExpired() {
+		final RequestHandlerCounter latch = new RequestHandlerCounter(1, 0);
+		final ServiceError[] errors = new ServiceError[1];
+		final TestNetworkingPrioritizable prioritizable = new TestNetworkingPrioritizable();
+		final TestNetworkingRequest request = new TestNetworkingRequest(prioritizable) {
+
+			@Override
+			public void notifyComplete(final Object data, final ServiceError error) {
+				errors[0] = error;
+			}
+		};
+		final TestThreadedRequestExecutor executor = new TestThreadedRequestExecutor() {
+
+			@Override
+			public void onNetworkingRequestDropped(final NetworkingRequest<?> r, final DropReason reason) {
+				super.onNetworkingRequestDropped(r, reason);
+				latch.onNetworkingRequestCancelled();
+
+				assertEquals(request, r);
+				assertEquals(DropReason.EXPIRED, reason);
+			}
+		};
+		request.setDeadline(System.nanoTime() - 1);
+		executor.executeNetworkingRequest(request);
+		latch.assertComplete();
+
+		assertEquals(ServiceError.Codes.EXPIRED, errors[0].getCode());
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorNetworkingRequestRejected() {
+		final ServiceError[] errors = new ServiceError[1];
+		final TestNetworkingPrioritizable prioritizable = new TestNetworkingPrioritizable();
+		final TestNetworkingRequest request = new TestNetworkingRequest(prioritizable) {
+
+			@Override
+			public void notifyComplete(final Object data, final ServiceError error) {
+				errors[0] = error;
+			}
+		};
+		final TestThreadedRequestExecutor executor = new TestThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				return new TestAuxiliaryExecutor(this) {
+
+					@Override
+					public void execute(final Runnable command) {
+						throw new RejectedExecutionException();
+					}
+				};
+			}
+		};
+		executor.executeNetworkingRequest(request);
+
+		assertEquals(ServiceError.Codes.REJECTED, errors[0].getCode());
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorNetworkingFutureCompletes() throws Exception {
+		final NetworkingRequest<String> request = new NetworkingRequest<String>(new TestNetworkingPrioritizable(), 0, new EmptyNetworkingObserver());
+		final TestThreadedRequestExecutor executor = new TestThreadedRequestExecutor();
+		final RequestFuture<String> future = executor.submitNetworkingRequest(request);
+
+		assertTrue(future.isDone());
+		assertFalse(future.isFailed());
+		assertNull(future.get());
+	}
+
+	public void testRequestExecutorNetworkingFutureFailsWhenRejected() {
+		final NetworkingRequest<String> request = new NetworkingRequest<String>(new TestNetworkingPrioritizable(), 0, new EmptyNetworkingObserver());
+		final TestThreadedRequestExecutor executor = new TestThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				return new TestAuxiliaryExecutor(this) {
+
+					@Override
+					public void execute(final Runnable command) {
+						throw new RejectedExecutionException();
+					}
+				};
+			}
+		};
+		final RequestFuture<String> future = executor.submitNetworkingRequest(request);
+
+		assertTrue(future.isFailed());
+		assertEquals(ServiceError.Codes.REJECTED, ((ServiceException) future.getFailure()).getError().getCode());
+	}
+
+	public void testRequestExecutorCachedNetworkingResultSkipsNetwork() {
+		final int[] executed = new int[1];
+		final TestThreadedRequestExecutor executor = new TestThreadedRequestExecutor() {
+
+			@Override
+			protected ResultCache onCreateNetworkingResultCache() {
+				return new ResultCache(10);
+			}
+		};
+
+		executor.executeNetworkingRequest(new NetworkingRequest<String>(new CachedNetworkingPrioritizable(executed), 0, new EmptyNetworkingObserver()));
+		final RequestFuture<String> future = executor.submitNetworkingRequest(new NetworkingRequest<String>(new CachedNetworkingPrioritizable(executed), 0, new EmptyNetworkingObserver()));
+
+		assertEquals(1, executed[0]);
+		assertTrue(future.isDone());
+		assertEquals(1, executor.getNetworkingResultCache().getHitCount());
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorNeitherCachesNorRetriesPlainNetworkingTasks() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled) {
+
+			@Override
+			protected ResultCache onCreateNetworkingResultCache() {
+				return new ResultCache(10);
+			}
+		};
+
+		final int[] executed = new int[1];
+		final NetworkingTask<String> task = new NetworkingTask<String>() {
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>("plain");
+			}
+
+			@Override
+			public String executeNetworking() throws Exception {
+				if (executed[0]++ == 0) {
+					throw new Exception("Networking failed");
+				}
+				return "data";
+			}
+		};
+
+		for (int i = 0; i < 3; i++) {
+			executor.executeNetworkingRequest(new NetworkingRequest<String>(new NetworkingPrioritizable<String>(task), 0, new EmptyNetworkingObserver()));
+		}
+
+		assertEquals(3, executed[0]);
+		assertTrue(scheduled.isEmpty());
+		assertEquals(0, executor.getNetworkingResultCache().getHitCount());
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorRetriesFailedNetworkingRequest() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled);
+		final FailingTask task = new FailingTask("retried", 2, new RetryPolicy.Builder().setMaxAttempts(3).create());
+		final ServiceError[] errors = executeTask(executor, task);
+
+		runScheduled(scheduled);
+		runScheduled(scheduled);
+
+		assertNull(errors[0]);
+		assertEquals(3, task.getAttemptCount());
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorCountsRetriesWaitingToRun() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled);
+		final FailingTask task = new FailingTask("waiting", 1, new RetryPolicy.Builder().setMaxAttempts(2).create());
+		executeTask(executor, task);
+
+		assertEquals(1, scheduled.size());
+		assertEquals(1, executor.getRequestCount());
+		assertFalse(executor.isEmpty());
+
+		runScheduled(scheduled);
+
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRequestExecutorStopsRetryingAfterMaxAttempts() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled);
+		final FailingTask task = new FailingTask("failed", 5, new RetryPolicy.Builder().setMaxAttempts(2).create());
+		final ServiceError[] errors = executeTask(executor, task);
+
+		runScheduled(scheduled);
+
+		assertNotNull(errors[0]);
+		assertTrue(scheduled.isEmpty());
+		assertEquals(2, task.getAttemptCount());
+	}
+
+	public void testRequestExecutorDoesNotRetryUnlistedErrorCodes() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled);
+		final RetryPolicy policy = new RetryPolicy.Builder().addRetryableCode(ServiceError.Codes.EXPIRED).create();
+		final FailingTask task = new FailingTask("unlisted", 1, policy);
+		final ServiceError[] errors = executeTask(executor, task);
+
+		assertNotNull(errors[0]);
+		assertTrue(scheduled.isEmpty());
+		assertEquals(1, task.getAttemptCount());
+	}
+
+	public void testRequestExecutorDuplicatesWaitForRetry() {
+		final List<Runnable> scheduled = new ArrayList<Runnable>();
+		final TestThreadedRequestExecutor executor = new RetryingRequestExecutor(scheduled);
+		final FailingTask task = new FailingTask("shared", 1, new RetryPolicy.Builder().create());
+		final FailingTask duplicate = new FailingTask("shared", 0, null);
+		final ServiceError[] errors = executeTask(executor, task);
+		final ServiceError[] duplicateErrors = executeTask(executor, duplicate);
+
+		assertEquals(1, scheduled.size());
+		assertEquals(0, duplicate.getAttemptCount());
+
+		runScheduled(scheduled);
+
+		assertNull(errors[0]);
+		assertNull(duplicateErrors[0]);
+		assertEquals(2, task.getAttemptCount());
+		assertEquals(0, duplicate.getAttemptCount());
+	}
+
+	public void testRequestExecutorCancelByTagFailsQueuedTasks() throws Exception {
+		final RequestExecutor.ThreadedRequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				return new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this).setCorePoolSize(1).create();
+			}
+		};
+		final CountDownLatch gate = new CountDownLatch(1);
+		executeTask(executor, new GatedTask("blocking", gate));
+		Thread.sleep(20);
+
+		final TestTask tagged = new TestTask(new Identifier<String>("tagged"), "data");
+		tagged.addTag("screen");
+		final ServiceError[] errors = executeTask(executor, tagged);
+
+		assertEquals(1, executor.cancel("screen"));
+		gate.countDown();
+
+		assertEquals(ServiceError.Codes.CANCELLED, errors[0].getCode());
+	}
+
+	public void testRequestExecutorCancelByTagSparesUntaggedDuplicates() throws Exception {
+		final RequestExecutor.ThreadedRequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				return new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this).setCorePoolSize(1).create();
+			}
+		};
+		final CountDownLatch gate = new CountDownLatch(1);
+		executeTask(executor, new GatedTask("blocking", gate));
+		Thread.sleep(20);
+
+		final TestTask tagged = new TestTask(new Identifier<String>("shared"), "data");
+		tagged.setPriority(Priority.LOW);
+		tagged.addTag("screen");
+		final ServiceError[] taggedErrors = executeTask(executor, tagged);
+
+		final TestTask untagged = new TestTask(new Identifier<String>("shared"), "data");
+		untagged.setPriority(Priority.LIVE);
+		final ServiceError[] untaggedErrors = executeTask(executor, untagged);
+
+		assertEquals(1, executor.cancel("screen"));
+		assertEquals(ServiceError.Codes.CANCELLED, taggedErrors[0].getCode());
+		assertNull(untaggedErrors[0]);
+		assertEquals(2, executor.getRequestCount());
+
+		gate.countDown();
+
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (!executor.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(executor.isEmpty());
+		assertNull(untaggedErrors[0]);
+	}
+
+	public void testRequestExecutorFutureCancelSparesAbsorbedDuplicates() throws Exception {
+		final RequestExecutor.ThreadedRequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				return new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this).setCorePoolSize(1).create();
+			}
+		};
+		final CountDownLatch gate = new CountDownLatch(1);
+		executeTask(executor, new GatedTask("blocking", gate));
+		Thread.sleep(20);
+
+		final NetworkingRequest<String> queued = new NetworkingRequest<String>(new NetworkingPrioritizable<String>(new TestTask(new Identifier<String>("shared"))), Priority.LOW.ordinal(), new EmptyNetworkingObserver());
+		final RequestFuture<String> cancelled = executor.submitNetworkingRequest(queued);
+		final NetworkingRequest<String> absorbed = new NetworkingRequest<String>(new NetworkingPrioritizable<String>(new TestTask(new Identifier<String>("shared"))), Priority.LIVE.ordinal(), new EmptyNetworkingObserver());
+		final RequestFuture<String> future = executor.submitNetworkingRequest(absorbed);
+
+		assertTrue(cancelled.cancel(false));
+		assertFalse(future.isDone());
+
+		gate.countDown();
+		future.get(5, TimeUnit.SECONDS);
+		assertFalse(future.isFailed());
+	}
+
+	public void testRequestExecutorWaitsForRoomWithoutHoldingItsLock() throws Exception {
+		final RequestExecutor.ThreadedRequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+				final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Priority.newAccessorArray(), this);
+				builder.setCorePoolSize(1).setCapacity(1).setRejectionPolicy(RejectionPolicy.BLOCK_CALLER);
+				return builder.create();
+			}
+		};
+		final CountDownLatch gate = new CountDownLatch(1);
+		executeTask(executor, new GatedTask("running", gate));
+		Thread.sleep(20);
+		executeTask(executor, new TestTask(new Identifier<String>("queued"), "data"));
+
+		final CountDownLatch submitted = new CountDownLatch(1);
+		final Thread producer = new Thread() {
+			@Override
+			public void run() {
+				executeTask(executor, new TestTask(new Identifier<String>("waiting"), "data"));
+				submitted.countDown();
+			}
+		};
+		producer.start();
+
+		assertFalse(submitted.await(50, TimeUnit.MILLISECONDS));
+		assertEquals(2, executor.getRequestCount());
+
+		gate.countDown();
+
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (!executor.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(executor.isEmpty());
+	}
+
+	public void testRecyclingRequestExecutorCompletesEveryTask() throws Exception {
+		final RequestExecutor.ThreadedRequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected boolean isRecyclingEnabled() {
+				return true;
+			}
+		};
+
+		// Later rounds run on requests recycled by the earlier ones.
+		for (int round = 0; round < 3; round++) {
+			final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+			final CountDownLatch latch = new CountDownLatch(20);
+			for (int i = 0; i < 20; i++) {
+				final Task<String> task = new TestTask(new Identifier<String>("task" + i), "data" + i) {
+					@Override
+					public void onExecuteProcessing(final Context context, final String data) throws Exception {
+						processed.add(data);
+					}
+				};
+				task.setRequestExecutor(executor);
+				task.setTaskObserver(new TaskObserver() {
+
+					@Override
+					public void onTaskStarted(final Task<?> task) {
+					}
+
+					@Override
+					public void onTaskComplete(final Task<?> task) {
+						latch.countDown();
+					}
+
+					@Override
+					public void onTaskFailure(final Task<?> task, final ServiceError error) {
+					}
+				});
+				task.execute();
+			}
+
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertEquals(20, new HashSet<String>(processed).size());
+			for (int i = 0; i < 20; i++) {
+				assertTrue(processed.contains("data" + i));
+			}
+		}
+	}
+
+	// =============================================
+
+	private static ServiceError[] executeTask(final RequestExecutor executor, final Task<?> task) {
+		final ServiceError[] errors = new ServiceError[1];
+		task.setRequestExecutor(executor);
+		task.setTaskObserver(new TaskObserver() {
+
+			@Override
+			public void onTaskStarted(final Task<?> task) {
+			}
+
+			@Override
+			public void onTaskComplete(final Task<?> task) {
+			}
+
+			@Override
+			public void onTaskFailure(final Task<?> task, final ServiceError error) {
+				errors[0] = error;
+			}
+		});
+		task.execute();
+		return errors;
+	}
+
+	private static void runScheduled(final List<Runnable> scheduled) {
+		assertFalse(scheduled.isEmpty());
+		scheduled.remove(0).run();
+	}
+
+	private static class RetryingRequestExecutor extends TestThreadedRequestExecutor {
+
+		private final List<Runnable> mScheduled;
+
+		public RetryingRequestExecutor(final List<Runnable> scheduled) {
+			mScheduled = scheduled;
+		}
+
+		@Override
+		protected AuxiliaryExecutor onCreateNetworkingExecutor() {
+			return new SchedulingAuxiliaryExecutor(this);
+		}
+
+		// Created before the constructor body runs, so it reads mScheduled
+		// when something is scheduled.
+		private class SchedulingAuxiliaryExecutor extends TestAuxiliaryExecutor implements ManagedAuxiliaryExecutor {
+
+			public SchedulingAuxiliaryExecutor(final ManagedAuxiliaryExecutorObserver observer) {
+				super(observer);
+			}
+
+			@Override
+			public void schedule(final Runnable command, final long delay, final TimeUnit unit) {
+				mScheduled.add(new Runnable() {
+
+					@Override
+					public void run() {
+						execute(command);
+					}
+				});
+			}
+
+			@Override
+			public void scheduleAt(final Runnable command, final long time) {
+				schedule(command, 0, TimeUnit.NANOSECONDS);
+			}
+
+			@Override
+			public RequestFuture<PrioritizableRequest> submit(final Runnable command) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public int cancel(final Object tag) {
+				return 0;
+			}
+
+			@Override
+			public ExecutorMetrics getMetrics() {
+				return null;
+			}
+		}
+	}
+
+	private static class GatedTask extends TestTask {
+
+		private final CountDownLatch mGate;
+
+		public GatedTask(final String identifier, final CountDownLatch gate) {
+			super(new Identifier<String>(identifier));
+			mGate = gate;
+		}
+
+		@Override
+		public String onExecuteNetworking(final Context context) throws Exception {
+			mGate.await();
+			return "data";
+		}
+	}
+
+	private static class FailingTask extends TestTask {
+
+		private int mFailures;
+
+		public FailingTask(final String identifier, final int failures, final RetryPolicy policy) {
+			super(new Identifier<String>(identifier));
+			mFailures = failures;
+			setRetryPolicy(policy);
+		}
+
+		@Override
+		public String onExecuteNetworking(final Context context) throws Exception {
+			if (mFailures-- > 0) {
+				throw new Exception("Failure");
+			}
+			return "data";
+		}
+	}
+
+	private static class CachedNetworkingPrioritizable extends TestNetworkingPrioritizable {
+
+		private final int[] mExecuted;
+
+		public CachedNetworkingPrioritizable(final int[] executed) {
+			mExecuted = executed;
+		}
+
+		@Override
+		public long getCacheTimeToLive() {
+			return TimeUnit.MINUTES.toNanos(1);
+		}
+
+		@Override
+		public void execute() {
+			mExecuted[0]++;
+		}
+	}
+
 	private static class RequestHandlerCounter {
 
 		private final AssertionLatch mNetworkLatch;
@@ -175,4 +729,15 @@ public class RequestExecutorTest extends AndroidTestCase {
 			mProcessingLatch.assertComplete();
 		}
 	}
+
+	private static class EmptyNetworkingObserver implements NetworkingPrioritizableObserver<String> {
+
+		@Override
+		public void onNetworkingComplete(final String data) {
+		}
+
+		@Override
+		public void onNetworkingFailure(final ServiceError error) {
+		}
+	}
 }
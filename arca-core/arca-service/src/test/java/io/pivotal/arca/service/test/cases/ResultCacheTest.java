@@ -0,0 +1,89 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.ResultCache;
+import io.pivotal.arca.threading.Identifier;
+
+public class ResultCacheTest extends AndroidTestCase {
+
+	public void testCachedResultIsReturned() {
+		final ResultCache cache = new ResultCache(2);
+		cache.put(new Identifier<String>("a"), "data", 1, TimeUnit.MINUTES);
+
+		assertEquals("data", cache.get(new Identifier<String>("a")).getData());
+		assertNull(cache.get(new Identifier<String>("b")));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testNullResultIsCached() {
+		final ResultCache cache = new ResultCache(2);
+		cache.put(new Identifier<String>("a"), null, 1, TimeUnit.MINUTES);
+
+		assertNotNull(cache.get(new Identifier<String>("a")));
+	}
+
+	public void testExpiredResultIsRemoved() throws Exception {
+		final ResultCache cache = new ResultCache(2);
+		cache.put(new Identifier<String>("a"), "data", 10, TimeUnit.MILLISECONDS);
+		Thread.sleep(20);
+
+		assertNull(cache.get(new Identifier<String>("a")));
+		assertEquals(0, cache.size());
+	}
+
+	public void testResultWithoutTimeToLiveIsNotCached() {
+		final ResultCache cache = new ResultCache(2);
+		cache.put(new Identifier<String>("a"), "data", 0, TimeUnit.MINUTES);
+
+		assertNull(cache.get(new Identifier<String>("a")));
+	}
+
+	public void testLeastRecentlyUsedResultIsEvicted() {
+		final ResultCache cache = new ResultCache(2);
+		cache.put(new Identifier<String>("a"), "a", 1, TimeUnit.MINUTES);
+		cache.put(new Identifier<String>("b"), "b", 1, TimeUnit.MINUTES);
+		cache.get(new Identifier<String>("a"));
+		cache.put(new Identifier<String>("c"), "c", 1, TimeUnit.MINUTES);
+
+		assertNotNull(cache.get(new Identifier<String>("a")));
+		assertNull(cache.get(new Identifier<String>("b")));
+		assertNotNull(cache.get(new Identifier<String>("c")));
+	}
+
+	public void testSizeOfBoundsTheCache() {
+		final ResultCache cache = new ResultCache(5) {
+
+			@Override
+			protected int sizeOf(final Identifier<?> identifier, final Object data) {
+				return ((String) data).length();
+			}
+		};
+		cache.put(new Identifier<String>("a"), "aaa", 1, TimeUnit.MINUTES);
+		cache.put(new Identifier<String>("b"), "bbb", 1, TimeUnit.MINUTES);
+		cache.put(new Identifier<String>("c"), "cccccc", 1, TimeUnit.MINUTES);
+
+		assertNull(cache.get(new Identifier<String>("a")));
+		assertNotNull(cache.get(new Identifier<String>("b")));
+		assertNull(cache.get(new Identifier<String>("c")));
+		assertEquals(3, cache.size());
+	}
+}
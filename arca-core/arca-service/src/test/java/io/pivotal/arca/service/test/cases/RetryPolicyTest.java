@@ -0,0 +1,74 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.RetryPolicy;
+import io.pivotal.arca.service.ServiceError;
+
+public class RetryPolicyTest extends AndroidTestCase {
+
+	public void testBackoffGrowsUpToTheMaximum() {
+		final RetryPolicy policy = newBuilder().setJitter(0).create();
+
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), policy.getBackoff(1));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(200), policy.getBackoff(2));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(400), policy.getBackoff(3));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), policy.getBackoff(4));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), policy.getBackoff(40));
+	}
+
+	public void testJitterShortensTheBackoff() {
+		final RetryPolicy policy = newBuilder().setJitter(0.5).create();
+
+		for (int i = 0; i < 100; i++) {
+			final long backoff = policy.getBackoff(2);
+			assertTrue(backoff <= TimeUnit.MILLISECONDS.toNanos(200));
+			assertTrue(backoff >= TimeUnit.MILLISECONDS.toNanos(100));
+		}
+	}
+
+	public void testOnlyRetryableCodesAreRetried() {
+		final RetryPolicy policy = newBuilder().setMaxAttempts(2).addRetryableCode(503).create();
+
+		assertTrue(policy.shouldRetry(new ServiceError(503, "Unavailable"), 1));
+		assertFalse(policy.shouldRetry(new ServiceError(503, "Unavailable"), 2));
+		assertFalse(policy.shouldRetry(new ServiceError(404, "Not Found"), 1));
+		assertFalse(policy.shouldRetry(new ServiceError("Unknown"), 1));
+	}
+
+	public void testUnknownErrorsAreRetriedByDefault() {
+		final RetryPolicy policy = newBuilder().create();
+
+		assertTrue(policy.shouldRetry(new ServiceError("Unknown"), 1));
+	}
+
+	public void testMaxBackoffCannotBeLessThanInitialBackoff() {
+		try {
+			new RetryPolicy.Builder().setInitialBackoff(2, TimeUnit.SECONDS).setMaxBackoff(1, TimeUnit.SECONDS).create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private static RetryPolicy.Builder newBuilder() {
+		return new RetryPolicy.Builder().setInitialBackoff(100, TimeUnit.MILLISECONDS).setMaxBackoff(500, TimeUnit.MILLISECONDS);
+	}
+}
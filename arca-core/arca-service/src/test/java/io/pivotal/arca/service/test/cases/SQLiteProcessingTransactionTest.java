@@ -0,0 +1,193 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.ProcessingBatcher;
+import io.pivotal.arca.service.ProcessingPrioritizable;
+import io.pivotal.arca.service.ProcessingPrioritizableObserver;
+import io.pivotal.arca.service.ProcessingRequest;
+import io.pivotal.arca.service.ProcessingTask;
+import io.pivotal.arca.service.RequestExecutor;
+import io.pivotal.arca.service.SQLiteProcessingTransaction;
+import io.pivotal.arca.service.ServiceError;
+import io.pivotal.arca.threading.Identifier;
+
+public class SQLiteProcessingTransactionTest extends AndroidTestCase {
+
+	private static final int SUCCEEDS = 0;
+	private static final int FAILS = 1;
+	private static final int FAILS_NESTED = 2;
+
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final List<Integer> mErrorCodes = Collections.synchronizedList(new ArrayList<Integer>());
+	private SQLiteDatabase mDatabase;
+	private CountDownLatch mLatch;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mDatabase = SQLiteDatabase.create(null);
+		mDatabase.execSQL("CREATE TABLE rows (name TEXT)");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mDatabase.close();
+		super.tearDown();
+	}
+
+	public void testFailedRequestOnlyRollsBackItsOwnRows() throws Exception {
+		mLatch = new CountDownLatch(4);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor();
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, SUCCEEDS));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("a", null, SUCCEEDS));
+		executor.executeProcessingRequest(newRequest("failed", null, FAILS));
+		executor.executeProcessingRequest(newRequest("b", null, SUCCEEDS));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(3, mCompleted.size());
+		assertEquals(1, mErrorCodes.size());
+		assertEquals(Arrays.asList("a", "b", "blocking"), queryRows());
+	}
+
+	public void testFailedNestedTransactionFailsTheWholeBatch() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final RequestExecutor.ThreadedRequestExecutor executor = newExecutor();
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		executor.executeProcessingRequest(newRequest("blocking", gate, SUCCEEDS));
+		Thread.sleep(50);
+		executor.executeProcessingRequest(newRequest("a", null, SUCCEEDS));
+		executor.executeProcessingRequest(newRequest("nested", null, FAILS_NESTED));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("blocking"), mCompleted);
+		assertEquals(2, Collections.frequency(mErrorCodes, ServiceError.Codes.ROLLED_BACK));
+		assertEquals(Collections.singletonList("blocking"), queryRows());
+	}
+
+	public void testRollingBackASavepointOnlyUndoesItsOwnRows() throws Exception {
+		final SQLiteProcessingTransaction transaction = new SQLiteProcessingTransaction(mDatabase);
+		transaction.begin();
+
+		transaction.setSavepoint("a");
+		mDatabase.execSQL("INSERT INTO rows VALUES ('a')");
+		transaction.releaseSavepoint("a");
+
+		transaction.setSavepoint("failed");
+		mDatabase.execSQL("INSERT INTO rows VALUES ('failed')");
+		transaction.rollbackToSavepoint("failed");
+
+		transaction.setSavepoint("b");
+		mDatabase.execSQL("INSERT INTO rows VALUES ('b')");
+		transaction.releaseSavepoint("b");
+
+		assertTrue(mDatabase.inTransaction());
+		transaction.setSuccessful();
+		assertTrue(transaction.end());
+		assertEquals(Arrays.asList("a", "b"), queryRows());
+	}
+
+	// ======================================================
+
+	private RequestExecutor.ThreadedRequestExecutor newExecutor() {
+		return new RequestExecutor.ThreadedRequestExecutor() {
+
+			@Override
+			protected ProcessingBatcher onCreateProcessingBatcher() {
+				return new ProcessingBatcher(new SQLiteProcessingTransaction(mDatabase), 10, 0, TimeUnit.MILLISECONDS);
+			}
+		};
+	}
+
+	private List<String> queryRows() {
+		final List<String> rows = new ArrayList<String>();
+		final Cursor cursor = mDatabase.rawQuery("SELECT name FROM rows ORDER BY name", null);
+		try {
+			while (cursor.moveToNext()) {
+				rows.add(cursor.getString(0));
+			}
+		} finally {
+			cursor.close();
+		}
+		return rows;
+	}
+
+	private ProcessingRequest<String> newRequest(final String identifier, final CountDownLatch gate, final int outcome) {
+		final ProcessingTask<String> task = new ProcessingTask<String>() {
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(identifier);
+			}
+
+			@Override
+			public void executeProcessing(final String data) throws Exception {
+				if (gate != null) {
+					gate.await();
+				}
+
+				if (outcome == FAILS_NESTED) {
+					// Android's nested transactions are not savepoints, so this
+					// marks the enclosing batch as failed.
+					mDatabase.beginTransaction();
+					try {
+						mDatabase.execSQL("INSERT INTO rows VALUES ('" + data + "')");
+					} finally {
+						mDatabase.endTransaction();
+					}
+					return;
+				}
+
+				mDatabase.execSQL("INSERT INTO rows VALUES ('" + data + "')");
+				if (outcome == FAILS) {
+					throw new Exception("Processing failed");
+				}
+			}
+		};
+
+		return new ProcessingRequest<String>(new ProcessingPrioritizable<String>(task, identifier), 0, new ProcessingPrioritizableObserver<String>() {
+
+			@Override
+			public void onProcessingComplete() {
+				mCompleted.add(identifier);
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onProcessingFailure(final ServiceError error) {
+				mErrorCodes.add(error.getCode());
+				mLatch.countDown();
+			}
+		});
+	}
+}
@@ -0,0 +1,239 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.ChunkChannel;
+import io.pivotal.arca.service.RequestExecutor;
+import io.pivotal.arca.service.ServiceError;
+import io.pivotal.arca.service.ServiceException;
+import io.pivotal.arca.service.StreamingTask;
+import io.pivotal.arca.service.Task;
+import io.pivotal.arca.service.TaskObserver;
+import io.pivotal.arca.service.test.mock.TestTask;
+import io.pivotal.arca.threading.Identifier;
+
+public class StreamingTaskTest extends AndroidTestCase {
+
+	private final List<String> mProcessed = Collections.synchronizedList(new ArrayList<String>());
+	private final List<ServiceError> mErrors = Collections.synchronizedList(new ArrayList<ServiceError>());
+	private final CountDownLatch mFinished = new CountDownLatch(1);
+
+	public void testChunksAreProcessedWhileNetworking() throws Exception {
+		final CountDownLatch firstProcessed = new CountDownLatch(1);
+		final boolean[] overlapped = new boolean[1];
+		final TestStreamingTask task = new TestStreamingTask("overlap") {
+
+			@Override
+			public void onStreamNetworking(final Context context, final ChunkChannel<String> channel) throws Exception {
+				channel.put("a");
+				overlapped[0] = firstProcessed.await(5, TimeUnit.SECONDS);
+				for (final String chunk : Arrays.asList("b", "c", "d", "e")) {
+					channel.put(chunk);
+					assertTrue(channel.size() <= 2);
+				}
+			}
+
+			@Override
+			public void onProcessChunk(final Context context, final String chunk) throws Exception {
+				super.onProcessChunk(context, chunk);
+				firstProcessed.countDown();
+			}
+		};
+		task.setChannelCapacity(2);
+		execute(task, new RequestExecutor.ThreadedRequestExecutor());
+
+		assertTrue(overlapped[0]);
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), mProcessed);
+		assertTrue(mErrors.isEmpty());
+	}
+
+	public void testNetworkingFailureFailsTheTaskOnce() throws Exception {
+		final TestStreamingTask task = new TestStreamingTask("networking") {
+
+			@Override
+			public void onStreamNetworking(final Context context, final ChunkChannel<String> channel) throws Exception {
+				channel.put("a");
+				throw new Exception("Networking failed");
+			}
+		};
+		execute(task, new RequestExecutor.ThreadedRequestExecutor());
+		Thread.sleep(50);
+
+		assertEquals(1, mErrors.size());
+		assertEquals("Networking failed", mErrors.get(0).getMessage());
+	}
+
+	public void testProcessingFailureStopsNetworking() throws Exception {
+		final ServiceError[] networkingError = new ServiceError[1];
+		final TestStreamingTask task = new TestStreamingTask("processing") {
+
+			@Override
+			public void onStreamNetworking(final Context context, final ChunkChannel<String> channel) throws Exception {
+				try {
+					for (int i = 0; i < 100; i++) {
+						channel.put("chunk");
+					}
+				} catch (final ServiceException e) {
+					networkingError[0] = e.getError();
+					throw e;
+				}
+			}
+
+			@Override
+			public void onProcessChunk(final Context context, final String chunk) throws Exception {
+				throw new Exception("Processing failed");
+			}
+		};
+		task.setChannelCapacity(1);
+		execute(task, new RequestExecutor.ThreadedRequestExecutor());
+		Thread.sleep(50);
+
+		assertEquals(1, mErrors.size());
+		assertEquals("Processing failed", mErrors.get(0).getMessage());
+		assertEquals(ServiceError.Codes.ABANDONED, networkingError[0].getCode());
+	}
+
+	public void testSerialExecutorProcessesChunksAfterNetworking() throws Exception {
+		final TestStreamingTask task = new TestStreamingTask("serial");
+		task.setChannelCapacity(1);
+		execute(task, new RequestExecutor.SerialRequestExecutor());
+
+		assertEquals(Arrays.asList("a", "b", "c"), mProcessed);
+		assertTrue(mErrors.isEmpty());
+	}
+
+	public void testDuplicateStreamsEachGetTheirOwnChannel() throws Exception {
+		final CountDownLatch finished = new CountDownLatch(2);
+		final RequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor();
+		for (int i = 0; i < 2; i++) {
+			final TestStreamingTask task = new TestStreamingTask("duplicate");
+			task.setRequestExecutor(executor);
+			task.setTaskObserver(newObserver(finished));
+			task.execute();
+		}
+
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		assertTrue(mErrors.isEmpty());
+		assertEquals(6, mProcessed.size());
+		assertEquals(2, Collections.frequency(mProcessed, "a"));
+		assertEquals(2, Collections.frequency(mProcessed, "c"));
+	}
+
+	public void testStreamHoldsTheProcessingThreadUntilItEnds() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch firstProcessed = new CountDownLatch(1);
+		final TestStreamingTask stream = new TestStreamingTask("stream") {
+
+			@Override
+			public void onStreamNetworking(final Context context, final ChunkChannel<String> channel) throws Exception {
+				channel.put("a");
+				gate.await();
+				channel.put("b");
+			}
+
+			@Override
+			public void onProcessChunk(final Context context, final String chunk) throws Exception {
+				super.onProcessChunk(context, chunk);
+				firstProcessed.countDown();
+			}
+		};
+		final RequestExecutor executor = new RequestExecutor.ThreadedRequestExecutor();
+		stream.setRequestExecutor(executor);
+		stream.setTaskObserver(newObserver(mFinished));
+		stream.execute();
+		assertTrue(firstProcessed.await(5, TimeUnit.SECONDS));
+
+		final CountDownLatch otherFinished = new CountDownLatch(1);
+		final TestTask other = new TestTask(new Identifier<String>("other"), "result");
+		other.setRequestExecutor(executor);
+		other.setTaskObserver(newObserver(otherFinished));
+		other.execute();
+
+		// The only processing thread is waiting on the stream's next chunk.
+		assertFalse(otherFinished.await(200, TimeUnit.MILLISECONDS));
+
+		gate.countDown();
+		assertTrue(mFinished.await(5, TimeUnit.SECONDS));
+		assertTrue(otherFinished.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a", "b"), mProcessed);
+		assertTrue(mErrors.isEmpty());
+	}
+
+	// ======================================================
+
+	private void execute(final Task<?> task, final RequestExecutor executor) throws Exception {
+		task.setRequestExecutor(executor);
+		task.setTaskObserver(newObserver(mFinished));
+		task.execute();
+		assertTrue(mFinished.await(5, TimeUnit.SECONDS));
+	}
+
+	private TaskObserver newObserver(final CountDownLatch finished) {
+		return new TaskObserver() {
+
+			@Override
+			public void onTaskStarted(final Task<?> task) {
+			}
+
+			@Override
+			public void onTaskComplete(final Task<?> task) {
+				finished.countDown();
+			}
+
+			@Override
+			public void onTaskFailure(final Task<?> task, final ServiceError error) {
+				mErrors.add(error);
+				finished.countDown();
+			}
+		};
+	}
+
+	private class TestStreamingTask extends StreamingTask<String> {
+
+		private final String mIdentifier;
+
+		public TestStreamingTask(final String identifier) {
+			mIdentifier = identifier;
+		}
+
+		@Override
+		public Identifier<?> onCreateIdentifier() {
+			return new Identifier<String>(mIdentifier);
+		}
+
+		@Override
+		public void onStreamNetworking(final Context context, final ChunkChannel<String> channel) throws Exception {
+			for (final String chunk : Arrays.asList("a", "b", "c")) {
+				channel.put(chunk);
+			}
+		}
+
+		@Override
+		public void onProcessChunk(final Context context, final String chunk) throws Exception {
+			mProcessed.add(chunk);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.service.test.cases;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.service.NetworkingRequest;
+import io.pivotal.arca.service.Operation;
+import io.pivotal.arca.service.Priority;
+import io.pivotal.arca.service.ProcessingRequest;
+import io.pivotal.arca.service.RequestExecutor;
+import io.pivotal.arca.service.ServiceError;
+import io.pivotal.arca.service.Task;
+import io.pivotal.arca.service.TaskGraph;
+import io.pivotal.arca.service.test.mock.TestTask;
+import io.pivotal.arca.threading.Identifier;
+
+public class TaskGraphTest extends AndroidTestCase {
+
+	private TestTask mA, mB, mC, mD, mE;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// a -> b -> c is the critical path, d hangs off a and e stands alone.
+		mA = newTask("a");
+		mB = newTask("b");
+		mC = newTask("c");
+		mD = newTask("d");
+		mE = newTask("e");
+		mA.addDependency(mB);
+		mB.addDependency(mC);
+		mA.addDependency(mD);
+	}
+
+	public void testCriticalPathLengths() {
+		final TaskGraph graph = new TaskGraph(Arrays.<Task<?>> asList(mA, mE));
+
+		assertFalse(graph.hasCycle());
+		assertEquals(5, graph.getTasks().size());
+		assertEquals(3, graph.getCriticalPathLength());
+		assertEquals(3, graph.getCriticalPathLength(mA));
+		assertEquals(2, graph.getCriticalPathLength(mB));
+		assertEquals(1, graph.getCriticalPathLength(mC));
+		assertEquals(1, graph.getCriticalPathLength(mD));
+		assertEquals(1, graph.getCriticalPathLength(mE));
+
+		assertTrue(graph.isCritical(mA));
+		assertTrue(graph.isCritical(mB));
+		assertTrue(graph.isCritical(mC));
+		assertFalse(graph.isCritical(mD));
+		assertFalse(graph.isCritical(mE));
+	}
+
+	public void testCycleFailsTheOperation() {
+		mC.addDependency(mA);
+		assertTrue(new TaskGraph(Arrays.<Task<?>> asList(mA)).hasCycle());
+
+		final List<NetworkingRequest<?>> requests = new ArrayList<NetworkingRequest<?>>();
+		final Operation operation = newOperation(Priority.MEDIUM, new RecordingRequestExecutor(requests));
+		operation.execute();
+
+		assertTrue(requests.isEmpty());
+		assertEquals(ServiceError.Codes.CYCLE, operation.getError().getCode());
+	}
+
+	public void testLongestChainStartsFirstWithRaisedPriority() {
+		final List<NetworkingRequest<?>> requests = new ArrayList<NetworkingRequest<?>>();
+		final Operation operation = newOperation(Priority.MEDIUM, new RecordingRequestExecutor(requests));
+		operation.execute();
+
+		assertEquals(Arrays.asList("a", "e"), identifiers(requests));
+		assertEquals(Priority.HIGH.ordinal(), requests.get(0).getAccessorIndex());
+		assertEquals(Priority.MEDIUM.ordinal(), requests.get(1).getAccessorIndex());
+
+		requests.get(0).notifyComplete(null, null);
+		assertEquals(Arrays.asList("a", "e", "b", "d"), identifiers(requests));
+		assertEquals(Priority.HIGH.ordinal(), requests.get(2).getAccessorIndex());
+		assertEquals(Priority.MEDIUM.ordinal(), requests.get(3).getAccessorIndex());
+	}
+
+	public void testFlatOperationKeepsItsPriority() {
+		final TestTask x = newTask("x");
+		final TestTask y = newTask("y");
+		final TaskGraph graph = new TaskGraph(Arrays.<Task<?>> asList(x, y));
+		assertFalse(graph.isCritical(x));
+		assertFalse(graph.isCritical(y));
+
+		final List<NetworkingRequest<?>> requests = new ArrayList<NetworkingRequest<?>>();
+		final Operation operation = newOperation(Priority.MEDIUM, new RecordingRequestExecutor(requests), x, y);
+		operation.execute();
+
+		assertEquals(2, requests.size());
+		assertEquals(Priority.MEDIUM.ordinal(), requests.get(0).getAccessorIndex());
+		assertEquals(Priority.MEDIUM.ordinal(), requests.get(1).getAccessorIndex());
+	}
+
+	public void testDiamondKeepsItsPriorityUntilABranchIsShorter() {
+		final TestTask top = newTask("top");
+		final TestTask left = newTask("left");
+		final TestTask right = newTask("right");
+		final TestTask bottom = newTask("bottom");
+		top.addDependency(left);
+		top.addDependency(right);
+		left.addDependency(bottom);
+		right.addDependency(bottom);
+
+		final TaskGraph diamond = new TaskGraph(Arrays.<Task<?>> asList(top));
+		assertEquals(3, diamond.getCriticalPathLength());
+		for (final Task<?> task : diamond.getTasks()) {
+			assertFalse(diamond.isCritical(task));
+		}
+
+		final TestTask leaf = newTask("leaf");
+		top.addDependency(leaf);
+
+		final TaskGraph uneven = new TaskGraph(Arrays.<Task<?>> asList(top));
+		assertTrue(uneven.isCritical(top));
+		assertTrue(uneven.isCritical(left));
+		assertTrue(uneven.isCritical(right));
+		assertTrue(uneven.isCritical(bottom));
+		assertFalse(uneven.isCritical(leaf));
+	}
+
+	public void testLongestChainIsSubmittedLastToTheLiveLane() {
+		final List<NetworkingRequest<?>> requests = new ArrayList<NetworkingRequest<?>>();
+		final Operation operation = newOperation(Priority.LIVE, new RecordingRequestExecutor(requests));
+		operation.execute();
+
+		assertEquals(Arrays.asList("e", "a"), identifiers(requests));
+		assertEquals(Priority.LIVE.ordinal(), requests.get(1).getAccessorIndex());
+	}
+
+	public void testMakespanIsReportedOnceTheGraphFinishes() {
+		final Operation operation = newOperation(Priority.LOW, new RequestExecutor.SerialRequestExecutor());
+		operation.execute();
+
+		final TaskGraph graph = operation.getTaskGraph();
+		assertTrue(graph.isFinished());
+		assertTrue(graph.getMakespan(TimeUnit.NANOSECONDS) >= 0);
+		assertNull(operation.getError());
+	}
+
+	// ======================================================
+
+	private Operation newOperation(final Priority priority, final RequestExecutor executor) {
+		return newOperation(priority, executor, mA, mE);
+	}
+
+	private Operation newOperation(final Priority priority, final RequestExecutor executor, final Task<?>... tasks) {
+		final Operation operation = new Operation(null, priority) {
+
+			@Override
+			public Set<Task<?>> onCreateTasks() {
+				return new HashSet<Task<?>>(Arrays.<Task<?>> asList(tasks));
+			}
+
+			@Override
+			public void onSuccess(final Context context, final List<Task<?>> completed) {
+			}
+
+			@Override
+			public void onFailure(final Context context, final ServiceError error) {
+			}
+		};
+		operation.setRequestExecutor(executor);
+		return operation;
+	}
+
+	private static TestTask newTask(final String identifier) {
+		return new TestTask(new Identifier<String>(identifier));
+	}
+
+	private static List<Object> identifiers(final List<NetworkingRequest<?>> requests) {
+		final List<Object> identifiers = new ArrayList<Object>();
+		for (final NetworkingRequest<?> request : requests) {
+			identifiers.add(request.getIdentifier().getData());
+		}
+		return identifiers;
+	}
+
+	// Networking requests wait to be completed by the test, while processing
+	// runs straight away.
+	private static class RecordingRequestExecutor implements RequestExecutor {
+
+		private final List<NetworkingRequest<?>> mRequests;
+
+		public RecordingRequestExecutor(final List<NetworkingRequest<?>> requests) {
+			mRequests = requests;
+		}
+
+		@Override
+		public void executeNetworkingRequest(final NetworkingRequest<?> request) {
+			mRequests.add(request);
+		}
+
+		@Override
+		public void executeProcessingRequest(final ProcessingRequest<?> request) {
+			request.run();
+			request.notifyComplete(request.getError());
+		}
+	}
+}
@@ -21,16 +21,17 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 import io.pivotal.arca.threading.AuxiliaryExecutor;
-import io.pivotal.arca.threading.AuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.DropReason;
 import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
 import io.pivotal.arca.threading.PrioritizableRequest;
 
 public class TestAuxiliaryExecutor implements AuxiliaryExecutor {
 
 	private final Set<Identifier<?>> mIdentifiers = new HashSet<Identifier<?>>();
-	private final AuxiliaryExecutorObserver mObserver;
+	private final ManagedAuxiliaryExecutorObserver mObserver;
 
-	public TestAuxiliaryExecutor(final AuxiliaryExecutorObserver observer) {
+	public TestAuxiliaryExecutor(final ManagedAuxiliaryExecutorObserver observer) {
 		mObserver = observer;
 	}
 
@@ -40,6 +41,11 @@ public class TestAuxiliaryExecutor implements AuxiliaryExecutor {
 		final PrioritizableRequest request = (PrioritizableRequest) command;
 		final Identifier<?> identifier = request.getIdentifier();
 
+		if (request.isExpired(System.nanoTime())) {
+			mObserver.onDropped(request, DropReason.EXPIRED);
+			return;
+		}
+
 		if (!mIdentifiers.contains(identifier)) {
 			mIdentifiers.add(identifier);
 
@@ -72,7 +78,8 @@ public class TestAuxiliaryExecutor implements AuxiliaryExecutor {
 
 	@Override
 	public boolean remove(final Runnable task) {
-		throw new UnsupportedOperationException();
+		// Requests run synchronously, so nothing is ever queued.
+		return false;
 	}
 
 	@Override
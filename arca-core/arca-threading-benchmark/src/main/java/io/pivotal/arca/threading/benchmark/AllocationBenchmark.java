@@ -0,0 +1,174 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.HashedQueue;
+import io.pivotal.arca.threading.HashedStack;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Requests are created up front and everything runs with recycling on, so
+// gc.alloc.rate.norm is what the queue itself allocates. submitToComplete
+// also counts the executor's bookkeeping, and resets a completed request
+// for each submit the way the request executors reuse theirs. It still
+// allocates the de-duplication map's node for the identifier, and a
+// condition node whenever the idle worker parks.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+	@Param({ "16", "64" })
+	public int depth;
+
+	private AuxiliaryBlockingQueue mQueue;
+	private HashedQueue<PrioritizableRequest> mHashedQueue;
+	private HashedStack<PrioritizableRequest> mHashedStack;
+	private ReusableRequest[] mRequests;
+	private AuxiliaryExecutor mExecutor;
+	private final AtomicLong mCompleted = new AtomicLong();
+	private long mSubmitted;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		mQueue = new AuxiliaryBlockingQueue(newRecyclingAccessors(), Requests.NO_OP_OBSERVER);
+		mHashedQueue = new HashedQueue<PrioritizableRequest>(true);
+		mHashedQueue.setRecycling(true);
+		mHashedStack = new HashedStack<PrioritizableRequest>(true);
+		mHashedStack.setRecycling(true);
+
+		for (final PrioritizableRequest request : Requests.newRequests(depth)) {
+			mQueue.offer(request);
+			mHashedQueue.add(request);
+			mHashedStack.push(request);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUpExecutor() {
+		final PrioritizableRequest[] templates = Requests.newRequests(depth);
+		mRequests = new ReusableRequest[depth];
+		for (int i = 0; i < depth; i++) {
+			mRequests[i] = new ReusableRequest(templates[i].getPrioritizable(), templates[i].getAccessorIndex());
+		}
+		mExecutor = new AuxiliaryExecutor.Builder(Requests.newAccessors(false), new CompletionObserver()).setCorePoolSize(1).useRecycling().create();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownExecutor() {
+		((ExecutorService) mExecutor).shutdownNow();
+	}
+
+	@Benchmark
+	public Runnable auxiliaryQueuePollOffer() {
+		final Runnable request = mQueue.poll();
+		mQueue.offer(request);
+		return request;
+	}
+
+	@Benchmark
+	public long submitToComplete() {
+		// Each request last ran depth submits ago, long after its worker let go of it.
+		final ReusableRequest request = mRequests[(int) (mSubmitted % depth)];
+		request.reset();
+		mExecutor.execute(request);
+		mSubmitted++;
+		while (mCompleted.get() < mSubmitted) {
+			Thread.yield();
+		}
+		return mSubmitted;
+	}
+
+	@Benchmark
+	public PrioritizableRequest hashedQueuePollAdd() {
+		final PrioritizableRequest request = mHashedQueue.poll();
+		mHashedQueue.add(request);
+		return request;
+	}
+
+	@Benchmark
+	public PrioritizableRequest hashedStackPopPush() {
+		final PrioritizableRequest request = mHashedStack.pop();
+		mHashedStack.push(request);
+		return request;
+	}
+
+	private static PriorityAccessor[] newRecyclingAccessors() {
+		final PriorityAccessor[] accessors = Requests.newAccessors(false);
+		for (final PriorityAccessor accessor : accessors) {
+			((QueuePriorityAccessor) accessor).setRecycling(true);
+		}
+		return accessors;
+	}
+
+	private static final class ReusableRequest extends PrioritizableRequest {
+
+		public ReusableRequest(final Prioritizable prioritizable, final int accessorIndex) {
+			super(prioritizable, accessorIndex);
+		}
+
+		public void reset() {
+			resetForReuse(getAccessorIndex());
+		}
+	}
+
+	// Completes requests the way the request executors do, which retires
+	// their de-duplication entries.
+	private class CompletionObserver implements ManagedAuxiliaryExecutorObserver {
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+			mCompleted.incrementAndGet();
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {}
+	}
+}
@@ -0,0 +1,105 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.ConcurrentAuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Cancelling leaves a request for the consumer to skip, removing unlinks it.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CancellationBenchmark {
+
+	private static final int BATCH_SIZE = 1024;
+
+	@Param({ "locking", "concurrent" })
+	public String queueType;
+
+	@Param({ "0.5", "0.9" })
+	public double cancelRatio;
+
+	private BlockingQueue<Runnable> mQueue;
+	private PrioritizableRequest[] mRequests;
+	private int mNumCancelled;
+
+	@Setup(Level.Invocation)
+	public void setUp() {
+		if ("concurrent".equals(queueType)) {
+			mQueue = new ConcurrentAuxiliaryBlockingQueue(Requests.newAccessors(true), Requests.NO_OP_OBSERVER);
+		} else {
+			mQueue = new AuxiliaryBlockingQueue(Requests.newAccessors(false), Requests.NO_OP_OBSERVER);
+		}
+		mRequests = Requests.newRequests(BATCH_SIZE);
+		mNumCancelled = (int) (BATCH_SIZE * cancelRatio);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void cancel(final Blackhole blackhole) {
+		offerAll();
+		for (int i = 0; i < mNumCancelled; i++) {
+			mRequests[i].cancel();
+		}
+		drain(blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void remove(final Blackhole blackhole) {
+		offerAll();
+		for (int i = 0; i < mNumCancelled; i++) {
+			mRequests[i].cancel();
+			mQueue.remove(mRequests[i]);
+		}
+		drain(blackhole);
+	}
+
+	private void offerAll() {
+		for (final PrioritizableRequest request : mRequests) {
+			mQueue.offer(request);
+		}
+	}
+
+	private void drain(final Blackhole blackhole) {
+		Runnable runnable;
+		while ((runnable = mQueue.poll()) != null) {
+			blackhole.consume(runnable);
+		}
+	}
+}
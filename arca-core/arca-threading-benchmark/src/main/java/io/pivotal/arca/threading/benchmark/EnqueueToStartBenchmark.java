@@ -0,0 +1,128 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time from execute() until the request starts running.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnqueueToStartBenchmark {
+
+	@Param({ "locking", "concurrent" })
+	public String queueType;
+
+	@Param({ "1", "4" })
+	public int poolSize;
+
+	private AuxiliaryExecutor mExecutor;
+	private int mNextId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final boolean concurrent = "concurrent".equals(queueType);
+		final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Requests.newAccessors(concurrent), new CompletingObserver());
+		builder.setCorePoolSize(poolSize);
+		if (concurrent) {
+			builder.useConcurrentQueue();
+		}
+		mExecutor = builder.create();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		((ExecutorService) mExecutor).shutdownNow();
+	}
+
+	@Benchmark
+	public long executeUntilStarted() throws InterruptedException {
+		final int id = mNextId++;
+		final CountDownLatch started = new CountDownLatch(1);
+		final PrioritizableRequest request = new PrioritizableRequest(new StartedPrioritizable(id, started), id % Requests.NUM_ACCESSORS);
+		mExecutor.execute(request);
+		started.await();
+		return request.getStartedTime() - request.getQueuedTime();
+	}
+
+	private static class StartedPrioritizable extends Prioritizable {
+
+		private final Identifier<?> mIdentifier;
+		private final CountDownLatch mStarted;
+
+		public StartedPrioritizable(final int id, final CountDownLatch started) {
+			mIdentifier = new Identifier<Integer>(id);
+			mStarted = started;
+		}
+
+		@Override
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+
+		@Override
+		public void execute() {
+			mStarted.countDown();
+		}
+	}
+
+	private class CompletingObserver implements ManagedAuxiliaryExecutorObserver {
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {}
+	}
+}
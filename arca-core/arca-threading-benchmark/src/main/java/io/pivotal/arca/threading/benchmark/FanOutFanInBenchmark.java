@@ -0,0 +1,189 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Children are submitted from a worker thread, and the last to finish
+// submits the join.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutFanInBenchmark {
+
+	@Param({ "default", "workStealing" })
+	public String executorType;
+
+	@Param({ "16", "256" })
+	public int width;
+
+	@Param({ "100" })
+	public int childWork;
+
+	private final AtomicLong mNextId = new AtomicLong();
+	private AuxiliaryExecutor mExecutor;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(Requests.newAccessors(false), new CompletingObserver());
+		builder.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+		if ("workStealing".equals(executorType)) {
+			builder.useWorkStealing();
+		}
+		mExecutor = builder.create();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		((ExecutorService) mExecutor).shutdownNow();
+	}
+
+	@Benchmark
+	public void fanOutFanIn() throws InterruptedException {
+		final CountDownLatch joined = new CountDownLatch(1);
+		mExecutor.execute(newRequest(new Root(joined), 0));
+		joined.await();
+	}
+
+	private PrioritizableRequest newRequest(final Task task, final int accessorIndex) {
+		return new PrioritizableRequest(new TaskPrioritizable(mNextId.getAndIncrement(), task), accessorIndex);
+	}
+
+	private interface Task {
+		public void run();
+	}
+
+	private class Root implements Task {
+
+		private final CountDownLatch mJoined;
+
+		public Root(final CountDownLatch joined) {
+			mJoined = joined;
+		}
+
+		@Override
+		public void run() {
+			final AtomicInteger remaining = new AtomicInteger(width);
+			for (int i = 0; i < width; i++) {
+				mExecutor.execute(newRequest(new Child(remaining, mJoined), 1));
+			}
+		}
+	}
+
+	private class Child implements Task {
+
+		private final AtomicInteger mRemaining;
+		private final CountDownLatch mJoined;
+
+		public Child(final AtomicInteger remaining, final CountDownLatch joined) {
+			mRemaining = remaining;
+			mJoined = joined;
+		}
+
+		@Override
+		public void run() {
+			Blackhole.consumeCPU(childWork);
+			if (mRemaining.decrementAndGet() == 0) {
+				mExecutor.execute(newRequest(new Join(mJoined), 0));
+			}
+		}
+	}
+
+	private static class Join implements Task {
+
+		private final CountDownLatch mJoined;
+
+		public Join(final CountDownLatch joined) {
+			mJoined = joined;
+		}
+
+		@Override
+		public void run() {
+			mJoined.countDown();
+		}
+	}
+
+	private static class TaskPrioritizable extends Prioritizable {
+
+		private final Identifier<Long> mIdentifier;
+		private final Task mTask;
+
+		public TaskPrioritizable(final long id, final Task task) {
+			mIdentifier = new Identifier<Long>(id);
+			mTask = task;
+		}
+
+		@Override
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+
+		@Override
+		public void execute() {
+			mTask.run();
+		}
+	}
+
+	private class CompletingObserver implements ManagedAuxiliaryExecutorObserver {
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			mExecutor.notifyRequestComplete(request.getIdentifier());
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {}
+	}
+}
@@ -0,0 +1,105 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.HashedQueue;
+import io.pivotal.arca.threading.HashedStack;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashedCollectionsBenchmark {
+
+	@Param({ "16", "1024" })
+	public int size;
+
+	private HashedQueue<PrioritizableRequest> mQueue;
+	private HashedStack<PrioritizableRequest> mStack;
+	private PrioritizableRequest[] mRequests;
+	private int mNext;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		mQueue = new HashedQueue<PrioritizableRequest>();
+		mStack = new HashedStack<PrioritizableRequest>();
+		mRequests = Requests.newRequests(size);
+		for (final PrioritizableRequest request : mRequests) {
+			mQueue.add(request);
+			mStack.push(request);
+		}
+		mNext = 0;
+	}
+
+	@Benchmark
+	public PrioritizableRequest queuePollAdd() {
+		final PrioritizableRequest request = mQueue.poll();
+		mQueue.add(request);
+		return request;
+	}
+
+	@Benchmark
+	public PrioritizableRequest queueBump() {
+		final PrioritizableRequest request = next();
+		mQueue.bump(request);
+		return request;
+	}
+
+	@Benchmark
+	public boolean queueRemoveAdd() {
+		final PrioritizableRequest request = next();
+		mQueue.remove(request);
+		return mQueue.add(request);
+	}
+
+	@Benchmark
+	public PrioritizableRequest stackPopPush() {
+		final PrioritizableRequest request = mStack.pop();
+		mStack.push(request);
+		return request;
+	}
+
+	@Benchmark
+	public boolean stackRemovePush() {
+		final PrioritizableRequest request = next();
+		mStack.remove(request);
+		return mStack.push(request);
+	}
+
+	private PrioritizableRequest next() {
+		final PrioritizableRequest request = mRequests[mNext];
+		mNext = (mNext + 1) % size;
+		return request;
+	}
+}
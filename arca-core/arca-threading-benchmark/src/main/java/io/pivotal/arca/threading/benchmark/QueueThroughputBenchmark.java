@@ -0,0 +1,120 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.ConcurrentAuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueThroughputBenchmark {
+
+	private static final int NUM_REQUESTS = 1024;
+
+	// Kept below NUM_REQUESTS so a producer never re-offers a request that is still queued.
+	private static final int MAX_OUTSTANDING = 512;
+
+	@Param({ "locking", "concurrent" })
+	public String queueType;
+
+	private BlockingQueue<Runnable> mQueue;
+	private final AtomicInteger mOutstanding = new AtomicInteger();
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		if ("concurrent".equals(queueType)) {
+			mQueue = new ConcurrentAuxiliaryBlockingQueue(Requests.newAccessors(true), Requests.NO_OP_OBSERVER);
+		} else {
+			mQueue = new AuxiliaryBlockingQueue(Requests.newAccessors(false), Requests.NO_OP_OBSERVER);
+		}
+		mOutstanding.set(0);
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+
+		PrioritizableRequest[] mRequests;
+		int mNext;
+
+		@Setup(Level.Iteration)
+		public void setUp() {
+			mRequests = Requests.newRequests(NUM_REQUESTS);
+			mNext = 0;
+		}
+
+		PrioritizableRequest next() {
+			final PrioritizableRequest request = mRequests[mNext];
+			mNext = (mNext + 1) % NUM_REQUESTS;
+			return request;
+		}
+	}
+
+	@Benchmark
+	@Group("single")
+	@GroupThreads(1)
+	public Runnable offerPoll(final Producer producer) {
+		mQueue.offer(producer.next());
+		return mQueue.poll();
+	}
+
+	@Benchmark
+	@Group("multi")
+	@GroupThreads(3)
+	public boolean offer(final Producer producer) {
+		if (mOutstanding.get() >= MAX_OUTSTANDING) {
+			Thread.yield();
+			return false;
+		}
+		mOutstanding.incrementAndGet();
+		return mQueue.offer(producer.next());
+	}
+
+	@Benchmark
+	@Group("multi")
+	@GroupThreads(1)
+	public void poll(final Blackhole blackhole) {
+		final Runnable runnable = mQueue.poll();
+		if (runnable != null) {
+			mOutstanding.decrementAndGet();
+		}
+		blackhole.consume(runnable);
+	}
+}
@@ -0,0 +1,81 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.QueuingMaps;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Few identifiers contend on the same entries, many mostly do not.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class QueuingMapsBenchmark {
+
+	@Param({ "4", "4096" })
+	public int identifiers;
+
+	private QueuingMaps mQueuingMaps;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		mQueuingMaps = new QueuingMaps();
+	}
+
+	@State(Scope.Thread)
+	public static class Caller {
+
+		int mNext;
+	}
+
+	@Benchmark
+	public boolean putExecuteComplete(final Caller caller) {
+		final int id = caller.mNext;
+		caller.mNext = (caller.mNext + 1) % identifiers;
+
+		final PrioritizableRequest request = Requests.newRequest(id, 0);
+		mQueuingMaps.put(request);
+		if (request.isCancelled()) {
+			return false;
+		}
+		mQueuingMaps.notifyExecuting(request);
+		if (request.isCancelled()) {
+			return false;
+		}
+		// Only the request that won the identifier may mark it complete.
+		mQueuingMaps.onComplete(request.getIdentifier());
+		return true;
+	}
+}
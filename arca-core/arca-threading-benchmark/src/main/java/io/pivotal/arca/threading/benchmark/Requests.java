@@ -0,0 +1,85 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.benchmark;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.ConcurrentQueuePriorityAccessor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+final class Requests {
+
+	static final int NUM_ACCESSORS = 4;
+
+	static final ManagedAuxiliaryExecutorObserver NO_OP_OBSERVER = new ManagedAuxiliaryExecutorObserver() {
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {}
+	};
+
+	private Requests() {}
+
+	static PriorityAccessor[] newAccessors(final boolean concurrent) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[NUM_ACCESSORS];
+		for (int i = 0; i < NUM_ACCESSORS; i++) {
+			accessors[i] = concurrent ? new ConcurrentQueuePriorityAccessor() : new QueuePriorityAccessor();
+		}
+		return accessors;
+	}
+
+	static PrioritizableRequest newRequest(final Object id, final int accessorIndex) {
+		return new PrioritizableRequest(new BenchmarkPrioritizable(id), accessorIndex);
+	}
+
+	static PrioritizableRequest[] newRequests(final int count) {
+		final PrioritizableRequest[] requests = new PrioritizableRequest[count];
+		for (int i = 0; i < count; i++) {
+			requests[i] = newRequest(i, i % NUM_ACCESSORS);
+		}
+		return requests;
+	}
+
+	static class BenchmarkPrioritizable extends Prioritizable {
+
+		private final Identifier<?> mIdentifier;
+
+		BenchmarkPrioritizable(final Object id) {
+			mIdentifier = new Identifier<Object>(id);
+		}
+
+		@Override
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+
+		@Override
+		public void execute() {}
+	}
+}
@@ -0,0 +1,120 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.TimeUnit;
+
+// AIMD on smoothed wait and run times: grows by one thread while requests
+// wait, and halves once they stop waiting or run slower than the baseline.
+public class AdaptivePoolController {
+
+	public static interface Defaults {
+		public static final int SAMPLE_WINDOW = 8;
+		public static final double SMOOTHING_FACTOR = 0.2;
+		public static final double DECREASE_FACTOR = 0.75;
+		public static final double MAX_EXECUTION_GRADIENT = 2.0;
+		public static final double BASELINE_DRIFT = 0.01;
+	}
+
+	private final int mMinPoolSize;
+	private final int mMaxPoolSize;
+	private final long mTargetQueueWait;
+
+	private double mQueueWait = -1;
+	private double mExecutionTime = -1;
+	private double mBaselineExecutionTime = -1;
+	private int mNumSamples;
+	private int mPoolSize;
+
+	public AdaptivePoolController(final int minPoolSize, final int maxPoolSize, final long targetQueueWait, final TimeUnit unit) {
+		if (minPoolSize <= 0 || maxPoolSize < minPoolSize)
+			throw new IllegalArgumentException("Pool size bounds must satisfy 0 < min <= max.");
+
+		if (targetQueueWait <= 0 || unit == null)
+			throw new IllegalArgumentException("Target queue wait must be positive.");
+
+		mMinPoolSize = minPoolSize;
+		mMaxPoolSize = maxPoolSize;
+		mTargetQueueWait = unit.toNanos(targetQueueWait);
+		mPoolSize = minPoolSize;
+	}
+
+	public int getMinPoolSize() {
+		return mMinPoolSize;
+	}
+
+	public int getMaxPoolSize() {
+		return mMaxPoolSize;
+	}
+
+	public synchronized int getPoolSize() {
+		return mPoolSize;
+	}
+
+	public synchronized long getQueueWait(final TimeUnit unit) {
+		return unit.convert((long) Math.max(mQueueWait, 0), TimeUnit.NANOSECONDS);
+	}
+
+	public synchronized long getExecutionTime(final TimeUnit unit) {
+		return unit.convert((long) Math.max(mExecutionTime, 0), TimeUnit.NANOSECONDS);
+	}
+
+	public synchronized void onRequestStarted(final long queueWait) {
+		mQueueWait = smooth(mQueueWait, Math.max(queueWait, 0));
+	}
+
+	public synchronized int onRequestFinished(final long executionTime) {
+		mExecutionTime = smooth(mExecutionTime, Math.max(executionTime, 0));
+
+		if (++mNumSamples >= Defaults.SAMPLE_WINDOW) {
+			mNumSamples = 0;
+			mPoolSize = computePoolSize();
+		}
+		return mPoolSize;
+	}
+
+	private int computePoolSize() {
+		if (mBaselineExecutionTime < 0) {
+			mBaselineExecutionTime = mExecutionTime;
+		} else {
+			mBaselineExecutionTime = Math.min(mExecutionTime, mBaselineExecutionTime * (1 + Defaults.BASELINE_DRIFT));
+		}
+
+		final double gradient = mBaselineExecutionTime > 0 ? mExecutionTime / mBaselineExecutionTime : 1;
+
+		if (gradient > Defaults.MAX_EXECUTION_GRADIENT) {
+			return decrease(mPoolSize);
+		} else if (mQueueWait > mTargetQueueWait) {
+			return Math.min(mPoolSize + 1, mMaxPoolSize);
+		} else if (mQueueWait < mTargetQueueWait / 4) {
+			return decrease(mPoolSize);
+		} else {
+			return mPoolSize;
+		}
+	}
+
+	private int decrease(final int poolSize) {
+		final int decreased = Math.min(poolSize - 1, (int) (poolSize * Defaults.DECREASE_FACTOR));
+		return Math.max(decreased, mMinPoolSize);
+	}
+
+	private static double smooth(final double average, final double sample) {
+		if (average < 0) {
+			return sample;
+		}
+		return average + Defaults.SMOOTHING_FACTOR * (sample - average);
+	}
+}
@@ -0,0 +1,78 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.TimeUnit;
+
+// A lane at index i whose head has waited w ranks as i * (1 - w / maxWait).
+public class AgingSchedulingPolicy implements SchedulingPolicy {
+
+	private final long[] mMaxWaits;
+
+	public AgingSchedulingPolicy(final long[] maxWaits, final TimeUnit timeUnit) {
+		if (maxWaits == null || timeUnit == null)
+			throw new IllegalArgumentException("Max waits and time unit cannot be null.");
+
+		mMaxWaits = new long[maxWaits.length];
+
+		for (int i = 0; i < maxWaits.length; i++) {
+			if (maxWaits[i] <= 0) {
+				throw new IllegalArgumentException("The max wait provided at index " + i + " must be positive!");
+			}
+			mMaxWaits[i] = timeUnit.toNanos(maxWaits[i]);
+		}
+	}
+
+	public long getMaxWait(final int accessorIndex, final TimeUnit timeUnit) {
+		return timeUnit.convert(mMaxWaits[accessorIndex], TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public int nextAccessorIndex(final PriorityAccessor[] accessors, final long now) {
+		return nextAccessorIndex(accessors, accessors.length - 1, now);
+	}
+
+	@Override
+	public int nextAccessorIndex(final PriorityAccessor[] accessors, final int maxAccessorIndex, final long now) {
+		int index = -1;
+		double best = Double.MAX_VALUE;
+
+		for (int i = 0; i <= maxAccessorIndex; i++) {
+			final PrioritizableRequest request = accessors[i].peek();
+			if (request != null) {
+				final double effective = getEffectivePriority(i, request, now);
+				if (effective < best) {
+					best = effective;
+					index = i;
+				}
+			}
+		}
+		return index;
+	}
+
+	@Override
+	public void onDispatched(final int accessorIndex, final PrioritizableRequest request) {
+	}
+
+	private double getEffectivePriority(final int accessorIndex, final PrioritizableRequest request, final long now) {
+		if (accessorIndex == 0 || accessorIndex >= mMaxWaits.length) {
+			return accessorIndex;
+		}
+		final double waited = now - request.getQueuedTime();
+		return accessorIndex * (1.0 - waited / mMaxWaits[accessorIndex]);
+	}
+
+}
@@ -18,32 +18,81 @@ package io.pivotal.arca.threading;
 import java.util.AbstractQueue;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>, PromotableQueue {
 
 	private final AuxiliaryQueue mQueue;
 	private final ReentrantLock mLock = new ReentrantLock(true);
 	private final Condition mNotEmpty;
-	private int mCount = 0;
+	private final Condition mNotFull;
+	private final int mCapacity;
+	private final int[] mLaneCapacities;
+	private final RejectionPolicy mRejectionPolicy;
+	private volatile boolean mHasReservedWorkers;
 
 	public AuxiliaryBlockingQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer) {
-		mQueue = new AuxiliaryQueue(accessors, observer);
+		this(accessors, observer, new StrictSchedulingPolicy());
+	}
+
+	public AuxiliaryBlockingQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer, final SchedulingPolicy policy) {
+		this(accessors, observer, policy, Integer.MAX_VALUE, null, RejectionPolicy.FAIL_FAST);
+	}
+
+	public AuxiliaryBlockingQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer, final SchedulingPolicy policy, final int capacity, final int[] laneCapacities,
+			final RejectionPolicy rejectionPolicy) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+
+		if (rejectionPolicy == null)
+			throw new IllegalArgumentException("Rejection policy cannot be null.");
+
+		mQueue = new AuxiliaryQueue(accessors, observer, policy);
 		mNotEmpty = mLock.newCondition();
+		mNotFull = mLock.newCondition();
+		mCapacity = capacity;
+		mRejectionPolicy = rejectionPolicy;
+
+		if (laneCapacities != null) {
+			if (laneCapacities.length > accessors.length) {
+				throw new IllegalArgumentException("Cannot provide more lane capacities than accessors.");
+			}
+			mLaneCapacities = new int[laneCapacities.length];
+			for (int i = 0; i < laneCapacities.length; i++) {
+				if (laneCapacities[i] <= 0) {
+					throw new IllegalArgumentException("The lane capacity provided at index " + i + " must be positive!");
+				}
+				mLaneCapacities[i] = laneCapacities[i];
+			}
+		} else {
+			mLaneCapacities = null;
+		}
 	}
 
 	@Override
 	public boolean offer(final Runnable e) {
 		checkNotNull(e);
+		final PrioritizableRequest request = (PrioritizableRequest) e;
 		mLock.lock();
 		try {
-			insert(e);
+			while (!makeRoomFor(request)) {
+				if (mRejectionPolicy != RejectionPolicy.BLOCK_CALLER) {
+					return false;
+				}
+				mNotFull.await();
+			}
+			insert(request);
 			return true;
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
@@ -64,6 +113,7 @@ public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements B
 			return extract();
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
@@ -75,12 +125,33 @@ public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements B
 				;
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
 	@Override
 	public Iterator<Runnable> iterator() {
-		return null;
+		final Object[] requests;
+		mLock.lock();
+		try {
+			requests = mQueue.buildArray();
+		} finally {
+			mLock.unlock();
+		}
+		return new RequestArrayIterator(requests, this);
+	}
+
+	public QueueSnapshot snapshot() {
+		final List<List<PrioritizableRequest>> lanes;
+		final long time;
+		mLock.lock();
+		try {
+			lanes = mQueue.copyLanes();
+			time = System.nanoTime();
+		} finally {
+			mLock.unlock();
+		}
+		return new QueueSnapshot(lanes, time);
 	}
 
 	@Override
@@ -99,18 +170,15 @@ public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements B
 		mLock.lock();
 		try {
 			int numDrained = 0;
-			while (mQueue.size() > 0) {
-				final Runnable runnable = extract();
-				if (runnable == null) {
-					break;
-				}
+			Runnable runnable;
+			while ((runnable = extract()) != null) {
 				collection.add(runnable);
 				numDrained++;
 			}
-			// FIXME We need to signal an empty queue here.
 			return numDrained;
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
@@ -131,76 +199,174 @@ public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements B
 			return numDrained;
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
 	@Override
 	public boolean remove(final Object object) {
-		return false; // TODO need to implement
+		if (!(object instanceof PrioritizableRequest)) {
+			return false;
+		}
+		mLock.lock();
+		try {
+			final boolean removed = mQueue.remove((PrioritizableRequest) object);
+			signalNotFull();
+			return removed;
+		} finally {
+			mLock.unlock();
+		}
 	}
 
+	// Promotion ignores lane capacities, since the request is already queued
+	// and only changes lanes.
 	@Override
-	public boolean removeAll(final Collection<?> collection) {
-		return false; // TODO need to implement
+	public boolean promote(final PrioritizableRequest request, final int accessorIndex, final long deadline) {
+		mLock.lock();
+		try {
+			final boolean promoted = mQueue.promote(request, accessorIndex, deadline);
+			if (promoted && mHasReservedWorkers) {
+				mNotEmpty.signalAll();
+			}
+			signalNotFull();
+			return promoted;
+		} finally {
+			mLock.unlock();
+		}
 	}
 
 	@Override
-	public boolean offer(final Runnable e, final long timeout, final TimeUnit unit) throws InterruptedException {
-		checkNotNull(e);
-		mLock.lockInterruptibly();
+	public boolean removeAll(final Collection<?> collection) {
+		checkNotNull(collection);
+		mLock.lock();
 		try {
-			insert(e);
-			return true;
+			boolean modified = false;
+			for (final Object object : collection) {
+				if (object instanceof PrioritizableRequest) {
+					modified |= mQueue.remove((PrioritizableRequest) object);
+				}
+			}
+			signalNotFull();
+			return modified;
 		} finally {
 			mLock.unlock();
 		}
 	}
 
 	@Override
-	public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+	public boolean offer(final Runnable e, final long timeout, final TimeUnit unit) throws InterruptedException {
+		checkNotNull(e);
+		final PrioritizableRequest request = (PrioritizableRequest) e;
 		long nanos = unit.toNanos(timeout);
 		mLock.lockInterruptibly();
 		try {
-			Runnable runnable = extract();
-			while (runnable == null) {
+			while (!makeRoomFor(request)) {
 				if (nanos <= 0) {
-					return null;
+					return false;
 				}
-				nanos = mNotEmpty.awaitNanos(nanos);
-				runnable = extract();
+				nanos = mNotFull.awaitNanos(nanos);
 			}
-			return runnable;
+			insert(request);
+			return true;
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
+	@Override
+	public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		Runnable runnable;
+		do {
+			mLock.lockInterruptibly();
+			try {
+				runnable = extractForWorker();
+				// Expired requests are reported before waiting again.
+				if (runnable == null && nanos > 0 && !mQueue.hasDroppedRequests()) {
+					nanos = mNotEmpty.awaitNanos(nanos);
+					runnable = extractForWorker();
+				}
+			} finally {
+				mLock.unlock();
+				mQueue.dispatchDroppedRequests();
+			}
+		} while (runnable == null && nanos > 0);
+		return runnable;
+	}
+
 	@Override
 	public void put(final Runnable e) throws InterruptedException {
 		checkNotNull(e);
+		final PrioritizableRequest request = (PrioritizableRequest) e;
 		mLock.lockInterruptibly();
 		try {
-			insert(e);
+			while (!makeRoomFor(request)) {
+				mNotFull.await();
+			}
+			insert(request);
 		} finally {
 			mLock.unlock();
+			mQueue.dispatchDroppedRequests();
 		}
 	}
 
 	@Override
 	public int remainingCapacity() {
-		return Integer.MAX_VALUE;
+		if (mCapacity == Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+		mLock.lock();
+		try {
+			return mCapacity - mQueue.size();
+		} finally {
+			mLock.unlock();
+		}
 	}
 
 	@Override
 	public Runnable take() throws InterruptedException {
+		Runnable runnable;
+		do {
+			mLock.lockInterruptibly();
+			try {
+				runnable = extractForWorker();
+				// Expired requests are reported before waiting again.
+				if (runnable == null && !mQueue.hasDroppedRequests()) {
+					mNotEmpty.await();
+					runnable = extractForWorker();
+				}
+			} finally {
+				mLock.unlock();
+				mQueue.dispatchDroppedRequests();
+			}
+		} while (runnable == null);
+		return runnable;
+	}
+
+	// Callers that hold a lock of their own can wait for room here without
+	// it, so a blocking offer never stalls them while they hold it.
+	public boolean hasRoomFor(final PrioritizableRequest request) {
+		if (mRejectionPolicy != RejectionPolicy.BLOCK_CALLER) {
+			return true;
+		}
+		mLock.lock();
+		try {
+			return !isFull() && !isLaneFull(request.getAccessorIndex());
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	public void awaitRoomFor(final PrioritizableRequest request) throws InterruptedException {
+		if (mRejectionPolicy != RejectionPolicy.BLOCK_CALLER) {
+			return;
+		}
 		mLock.lockInterruptibly();
 		try {
-			Runnable runnable = extract();
-			while (runnable == null) {
-				mNotEmpty.await();
-				runnable = extract();
+			while (isFull() || isLaneFull(request.getAccessorIndex())) {
+				mNotFull.await();
 			}
-			return runnable;
 		} finally {
 			mLock.unlock();
 		}
@@ -215,31 +381,80 @@ public class AuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements B
 		}
 	}
 
-	private void insert(final Runnable r) {
-		mQueue.add((PrioritizableRequest) r);
-		mCount++;
-		if (mCount == 1) {
-			mNotEmpty.signal();
+	// Once some workers are reserved, a single signal could wake one that is
+	// not allowed to take the new request, so every waiting worker is woken.
+	void setHasReservedWorkers(final boolean hasReservedWorkers) {
+		mHasReservedWorkers = hasReservedWorkers;
+	}
+
+	private void insert(final PrioritizableRequest request) {
+		if (mQueue.add(request)) {
+			if (mHasReservedWorkers) {
+				mNotEmpty.signalAll();
+			} else {
+				mNotEmpty.signal();
+			}
 		}
 	}
 
 	private PrioritizableRequest extract() {
-		PrioritizableRequest request;
-		do {
-			request = mQueue.removeHighestPriorityRunnable();
-			if (mCount > 0) {
-				if (request != null) {
-					mCount--;
-				} else {
-					mCount = mQueue.size();
+		final PrioritizableRequest request = mQueue.removeHighestPriorityRunnable();
+		signalNotFull();
+		return request;
+	}
+
+	private PrioritizableRequest extractForWorker() {
+		if (!mHasReservedWorkers) {
+			return extract();
+		}
+		final PrioritizableRequest request = mQueue.removeHighestPriorityRunnable(ReservedThreadFactory.getMaxAccessorIndex());
+		signalNotFull();
+		return request;
+	}
+
+	private boolean makeRoomFor(final PrioritizableRequest request) {
+		final int index = request.getAccessorIndex();
+		while (isFull() || isLaneFull(index)) {
+			if (!evictFor(index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean evictFor(final int index) {
+		switch (mRejectionPolicy) {
+		case DROP_OLDEST_IN_LANE:
+			return mQueue.evictOldestRunnable(index);
+
+		case DROP_LOWEST_PRIORITY:
+			if (isLaneFull(index)) {
+				return mQueue.evictLowestPriorityRunnable(index);
+			}
+			// Only requests of equal or lower priority make way.
+			for (int i = mQueue.getAccessorCount() - 1; i >= index; i--) {
+				if (mQueue.size(i) > 0) {
+					return mQueue.evictLowestPriorityRunnable(i);
 				}
 			}
-		} while ((request == null || request.isCancelled()) && mCount > 0);
+			return false;
 
-		if (request == null) {
-			return null;
-		} else {
-			return request.isCancelled() ? null : request;
+		default:
+			return false;
+		}
+	}
+
+	private boolean isFull() {
+		return mQueue.size() >= mCapacity;
+	}
+
+	private boolean isLaneFull(final int index) {
+		return mLaneCapacities != null && index < mLaneCapacities.length && mQueue.size(index) >= mLaneCapacities[index];
+	}
+
+	private void signalNotFull() {
+		if (mLock.hasWaiters(mNotFull)) {
+			mNotFull.signalAll();
 		}
 	}
 
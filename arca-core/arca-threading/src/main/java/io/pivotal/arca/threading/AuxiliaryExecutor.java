@@ -41,6 +41,16 @@ public interface AuxiliaryExecutor {
 		private final PriorityAccessor[] mPriorityAccessors;
 		private final AuxiliaryExecutorObserver mObserver;
 		private boolean mAllowCoreThreadTimeOut;
+		private boolean mUseConcurrentQueue;
+		private boolean mUseWorkStealing;
+		private boolean mUseKeyedLanes;
+		private boolean mUseRecycling;
+		private SchedulingPolicy mSchedulingPolicy = new StrictSchedulingPolicy();
+		private int mCapacity = Integer.MAX_VALUE;
+		private int[] mLaneCapacities;
+		private RejectionPolicy mRejectionPolicy = RejectionPolicy.FAIL_FAST;
+		private AdaptivePoolController mPoolController;
+		private int[] mReservedThreads;
 
 		public Builder(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer) {
 			if (accessors == null)
@@ -74,11 +84,197 @@ public interface AuxiliaryExecutor {
 			return this;
 		}
 
-		public AuxiliaryExecutor create() {
-			final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(mPriorityAccessors, mObserver);
-			final DefaultAuxiliaryExecutor executor = new DefaultAuxiliaryExecutor(mCorePoolSize, mCorePoolSize + mAdditionalThreads, mKeepAliveTime, mTimeUnit, queue, mObserver);
+		public Builder useConcurrentQueue() {
+			mUseConcurrentQueue = true;
+			return this;
+		}
+
+		public Builder useWorkStealing() {
+			mUseWorkStealing = true;
+			return this;
+		}
+
+		public Builder useKeyedLanes() {
+			mUseKeyedLanes = true;
+			return this;
+		}
+
+		// Removed queue nodes and retired de-duplication entries are kept in
+		// small pools and reused, so a warm executor allocates less per request.
+		public Builder useRecycling() {
+			mUseRecycling = true;
+			return this;
+		}
+
+		public Builder setSchedulingPolicy(final SchedulingPolicy policy) {
+			if (policy == null)
+				throw new IllegalArgumentException("Scheduling policy cannot be null.");
+
+			mSchedulingPolicy = policy;
+			return this;
+		}
+
+		public Builder setCapacity(final int capacity) {
+			mCapacity = capacity;
+			return this;
+		}
+
+		public Builder setLaneCapacities(final int... laneCapacities) {
+			mLaneCapacities = laneCapacities;
+			return this;
+		}
+
+		public Builder setRejectionPolicy(final RejectionPolicy policy) {
+			if (policy == null)
+				throw new IllegalArgumentException("Rejection policy cannot be null.");
+
+			mRejectionPolicy = policy;
+			return this;
+		}
+
+		// Reserves threads that only run requests whose accessor index is at
+		// most the given one, so lower priority work cannot occupy them.
+		public Builder reserveThreads(final int accessorIndex, final int numThreads) {
+			if (accessorIndex < 0 || accessorIndex >= mPriorityAccessors.length)
+				throw new IllegalArgumentException("The accessor index " + accessorIndex + " is out of bounds!");
+
+			if (numThreads < 0)
+				throw new IllegalArgumentException("Reserved thread count cannot be negative.");
+
+			if (mReservedThreads == null) {
+				mReservedThreads = new int[mPriorityAccessors.length];
+			}
+			mReservedThreads[accessorIndex] = numThreads;
+			return this;
+		}
+
+		public Builder setPoolController(final AdaptivePoolController controller) {
+			mPoolController = controller;
+			return this;
+		}
+
+		public ManagedAuxiliaryExecutor create() {
+			final ExecutorMetrics metrics = new ExecutorMetrics(mPriorityAccessors.length);
+			final RequestFutures futures = new RequestFutures(new MetricsObserver(metrics, mObserver));
+			if (mUseKeyedLanes) {
+				final KeyedAuxiliaryExecutor executor = new KeyedAuxiliaryExecutor(futures);
+				executor.setDelegate(createExecutor(new RequestFutures(executor.getLaneObserver()), metrics));
+				return executor;
+			}
+			return createExecutor(futures, metrics);
+		}
+
+		// The queue reports the requests it drops to its own observer, so it
+		// is given the futures the executor settles as well.
+		private ManagedAuxiliaryExecutor createExecutor(final RequestFutures futures, final ExecutorMetrics metrics) {
+			if (mUseWorkStealing) {
+				final WorkStealingAuxiliaryExecutor executor = createWorkStealingExecutor(futures, metrics);
+				executor.setRecycling(mUseRecycling);
+				return executor;
+			}
+
+			final BlockingQueue<Runnable> queue = createQueue(futures);
+			final DefaultAuxiliaryExecutor executor;
+			if (mPoolController != null) {
+				// The controller owns the core size, growing it up to its maximum.
+				final int maxPoolSize = Math.max(mPoolController.getMaxPoolSize(), mCorePoolSize + mAdditionalThreads);
+				executor = new DefaultAuxiliaryExecutor(mPoolController.getMinPoolSize(), maxPoolSize, mKeepAliveTime, mTimeUnit, queue, futures, mPoolController, metrics);
+			} else {
+				executor = new DefaultAuxiliaryExecutor(mCorePoolSize, mCorePoolSize + mAdditionalThreads, mKeepAliveTime, mTimeUnit, queue, futures, null, metrics);
+			}
 			executor.allowCoreThreadTimeOut(mAllowCoreThreadTimeOut);
+			executor.setRecycling(mUseRecycling);
+
+			if (mReservedThreads != null) {
+				reserveThreads(executor);
+			}
 			return executor;
 		}
+
+		private void reserveThreads(final DefaultAuxiliaryExecutor executor) {
+			if (mUseConcurrentQueue) {
+				throw new IllegalStateException("Reserved threads are not supported by the concurrent queue.");
+			}
+
+			int numReserved = 0;
+			for (final int reserved : mReservedThreads) {
+				numReserved += reserved;
+			}
+
+			final int minPoolSize = mPoolController != null ? mPoolController.getMinPoolSize() : mCorePoolSize;
+			if (numReserved >= minPoolSize) {
+				throw new IllegalStateException("At least one core thread must be left unreserved.");
+			}
+			executor.reserveThreads(mReservedThreads);
+		}
+
+		private WorkStealingAuxiliaryExecutor createWorkStealingExecutor(final AuxiliaryExecutorObserver observer, final ExecutorMetrics metrics) {
+			if (mUseConcurrentQueue || mCapacity != Integer.MAX_VALUE || mLaneCapacities != null) {
+				throw new IllegalStateException("The work-stealing executor does not use a shared queue.");
+			}
+			if (!(mSchedulingPolicy instanceof StrictSchedulingPolicy) || mPoolController != null) {
+				throw new IllegalStateException("The work-stealing executor only supports strict priorities and a fixed pool.");
+			}
+			if (mReservedThreads != null) {
+				throw new IllegalStateException("The work-stealing executor does not support reserved threads.");
+			}
+			return new WorkStealingAuxiliaryExecutor(mCorePoolSize + mAdditionalThreads, mPriorityAccessors, observer, metrics);
+		}
+
+		private BlockingQueue<Runnable> createQueue(final AuxiliaryExecutorObserver observer) {
+			if (mUseConcurrentQueue) {
+				if (mCapacity != Integer.MAX_VALUE || mLaneCapacities != null) {
+					throw new IllegalStateException("The concurrent queue does not support capacity limits.");
+				}
+				return new ConcurrentAuxiliaryBlockingQueue(mPriorityAccessors, observer, mSchedulingPolicy);
+			} else {
+				if (evictsToMakeRoom() && !hasManagedAccessors()) {
+					throw new IllegalStateException("Only managed accessors can evict requests to make room.");
+				}
+				if (evictsToMakeRoom() && hasConcurrentAccessors()) {
+					throw new IllegalStateException("Concurrent accessors cannot evict requests to make room.");
+				}
+				if (mUseRecycling) {
+					recycleAccessorNodes();
+				}
+				return new AuxiliaryBlockingQueue(mPriorityAccessors, observer, mSchedulingPolicy, mCapacity, mLaneCapacities, mRejectionPolicy);
+			}
+		}
+
+		// Lock-free accessors keep their own nodes, which cannot be reused
+		// without ABA hazards.
+		private void recycleAccessorNodes() {
+			for (final PriorityAccessor accessor : mPriorityAccessors) {
+				if (accessor instanceof QueuePriorityAccessor) {
+					((QueuePriorityAccessor) accessor).setRecycling(true);
+				} else if (accessor instanceof StackPriorityAccessor) {
+					((StackPriorityAccessor) accessor).setRecycling(true);
+				}
+			}
+		}
+
+		private boolean evictsToMakeRoom() {
+			final boolean bounded = mCapacity != Integer.MAX_VALUE || mLaneCapacities != null;
+			return bounded && (mRejectionPolicy == RejectionPolicy.DROP_LOWEST_PRIORITY || mRejectionPolicy == RejectionPolicy.DROP_OLDEST_IN_LANE);
+		}
+
+		private boolean hasManagedAccessors() {
+			for (final PriorityAccessor accessor : mPriorityAccessors) {
+				if (!(accessor instanceof ManagedPriorityAccessor)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// Concurrent accessors can only be detached from the front.
+		private boolean hasConcurrentAccessors() {
+			for (final PriorityAccessor accessor : mPriorityAccessors) {
+				if (accessor instanceof ConcurrentPriorityAccessor) {
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 }
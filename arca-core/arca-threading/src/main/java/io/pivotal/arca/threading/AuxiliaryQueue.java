@@ -15,15 +15,32 @@
  */
 package io.pivotal.arca.threading;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 class AuxiliaryQueue {
 
 	private final PriorityAccessor[] mPriorityAccessors;
 	private final AuxiliaryExecutorObserver mObserver;
+	private final SchedulingPolicy mSchedulingPolicy;
+	private final Queue<DroppedRequest> mDropped = new ConcurrentLinkedQueue<DroppedRequest>();
+	private final Queue<PrioritizableRequest> mCancelled = new ConcurrentLinkedQueue<PrioritizableRequest>();
 	private final int mNumAccessors;
+	private int mCount;
 
 	public AuxiliaryQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer) {
+		this(accessors, observer, new StrictSchedulingPolicy());
+	}
+
+	public AuxiliaryQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer, final SchedulingPolicy policy) {
+		if (policy == null)
+			throw new IllegalArgumentException("Scheduling policy cannot be null.");
+
+		mSchedulingPolicy = policy;
 		mNumAccessors = accessors.length;
 		mPriorityAccessors = new PriorityAccessor[mNumAccessors];
 		mObserver = observer;
@@ -36,77 +53,185 @@ class AuxiliaryQueue {
 		}
 	}
 
-	public synchronized void add(final PrioritizableRequest request) {
+	public synchronized boolean add(final PrioritizableRequest request) {
+		final PriorityAccessor accessor = mPriorityAccessors[request.getAccessorIndex()];
+		final int size = accessor.size();
+		accessor.attach(request);
+
+		// Re-adding a request that is already queued only moves it.
+		final boolean added = accessor.size() > size;
+		if (added) {
+			request.setQueuedTime(System.nanoTime());
+			mCount++;
+		}
+		return added;
+	}
+
+	public synchronized boolean remove(final PrioritizableRequest request) {
 		final int index = request.getAccessorIndex();
-		mPriorityAccessors[index].attach(request);
+		if (index < mNumAccessors && remove(mPriorityAccessors[index], request)) {
+			mCount--;
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized boolean promote(final PrioritizableRequest request, final int accessorIndex, final long deadline) {
+		if (accessorIndex >= mNumAccessors || !remove(request)) {
+			return false;
+		}
+		request.setAccessorIndex(accessorIndex);
+		request.setDeadline(deadline);
+		mPriorityAccessors[accessorIndex].attach(request);
+		mCount++;
+		return true;
 	}
 
 	public synchronized PrioritizableRequest removeHighestPriorityRunnable() {
-		PrioritizableRequest request;
-		for (int i = 0; i < mNumAccessors; i++) {
-			while ((request = mPriorityAccessors[i].detachHighestPriorityItem()) != null) {
-				if (!request.isCancelled()) {
-					return request;
-				} else {
-					mObserver.onCancelled(request);
-				}
+		return removeHighestPriorityRunnable(mNumAccessors - 1);
+	}
+
+	// Threads reserved for higher priorities only take from the accessors
+	// within their limit, still in the scheduling policy's order.
+	public synchronized PrioritizableRequest removeHighestPriorityRunnable(final int maxAccessorIndex) {
+		final int max = Math.min(maxAccessorIndex, mNumAccessors - 1);
+		int index;
+		long now = System.nanoTime();
+		while ((index = mSchedulingPolicy.nextAccessorIndex(mPriorityAccessors, max, now)) >= 0) {
+			final PrioritizableRequest request = mPriorityAccessors[index].detachHighestPriorityItem();
+			if (request == null) {
+				break;
+			}
+			mCount--;
+			if (request.isCancelled()) {
+				mCancelled.add(request);
+			} else if (request.isExpired(now)) {
+				mDropped.add(new DroppedRequest(request, DropReason.EXPIRED));
+			} else {
+				mSchedulingPolicy.onDispatched(index, request);
+				return request;
 			}
+			now = System.nanoTime();
 		}
 		return null;
 	}
 
-	public synchronized int size() {
-		int size = 0;
-		for (int i = 0; i < mNumAccessors; i++) {
-			size += mPriorityAccessors[i].size();
+	// Only managed accessors can give up a request from anywhere but the front.
+	public synchronized boolean evictLowestPriorityRunnable(final int accessorIndex) {
+		final PriorityAccessor accessor = mPriorityAccessors[accessorIndex];
+		return accessor instanceof ManagedPriorityAccessor && evict(((ManagedPriorityAccessor) accessor).detachLowestPriorityItem());
+	}
+
+	public synchronized boolean evictOldestRunnable(final int accessorIndex) {
+		final PriorityAccessor accessor = mPriorityAccessors[accessorIndex];
+		return accessor instanceof ManagedPriorityAccessor && evict(((ManagedPriorityAccessor) accessor).detachOldestItem());
+	}
+
+	private boolean evict(final PrioritizableRequest request) {
+		if (request == null) {
+			return false;
 		}
-		return size;
+		mCount--;
+		if (request.isCancelled()) {
+			mCancelled.add(request);
+		} else {
+			mDropped.add(new DroppedRequest(request, DropReason.EVICTED));
+		}
+		return true;
 	}
 
-	public synchronized Runnable peek() {
-		PrioritizableRequest request;
-		for (int i = 0; i < mNumAccessors; i++) {
-			if ((request = mPriorityAccessors[i].peek()) != null) {
-				return request;
-			}
+	public boolean hasDroppedRequests() {
+		return !mDropped.isEmpty() || !mCancelled.isEmpty();
+	}
+
+	// Dropped and cancelled requests are reported outside of any queue lock,
+	// since the observer is free to call back into the executor.
+	public void dispatchDroppedRequests() {
+		PrioritizableRequest cancelled;
+		while ((cancelled = mCancelled.poll()) != null) {
+			mObserver.onCancelled(cancelled);
+		}
+
+		DroppedRequest dropped;
+		while ((dropped = mDropped.poll()) != null) {
+			Observers.notifyDropped(mObserver, dropped.request, dropped.reason);
 		}
-		return null;
 	}
 
-	// TODO Fill in the iterator.
-	public Iterator<Runnable> buildIterator() {
-		return new Iterator<Runnable>() {
-			@Override
-			public boolean hasNext() {
-				return false;
-			}
+	public int getAccessorCount() {
+		return mNumAccessors;
+	}
 
-			@Override
-			public Runnable next() {
-				return null;
-			}
+	public synchronized int size(final int accessorIndex) {
+		return mPriorityAccessors[accessorIndex].size();
+	}
 
-			@Override
-			public void remove() {
-			}
-		};
+	public synchronized int size() {
+		return mCount;
 	}
 
-	// TODO Fill in the "buildArray" method.
-	public Object[] buildArray() {
-		return null;
+	public synchronized Runnable peek() {
+		final int index = mSchedulingPolicy.nextAccessorIndex(mPriorityAccessors, System.nanoTime());
+		return index >= 0 ? mPriorityAccessors[index].peek() : null;
+	}
+
+	// Iterates over a copy in lane order, so the queue can change meanwhile.
+	public Iterator<Runnable> buildIterator() {
+		return new RequestArrayIterator(buildArray(), null);
+	}
+
+	public synchronized Object[] buildArray() {
+		final List<PrioritizableRequest> requests = new ArrayList<PrioritizableRequest>(mCount);
+		for (int i = 0; i < mNumAccessors; i++) {
+			copyTo(mPriorityAccessors[i], requests);
+		}
+		return requests.toArray();
+	}
+
+	public synchronized List<List<PrioritizableRequest>> copyLanes() {
+		final List<List<PrioritizableRequest>> lanes = new ArrayList<List<PrioritizableRequest>>(mNumAccessors);
+		for (int i = 0; i < mNumAccessors; i++) {
+			final List<PrioritizableRequest> lane = new ArrayList<PrioritizableRequest>(mPriorityAccessors[i].size());
+			copyTo(mPriorityAccessors[i], lane);
+			lanes.add(lane);
+		}
+		return lanes;
 	}
 
-	public void clear() {
+	public synchronized void clear() {
 		for (int i = 0; i < mNumAccessors; i++) {
 			mPriorityAccessors[i].clear();
 		}
+		mCount = 0;
 	}
 
 	public boolean isEmpty() {
 		return size() == 0;
 	}
 
+	// Requests in other accessors stay queued until they are extracted, and
+	// a cancelled one is reported then.
+	static boolean remove(final PriorityAccessor accessor, final PrioritizableRequest request) {
+		return accessor instanceof ManagedPriorityAccessor && ((ManagedPriorityAccessor) accessor).remove(request);
+	}
+
+	// Other accessors cannot list their requests without detaching them.
+	static void copyTo(final PriorityAccessor accessor, final Collection<? super PrioritizableRequest> requests) {
+		if (accessor instanceof ManagedPriorityAccessor) {
+			((ManagedPriorityAccessor) accessor).copyTo(requests);
+		}
+	}
+
+	private static final class DroppedRequest {
+		final PrioritizableRequest request;
+		final DropReason reason;
+
+		DroppedRequest(final PrioritizableRequest request, final DropReason reason) {
+			this.request = request;
+			this.reason = reason;
+		}
+	}
+
 	public interface OnRemovedListener {
 		public void onRemoved();
 
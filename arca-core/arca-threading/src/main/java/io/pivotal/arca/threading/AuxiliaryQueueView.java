@@ -0,0 +1,104 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A read-mostly view for callers that inspect getQueue() on executors that
+// do not queue through a single BlockingQueue. Mutators other than
+// remove(Object) are unsupported, since requests are only queued through execute().
+abstract class AuxiliaryQueueView extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	// A copy of the queued requests, in the order they would run.
+	protected abstract List<Runnable> snapshot();
+
+	@Override
+	public Iterator<Runnable> iterator() {
+		return Collections.unmodifiableList(snapshot()).iterator();
+	}
+
+	@Override
+	public Object[] toArray() {
+		return snapshot().toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(final T[] array) {
+		return snapshot().toArray(array);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean offer(final Runnable e) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean offer(final Runnable e, final long timeout, final TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void put(final Runnable e) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Runnable peek() {
+		final List<Runnable> snapshot = snapshot();
+		return snapshot.isEmpty() ? null : snapshot.get(0);
+	}
+
+	@Override
+	public Runnable poll() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Runnable poll(final long timeout, final TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Runnable take() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Runnable> collection) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Runnable> collection, final int maxNumberToDrain) {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,267 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentAuxiliaryBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>, PromotableQueue {
+
+	private final PriorityAccessor[] mPriorityAccessors;
+	private final AuxiliaryExecutorObserver mObserver;
+	private final SchedulingPolicy mSchedulingPolicy;
+	private final int mNumAccessors;
+
+	private final ReentrantLock mLock = new ReentrantLock();
+	private final Condition mNotEmpty = mLock.newCondition();
+	private final AtomicInteger mNumWaiting = new AtomicInteger();
+
+	public ConcurrentAuxiliaryBlockingQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer) {
+		this(accessors, observer, new StrictSchedulingPolicy());
+	}
+
+	public ConcurrentAuxiliaryBlockingQueue(final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer, final SchedulingPolicy policy) {
+		if (policy == null)
+			throw new IllegalArgumentException("Scheduling policy cannot be null.");
+
+		mSchedulingPolicy = policy;
+		mNumAccessors = accessors.length;
+		mPriorityAccessors = new PriorityAccessor[mNumAccessors];
+		mObserver = observer;
+
+		for (int i = 0; i < mNumAccessors; i++) {
+			if (accessors[i] == null) {
+				throw new IllegalArgumentException("The accessor provided at index " + i + " is null!");
+			}
+			mPriorityAccessors[i] = accessors[i];
+		}
+	}
+
+	@Override
+	public boolean offer(final Runnable e) {
+		checkNotNull(e);
+		insert(e);
+		return true;
+	}
+
+	@Override
+	public Runnable peek() {
+		final int index = mSchedulingPolicy.nextAccessorIndex(mPriorityAccessors, System.nanoTime());
+		return index >= 0 ? mPriorityAccessors[index].peek() : null;
+	}
+
+	@Override
+	public Runnable poll() {
+		return extract();
+	}
+
+	@Override
+	public void clear() {
+		while (extract() != null)
+			;
+	}
+
+	@Override
+	public Iterator<Runnable> iterator() {
+		final List<PrioritizableRequest> requests = new ArrayList<PrioritizableRequest>();
+		for (int i = 0; i < mNumAccessors; i++) {
+			AuxiliaryQueue.copyTo(mPriorityAccessors[i], requests);
+		}
+		return new RequestArrayIterator(requests.toArray(), this);
+	}
+
+	// There is no lock to hold, so each lane is copied separately and the
+	// snapshot is only weakly consistent across lanes.
+	public QueueSnapshot snapshot() {
+		final List<List<PrioritizableRequest>> lanes = new ArrayList<List<PrioritizableRequest>>(mNumAccessors);
+		for (int i = 0; i < mNumAccessors; i++) {
+			final List<PrioritizableRequest> lane = new ArrayList<PrioritizableRequest>();
+			AuxiliaryQueue.copyTo(mPriorityAccessors[i], lane);
+			lanes.add(lane);
+		}
+		return new QueueSnapshot(lanes, System.nanoTime());
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < mNumAccessors; i++) {
+			size += mPriorityAccessors[i].size();
+		}
+		return size;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Runnable> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Runnable> collection, final int maxNumberToDrain) {
+		checkNotNull(collection);
+		int numDrained = 0;
+		while (numDrained < maxNumberToDrain) {
+			final Runnable runnable = extract();
+			if (runnable == null) {
+				break;
+			}
+			collection.add(runnable);
+			numDrained++;
+		}
+		return numDrained;
+	}
+
+	@Override
+	public boolean remove(final Object object) {
+		if (!(object instanceof PrioritizableRequest)) {
+			return false;
+		}
+		final PrioritizableRequest request = (PrioritizableRequest) object;
+		final int index = request.getAccessorIndex();
+		return index < mNumAccessors && AuxiliaryQueue.remove(mPriorityAccessors[index], request);
+	}
+
+	@Override
+	public boolean promote(final PrioritizableRequest request, final int accessorIndex, final long deadline) {
+		if (accessorIndex >= mNumAccessors || !remove(request)) {
+			return false;
+		}
+		request.setAccessorIndex(accessorIndex);
+		request.setDeadline(deadline);
+		mPriorityAccessors[accessorIndex].attach(request);
+		signalNotEmpty();
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(final Collection<?> collection) {
+		checkNotNull(collection);
+		boolean modified = false;
+		for (final Object object : collection) {
+			modified |= remove(object);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean offer(final Runnable e, final long timeout, final TimeUnit unit) throws InterruptedException {
+		return offer(e);
+	}
+
+	@Override
+	public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		Runnable runnable;
+		while ((runnable = extract()) == null) {
+			if (nanos <= 0) {
+				return null;
+			}
+			nanos = awaitNotEmpty(nanos);
+		}
+		return runnable;
+	}
+
+	@Override
+	public void put(final Runnable e) throws InterruptedException {
+		offer(e);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		Runnable runnable;
+		while ((runnable = extract()) == null) {
+			awaitNotEmpty(Long.MAX_VALUE);
+		}
+		return runnable;
+	}
+
+	private void insert(final Runnable r) {
+		final PrioritizableRequest request = (PrioritizableRequest) r;
+		request.setQueuedTime(System.nanoTime());
+		mPriorityAccessors[request.getAccessorIndex()].attach(request);
+		signalNotEmpty();
+	}
+
+	private void signalNotEmpty() {
+		if (mNumWaiting.get() > 0) {
+			mLock.lock();
+			try {
+				mNotEmpty.signal();
+			} finally {
+				mLock.unlock();
+			}
+		}
+	}
+
+	private PrioritizableRequest extract() {
+		int index;
+		long now = System.nanoTime();
+		while ((index = mSchedulingPolicy.nextAccessorIndex(mPriorityAccessors, now)) >= 0) {
+			// Another consumer may win the race for the peeked item, in
+			// which case the policy is simply consulted again.
+			final PrioritizableRequest request = mPriorityAccessors[index].detachHighestPriorityItem();
+			if (request == null) {
+				continue;
+			}
+			if (request.isCancelled()) {
+				mObserver.onCancelled(request);
+			} else if (request.isExpired(now)) {
+				Observers.notifyDropped(mObserver, request, DropReason.EXPIRED);
+			} else {
+				mSchedulingPolicy.onDispatched(index, request);
+				return request;
+			}
+			now = System.nanoTime();
+		}
+		return null;
+	}
+
+	private long awaitNotEmpty(final long nanos) throws InterruptedException {
+		mLock.lockInterruptibly();
+		mNumWaiting.incrementAndGet();
+		try {
+			// Producers only signal when they see a waiter, so the lanes are
+			// checked again after registering to avoid a lost wake-up.
+			if (size() == 0) {
+				return mNotEmpty.awaitNanos(nanos);
+			}
+			return nanos;
+		} finally {
+			mNumWaiting.decrementAndGet();
+			mLock.unlock();
+		}
+	}
+
+	private static void checkNotNull(final Object o) {
+		if (o == null) {
+			throw new NullPointerException();
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+abstract class ConcurrentPriorityAccessor implements ManagedPriorityAccessor {
+
+	private static final int MIN_DEAD_NODES_TO_UNLINK = 64;
+
+	private final ConcurrentMap<PrioritizableRequest, Node> mNodeMap = new ConcurrentHashMap<PrioritizableRequest, Node>();
+	private final AtomicInteger mSize = new AtomicInteger();
+	private final AtomicInteger mNumDead = new AtomicInteger();
+	private final AtomicBoolean mUnlinking = new AtomicBoolean();
+
+	// A node lets go of its request when it dies, so dead nodes that are
+	// still linked in do not keep requests alive.
+	static final class Node {
+		private final AtomicReference<PrioritizableRequest> data;
+		volatile Node next;
+
+		Node(final PrioritizableRequest data) {
+			this.data = new AtomicReference<PrioritizableRequest>(data);
+		}
+
+		PrioritizableRequest get() {
+			return data.get();
+		}
+
+		boolean isLive() {
+			return data.get() != null;
+		}
+
+		PrioritizableRequest claim() {
+			return data.getAndSet(null);
+		}
+	}
+
+	protected abstract void push(Node node);
+
+	protected abstract Node pop();
+
+	protected abstract Node first();
+
+	protected abstract Iterator<Node> nodes();
+
+	// Unlinks dead nodes from anywhere in the structure. Only one thread
+	// runs this at a time, but pushes and pops may run alongside.
+	protected abstract void unlinkDead();
+
+	@Override
+	public void attach(final PrioritizableRequest request) {
+		final Node node = new Node(request);
+		final Node previous = mNodeMap.put(request, node);
+		push(node);
+
+		// Re-attaching a queued request only moves it, the old node is
+		// left behind dead and skipped when it reaches the front.
+		if (previous != null && previous.claim() != null) {
+			onNodeDied();
+		} else {
+			mSize.incrementAndGet();
+		}
+	}
+
+	@Override
+	public PrioritizableRequest detachHighestPriorityItem() {
+		Node node;
+		while ((node = pop()) != null) {
+			final PrioritizableRequest request = node.claim();
+			if (request != null) {
+				mNodeMap.remove(request, node);
+				mSize.decrementAndGet();
+				return request;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public PrioritizableRequest detachLowestPriorityItem() {
+		throw new UnsupportedOperationException("Concurrent accessors can only be detached from the front.");
+	}
+
+	@Override
+	public PrioritizableRequest detachOldestItem() {
+		throw new UnsupportedOperationException("Concurrent accessors can only be detached from the front.");
+	}
+
+	@Override
+	public PrioritizableRequest peek() {
+		Node node;
+		while ((node = first()) != null) {
+			final PrioritizableRequest request = node.get();
+			if (request != null) {
+				return request;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean remove(final PrioritizableRequest request) {
+		final Node node = mNodeMap.remove(request);
+		if (node != null && node.claim() != null) {
+			mSize.decrementAndGet();
+			onNodeDied();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return Math.max(mSize.get(), 0);
+	}
+
+	// Weakly consistent, like the underlying structures, so a request that is
+	// attached or detached meanwhile may or may not be copied.
+	@Override
+	public void copyTo(final Collection<? super PrioritizableRequest> requests) {
+		final Iterator<Node> iterator = nodes();
+		while (iterator.hasNext()) {
+			final PrioritizableRequest request = iterator.next().get();
+			if (request != null) {
+				requests.add(request);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		while (detachHighestPriorityItem() != null)
+			;
+	}
+
+	// Nodes removed from the middle stay linked until they reach the front,
+	// so once enough of them pile up they are unlinked in one pass.
+	private void onNodeDied() {
+		final int numDead = mNumDead.incrementAndGet();
+		if (numDead >= MIN_DEAD_NODES_TO_UNLINK && numDead > mSize.get() && mUnlinking.compareAndSet(false, true)) {
+			try {
+				mNumDead.set(0);
+				unlinkDead();
+			} finally {
+				mUnlinking.set(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class ConcurrentQueuePriorityAccessor extends ConcurrentPriorityAccessor {
+	private final Queue<Node> mQueue = new ConcurrentLinkedQueue<Node>();
+
+	@Override
+	protected void push(final Node node) {
+		mQueue.offer(node);
+	}
+
+	@Override
+	protected Node pop() {
+		return mQueue.poll();
+	}
+
+	// Dead nodes passed on the way to the first live one are unlinked.
+	@Override
+	protected Node first() {
+		final Iterator<Node> iterator = mQueue.iterator();
+		while (iterator.hasNext()) {
+			final Node node = iterator.next();
+			if (node.isLive()) {
+				return node;
+			}
+			iterator.remove();
+		}
+		return null;
+	}
+
+	@Override
+	protected Iterator<Node> nodes() {
+		return mQueue.iterator();
+	}
+
+	@Override
+	protected void unlinkDead() {
+		final Iterator<Node> iterator = mQueue.iterator();
+		while (iterator.hasNext()) {
+			if (!iterator.next().isLive()) {
+				iterator.remove();
+			}
+		}
+	}
+}
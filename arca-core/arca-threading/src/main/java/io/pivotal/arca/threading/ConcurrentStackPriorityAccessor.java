@@ -0,0 +1,100 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentStackPriorityAccessor extends ConcurrentPriorityAccessor {
+	private final AtomicReference<Node> mTop = new AtomicReference<Node>();
+
+	@Override
+	protected void push(final Node node) {
+		Node top;
+		do {
+			top = mTop.get();
+			node.next = top;
+		} while (!mTop.compareAndSet(top, node));
+	}
+
+	@Override
+	protected Node pop() {
+		Node top;
+		do {
+			top = mTop.get();
+			if (top == null) {
+				return null;
+			}
+		} while (!mTop.compareAndSet(top, top.next));
+		return top;
+	}
+
+	// Dead nodes on top are popped on the way to the first live one.
+	@Override
+	protected Node first() {
+		Node top;
+		while ((top = mTop.get()) != null && !top.isLive()) {
+			mTop.compareAndSet(top, top.next);
+		}
+		return top;
+	}
+
+	// Nodes are only ever pushed on top, so pointing a node past the dead
+	// ones after it cannot skip a live node. A concurrent pop may briefly
+	// put a dead node back on top, where it is popped like any other.
+	@Override
+	protected void unlinkDead() {
+		Node previous = first();
+		while (previous != null) {
+			Node next = previous.next;
+			while (next != null && !next.isLive()) {
+				next = next.next;
+			}
+			if (previous.next != next) {
+				previous.next = next;
+			}
+			previous = next;
+		}
+	}
+
+	@Override
+	protected Iterator<Node> nodes() {
+		return new Iterator<Node>() {
+			private Node mNext = mTop.get();
+
+			@Override
+			public boolean hasNext() {
+				return mNext != null;
+			}
+
+			@Override
+			public Node next() {
+				if (mNext == null) {
+					throw new NoSuchElementException("No more elements inside of the iterator.");
+				}
+				final Node node = mNext;
+				mNext = node.next;
+				return node;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,89 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+public class DeadlinePriorityAccessor implements ManagedPriorityAccessor {
+
+	private static final Comparator<PrioritizableRequest> DEADLINE_COMPARATOR = new Comparator<PrioritizableRequest>() {
+
+		@Override
+		public int compare(final PrioritizableRequest lhs, final PrioritizableRequest rhs) {
+			final long lhsDeadline = lhs.getDeadline();
+			final long rhsDeadline = rhs.getDeadline();
+
+			if (lhsDeadline == rhsDeadline) {
+				return 0;
+			} else if (lhsDeadline == PrioritizableRequest.NO_DEADLINE) {
+				return 1;
+			} else if (rhsDeadline == PrioritizableRequest.NO_DEADLINE) {
+				return -1;
+			} else {
+				// nanoTime values may wrap, so only their difference is meaningful.
+				return lhsDeadline - rhsDeadline < 0 ? -1 : 1;
+			}
+		}
+	};
+
+	private final IndexedHeap<PrioritizableRequest> mHeap = new IndexedHeap<PrioritizableRequest>(DEADLINE_COMPARATOR);
+
+	@Override
+	public void attach(final PrioritizableRequest request) {
+		mHeap.add(request);
+	}
+
+	@Override
+	public PrioritizableRequest detachHighestPriorityItem() {
+		return mHeap.poll();
+	}
+
+	@Override
+	public PrioritizableRequest detachLowestPriorityItem() {
+		return mHeap.pollLast();
+	}
+
+	@Override
+	public PrioritizableRequest detachOldestItem() {
+		return mHeap.pollEldest();
+	}
+
+	@Override
+	public int size() {
+		return mHeap.size();
+	}
+
+	@Override
+	public PrioritizableRequest peek() {
+		return mHeap.peek();
+	}
+
+	@Override
+	public boolean remove(final PrioritizableRequest request) {
+		return mHeap.remove(request);
+	}
+
+	@Override
+	public void clear() {
+		mHeap.clear();
+	}
+
+	@Override
+	public void copyTo(final Collection<? super PrioritizableRequest> requests) {
+		mHeap.copyTo(requests);
+	}
+}
@@ -15,33 +15,142 @@
  */
 package io.pivotal.arca.threading;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-public class DefaultAuxiliaryExecutor extends ThreadPoolExecutor implements AuxiliaryExecutor {
+public class DefaultAuxiliaryExecutor extends ThreadPoolExecutor implements ManagedAuxiliaryExecutor, DrainableAuxiliaryExecutor {
 
-	private final QueuingMaps mQueuingMaps = new QueuingMaps();
+	private final QueuingMaps mQueuingMaps = new QueuingMaps(new QueuingMaps.OnRequestCancelledListener() {
 
-	private final AuxiliaryExecutorObserver mObserver;
+		@Override
+		public void onRequestCancelled(final PrioritizableRequest request) {
+			unlink(request);
+		}
+	});
+
+	private final RequestFutures mFutures;
+	private final AdaptivePoolController mPoolController;
+	private final ExecutorMetrics mMetrics;
+	private final RequestScheduler mScheduler;
+	private final TagIndex mTags = new TagIndex();
+	private volatile ReservedThreadFactory mReservedThreadFactory;
 
-	public DefaultAuxiliaryExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTime, final TimeUnit unit, final AuxiliaryBlockingQueue queue,
+	public DefaultAuxiliaryExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTime, final TimeUnit unit, final BlockingQueue<Runnable> queue,
 			final AuxiliaryExecutorObserver observer) {
+		this(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, observer, null);
+	}
+
+	public DefaultAuxiliaryExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTime, final TimeUnit unit, final BlockingQueue<Runnable> queue,
+			final AuxiliaryExecutorObserver observer, final AdaptivePoolController controller) {
+		this(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, observer, controller, null);
+	}
+
+	public DefaultAuxiliaryExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTime, final TimeUnit unit, final BlockingQueue<Runnable> queue,
+			final AuxiliaryExecutorObserver observer, final AdaptivePoolController controller, final ExecutorMetrics metrics) {
 		super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue);
-		mObserver = observer;
+		mFutures = RequestFutures.forObserver(observer);
+		mPoolController = controller;
+		mMetrics = metrics;
+		mScheduler = new RequestScheduler(this, mFutures);
+		mFutures.setOnRequestReleasedListener(new RequestFutures.OnRequestReleasedListener() {
+
+			@Override
+			public void onRequestReleased(final PrioritizableRequest request) {
+				mTags.remove(request);
+				requeue(mQueuingMaps.release(request));
+			}
+		});
+	}
+
+	void setRecycling(final boolean recycling) {
+		mQueuingMaps.setRecycling(recycling);
+	}
+
+	// Reserved threads only take requests from the queue, so every core
+	// thread is started up front rather than with a first task.
+	void reserveThreads(final int[] reserved) {
+		final BlockingQueue<Runnable> queue = getQueue();
+		if (!(queue instanceof AuxiliaryBlockingQueue)) {
+			throw new IllegalStateException("Reserved threads require an AuxiliaryBlockingQueue.");
+		}
+		mReservedThreadFactory = new ReservedThreadFactory(reserved);
+		setThreadFactory(mReservedThreadFactory);
+		((AuxiliaryBlockingQueue) queue).setHasReservedWorkers(true);
 	}
 
 	@Override
 	public void execute(final Runnable command) {
 		final PrioritizableRequest request = (PrioritizableRequest) command;
 		if (request.isCancelled()) {
+			notifyCancelled(request);
 			return;
 		}
 
 		if (!isShutdown()) {
+			final PrioritizableRequest carrier = promoteQueued(request);
+			if (carrier != null && mQueuingMaps.absorb(carrier, request)) {
+				mTags.add(request);
+				return;
+			}
+
 			mQueuingMaps.put(request);
+
+			if (request.isCancelled()) {
+				notifyCancelled(request);
+				return;
+			}
+
+			mTags.add(request);
+		}
+
+		request.setQueuedTime(System.nanoTime());
+
+		if (mMetrics != null) {
+			mMetrics.onSubmitted(request);
+		}
+
+		try {
+			if (mReservedThreadFactory != null) {
+				prestartAllCoreThreads();
+				executeUnreserved(request);
+			} else {
+				super.execute(request);
+			}
+		} catch (final RejectedExecutionException e) {
+			if (mMetrics != null) {
+				mMetrics.onRejected(request);
+			}
+			mTags.remove(request);
+			final List<PrioritizableRequest> absorbed = mQueuingMaps.release(request);
+			request.cancel();
+			requeue(absorbed);
+			throw e;
 		}
-		super.execute(request);
+	}
+
+	@Override
+	public RequestFuture<PrioritizableRequest> submit(final Runnable command) {
+		return mFutures.submit(this, command);
+	}
+
+	@Override
+	public void schedule(final Runnable command, final long delay, final TimeUnit unit) {
+		scheduleAt(command, System.nanoTime() + unit.toNanos(delay));
+	}
+
+	@Override
+	public void scheduleAt(final Runnable command, final long time) {
+		if (isShutdown()) {
+			throw new RejectedExecutionException("Executor has been shut down.");
+		}
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		mTags.add(request);
+		mScheduler.schedule(request, time);
 	}
 
 	@Override
@@ -49,26 +158,142 @@ public class DefaultAuxiliaryExecutor extends ThreadPoolExecutor implements Auxi
 		mQueuingMaps.onComplete(identifier);
 	}
 
+	@Override
+	public ExecutorMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	// Drained requests are treated as started by the calling worker, so
+	// their duplicates and metrics are handled as if they had been taken
+	// from the queue by a worker of their own.
+	@Override
+	public int drainTo(final Collection<? super PrioritizableRequest> requests, final int maxRequests, final long timeout, final TimeUnit unit) {
+		final BlockingQueue<Runnable> queue = getQueue();
+		final List<Runnable> drained = new ArrayList<Runnable>();
+		queue.drainTo(drained, maxRequests);
+
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long remaining;
+		while (drained.size() < maxRequests && (remaining = deadline - System.nanoTime()) > 0) {
+			try {
+				final Runnable runnable = queue.poll(remaining, TimeUnit.NANOSECONDS);
+				if (runnable == null) {
+					break;
+				}
+				drained.add(runnable);
+				queue.drainTo(drained, maxRequests - drained.size());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		for (final Runnable runnable : drained) {
+			final PrioritizableRequest request = (PrioritizableRequest) runnable;
+			request.setStartedTime(System.nanoTime());
+			mTags.remove(request);
+
+			if (mMetrics != null) {
+				mMetrics.onStarted(request);
+			}
+
+			notifyBeforeExecuteCalled(request);
+			requests.add(request);
+		}
+		return drained.size();
+	}
+
+	@Override
+	public void finishDrained(final PrioritizableRequest request) {
+		request.setFinishedTime(System.nanoTime());
+
+		if (mMetrics != null) {
+			mMetrics.onFinished(request);
+		}
+
+		notifyReferenceManager(request);
+	}
+
 	@Override
 	public boolean remove(final Runnable task) {
 		final PrioritizableRequest request = (PrioritizableRequest) task;
-		mQueuingMaps.cancel(request);
-		return super.remove(task); // TODO need to actually make this work
+		mTags.remove(request);
+
+		if (mScheduler.remove(request)) {
+			request.cancel();
+			notifyCancelled(request);
+			return true;
+		}
+
+		if (mQueuingMaps.removeAbsorbed(request)) {
+			request.cancel();
+			notifyCancelled(request);
+			return true;
+		}
+
+		final boolean removed = super.remove(request);
+		final List<PrioritizableRequest> absorbed = mQueuingMaps.release(request);
+		request.cancel();
+
+		if (removed) {
+			notifyCancelled(request);
+		}
+		requeue(absorbed);
+		return removed;
+	}
+
+	// A thread created while submitting starts with the request as its first
+	// task, so it must not take a reserved slot.
+	private void executeUnreserved(final PrioritizableRequest request) {
+		mReservedThreadFactory.setReservable(false);
+		try {
+			super.execute(request);
+		} finally {
+			mReservedThreadFactory.setReservable(true);
+		}
 	}
 
 	@Override
 	protected final void beforeExecute(final Thread t, final Runnable r) {
+		final PrioritizableRequest request = (PrioritizableRequest) r;
+		request.setStartedTime(System.nanoTime());
+		mTags.remove(request);
+
+		if (mMetrics != null) {
+			mMetrics.onStarted(request);
+			if (mReservedThreadFactory != null && ReservedThreadFactory.isReservedThread()) {
+				mMetrics.onStartedOnReservedWorker(request);
+			}
+		}
+
+		if (mPoolController != null) {
+			mPoolController.onRequestStarted(request.getStartedTime() - request.getQueuedTime());
+		}
+
 		notifyBeforeExecuteCalled(r);
 		super.beforeExecute(t, r);
 	}
 
 	@Override
 	public void cancelAll() {
+		mScheduler.cancelAll();
 		mQueuingMaps.cancelAll();
 	}
 
+	@Override
+	public int cancel(final Object tag) {
+		int cancelled = 0;
+		for (final PrioritizableRequest request : mTags.removeGroup(tag)) {
+			if (remove(request)) {
+				cancelled++;
+			}
+		}
+		return cancelled;
+	}
+
 	@Override
 	public List<Runnable> shutdownNow() {
+		mScheduler.cancelAll();
 		mQueuingMaps.cancelAll();
 		return super.shutdownNow();
 	}
@@ -77,19 +302,92 @@ public class DefaultAuxiliaryExecutor extends ThreadPoolExecutor implements Auxi
 	protected final void afterExecute(final Runnable r, final Throwable t) {
 		super.afterExecute(r, t);
 		final PrioritizableRequest request = (PrioritizableRequest) r;
+		request.setFinishedTime(System.nanoTime());
+
+		if (mMetrics != null) {
+			mMetrics.onFinished(request);
+		}
+
 		notifyReferenceManager(request);
+
+		if (mPoolController != null) {
+			adjustPoolSize(mPoolController.onRequestFinished(request.getFinishedTime() - request.getStartedTime()));
+		}
 	}
 
-	private void notifyReferenceManager(final PrioritizableRequest request) {
-		if (mObserver != null) {
-			if (!request.isCancelled()) {
-				mObserver.onComplete(request);
-			} else {
-				mObserver.onCancelled(request);
+	// A higher priority duplicate of a queued request moves that request into
+	// its own lane and waits on it, rather than being queued alongside it.
+	// Returns the promoted request, or null if there was none to promote.
+	private PrioritizableRequest promoteQueued(final PrioritizableRequest request) {
+		final PrioritizableRequest queued = mQueuingMaps.getWaiting(request.getIdentifier());
+		if (queued == null || queued == request || request.getAccessorIndex() >= queued.getAccessorIndex()) {
+			return null;
+		}
+
+		final BlockingQueue<Runnable> queue = getQueue();
+		if (!(queue instanceof PromotableQueue)) {
+			return null;
+		}
+
+		final int previousIndex = queued.getAccessorIndex();
+		final long deadline = Math.max(queued.getDeadline(), request.getDeadline());
+		if (!((PromotableQueue) queue).promote(queued, request.getAccessorIndex(), deadline)) {
+			return null;
+		}
+
+		if (mMetrics != null) {
+			mMetrics.onPromoted(queued, previousIndex);
+		}
+		return queued;
+	}
+
+	// Requests that waited on one that left the queue without running are
+	// queued again in their own lanes.
+	private void requeue(final List<PrioritizableRequest> absorbed) {
+		for (final PrioritizableRequest request : absorbed) {
+			mTags.remove(request);
+			try {
+				execute(request);
+			} catch (final RejectedExecutionException e) {
+				mFutures.onDropped(request, DropReason.REJECTED);
 			}
 		}
 	}
 
+	private void adjustPoolSize(final int poolSize) {
+		final int previousSize;
+		synchronized (mPoolController) {
+			previousSize = getCorePoolSize();
+			if (poolSize == previousSize || isShutdown()) {
+				return;
+			}
+			setCorePoolSize(poolSize);
+		}
+
+		mFutures.onPoolSizeChanged(this, previousSize, poolSize);
+	}
+
+	// Absorbed requests were never queued, so they are reported as they are.
+	private void unlink(final PrioritizableRequest request) {
+		mTags.remove(request);
+		if (getQueue().remove(request) || request.getQueuedTime() == 0) {
+			notifyCancelled(request);
+		}
+	}
+
+	private void notifyCancelled(final PrioritizableRequest request) {
+		mTags.remove(request);
+		mFutures.onCancelled(request);
+	}
+
+	private void notifyReferenceManager(final PrioritizableRequest request) {
+		if (!request.isCancelled()) {
+			mFutures.onComplete(request);
+		} else {
+			mFutures.onCancelled(request);
+		}
+	}
+
 	private void notifyBeforeExecuteCalled(final Runnable r) {
 		final PrioritizableRequest request = (PrioritizableRequest) r;
 		if (!request.isCancelled())
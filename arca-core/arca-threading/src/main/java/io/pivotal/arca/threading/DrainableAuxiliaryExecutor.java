@@ -0,0 +1,30 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+public interface DrainableAuxiliaryExecutor extends AuxiliaryExecutor {
+
+	// Hands up to maxRequests queued requests to a worker that runs them
+	// itself, waiting up to the timeout for more to arrive. Each drained
+	// request must be passed to finishDrained() once it has run.
+	public int drainTo(Collection<? super PrioritizableRequest> requests, int maxRequests, long timeout, TimeUnit unit);
+
+	public void finishDrained(PrioritizableRequest request);
+
+}
@@ -0,0 +1,229 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Kept per accessor index and in total, all in nanoseconds.
+public class ExecutorMetrics {
+
+	public static class Metrics {
+
+		private final AtomicLong mSubmitted = new AtomicLong();
+		private final AtomicLong mRejected = new AtomicLong();
+		private final AtomicLong mCompleted = new AtomicLong();
+		private final AtomicLong mCancelled = new AtomicLong();
+		private final AtomicLong mDropped = new AtomicLong();
+		private final AtomicInteger mQueued = new AtomicInteger();
+		private final AtomicInteger mRunning = new AtomicInteger();
+		private final AtomicLong mReservedStarted = new AtomicLong();
+
+		private final LatencyHistogram mQueueWait = new LatencyHistogram();
+		private final LatencyHistogram mRunTime = new LatencyHistogram();
+		private final LatencyHistogram mEndToEnd = new LatencyHistogram();
+
+		public long getSubmittedCount() {
+			return mSubmitted.get();
+		}
+
+		public long getRejectedCount() {
+			return mRejected.get();
+		}
+
+		public long getCompletedCount() {
+			return mCompleted.get();
+		}
+
+		public long getCancelledCount() {
+			return mCancelled.get();
+		}
+
+		public long getDroppedCount() {
+			return mDropped.get();
+		}
+
+		public int getQueueDepth() {
+			return Math.max(mQueued.get(), 0);
+		}
+
+		public int getRunningCount() {
+			return Math.max(mRunning.get(), 0);
+		}
+
+		public long getReservedStartedCount() {
+			return mReservedStarted.get();
+		}
+
+		public LatencyHistogram getQueueWait() {
+			return mQueueWait;
+		}
+
+		public LatencyHistogram getRunTime() {
+			return mRunTime;
+		}
+
+		public LatencyHistogram getEndToEnd() {
+			return mEndToEnd;
+		}
+
+		private void onSubmitted() {
+			mSubmitted.incrementAndGet();
+			mQueued.incrementAndGet();
+		}
+
+		private void onRejected() {
+			mRejected.incrementAndGet();
+			mQueued.decrementAndGet();
+		}
+
+		private void onStarted(final long queueWait) {
+			mQueued.decrementAndGet();
+			mRunning.incrementAndGet();
+			mQueueWait.record(queueWait);
+		}
+
+		private void onFinished(final long runTime, final long endToEnd) {
+			mRunning.decrementAndGet();
+			mRunTime.record(runTime);
+			mEndToEnd.record(endToEnd);
+		}
+
+		private void onCancelled(final boolean wasQueued) {
+			mCancelled.incrementAndGet();
+			if (wasQueued) {
+				mQueued.decrementAndGet();
+			}
+		}
+
+		private void onDropped() {
+			mDropped.incrementAndGet();
+			mQueued.decrementAndGet();
+		}
+	}
+
+	private final Metrics mTotal = new Metrics();
+	private final Metrics[] mLanes;
+
+	public ExecutorMetrics(final int accessorCount) {
+		if (accessorCount <= 0)
+			throw new IllegalArgumentException("Accessor count must be positive.");
+
+		mLanes = new Metrics[accessorCount];
+		for (int i = 0; i < accessorCount; i++) {
+			mLanes[i] = new Metrics();
+		}
+	}
+
+	public int getAccessorCount() {
+		return mLanes.length;
+	}
+
+	public Metrics getTotal() {
+		return mTotal;
+	}
+
+	public Metrics getLane(final int accessorIndex) {
+		return mLanes[accessorIndex];
+	}
+
+	// ======================================================
+
+	void onSubmitted(final PrioritizableRequest request) {
+		mTotal.onSubmitted();
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onSubmitted();
+		}
+	}
+
+	void onRejected(final PrioritizableRequest request) {
+		mTotal.onRejected();
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onRejected();
+		}
+	}
+
+	void onPromoted(final PrioritizableRequest request, final int previousIndex) {
+		if (previousIndex < mLanes.length) {
+			mLanes[previousIndex].mQueued.decrementAndGet();
+		}
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.mQueued.incrementAndGet();
+		}
+	}
+
+	void onStarted(final PrioritizableRequest request) {
+		final long queueWait = request.getStartedTime() - request.getQueuedTime();
+		mTotal.onStarted(queueWait);
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onStarted(queueWait);
+		}
+	}
+
+	void onStartedOnReservedWorker(final PrioritizableRequest request) {
+		mTotal.mReservedStarted.incrementAndGet();
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.mReservedStarted.incrementAndGet();
+		}
+	}
+
+	void onFinished(final PrioritizableRequest request) {
+		final long runTime = request.getFinishedTime() - request.getStartedTime();
+		final long endToEnd = request.getFinishedTime() - request.getQueuedTime();
+		mTotal.onFinished(runTime, endToEnd);
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onFinished(runTime, endToEnd);
+		}
+	}
+
+	void onCompleted(final PrioritizableRequest request) {
+		mTotal.mCompleted.incrementAndGet();
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.mCompleted.incrementAndGet();
+		}
+	}
+
+	void onCancelled(final PrioritizableRequest request) {
+		// Requests cancelled before they were queued or after they started
+		// never counted against the queue depth.
+		final boolean wasQueued = request.getQueuedTime() != 0 && request.getStartedTime() == 0;
+		mTotal.onCancelled(wasQueued);
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onCancelled(wasQueued);
+		}
+	}
+
+	void onDropped(final PrioritizableRequest request) {
+		mTotal.onDropped();
+		final Metrics lane = laneFor(request);
+		if (lane != null) {
+			lane.onDropped();
+		}
+	}
+
+	private Metrics laneFor(final PrioritizableRequest request) {
+		final int index = request.getAccessorIndex();
+		return index < mLanes.length ? mLanes[index] : null;
+	}
+}
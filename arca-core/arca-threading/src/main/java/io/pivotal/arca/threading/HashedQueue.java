@@ -15,17 +15,27 @@
  */
 package io.pivotal.arca.threading;
 
+import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 
 public class HashedQueue<T> implements Queue<T> {
+
+	// With recycling on, removed nodes are kept for reuse, so a queue whose
+	// size stays within this bound enqueues without allocating once warm.
+	private static final int MAX_FREE_NODES = 64;
+
 	private Node<T> mHead = null;
 	private Node<T> mTail = null;
-	private Map<T, Node<T>> mNodeMap = new HashMap<T, Node<T>>();
+	private final Map<T, Node<T>> mNodeMap;
+	private Node<T> mFreeNodes;
+	private int mFreeNodeCount;
+	private int mMaxFreeNodes;
 
 	private static class Node<T> {
 		T data;
@@ -53,6 +63,24 @@ public class HashedQueue<T> implements Queue<T> {
 		}
 	}
 
+	public HashedQueue() {
+		this(false);
+	}
+
+	// An identity map stores its entries inline rather than allocating one
+	// per element, for element types that do not override equals.
+	public HashedQueue(final boolean compareByIdentity) {
+		mNodeMap = compareByIdentity ? new IdentityHashMap<T, Node<T>>() : new HashMap<T, Node<T>>();
+	}
+
+	public synchronized void setRecycling(final boolean recycling) {
+		mMaxFreeNodes = recycling ? MAX_FREE_NODES : 0;
+		if (!recycling) {
+			mFreeNodes = null;
+			mFreeNodeCount = 0;
+		}
+	}
+
 	@Override
 	public synchronized boolean addAll(final Collection<? extends T> arg0) {
 		for (final T data : arg0) {
@@ -65,7 +93,7 @@ public class HashedQueue<T> implements Queue<T> {
 	public synchronized void clear() {
 		mHead = null;
 		mTail = null;
-		mNodeMap = new HashMap<T, Node<T>>();
+		mNodeMap.clear();
 	}
 
 	@Override
@@ -123,31 +151,18 @@ public class HashedQueue<T> implements Queue<T> {
 			return false;
 		}
 
-		Node<T> previous, next;
-		previous = node.getPrevious();
-		next = node.getNext();
-
-		if (previous != null) {
-			previous.setNext(next);
-		}
-		if (next != null) {
-			next.setPrevious(previous);
-		}
-
-		if (previous == null) {
-			mHead = next;
-		}
-
-		if (next == null) {
-			mTail = previous;
-		}
-
+		unlink(node);
+		recycleNode(node);
 		return true;
 	}
 
 	@Override
 	public synchronized boolean removeAll(final Collection<?> arg0) {
-		return false;
+		boolean modified = false;
+		for (final Object object : arg0) {
+			modified |= remove(object);
+		}
+		return modified;
 	}
 
 	@Override
@@ -164,36 +179,47 @@ public class HashedQueue<T> implements Queue<T> {
 	public synchronized Object[] toArray() {
 		final Object[] dataArray = new Object[size()];
 		Node<T> temp = mHead;
-		final int i = 0;
+		int i = 0;
 		while (temp != null) {
-			dataArray[i] = temp;
+			dataArray[i++] = temp.data;
 			temp = temp.getNext();
 		}
 		return dataArray;
 	}
 
 	@Override
-	@SuppressWarnings("hiding")
-	public <T> T[] toArray(final T[] array) {
-		return null;
+	@SuppressWarnings({ "hiding", "unchecked" })
+	public synchronized <T> T[] toArray(final T[] array) {
+		final int size = size();
+		final T[] dataArray = array.length >= size ? array : (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+		Node<?> temp = mHead;
+		int i = 0;
+		while (temp != null) {
+			dataArray[i++] = (T) temp.data;
+			temp = temp.getNext();
+		}
+		if (dataArray.length > size) {
+			dataArray[size] = null;
+		}
+		return dataArray;
+	}
+
+	public synchronized void copyTo(final Collection<? super T> collection) {
+		Node<T> temp = mHead;
+		while (temp != null) {
+			collection.add(temp.data);
+			temp = temp.getNext();
+		}
 	}
 
 	@Override
 	public synchronized boolean add(final T e) {
-		Node<T> node;
-		if (mNodeMap.containsKey(e)) {
-			node = mNodeMap.get(e);
-
-			/*
-			 * TODO: This "remove" call is not high performance in this case. We
-			 * want the node removed from the queue but not the map.
-			 */
-			remove(e);
-
-			node.next = null;
-			node.previous = null;
+		Node<T> node = mNodeMap.get(e);
+		if (node != null) {
+			unlink(node);
 		} else {
-			node = new Node<T>(e);
+			node = obtainNode(e);
+			mNodeMap.put(e, node);
 		}
 
 		if (mTail == null) {
@@ -204,7 +230,6 @@ public class HashedQueue<T> implements Queue<T> {
 			node.setPrevious(mTail);
 			mTail = node;
 		}
-		mNodeMap.put(e, node);
 		return true;
 	}
 
@@ -228,15 +253,24 @@ public class HashedQueue<T> implements Queue<T> {
 	public synchronized T poll() {
 		T data = null;
 		if (mHead != null) {
-			mNodeMap.remove(mHead.data);
-
-			data = mHead.data;
-			mHead = mHead.next;
-			if (mHead != null) {
-				mHead.setPrevious(null);
-			} else {
-				mTail = null;
-			}
+			final Node<T> head = mHead;
+			mNodeMap.remove(head.data);
+
+			data = head.data;
+			unlink(head);
+			recycleNode(head);
+		}
+		return data;
+	}
+
+	public synchronized T pollLast() {
+		T data = null;
+		if (mTail != null) {
+			final Node<T> tail = mTail;
+			data = tail.data;
+			mNodeMap.remove(data);
+			unlink(tail);
+			recycleNode(tail);
 		}
 		return data;
 	}
@@ -254,4 +288,45 @@ public class HashedQueue<T> implements Queue<T> {
 		remove(e);
 		add(e);
 	}
+
+	private void unlink(final Node<T> node) {
+		final Node<T> previous = node.getPrevious();
+		final Node<T> next = node.getNext();
+
+		if (previous != null) {
+			previous.setNext(next);
+		} else {
+			mHead = next;
+		}
+
+		if (next != null) {
+			next.setPrevious(previous);
+		} else {
+			mTail = previous;
+		}
+
+		node.setNext(null);
+		node.setPrevious(null);
+	}
+
+	private Node<T> obtainNode(final T data) {
+		final Node<T> node = mFreeNodes;
+		if (node == null) {
+			return new Node<T>(data);
+		}
+		mFreeNodes = node.next;
+		mFreeNodeCount--;
+		node.next = null;
+		node.data = data;
+		return node;
+	}
+
+	private void recycleNode(final Node<T> node) {
+		node.data = null;
+		if (mFreeNodeCount < mMaxFreeNodes) {
+			node.next = mFreeNodes;
+			mFreeNodes = node;
+			mFreeNodeCount++;
+		}
+	}
 }
@@ -15,15 +15,23 @@
  */
 package io.pivotal.arca.threading;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
 public class HashedStack<T> implements Iterable<T> {
+
+	private static final int MAX_FREE_NODES = 64;
+
 	private Node<T> mHead = null;
 	private Node<T> mTail = null;
-	private final Map<T, Node<T>> mNodeMap = new HashMap<T, Node<T>>();
+	private final Map<T, Node<T>> mNodeMap;
+	private Node<T> mFreeNodes;
+	private int mFreeNodeCount;
+	private int mMaxFreeNodes;
 
 	private static class Node<T> {
 		T data;
@@ -51,6 +59,22 @@ public class HashedStack<T> implements Iterable<T> {
 		}
 	}
 
+	public HashedStack() {
+		this(false);
+	}
+
+	public HashedStack(final boolean compareByIdentity) {
+		mNodeMap = compareByIdentity ? new IdentityHashMap<T, Node<T>>() : new HashMap<T, Node<T>>();
+	}
+
+	public synchronized void setRecycling(final boolean recycling) {
+		mMaxFreeNodes = recycling ? MAX_FREE_NODES : 0;
+		if (!recycling) {
+			mFreeNodes = null;
+			mFreeNodeCount = 0;
+		}
+	}
+
 	public synchronized void clear() {
 		mHead = null;
 		mTail = null;
@@ -99,25 +123,8 @@ public class HashedStack<T> implements Iterable<T> {
 			return false;
 		}
 
-		Node<T> previous, next;
-		previous = node.getPrevious();
-		next = node.getNext();
-
-		if (previous != null) {
-			previous.setNext(next);
-		}
-		if (next != null) {
-			next.setPrevious(previous);
-		}
-
-		if (previous == null) {
-			mHead = next;
-		}
-
-		if (next == null) {
-			mTail = previous;
-		}
-
+		unlink(node);
+		recycleNode(node);
 		return true;
 	}
 
@@ -125,21 +132,22 @@ public class HashedStack<T> implements Iterable<T> {
 		return mNodeMap.size();
 	}
 
+	// Copies from the top down, the order pop() would return them in.
+	public synchronized void copyTo(final Collection<? super T> collection) {
+		Node<T> temp = mTail;
+		while (temp != null) {
+			collection.add(temp.data);
+			temp = temp.getPrevious();
+		}
+	}
+
 	public synchronized boolean push(final T e) {
-		Node<T> node;
-		if (mNodeMap.containsKey(e)) {
-			node = mNodeMap.get(e);
-
-			/*
-			 * TODO: This "remove" call is not high performance in this case. We
-			 * want the node removed from the queue but not the map.
-			 */
-			remove(e);
-
-			node.next = null;
-			node.previous = null;
+		Node<T> node = mNodeMap.get(e);
+		if (node != null) {
+			unlink(node);
 		} else {
-			node = new Node<T>(e);
+			node = obtainNode(e);
+			mNodeMap.put(e, node);
 		}
 
 		if (mTail == null) {
@@ -150,19 +158,29 @@ public class HashedStack<T> implements Iterable<T> {
 			node.setPrevious(mTail);
 			mTail = node;
 		}
-		mNodeMap.put(e, node);
 		return true;
 	}
 
 	public synchronized T pop() {
 		T data = null;
 		if (mTail != null) {
-			data = mTail.data;
-			mTail = mTail.previous;
-			if (mTail != null) {
-				mTail.next = null;
-			}
+			final Node<T> tail = mTail;
+			data = tail.data;
 			mNodeMap.remove(data);
+			unlink(tail);
+			recycleNode(tail);
+		}
+		return data;
+	}
+
+	public synchronized T popBottom() {
+		T data = null;
+		if (mHead != null) {
+			final Node<T> head = mHead;
+			data = head.data;
+			mNodeMap.remove(data);
+			unlink(head);
+			recycleNode(head);
 		}
 		return data;
 	}
@@ -179,4 +197,45 @@ public class HashedStack<T> implements Iterable<T> {
 		}
 		return data;
 	}
+
+	private void unlink(final Node<T> node) {
+		final Node<T> previous = node.getPrevious();
+		final Node<T> next = node.getNext();
+
+		if (previous != null) {
+			previous.setNext(next);
+		} else {
+			mHead = next;
+		}
+
+		if (next != null) {
+			next.setPrevious(previous);
+		} else {
+			mTail = previous;
+		}
+
+		node.setNext(null);
+		node.setPrevious(null);
+	}
+
+	private Node<T> obtainNode(final T data) {
+		final Node<T> node = mFreeNodes;
+		if (node == null) {
+			return new Node<T>(data);
+		}
+		mFreeNodes = node.next;
+		mFreeNodeCount--;
+		node.next = null;
+		node.data = data;
+		return node;
+	}
+
+	private void recycleNode(final Node<T> node) {
+		node.data = null;
+		if (mFreeNodeCount < mMaxFreeNodes) {
+			node.next = mFreeNodes;
+			mFreeNodes = node;
+			mFreeNodeCount++;
+		}
+	}
 }
@@ -0,0 +1,206 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Equal elements leave the heap in insertion order.
+public class IndexedHeap<T> {
+	private final Comparator<? super T> mComparator;
+	private final List<Node<T>> mHeap = new ArrayList<Node<T>>();
+	private final Map<T, Node<T>> mNodeMap = new HashMap<T, Node<T>>();
+	private long mSequence;
+
+	private static class Node<T> {
+		final T data;
+		final long sequence;
+		int index;
+
+		Node(final T data, final long sequence) {
+			this.data = data;
+			this.sequence = sequence;
+		}
+	}
+
+	public IndexedHeap(final Comparator<? super T> comparator) {
+		if (comparator == null)
+			throw new IllegalArgumentException("Comparator cannot be null.");
+
+		mComparator = comparator;
+	}
+
+	public synchronized boolean add(final T data) {
+		final Node<T> existing = mNodeMap.get(data);
+		if (existing != null) {
+			siftUp(existing.index);
+			siftDown(existing.index);
+			return false;
+		}
+
+		final Node<T> node = new Node<T>(data, mSequence++);
+		node.index = mHeap.size();
+		mHeap.add(node);
+		mNodeMap.put(data, node);
+		siftUp(node.index);
+		return true;
+	}
+
+	public synchronized T peek() {
+		return mHeap.isEmpty() ? null : mHeap.get(0).data;
+	}
+
+	public synchronized T poll() {
+		if (mHeap.isEmpty()) {
+			return null;
+		}
+		final T data = mHeap.get(0).data;
+		removeAt(0);
+		return data;
+	}
+
+	// The largest element is one of the leaves, so this scans half the heap.
+	public synchronized T pollLast() {
+		final int size = mHeap.size();
+		if (size == 0) {
+			return null;
+		}
+		int lastIndex = size >>> 1;
+		for (int i = lastIndex + 1; i < size; i++) {
+			if (compare(mHeap.get(i), mHeap.get(lastIndex)) > 0) {
+				lastIndex = i;
+			}
+		}
+		final T data = mHeap.get(lastIndex).data;
+		removeAt(lastIndex);
+		return data;
+	}
+
+	public synchronized T pollEldest() {
+		final int size = mHeap.size();
+		if (size == 0) {
+			return null;
+		}
+		int eldestIndex = 0;
+		for (int i = 1; i < size; i++) {
+			if (mHeap.get(i).sequence < mHeap.get(eldestIndex).sequence) {
+				eldestIndex = i;
+			}
+		}
+		final T data = mHeap.get(eldestIndex).data;
+		removeAt(eldestIndex);
+		return data;
+	}
+
+	public synchronized boolean remove(final Object object) {
+		final Node<T> node = mNodeMap.get(object);
+		if (node == null) {
+			return false;
+		}
+		removeAt(node.index);
+		return true;
+	}
+
+	public synchronized boolean contains(final Object object) {
+		return mNodeMap.containsKey(object);
+	}
+
+	public synchronized int size() {
+		return mHeap.size();
+	}
+
+	// Copies in heap order, which starts with the head but is otherwise
+	// only partially sorted.
+	public synchronized void copyTo(final Collection<? super T> collection) {
+		for (final Node<T> node : mHeap) {
+			collection.add(node.data);
+		}
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public synchronized void clear() {
+		mHeap.clear();
+		mNodeMap.clear();
+	}
+
+	private void removeAt(final int index) {
+		final Node<T> removed = mHeap.get(index);
+		mNodeMap.remove(removed.data);
+
+		final int lastIndex = mHeap.size() - 1;
+		final Node<T> last = mHeap.remove(lastIndex);
+		if (index != lastIndex) {
+			set(index, last);
+			siftUp(index);
+			siftDown(last.index);
+		}
+	}
+
+	private void siftUp(int index) {
+		final Node<T> node = mHeap.get(index);
+		while (index > 0) {
+			final int parentIndex = (index - 1) >>> 1;
+			final Node<T> parent = mHeap.get(parentIndex);
+			if (compare(node, parent) >= 0) {
+				break;
+			}
+			set(index, parent);
+			index = parentIndex;
+		}
+		set(index, node);
+	}
+
+	private void siftDown(int index) {
+		final Node<T> node = mHeap.get(index);
+		final int size = mHeap.size();
+		final int half = size >>> 1;
+		while (index < half) {
+			int childIndex = (index << 1) + 1;
+			Node<T> child = mHeap.get(childIndex);
+			final int rightIndex = childIndex + 1;
+			if (rightIndex < size && compare(mHeap.get(rightIndex), child) < 0) {
+				childIndex = rightIndex;
+				child = mHeap.get(childIndex);
+			}
+			if (compare(node, child) <= 0) {
+				break;
+			}
+			set(index, child);
+			index = childIndex;
+		}
+		set(index, node);
+	}
+
+	private void set(final int index, final Node<T> node) {
+		mHeap.set(index, node);
+		node.index = index;
+	}
+
+	private int compare(final Node<T> a, final Node<T> b) {
+		final int result = mComparator.compare(a.data, b.data);
+		if (result != 0) {
+			return result;
+		}
+		return a.sequence < b.sequence ? -1 : (a.sequence > b.sequence ? 1 : 0);
+	}
+}
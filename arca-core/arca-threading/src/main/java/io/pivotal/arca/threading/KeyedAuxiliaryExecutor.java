@@ -0,0 +1,415 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Only the head of each lane is handed to the delegate, and the next
+// request follows once it finishes, is cancelled or is dropped.
+public class KeyedAuxiliaryExecutor implements ManagedAuxiliaryExecutor {
+
+	// Duplicates of a waiting request are absorbed rather than queued. They
+	// settle when it completes, or take its place if it is withdrawn.
+	private static final class Lane {
+		final ArrayDeque<PrioritizableRequest> waiting = new ArrayDeque<PrioritizableRequest>();
+		final List<PrioritizableRequest> absorbed = new ArrayList<PrioritizableRequest>(0);
+		PrioritizableRequest current;
+	}
+
+	private final Map<Object, Lane> mLanes = new HashMap<Object, Lane>();
+	private final RequestFutures mFutures;
+	private final AuxiliaryExecutorObserver mLaneObserver = new LaneObserver();
+	private final RequestScheduler mScheduler;
+	private final TagIndex mTags = new TagIndex();
+	private ManagedAuxiliaryExecutor mDelegate;
+	private int mWaitingCount;
+
+	private final BlockingQueue<Runnable> mQueueView = new AuxiliaryQueueView() {
+
+		@Override
+		public int size() {
+			synchronized (mLanes) {
+				return mDelegate.getQueue().size() + mWaitingCount;
+			}
+		}
+
+		// Lane heads queued by the delegate run before anything waiting behind them.
+		@Override
+		protected List<Runnable> snapshot() {
+			final List<Runnable> snapshot = new ArrayList<Runnable>();
+			synchronized (mLanes) {
+				snapshot.addAll(mDelegate.getQueue());
+				for (final Lane lane : mLanes.values()) {
+					snapshot.addAll(lane.waiting);
+				}
+			}
+			return snapshot;
+		}
+
+		@Override
+		public boolean remove(final Object object) {
+			return object instanceof PrioritizableRequest && unlink((PrioritizableRequest) object);
+		}
+	};
+
+	public KeyedAuxiliaryExecutor(final AuxiliaryExecutorObserver observer) {
+		mFutures = RequestFutures.forObserver(observer);
+		mScheduler = new RequestScheduler(this, mFutures);
+	}
+
+	// The delegate has to report back through the lane observer, so the two
+	// are wired together after construction.
+	void setDelegate(final ManagedAuxiliaryExecutor delegate) {
+		mDelegate = delegate;
+	}
+
+	AuxiliaryExecutorObserver getLaneObserver() {
+		return mLaneObserver;
+	}
+
+	public ManagedAuxiliaryExecutor getDelegate() {
+		return mDelegate;
+	}
+
+	public int getLaneCount() {
+		synchronized (mLanes) {
+			return mLanes.size();
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		final Object key = request.getLaneKey();
+
+		synchronized (mLanes) {
+			Lane lane = mLanes.get(key);
+			if (lane == null) {
+				lane = new Lane();
+				mLanes.put(key, lane);
+			}
+
+			if (lane.current == null) {
+				lane.current = request;
+			} else if (lane.current.getIdentifier().equals(request.getIdentifier())) {
+				// The delegate de-duplicates against the running request.
+			} else if (isWaiting(lane, request.getIdentifier())) {
+				lane.absorbed.add(request);
+				mTags.add(request);
+				return;
+			} else {
+				lane.waiting.offer(request);
+				mWaitingCount++;
+				mTags.add(request);
+				return;
+			}
+		}
+
+		submit(request);
+	}
+
+	@Override
+	public RequestFuture<PrioritizableRequest> submit(final Runnable command) {
+		return mFutures.submit(this, command);
+	}
+
+	@Override
+	public void schedule(final Runnable command, final long delay, final TimeUnit unit) {
+		scheduleAt(command, System.nanoTime() + unit.toNanos(delay));
+	}
+
+	@Override
+	public void scheduleAt(final Runnable command, final long time) {
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		mTags.add(request);
+		mScheduler.schedule(request, time);
+	}
+
+	@Override
+	public void notifyRequestComplete(final Identifier<?> identifier) {
+		mDelegate.notifyRequestComplete(identifier);
+	}
+
+	@Override
+	public BlockingQueue<Runnable> getQueue() {
+		return mQueueView;
+	}
+
+	@Override
+	public int getActiveCount() {
+		return mDelegate.getActiveCount();
+	}
+
+	@Override
+	public boolean remove(final Runnable task) {
+		final PrioritizableRequest request = (PrioritizableRequest) task;
+		mTags.remove(request);
+
+		if (mScheduler.remove(request) || unlink(request)) {
+			request.cancel();
+			notifyCancelled(request);
+			return true;
+		}
+		return mDelegate.remove(task);
+	}
+
+	@Override
+	public void cancelAll() {
+		mScheduler.cancelAll();
+
+		// Absorbed requests go first, so none is still live when the request
+		// it waited on reports its cancellation.
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		synchronized (mLanes) {
+			for (final Lane lane : mLanes.values()) {
+				cancelled.addAll(lane.absorbed);
+				lane.absorbed.clear();
+			}
+			for (final Lane lane : mLanes.values()) {
+				cancelled.addAll(lane.waiting);
+				lane.waiting.clear();
+			}
+			mWaitingCount = 0;
+		}
+
+		for (final PrioritizableRequest request : cancelled) {
+			mTags.remove(request);
+			if (request.cancel()) {
+				notifyCancelled(request);
+			}
+		}
+		mDelegate.cancelAll();
+	}
+
+	// Requests waiting in a lane are indexed here, while lane heads are
+	// indexed by the delegate.
+	@Override
+	public int cancel(final Object tag) {
+		int cancelled = 0;
+		for (final PrioritizableRequest request : mTags.removeGroup(tag)) {
+			if (remove(request)) {
+				cancelled++;
+			}
+		}
+		return cancelled + mDelegate.cancel(tag);
+	}
+
+	@Override
+	public ExecutorMetrics getMetrics() {
+		return mDelegate.getMetrics();
+	}
+
+	// ======================================================
+
+	private void submit(final PrioritizableRequest request) {
+		try {
+			mDelegate.execute(request);
+		} catch (final RejectedExecutionException e) {
+			advance(request);
+			throw e;
+		}
+	}
+
+	private void advance(final PrioritizableRequest finished) {
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		PrioritizableRequest next = null;
+
+		synchronized (mLanes) {
+			final Object key = finished.getLaneKey();
+			final Lane lane = mLanes.get(key);
+			if (lane == null || lane.current != finished) {
+				return;
+			}
+
+			// A request that did not complete hands its turn to one it absorbed.
+			next = takeAbsorbed(lane, finished.getIdentifier());
+			if (next != null) {
+				mTags.remove(next);
+			}
+
+			while (next == null && (next = lane.waiting.poll()) != null) {
+				mWaitingCount--;
+				mTags.remove(next);
+				if (!next.isCancelled()) {
+					break;
+				}
+				cancelled.add(next);
+
+				// A request absorbed by the cancelled one runs in its place.
+				next = takeAbsorbed(lane, next.getIdentifier());
+				if (next != null) {
+					mTags.remove(next);
+					break;
+				}
+			}
+
+			lane.current = next;
+			if (next == null) {
+				mLanes.remove(key);
+			}
+		}
+
+		for (final PrioritizableRequest request : cancelled) {
+			notifyCancelled(request);
+		}
+
+		if (next != null) {
+			try {
+				submit(next);
+			} catch (final RejectedExecutionException e) {
+				notifyDropped(next, DropReason.REJECTED);
+			}
+		}
+	}
+
+	private List<PrioritizableRequest> takeAbsorbedBy(final PrioritizableRequest request) {
+		synchronized (mLanes) {
+			final Lane lane = mLanes.get(request.getLaneKey());
+			if (lane == null || lane.current != request) {
+				return Collections.emptyList();
+			}
+			return takeAllAbsorbed(lane, request.getIdentifier());
+		}
+	}
+
+	// A withdrawn request hands its place in the lane to a request it
+	// absorbed, if there is one.
+	private boolean unlink(final PrioritizableRequest request) {
+		synchronized (mLanes) {
+			final Lane lane = mLanes.get(request.getLaneKey());
+			if (lane == null) {
+				return false;
+			}
+			if (lane.absorbed.remove(request)) {
+				return true;
+			}
+
+			final PrioritizableRequest replacement = takeAbsorbed(lane, request.getIdentifier());
+			if (replacement == null) {
+				if (lane.waiting.remove(request)) {
+					mWaitingCount--;
+					return true;
+				}
+				return false;
+			}
+
+			if (replace(lane.waiting, request, replacement)) {
+				return true;
+			}
+			lane.absorbed.add(0, replacement);
+			return false;
+		}
+	}
+
+	private PrioritizableRequest takeAbsorbed(final Lane lane, final Identifier<?> identifier) {
+		final Iterator<PrioritizableRequest> iterator = lane.absorbed.iterator();
+		while (iterator.hasNext()) {
+			final PrioritizableRequest request = iterator.next();
+			if (request.getIdentifier().equals(identifier)) {
+				iterator.remove();
+				return request;
+			}
+		}
+		return null;
+	}
+
+	private List<PrioritizableRequest> takeAllAbsorbed(final Lane lane, final Identifier<?> identifier) {
+		List<PrioritizableRequest> absorbed = Collections.emptyList();
+		PrioritizableRequest request;
+		while ((request = takeAbsorbed(lane, identifier)) != null) {
+			if (absorbed.isEmpty()) {
+				absorbed = new ArrayList<PrioritizableRequest>(1);
+			}
+			mTags.remove(request);
+			absorbed.add(request);
+		}
+		return absorbed;
+	}
+
+	// Rotates the whole deque so the replacement keeps the request's place.
+	private static boolean replace(final ArrayDeque<PrioritizableRequest> deque, final PrioritizableRequest request, final PrioritizableRequest replacement) {
+		boolean replaced = false;
+		for (int i = deque.size(); i > 0; i--) {
+			final PrioritizableRequest r = deque.poll();
+			if (r == request && !replaced) {
+				deque.offer(replacement);
+				replaced = true;
+			} else {
+				deque.offer(r);
+			}
+		}
+		return replaced;
+	}
+
+	private static boolean isWaiting(final Lane lane, final Identifier<?> identifier) {
+		for (final PrioritizableRequest request : lane.waiting) {
+			if (request.getIdentifier().equals(identifier)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void notifyCancelled(final PrioritizableRequest request) {
+		mFutures.onCancelled(request);
+	}
+
+	private void notifyDropped(final PrioritizableRequest request, final DropReason reason) {
+		mFutures.onDropped(request, reason);
+	}
+
+	private class LaneObserver implements ManagedAuxiliaryExecutorObserver {
+
+		// Absorbed requests are reported as duplicates before the request
+		// they waited on completes them.
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+			for (final PrioritizableRequest absorbed : takeAbsorbedBy(request)) {
+				if (absorbed.cancel()) {
+					notifyCancelled(absorbed);
+				}
+			}
+			mFutures.onComplete(request);
+			advance(request);
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {
+			notifyCancelled(request);
+			advance(request);
+		}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			notifyDropped(request, reason);
+			advance(request);
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			mFutures.onPoolSizeChanged(executor, previousSize, newSize);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bucket i holds durations in [2^(i-1), 2^i), so percentiles are only
+// accurate to within a factor of two.
+public class LatencyHistogram {
+
+	private static final int NUM_BUCKETS = 64;
+
+	private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong mCount = new AtomicLong();
+	private final AtomicLong mTotal = new AtomicLong();
+	private final AtomicLong mMax = new AtomicLong();
+
+	public void record(final long nanos) {
+		final long value = Math.max(nanos, 0);
+		mBuckets.incrementAndGet(bucketFor(value));
+		mCount.incrementAndGet();
+		mTotal.addAndGet(value);
+
+		long max;
+		while (value > (max = mMax.get())) {
+			if (mMax.compareAndSet(max, value)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return mCount.get();
+	}
+
+	public long getTotal() {
+		return mTotal.get();
+	}
+
+	public long getMax() {
+		return mMax.get();
+	}
+
+	public long getMean() {
+		final long count = mCount.get();
+		return count > 0 ? mTotal.get() / count : 0;
+	}
+
+	public long getPercentile(final double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+
+		final long[] buckets = new long[NUM_BUCKETS];
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			buckets[i] = mBuckets.get(i);
+			count += buckets[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		final long rank = Math.max((long) Math.ceil(count * percentile / 100), 1);
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), mMax.get());
+			}
+		}
+		return mMax.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			mBuckets.set(i, 0);
+		}
+		mCount.set(0);
+		mTotal.set(0);
+		mMax.set(0);
+	}
+
+	private static int bucketFor(final long value) {
+		return Math.min(NUM_BUCKETS - Long.numberOfLeadingZeros(value), NUM_BUCKETS - 1);
+	}
+
+	private static long upperBoundOf(final int bucket) {
+		return bucket >= NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+}
@@ -0,0 +1,33 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.TimeUnit;
+
+// Implemented by every executor the Builder creates.
+public interface ManagedAuxiliaryExecutor extends AuxiliaryExecutor {
+
+	public RequestFuture<PrioritizableRequest> submit(Runnable command);
+
+	public void schedule(Runnable command, long delay, TimeUnit unit);
+
+	public void scheduleAt(Runnable command, long time);
+
+	public int cancel(Object tag);
+
+	public ExecutorMetrics getMetrics();
+
+}
@@ -0,0 +1,34 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Collection;
+
+// Implemented by every accessor in this package. Queued requests can only
+// be removed, evicted or listed through accessors that implement it.
+public interface ManagedPriorityAccessor extends PriorityAccessor {
+
+	public PrioritizableRequest detachLowestPriorityItem();
+
+	public PrioritizableRequest detachOldestItem();
+
+	public boolean remove(PrioritizableRequest request);
+
+	// Adds the attached requests without detaching them, in the order they
+	// would be detached where the accessor keeps one.
+	public void copyTo(Collection<? super PrioritizableRequest> requests);
+
+}
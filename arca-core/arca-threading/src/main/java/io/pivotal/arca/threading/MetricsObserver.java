@@ -0,0 +1,50 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+class MetricsObserver implements ManagedAuxiliaryExecutorObserver {
+
+	private final ExecutorMetrics mMetrics;
+	private final AuxiliaryExecutorObserver mObserver;
+
+	public MetricsObserver(final ExecutorMetrics metrics, final AuxiliaryExecutorObserver observer) {
+		mMetrics = metrics;
+		mObserver = observer;
+	}
+
+	@Override
+	public void onComplete(final PrioritizableRequest request) {
+		mMetrics.onCompleted(request);
+		mObserver.onComplete(request);
+	}
+
+	@Override
+	public void onCancelled(final PrioritizableRequest request) {
+		mMetrics.onCancelled(request);
+		mObserver.onCancelled(request);
+	}
+
+	@Override
+	public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+		mMetrics.onDropped(request);
+		Observers.notifyDropped(mObserver, request, reason);
+	}
+
+	@Override
+	public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+		Observers.notifyPoolSizeChanged(mObserver, executor, previousSize, newSize);
+	}
+}
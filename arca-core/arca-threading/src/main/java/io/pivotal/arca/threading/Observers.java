@@ -0,0 +1,36 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+final class Observers {
+
+	private Observers() {
+	}
+
+	public static void notifyDropped(final AuxiliaryExecutorObserver observer, final PrioritizableRequest request, final DropReason reason) {
+		if (observer instanceof ManagedAuxiliaryExecutorObserver) {
+			((ManagedAuxiliaryExecutorObserver) observer).onDropped(request, reason);
+		} else {
+			observer.onCancelled(request);
+		}
+	}
+
+	public static void notifyPoolSizeChanged(final AuxiliaryExecutorObserver observer, final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+		if (observer instanceof ManagedAuxiliaryExecutorObserver) {
+			((ManagedAuxiliaryExecutorObserver) observer).onPoolSizeChanged(executor, previousSize, newSize);
+		}
+	}
+}
@@ -15,26 +15,79 @@
  */
 package io.pivotal.arca.threading;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 public abstract class Prioritizable {
-	private volatile boolean mIsCancelled = false;
-	private volatile boolean mCancelable = true;
+
+	public static enum State {
+		QUEUED, RUNNING, DONE, CANCELLED
+	}
+
+	private static final State[] STATES = State.values();
+
+	// Queues check for cancellation on every extract, so the lifecycle is a
+	// single atomic state that can be read without taking a lock.
+	private final AtomicInteger mState = new AtomicInteger(State.QUEUED.ordinal());
+	private final AtomicLongArray mTransitionTimes = new AtomicLongArray(STATES.length);
+
+	public Prioritizable() {
+		mTransitionTimes.set(State.QUEUED.ordinal(), System.nanoTime());
+	}
 
 	public abstract Identifier<?> getIdentifier();
 
 	public abstract void execute();
 
-	final synchronized boolean isCancelled() {
-		return mIsCancelled;
+	public Object getLaneKey() {
+		return getIdentifier();
+	}
+
+	public Collection<?> getTags() {
+		return Collections.emptySet();
+	}
+
+	public State getState() {
+		return STATES[mState.get()];
 	}
 
-	final synchronized boolean cancel() {
-		if (mCancelable) {
-			mIsCancelled = true;
+	public long getTransitionTime(final State state) {
+		return mTransitionTimes.get(state.ordinal());
+	}
+
+	final boolean isCancelled() {
+		return mState.get() == State.CANCELLED.ordinal();
+	}
+
+	final boolean cancel() {
+		return transition(State.QUEUED, State.CANCELLED) || isCancelled();
+	}
+
+	final boolean start() {
+		return transition(State.QUEUED, State.RUNNING);
+	}
+
+	final void finish() {
+		transition(State.RUNNING, State.DONE);
+	}
+
+	// Returns a finished prioritizable to its queued state so it can be
+	// reused, which is only safe once nothing else still refers to it.
+	protected final void resetLifecycle() {
+		for (int i = 0; i < STATES.length; i++) {
+			mTransitionTimes.set(i, 0);
 		}
-		return mIsCancelled;
+		mTransitionTimes.set(State.QUEUED.ordinal(), System.nanoTime());
+		mState.set(State.QUEUED.ordinal());
 	}
 
-	final void disableCancel() {
-		mCancelable = false;
+	private boolean transition(final State from, final State to) {
+		if (mState.compareAndSet(from.ordinal(), to.ordinal())) {
+			mTransitionTimes.set(to.ordinal(), System.nanoTime());
+			return true;
+		}
+		return false;
 	}
 }
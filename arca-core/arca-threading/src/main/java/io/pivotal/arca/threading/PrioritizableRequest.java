@@ -15,10 +15,19 @@
  */
 package io.pivotal.arca.threading;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 public class PrioritizableRequest implements Runnable {
 
-	private final int mAccessorIndex;
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private volatile int mAccessorIndex;
 	private final Prioritizable mPrioritizable;
+	private volatile long mQueuedTime;
+	private volatile long mStartedTime;
+	private volatile long mFinishedTime;
+	private volatile long mDeadline = NO_DEADLINE;
 
 	public PrioritizableRequest(final Prioritizable prioritizable, final int accessorIndex) {
 		if (prioritizable == null || accessorIndex < 0)
@@ -28,22 +37,94 @@ public class PrioritizableRequest implements Runnable {
 		mAccessorIndex = accessorIndex;
 	}
 
+	// Pooled requests are reset before they are handed out again.
+	protected void resetForReuse(final int accessorIndex) {
+		if (accessorIndex < 0)
+			throw new IllegalArgumentException("Cannot pass negative accessorIndex to resetForReuse.");
+
+		mAccessorIndex = accessorIndex;
+		mQueuedTime = 0;
+		mStartedTime = 0;
+		mFinishedTime = 0;
+		mDeadline = NO_DEADLINE;
+		mPrioritizable.resetLifecycle();
+	}
+
 	public int getAccessorIndex() {
 		return mAccessorIndex;
 	}
 
+	void setAccessorIndex(final int accessorIndex) {
+		mAccessorIndex = accessorIndex;
+	}
+
+	public long getQueuedTime() {
+		return mQueuedTime;
+	}
+
+	void setQueuedTime(final long queuedTime) {
+		mQueuedTime = queuedTime;
+	}
+
+	public long getStartedTime() {
+		return mStartedTime;
+	}
+
+	void setStartedTime(final long startedTime) {
+		mStartedTime = startedTime;
+	}
+
+	public long getFinishedTime() {
+		return mFinishedTime;
+	}
+
+	void setFinishedTime(final long finishedTime) {
+		mFinishedTime = finishedTime;
+	}
+
+	public long getDeadline() {
+		return mDeadline;
+	}
+
+	public void setDeadline(final long deadline) {
+		mDeadline = deadline;
+	}
+
+	public void setDeadline(final long timeout, final TimeUnit unit) {
+		mDeadline = System.nanoTime() + unit.toNanos(timeout);
+	}
+
+	public boolean hasDeadline() {
+		return mDeadline != NO_DEADLINE;
+	}
+
+	public boolean isExpired(final long now) {
+		return hasDeadline() && now - mDeadline >= 0;
+	}
+
 	public Prioritizable getPrioritizable() {
 		return mPrioritizable;
 	}
 
 	@Override
 	public void run() {
-		mPrioritizable.disableCancel();
-		if (!mPrioritizable.isCancelled()) {
-			mPrioritizable.execute();
+		if (mPrioritizable.start()) {
+			try {
+				mPrioritizable.execute();
+			} finally {
+				mPrioritizable.finish();
+			}
 		}
 	}
 
+	public Prioritizable.State getState() {
+		return mPrioritizable.getState();
+	}
+
+	public long getTransitionTime(final Prioritizable.State state) {
+		return mPrioritizable.getTransitionTime(state);
+	}
+
 	public boolean isCancelled() {
 		return mPrioritizable.isCancelled();
 	}
@@ -52,6 +133,14 @@ public class PrioritizableRequest implements Runnable {
 		return mPrioritizable.getIdentifier();
 	}
 
+	public Object getLaneKey() {
+		return mPrioritizable.getLaneKey();
+	}
+
+	public Collection<?> getTags() {
+		return mPrioritizable.getTags();
+	}
+
 	public boolean cancel() {
 		return mPrioritizable.cancel();
 	}
@@ -26,7 +26,4 @@ public interface PriorityAccessor {
 	public int size();
 
 	public void clear();
-
-	// TODO: Need to create a public void remove(PrioritizableRequest request)
-	// method or else AuxiliaryExecutor's remove method will not work.
 }
@@ -15,8 +15,14 @@
  */
 package io.pivotal.arca.threading;
 
-public class QueuePriorityAccessor implements PriorityAccessor {
-	private final HashedQueue<PrioritizableRequest> mQueue = new HashedQueue<PrioritizableRequest>();
+import java.util.Collection;
+
+public class QueuePriorityAccessor implements ManagedPriorityAccessor {
+	private final HashedQueue<PrioritizableRequest> mQueue = new HashedQueue<PrioritizableRequest>(true);
+
+	public void setRecycling(final boolean recycling) {
+		mQueue.setRecycling(recycling);
+	}
 
 	@Override
 	public void attach(final PrioritizableRequest request) {
@@ -28,6 +34,16 @@ public class QueuePriorityAccessor implements PriorityAccessor {
 		return mQueue.poll();
 	}
 
+	@Override
+	public PrioritizableRequest detachLowestPriorityItem() {
+		return mQueue.pollLast();
+	}
+
+	@Override
+	public PrioritizableRequest detachOldestItem() {
+		return mQueue.poll();
+	}
+
 	@Override
 	public int size() {
 		return mQueue.size();
@@ -38,8 +54,18 @@ public class QueuePriorityAccessor implements PriorityAccessor {
 		return mQueue.peek();
 	}
 
+	@Override
+	public boolean remove(final PrioritizableRequest request) {
+		return mQueue.remove(request);
+	}
+
 	@Override
 	public void clear() {
 		mQueue.clear();
 	}
+
+	@Override
+	public void copyTo(final Collection<? super PrioritizableRequest> requests) {
+		mQueue.copyTo(requests);
+	}
 }
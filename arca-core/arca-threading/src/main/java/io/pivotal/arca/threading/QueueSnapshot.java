@@ -0,0 +1,124 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The queue is only locked while references are copied.
+public class QueueSnapshot {
+
+	public static final class Entry {
+
+		private final Identifier<?> mIdentifier;
+		private final int mAccessorIndex;
+		private final long mAge;
+		private final long mDeadline;
+		private final boolean mCancelled;
+
+		Entry(final PrioritizableRequest request, final long time) {
+			mIdentifier = request.getIdentifier();
+			mAccessorIndex = request.getAccessorIndex();
+			mAge = time - request.getQueuedTime();
+			mDeadline = request.getDeadline();
+			mCancelled = request.isCancelled();
+		}
+
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+
+		public int getAccessorIndex() {
+			return mAccessorIndex;
+		}
+
+		public long getAge(final TimeUnit unit) {
+			return unit.convert(mAge, TimeUnit.NANOSECONDS);
+		}
+
+		public boolean hasDeadline() {
+			return mDeadline != PrioritizableRequest.NO_DEADLINE;
+		}
+
+		public boolean isCancelled() {
+			return mCancelled;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder builder = new StringBuilder();
+			builder.append(mIdentifier.getData()).append(" age=").append(getAge(TimeUnit.MILLISECONDS)).append("ms");
+			if (mCancelled) {
+				builder.append(" cancelled");
+			}
+			return builder.toString();
+		}
+	}
+
+	private final List<List<Entry>> mLanes;
+	private final long mTime;
+	private final int mSize;
+
+	// Entries are built from the copied references once the lock is released,
+	// so a request cancelled in between is reported as cancelled.
+	QueueSnapshot(final List<List<PrioritizableRequest>> lanes, final long time) {
+		final List<List<Entry>> entries = new ArrayList<List<Entry>>(lanes.size());
+		int size = 0;
+		for (final List<PrioritizableRequest> lane : lanes) {
+			final List<Entry> laneEntries = new ArrayList<Entry>(lane.size());
+			for (final PrioritizableRequest request : lane) {
+				laneEntries.add(new Entry(request, time));
+			}
+			entries.add(Collections.unmodifiableList(laneEntries));
+			size += laneEntries.size();
+		}
+		mLanes = Collections.unmodifiableList(entries);
+		mTime = time;
+		mSize = size;
+	}
+
+	public long getTime() {
+		return mTime;
+	}
+
+	public int getLaneCount() {
+		return mLanes.size();
+	}
+
+	public List<Entry> getLane(final int accessorIndex) {
+		return mLanes.get(accessorIndex);
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("QueueSnapshot (").append(mSize).append(" requests)");
+		for (int i = 0; i < mLanes.size(); i++) {
+			final List<Entry> lane = mLanes.get(i);
+			builder.append("\n  lane ").append(i).append(" (").append(lane.size()).append(")");
+			for (final Entry entry : lane) {
+				builder.append("\n    ").append(entry);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -14,79 +14,333 @@
  * limitations under the License.
  */
 package io.pivotal.arca.threading;
-
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class QueuingMaps {
 
-	private final Set<Identifier<?>> mRunningRequests = Collections.newSetFromMap(new ConcurrentHashMap<Identifier<?>, Boolean>());
-	private final Map<Identifier<?>, List<PrioritizableRequest>> mRequestListeners = new ConcurrentHashMap<Identifier<?>, List<PrioritizableRequest>>();
+	public interface OnRequestCancelledListener {
+		public void onRequestCancelled(PrioritizableRequest request);
+	}
+
+	private static final int MAX_POOLED_ENTRIES = 32;
+
+	// Each identifier is guarded by its own entry, so requests for different
+	// identifiers never contend. An entry is retired once it has nothing
+	// running or waiting, and with recycling on may then be reused for
+	// another identifier, so callers that find it retired or reassigned
+	// start over. Requests that
+	// were absorbed by promoting a queued duplicate are not in the queue
+	// themselves and wait here for whichever duplicate runs.
+	private static final class Entry {
+		List<PrioritizableRequest> waiting = new ArrayList<PrioritizableRequest>(1);
+		List<PrioritizableRequest> absorbed;
+		Identifier<?> identifier;
+		boolean running;
+		boolean retired;
+
+		boolean isFor(final Identifier<?> identifier) {
+			return !retired && identifier.equals(this.identifier);
+		}
+
+		List<PrioritizableRequest> takeWaiting() {
+			final List<PrioritizableRequest> waiting = this.waiting;
+			this.waiting = new ArrayList<PrioritizableRequest>(1);
+			return waiting;
+		}
+
+		List<PrioritizableRequest> takeAbsorbed() {
+			final List<PrioritizableRequest> absorbed = this.absorbed;
+			this.absorbed = null;
+			return absorbed != null ? absorbed : Collections.<PrioritizableRequest> emptyList();
+		}
+
+		// Usually the executing request is the only one waiting, in which
+		// case there are no duplicates to hand back.
+		List<PrioritizableRequest> takeDuplicates(final PrioritizableRequest request) {
+			if (waiting.isEmpty() || (waiting.size() == 1 && waiting.get(0) == request)) {
+				waiting.clear();
+				return Collections.emptyList();
+			}
+			return takeWaiting();
+		}
+	}
+
+	private final ConcurrentMap<Identifier<?>, Entry> mEntries = new ConcurrentHashMap<Identifier<?>, Entry>();
+	private final ArrayDeque<Entry> mPool = new ArrayDeque<Entry>(MAX_POOLED_ENTRIES);
+	private final OnRequestCancelledListener mListener;
+	private boolean mRecycling;
+
+	public QueuingMaps() {
+		this(null);
+	}
 
-	public synchronized void put(final PrioritizableRequest request) {
+	public QueuingMaps(final OnRequestCancelledListener listener) {
+		mListener = listener;
+	}
+
+	// Retired entries are only pooled for reuse with recycling on.
+	void setRecycling(final boolean recycling) {
+		mRecycling = recycling;
+	}
+
+	public void put(final PrioritizableRequest request) {
 		final Identifier<?> identifier = request.getIdentifier();
 
-		if (mRunningRequests.contains(identifier)) {
-			request.cancel();
-			return;
+		while (true) {
+			final Entry entry = getOrCreate(identifier);
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				if (entry.running) {
+					request.cancel();
+				} else {
+					entry.waiting.add(request);
+				}
+				return;
+			}
 		}
+	}
 
-		List<PrioritizableRequest> list = mRequestListeners.get(identifier);
-		if (list == null) {
-			list = new ArrayList<PrioritizableRequest>();
-			mRequestListeners.put(identifier, list);
+	public PrioritizableRequest getWaiting(final Identifier<?> identifier) {
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				if (!entry.running && !entry.waiting.isEmpty()) {
+					return entry.waiting.get(0);
+				}
+				return null;
+			}
 		}
-		list.add(request);
+		return null;
 	}
 
-	public synchronized void onComplete(final Identifier<?> request) {
-		mRunningRequests.remove(request);
+	// The request waits on the queued carrier instead of being queued, as
+	// long as the carrier has not started in the meantime.
+	public boolean absorb(final PrioritizableRequest carrier, final PrioritizableRequest request) {
+		final Identifier<?> identifier = request.getIdentifier();
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				if (entry.running || !entry.waiting.contains(carrier)) {
+					return false;
+				}
+				if (entry.absorbed == null) {
+					entry.absorbed = new ArrayList<PrioritizableRequest>(1);
+				}
+				entry.absorbed.add(request);
+				return true;
+			}
+		}
+		return false;
 	}
 
-	public synchronized void notifyExecuting(final PrioritizableRequest request) {
+	public boolean removeAbsorbed(final PrioritizableRequest request) {
 		final Identifier<?> identifier = request.getIdentifier();
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				return entry.absorbed != null && entry.absorbed.remove(request);
+			}
+		}
+		return false;
+	}
 
-		if (mRunningRequests.contains(identifier)) {
-			request.cancel();
-		} else {
-			mRunningRequests.add(identifier);
-			final List<PrioritizableRequest> prioritizables = mRequestListeners.remove(identifier);
-			if (prioritizables != null) {
-				for (final PrioritizableRequest r : prioritizables) {
-					if (r != request)
-						r.cancel();
+	// A queued request that leaves without running hands back the requests
+	// absorbed for its identifier, so the caller can queue them again. The
+	// request itself is left for the caller to settle.
+	public List<PrioritizableRequest> release(final PrioritizableRequest request) {
+		final Identifier<?> identifier = request.getIdentifier();
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
 				}
+				entry.waiting.remove(request);
+				final List<PrioritizableRequest> absorbed = entry.running ? Collections.<PrioritizableRequest> emptyList() : entry.takeAbsorbed();
+				retireIfIdle(identifier, entry);
+				return absorbed;
 			}
 		}
+		return Collections.emptyList();
 	}
 
-	public synchronized boolean cancel(final PrioritizableRequest request) {
+	public void onComplete(final Identifier<?> identifier) {
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				entry.running = false;
+				retireIfIdle(identifier, entry);
+				return;
+			}
+		}
+	}
+
+	public void notifyExecuting(final PrioritizableRequest request) {
+		final Identifier<?> identifier = request.getIdentifier();
+		final List<PrioritizableRequest> duplicates;
+		final List<PrioritizableRequest> absorbed;
+
+		while (true) {
+			final Entry entry = getOrCreate(identifier);
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				// A request may have been cancelled as a duplicate after the
+				// executor checked it, so that is re-checked under the lock.
+				if (entry.running || request.isCancelled()) {
+					request.cancel();
+					retireIfIdle(identifier, entry);
+					return;
+				}
+				entry.running = true;
+				duplicates = entry.takeDuplicates(request);
+				absorbed = entry.takeAbsorbed();
+				break;
+			}
+		}
+
+		for (final PrioritizableRequest r : duplicates) {
+			if (r != request && r.cancel())
+				notifyCancelled(r);
+		}
+		for (final PrioritizableRequest r : absorbed) {
+			if (r.cancel())
+				notifyCancelled(r);
+		}
+	}
+
+	public boolean cancel(final PrioritizableRequest request) {
 		final Identifier<?> identifier = request.getIdentifier();
-		final List<PrioritizableRequest> list = mRequestListeners.get(identifier);
-		if (list != null) {
-			list.remove(request);
-			if (list.size() == 0)
-				mRequestListeners.remove(identifier);
+		boolean running = false;
+
+		Entry entry;
+		while ((entry = mEntries.get(identifier)) != null) {
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				entry.waiting.remove(request);
+				running = entry.running;
+				retireIfIdle(identifier, entry);
+				break;
+			}
 		}
-		request.cancel();
-		return mRunningRequests.contains(identifier);
+
+		if (request.cancel())
+			notifyCancelled(request);
+		return running;
 	}
 
-	public synchronized void cancelAll() {
-		final List<PrioritizableRequest> requestList = new ArrayList<PrioritizableRequest>();
-		for (final Entry<Identifier<?>, List<PrioritizableRequest>> entry : mRequestListeners.entrySet()) {
-			for (final PrioritizableRequest request : entry.getValue()) {
-				requestList.add(request);
+	public void cancelAll() {
+		for (final Identifier<?> identifier : mEntries.keySet()) {
+			final Entry entry = mEntries.get(identifier);
+			if (entry == null) {
+				continue;
+			}
+
+			// Absorbed requests are cancelled first, so none of them is still
+			// live when the request they waited on reports its cancellation.
+			final List<PrioritizableRequest> waiting;
+			synchronized (entry) {
+				if (!entry.isFor(identifier)) {
+					continue;
+				}
+				waiting = new ArrayList<PrioritizableRequest>(entry.takeAbsorbed());
+				waiting.addAll(entry.takeWaiting());
+				retireIfIdle(identifier, entry);
+			}
+
+			for (final PrioritizableRequest request : waiting) {
+				if (request.cancel())
+					notifyCancelled(request);
 			}
 		}
+	}
+
+	public boolean isEmpty() {
+		return mEntries.isEmpty();
+	}
+
+	// A reused entry may still be held by callers from its previous life,
+	// so it is only marked live under its lock once it is in the map.
+	private Entry getOrCreate(final Identifier<?> identifier) {
+		final Entry entry = mEntries.get(identifier);
+		if (entry != null) {
+			return entry;
+		}
+
+		final Entry created = obtain();
+		synchronized (created) {
+			final Entry existing = mEntries.putIfAbsent(identifier, created);
+			if (existing != null) {
+				recycle(created);
+				return existing;
+			}
+			created.identifier = identifier;
+			created.retired = false;
+			return created;
+		}
+	}
+
+	private Entry obtain() {
+		synchronized (mPool) {
+			final Entry entry = mPool.poll();
+			if (entry != null) {
+				return entry;
+			}
+		}
+		final Entry entry = new Entry();
+		entry.retired = true;
+		return entry;
+	}
+
+	// Called with the entry's lock held.
+	private void recycle(final Entry entry) {
+		entry.identifier = null;
+		entry.running = false;
+		entry.waiting.clear();
+		entry.absorbed = null;
+		if (!mRecycling) {
+			return;
+		}
+		synchronized (mPool) {
+			if (mPool.size() < MAX_POOLED_ENTRIES) {
+				mPool.push(entry);
+			}
+		}
+	}
+
+	private void retireIfIdle(final Identifier<?> identifier, final Entry entry) {
+		if (!entry.running && entry.waiting.isEmpty() && (entry.absorbed == null || entry.absorbed.isEmpty())) {
+			entry.retired = true;
+			mEntries.remove(identifier, entry);
+			recycle(entry);
+		}
+	}
 
-		for (final PrioritizableRequest request : requestList) {
-			cancel(request);
+	private void notifyCancelled(final PrioritizableRequest request) {
+		if (mListener != null) {
+			mListener.onRequestCancelled(request);
 		}
 	}
 }
@@ -0,0 +1,60 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+// Removing goes back to the queue, which is what purge() relies on.
+class RequestArrayIterator implements Iterator<Runnable> {
+
+	private final Object[] mRequests;
+	private final Queue<Runnable> mQueue;
+	private int mIndex;
+	private Runnable mLast;
+
+	public RequestArrayIterator(final Object[] requests, final Queue<Runnable> queue) {
+		mRequests = requests;
+		mQueue = queue;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return mIndex < mRequests.length;
+	}
+
+	@Override
+	public Runnable next() {
+		if (mIndex >= mRequests.length) {
+			throw new NoSuchElementException("No more elements inside of the iterator.");
+		}
+		mLast = (Runnable) mRequests[mIndex++];
+		return mLast;
+	}
+
+	@Override
+	public void remove() {
+		if (mLast == null) {
+			throw new IllegalStateException();
+		}
+		if (mQueue == null) {
+			throw new UnsupportedOperationException();
+		}
+		mQueue.remove(mLast);
+		mLast = null;
+	}
+}
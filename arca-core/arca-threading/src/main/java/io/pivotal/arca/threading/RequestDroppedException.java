@@ -0,0 +1,33 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+public class RequestDroppedException extends Exception {
+
+	private static final long serialVersionUID = 6305816532741290574L;
+
+	private final DropReason mReason;
+
+	public RequestDroppedException(final DropReason reason) {
+		super("Request was dropped: " + reason);
+		mReason = reason;
+	}
+
+	public DropReason getReason() {
+		return mReason;
+	}
+
+}
@@ -0,0 +1,182 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Callbacks run on the thread that settles the future, so they should not
+// block.
+public class RequestFuture<V> implements Future<V> {
+
+	public static interface Callback<V> {
+		public void onComplete(RequestFuture<V> future);
+	}
+
+	private static enum State {
+		PENDING, SUCCEEDED, FAILED, CANCELLED
+	}
+
+	private State mState = State.PENDING;
+	private V mValue;
+	private Throwable mFailure;
+	private List<Callback<V>> mCallbacks;
+
+	public boolean complete(final V value) {
+		synchronized (this) {
+			if (mState != State.PENDING) {
+				return false;
+			}
+			mValue = value;
+			mState = State.SUCCEEDED;
+		}
+		dispatchCallbacks();
+		return true;
+	}
+
+	public boolean fail(final Throwable failure) {
+		if (failure == null)
+			throw new IllegalArgumentException("Failure cannot be null.");
+
+		synchronized (this) {
+			if (mState != State.PENDING) {
+				return false;
+			}
+			mFailure = failure;
+			mState = State.FAILED;
+		}
+		dispatchCallbacks();
+		return true;
+	}
+
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		if (!setCancelled()) {
+			return false;
+		}
+		onCancelled();
+		return true;
+	}
+
+	// Settles the future as cancelled without calling onCancelled(), for
+	// owners that already know the underlying work is gone.
+	protected boolean setCancelled() {
+		synchronized (this) {
+			if (mState != State.PENDING) {
+				return false;
+			}
+			mState = State.CANCELLED;
+		}
+		dispatchCallbacks();
+		return true;
+	}
+
+	// Called once after cancel() succeeds, so subclasses can withdraw the
+	// work the future stands for.
+	protected void onCancelled() {
+	}
+
+	public void addCallback(final Callback<V> callback) {
+		if (callback == null)
+			throw new IllegalArgumentException("Callback cannot be null.");
+
+		synchronized (this) {
+			if (mState == State.PENDING) {
+				if (mCallbacks == null) {
+					mCallbacks = new ArrayList<Callback<V>>(2);
+				}
+				mCallbacks.add(callback);
+				return;
+			}
+		}
+		callback.onComplete(this);
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return mState != State.PENDING;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return mState == State.CANCELLED;
+	}
+
+	public synchronized boolean isFailed() {
+		return mState == State.FAILED;
+	}
+
+	// Non-blocking accessors for callbacks, which run once the future is done.
+	public synchronized V getValue() {
+		return mValue;
+	}
+
+	public synchronized Throwable getFailure() {
+		return mFailure;
+	}
+
+	@Override
+	public synchronized V get() throws InterruptedException, ExecutionException {
+		while (mState == State.PENDING) {
+			wait();
+		}
+		return getResult();
+	}
+
+	@Override
+	public synchronized V get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		final long end = System.nanoTime() + unit.toNanos(timeout);
+		while (mState == State.PENDING) {
+			final long remaining = end - System.nanoTime();
+			if (remaining <= 0) {
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return getResult();
+	}
+
+	private V getResult() throws ExecutionException {
+		switch (mState) {
+		case CANCELLED:
+			throw new CancellationException();
+		case FAILED:
+			throw new ExecutionException(mFailure);
+		default:
+			return mValue;
+		}
+	}
+
+	private void dispatchCallbacks() {
+		final List<Callback<V>> callbacks;
+		synchronized (this) {
+			notifyAll();
+			callbacks = mCallbacks;
+			mCallbacks = null;
+		}
+
+		if (callbacks != null) {
+			for (final Callback<V> callback : callbacks) {
+				callback.onComplete(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+// Futures are grouped by identifier, so a request absorbed as a duplicate
+// completes along with the one that runs.
+class RequestFutures implements ManagedAuxiliaryExecutorObserver {
+
+	// Lets the executor hear about requests its queue dropped or cancelled,
+	// so requests that were waiting on them can be queued again.
+	interface OnRequestReleasedListener {
+		void onRequestReleased(PrioritizableRequest request);
+	}
+
+	private static final class PendingFuture extends RequestFuture<PrioritizableRequest> {
+
+		final AuxiliaryExecutor executor;
+		final PrioritizableRequest request;
+
+		PendingFuture(final AuxiliaryExecutor executor, final PrioritizableRequest request) {
+			this.executor = executor;
+			this.request = request;
+		}
+
+		@Override
+		protected void onCancelled() {
+			executor.remove(request);
+		}
+	}
+
+	private final Map<Identifier<?>, List<PendingFuture>> mPending = new HashMap<Identifier<?>, List<PendingFuture>>();
+	private final AuxiliaryExecutorObserver mObserver;
+	private volatile OnRequestReleasedListener mReleasedListener;
+
+	public RequestFutures(final AuxiliaryExecutorObserver observer) {
+		mObserver = observer;
+	}
+
+	// Executors share the futures their queue was built with, and otherwise
+	// settle futures for the requests they report themselves.
+	public static RequestFutures forObserver(final AuxiliaryExecutorObserver observer) {
+		return observer instanceof RequestFutures ? (RequestFutures) observer : new RequestFutures(observer);
+	}
+
+	void setOnRequestReleasedListener(final OnRequestReleasedListener listener) {
+		mReleasedListener = listener;
+	}
+
+	public RequestFuture<PrioritizableRequest> submit(final AuxiliaryExecutor executor, final Runnable command) {
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		final PendingFuture future = register(executor, request);
+		try {
+			executor.execute(request);
+		} catch (final RejectedExecutionException e) {
+			unregister(future);
+			throw e;
+		}
+		return future;
+	}
+
+	@Override
+	public void onComplete(final PrioritizableRequest request) {
+		if (mObserver != null) {
+			mObserver.onComplete(request);
+		}
+
+		final List<PendingFuture> settled;
+		synchronized (this) {
+			settled = mPending.remove(request.getIdentifier());
+		}
+
+		if (settled != null) {
+			for (final PendingFuture future : settled) {
+				future.complete(request);
+			}
+		}
+	}
+
+	@Override
+	public void onCancelled(final PrioritizableRequest request) {
+		if (mObserver != null) {
+			mObserver.onCancelled(request);
+		}
+
+		for (final PendingFuture future : settle(request, true)) {
+			future.setCancelled();
+		}
+		notifyReleased(request);
+	}
+
+	@Override
+	public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+		if (mObserver != null) {
+			Observers.notifyDropped(mObserver, request, reason);
+		}
+
+		final List<PendingFuture> settled = settle(request, false);
+		if (!settled.isEmpty()) {
+			final RequestDroppedException failure = new RequestDroppedException(reason);
+			for (final PendingFuture future : settled) {
+				future.fail(failure);
+			}
+		}
+		notifyReleased(request);
+	}
+
+	@Override
+	public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+		if (mObserver != null) {
+			Observers.notifyPoolSizeChanged(mObserver, executor, previousSize, newSize);
+		}
+	}
+
+	// ======================================================
+
+	private void notifyReleased(final PrioritizableRequest request) {
+		final OnRequestReleasedListener listener = mReleasedListener;
+		if (listener != null) {
+			listener.onRequestReleased(request);
+		}
+	}
+
+	private synchronized PendingFuture register(final AuxiliaryExecutor executor, final PrioritizableRequest request) {
+		final PendingFuture future = new PendingFuture(executor, request);
+		List<PendingFuture> futures = mPending.get(request.getIdentifier());
+		if (futures == null) {
+			futures = new ArrayList<PendingFuture>(1);
+			mPending.put(request.getIdentifier(), futures);
+		}
+		futures.add(future);
+		return future;
+	}
+
+	private synchronized void unregister(final PendingFuture future) {
+		final Identifier<?> identifier = future.request.getIdentifier();
+		final List<PendingFuture> futures = mPending.get(identifier);
+		if (futures != null && futures.remove(future) && futures.isEmpty()) {
+			mPending.remove(identifier);
+		}
+	}
+
+	// A cancelled duplicate keeps waiting while another submitted request for
+	// its identifier is still live. Once none is, the finished request and
+	// every duplicate that was waiting on it settle the same way.
+	private synchronized List<PendingFuture> settle(final PrioritizableRequest request, final boolean waitForLiveRequest) {
+		final Identifier<?> identifier = request.getIdentifier();
+		final List<PendingFuture> futures = mPending.get(identifier);
+		if (futures == null) {
+			return Collections.emptyList();
+		}
+
+		PendingFuture own = null;
+		boolean hasLiveRequest = false;
+		for (final PendingFuture future : futures) {
+			if (future.request == request) {
+				own = future;
+			} else if (!future.request.isCancelled()) {
+				hasLiveRequest = true;
+			}
+		}
+
+		if (own == null || (hasLiveRequest && waitForLiveRequest)) {
+			return Collections.emptyList();
+		}
+
+		if (hasLiveRequest) {
+			futures.remove(own);
+			return Collections.<PendingFuture> singletonList(own);
+		}
+
+		mPending.remove(identifier);
+		return futures;
+	}
+}
@@ -0,0 +1,198 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Due requests go through execute(), so they are prioritised and
+// de-duplicated like any other. A duplicate scheduled meanwhile is merged
+// into the scheduled request and goes to the executor along with it. The
+// timer thread exits when nothing is scheduled.
+class RequestScheduler {
+
+	private static final class Entry {
+		PrioritizableRequest request;
+		List<PrioritizableRequest> merged;
+		long runAt;
+
+		Entry(final PrioritizableRequest request, final long runAt) {
+			this.request = request;
+			this.runAt = runAt;
+		}
+
+		List<PrioritizableRequest> takeAll() {
+			final List<PrioritizableRequest> requests = new ArrayList<PrioritizableRequest>(merged != null ? merged.size() + 1 : 1);
+			requests.add(request);
+			if (merged != null) {
+				requests.addAll(merged);
+			}
+			return requests;
+		}
+	}
+
+	private static final Comparator<Entry> RUN_AT_COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(final Entry lhs, final Entry rhs) {
+			final long difference = lhs.runAt - rhs.runAt;
+			return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+		}
+	};
+
+	private final IndexedHeap<Entry> mHeap = new IndexedHeap<Entry>(RUN_AT_COMPARATOR);
+	private final Map<Identifier<?>, Entry> mEntries = new HashMap<Identifier<?>, Entry>();
+	private final AuxiliaryExecutor mExecutor;
+	private final AuxiliaryExecutorObserver mObserver;
+	private Thread mThread;
+
+	public RequestScheduler(final AuxiliaryExecutor executor, final AuxiliaryExecutorObserver observer) {
+		mExecutor = executor;
+		mObserver = observer;
+	}
+
+	public synchronized void schedule(final PrioritizableRequest request, final long runAt) {
+		final Entry existing = mEntries.get(request.getIdentifier());
+		if (existing == null) {
+			final Entry entry = new Entry(request, runAt);
+			mEntries.put(request.getIdentifier(), entry);
+			mHeap.add(entry);
+		} else {
+			if (existing.request != request && !isMerged(existing, request)) {
+				existing.request.setAccessorIndex(Math.min(existing.request.getAccessorIndex(), request.getAccessorIndex()));
+				existing.request.setDeadline(Math.max(existing.request.getDeadline(), request.getDeadline()));
+				if (existing.merged == null) {
+					existing.merged = new ArrayList<PrioritizableRequest>(1);
+				}
+				existing.merged.add(request);
+			}
+			if (runAt - existing.runAt < 0) {
+				existing.runAt = runAt;
+				mHeap.add(existing);
+			}
+		}
+
+		if (mThread == null) {
+			mThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					dispatchDueRequests();
+				}
+			}, "AuxiliaryScheduler");
+			mThread.setDaemon(true);
+			mThread.start();
+		} else {
+			notifyAll();
+		}
+	}
+
+	// Requests merged into a removed one stay scheduled, the first of them
+	// taking its place.
+	public synchronized boolean remove(final PrioritizableRequest request) {
+		final Entry entry = mEntries.get(request.getIdentifier());
+		if (entry == null) {
+			return false;
+		}
+		if (entry.request != request) {
+			return entry.merged != null && entry.merged.remove(request);
+		}
+
+		if (entry.merged == null || entry.merged.isEmpty()) {
+			mEntries.remove(request.getIdentifier());
+			mHeap.remove(entry);
+			return true;
+		}
+
+		entry.request = entry.merged.remove(0);
+		for (final PrioritizableRequest merged : entry.merged) {
+			entry.request.setAccessorIndex(Math.min(entry.request.getAccessorIndex(), merged.getAccessorIndex()));
+			entry.request.setDeadline(Math.max(entry.request.getDeadline(), merged.getDeadline()));
+		}
+		return true;
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	public void cancelAll() {
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		synchronized (this) {
+			for (final Entry entry : mEntries.values()) {
+				cancelled.addAll(entry.takeAll());
+			}
+			mEntries.clear();
+			mHeap.clear();
+		}
+
+		for (final PrioritizableRequest request : cancelled) {
+			if (request.cancel()) {
+				notifyCancelled(request);
+			}
+		}
+	}
+
+	private void dispatchDueRequests() {
+		List<PrioritizableRequest> requests;
+		while ((requests = awaitDueRequests()) != null) {
+			for (final PrioritizableRequest request : requests) {
+				try {
+					mExecutor.execute(request);
+				} catch (final RejectedExecutionException e) {
+					if (mObserver != null) {
+						Observers.notifyDropped(mObserver, request, DropReason.REJECTED);
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized List<PrioritizableRequest> awaitDueRequests() {
+		try {
+			while (true) {
+				final Entry head = mHeap.peek();
+				if (head == null) {
+					break;
+				}
+				final long wait = head.runAt - System.nanoTime();
+				if (wait <= 0) {
+					mHeap.poll();
+					mEntries.remove(head.request.getIdentifier());
+					return head.takeAll();
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, wait);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mThread = null;
+		return null;
+	}
+
+	private static boolean isMerged(final Entry entry, final PrioritizableRequest request) {
+		return entry.merged != null && entry.merged.contains(request);
+	}
+
+	private void notifyCancelled(final PrioritizableRequest request) {
+		if (mObserver != null) {
+			mObserver.onCancelled(request);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reserved slots are filled from the highest priority down, and only by
+// threads started without a first task.
+class ReservedThreadFactory implements ThreadFactory {
+
+	private static final class ReservedThread extends Thread {
+
+		private final ReservedThreadFactory mFactory;
+		private final int mMaxAccessorIndex;
+
+		public ReservedThread(final ReservedThreadFactory factory, final Runnable runnable, final String name, final int maxAccessorIndex) {
+			super(runnable, name);
+			mFactory = factory;
+			mMaxAccessorIndex = maxAccessorIndex;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				mFactory.release(mMaxAccessorIndex);
+			}
+		}
+	}
+
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+	private final int[] mReserved;
+	private final int[] mLive;
+	private final String mNamePrefix = "aux-" + POOL_NUMBER.getAndIncrement() + "-thread-";
+	private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+	private final ThreadLocal<Boolean> mUnreservable = new ThreadLocal<Boolean>();
+
+	public ReservedThreadFactory(final int[] reserved) {
+		mReserved = reserved.clone();
+		mLive = new int[reserved.length];
+	}
+
+	public static int getMaxAccessorIndex() {
+		final Thread thread = Thread.currentThread();
+		return thread instanceof ReservedThread ? ((ReservedThread) thread).mMaxAccessorIndex : Integer.MAX_VALUE;
+	}
+
+	public static boolean isReservedThread() {
+		return Thread.currentThread() instanceof ReservedThread;
+	}
+
+	public int getReservedCount() {
+		int count = 0;
+		for (final int reserved : mReserved) {
+			count += reserved;
+		}
+		return count;
+	}
+
+	// Threads created by the calling thread while this is off are never
+	// reserved.
+	void setReservable(final boolean reservable) {
+		if (reservable) {
+			mUnreservable.remove();
+		} else {
+			mUnreservable.set(Boolean.TRUE);
+		}
+	}
+
+	@Override
+	public Thread newThread(final Runnable runnable) {
+		final String name = mNamePrefix + mThreadNumber.getAndIncrement();
+		final int index = mUnreservable.get() == null ? acquire() : -1;
+		final Thread thread = index >= 0 ? new ReservedThread(this, runnable, name, index) : new Thread(runnable, name);
+		if (thread.isDaemon()) {
+			thread.setDaemon(false);
+		}
+		if (thread.getPriority() != Thread.NORM_PRIORITY) {
+			thread.setPriority(Thread.NORM_PRIORITY);
+		}
+		return thread;
+	}
+
+	private synchronized int acquire() {
+		for (int i = 0; i < mReserved.length; i++) {
+			if (mLive[i] < mReserved[i]) {
+				mLive[i]++;
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private synchronized void release(final int index) {
+		mLive[index]--;
+	}
+}
@@ -0,0 +1,29 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+public interface SchedulingPolicy {
+
+	// Returns -1 if every accessor is empty.
+	public int nextAccessorIndex(final PriorityAccessor[] accessors, final long now);
+
+	// Only considers accessors up to maxAccessorIndex.
+	public int nextAccessorIndex(final PriorityAccessor[] accessors, final int maxAccessorIndex, final long now);
+
+	// Not called for cancelled items that are discarded.
+	public void onDispatched(final int accessorIndex, final PrioritizableRequest request);
+
+}
@@ -15,8 +15,14 @@
  */
 package io.pivotal.arca.threading;
 
-public class StackPriorityAccessor implements PriorityAccessor {
-	private final HashedStack<PrioritizableRequest> mStack = new HashedStack<PrioritizableRequest>();
+import java.util.Collection;
+
+public class StackPriorityAccessor implements ManagedPriorityAccessor {
+	private final HashedStack<PrioritizableRequest> mStack = new HashedStack<PrioritizableRequest>(true);
+
+	public synchronized void setRecycling(final boolean recycling) {
+		mStack.setRecycling(recycling);
+	}
 
 	@Override
 	public synchronized PrioritizableRequest detachHighestPriorityItem() {
@@ -28,6 +34,16 @@ public class StackPriorityAccessor implements PriorityAccessor {
 		mStack.push(request);
 	}
 
+	@Override
+	public synchronized PrioritizableRequest detachLowestPriorityItem() {
+		return mStack.popBottom();
+	}
+
+	@Override
+	public synchronized PrioritizableRequest detachOldestItem() {
+		return mStack.popBottom();
+	}
+
 	@Override
 	public synchronized int size() {
 		return mStack.size();
@@ -38,8 +54,18 @@ public class StackPriorityAccessor implements PriorityAccessor {
 		return mStack.peek();
 	}
 
+	@Override
+	public synchronized boolean remove(final PrioritizableRequest request) {
+		return mStack.remove(request);
+	}
+
 	@Override
 	public void clear() {
 		mStack.clear();
 	}
+
+	@Override
+	public synchronized void copyTo(final Collection<? super PrioritizableRequest> requests) {
+		mStack.copyTo(requests);
+	}
 }
@@ -0,0 +1,104 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class TagIndex {
+
+	// Requests normally leave the index when they start or are cancelled, but
+	// a queue can drop an expired request without the executor seeing it, so
+	// each group also sheds finished requests as it doubles in size.
+	private static final int MIN_PRUNE_SIZE = 16;
+
+	private static final class Group {
+		final Set<PrioritizableRequest> requests = new LinkedHashSet<PrioritizableRequest>();
+		int pruneSize = MIN_PRUNE_SIZE;
+	}
+
+	private final Map<Object, Group> mGroups = new HashMap<Object, Group>();
+
+	public void add(final PrioritizableRequest request) {
+		final Collection<?> tags = request.getTags();
+		if (tags.isEmpty()) {
+			return;
+		}
+
+		synchronized (mGroups) {
+			for (final Object tag : tags) {
+				Group group = mGroups.get(tag);
+				if (group == null) {
+					group = new Group();
+					mGroups.put(tag, group);
+				}
+				if (group.requests.add(request) && group.requests.size() >= group.pruneSize) {
+					prune(group);
+				}
+			}
+		}
+	}
+
+	public void remove(final PrioritizableRequest request) {
+		final Collection<?> tags = request.getTags();
+		if (tags.isEmpty()) {
+			return;
+		}
+
+		synchronized (mGroups) {
+			for (final Object tag : tags) {
+				final Group group = mGroups.get(tag);
+				if (group != null && group.requests.remove(request) && group.requests.isEmpty()) {
+					mGroups.remove(tag);
+				}
+			}
+		}
+	}
+
+	public List<PrioritizableRequest> removeGroup(final Object tag) {
+		synchronized (mGroups) {
+			final Group group = mGroups.remove(tag);
+			if (group == null) {
+				return Collections.emptyList();
+			}
+			return new ArrayList<PrioritizableRequest>(group.requests);
+		}
+	}
+
+	public int size(final Object tag) {
+		synchronized (mGroups) {
+			final Group group = mGroups.get(tag);
+			return group != null ? group.requests.size() : 0;
+		}
+	}
+
+	private static void prune(final Group group) {
+		final Iterator<PrioritizableRequest> iterator = group.requests.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getState() != Prioritizable.State.QUEUED) {
+				iterator.remove();
+			}
+		}
+		group.pruneSize = Math.max(MIN_PRUNE_SIZE, group.requests.size() * 2);
+	}
+}
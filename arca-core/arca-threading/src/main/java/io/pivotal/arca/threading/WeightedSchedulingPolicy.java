@@ -0,0 +1,125 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+// Deficit round-robin. Threads limited to the first accessors pass over
+// the others without ending their turn.
+public class WeightedSchedulingPolicy implements SchedulingPolicy {
+
+	private final int[] mWeights;
+	private final int[] mDeficits;
+	private final long[] mDispatched;
+	private final boolean[] mCredited;
+	private final int mNumWeights;
+
+	private int mCurrent;
+
+	public WeightedSchedulingPolicy(final int[] weights) {
+		if (weights == null)
+			throw new IllegalArgumentException("Weights cannot be null.");
+
+		mNumWeights = weights.length;
+		mWeights = new int[mNumWeights];
+		mDeficits = new int[mNumWeights];
+		mDispatched = new long[mNumWeights];
+		mCredited = new boolean[mNumWeights];
+
+		for (int i = 0; i < mNumWeights; i++) {
+			if (weights[i] <= 0) {
+				throw new IllegalArgumentException("The weight provided at index " + i + " must be positive!");
+			}
+			mWeights[i] = weights[i];
+		}
+	}
+
+	@Override
+	public int nextAccessorIndex(final PriorityAccessor[] accessors, final long now) {
+		return nextAccessorIndex(accessors, accessors.length - 1, now);
+	}
+
+	@Override
+	public synchronized int nextAccessorIndex(final PriorityAccessor[] accessors, final int maxAccessorIndex, final long now) {
+		if (accessors.length != mNumWeights) {
+			throw new IllegalStateException("Expected " + mNumWeights + " accessors but found " + accessors.length + ".");
+		}
+
+		// Every accessor with work is credited on each visit, so only a full
+		// turn without any eligible work ends the search.
+		int numIdle = 0;
+		while (numIdle < mNumWeights) {
+			if (mCurrent > maxAccessorIndex) {
+				skip();
+				numIdle++;
+				continue;
+			}
+
+			if (accessors[mCurrent].peek() == null) {
+				mDeficits[mCurrent] = 0;
+				advance();
+				numIdle++;
+				continue;
+			}
+
+			numIdle = 0;
+
+			if (!mCredited[mCurrent]) {
+				mDeficits[mCurrent] += mWeights[mCurrent];
+				mCredited[mCurrent] = true;
+			}
+
+			if (mDeficits[mCurrent] > 0) {
+				return mCurrent;
+			}
+
+			advance();
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized void onDispatched(final int accessorIndex, final PrioritizableRequest request) {
+		mDeficits[accessorIndex]--;
+		mDispatched[accessorIndex]++;
+	}
+
+	public synchronized long getDispatchedCount(final int accessorIndex) {
+		return mDispatched[accessorIndex];
+	}
+
+	public synchronized double getDispatchedShare(final int accessorIndex) {
+		long total = 0;
+		for (int i = 0; i < mNumWeights; i++) {
+			total += mDispatched[i];
+		}
+		return total > 0 ? (double) mDispatched[accessorIndex] / total : 0;
+	}
+
+	public synchronized void resetDispatchedCounts() {
+		for (int i = 0; i < mNumWeights; i++) {
+			mDispatched[i] = 0;
+		}
+	}
+
+	private void advance() {
+		mCredited[mCurrent] = false;
+		mCurrent = (mCurrent + 1) % mNumWeights;
+	}
+
+	private void skip() {
+		mCurrent = (mCurrent + 1) % mNumWeights;
+	}
+
+}
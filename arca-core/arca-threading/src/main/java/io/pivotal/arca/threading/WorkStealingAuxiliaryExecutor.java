@@ -0,0 +1,518 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Requests submitted from a worker stay on its deques, and idle workers
+// steal. A worker takes from its own lanes in priority order, newest first
+// in stack lanes, and only steals once they are empty. Thieves always take
+// the oldest request of a victim's highest lane.
+public class WorkStealingAuxiliaryExecutor extends AbstractExecutorService implements ManagedAuxiliaryExecutor {
+
+	private final QueuingMaps mQueuingMaps = new QueuingMaps();
+	private final RequestFutures mFutures;
+	private final ExecutorMetrics mMetrics;
+	private final RequestScheduler mScheduler;
+	private final TagIndex mTags = new TagIndex();
+	private final Worker[] mWorkers;
+	private final boolean[] mLifoLanes;
+
+	private final AtomicInteger mPending = new AtomicInteger();
+	private final AtomicInteger mActive = new AtomicInteger();
+	private final AtomicInteger mIdle = new AtomicInteger();
+	private final AtomicInteger mNextWorker = new AtomicInteger();
+	private final Object mIdleLock = new Object();
+	private final CountDownLatch mTerminated;
+	private final BlockingQueue<Runnable> mQueueView = new AuxiliaryQueueView() {
+
+		@Override
+		public int size() {
+			int size = 0;
+			for (final Worker worker : mWorkers) {
+				size += worker.mSize;
+			}
+			return size;
+		}
+
+		// Lane by lane, in the order each worker's owner would take them.
+		@Override
+		protected List<Runnable> snapshot() {
+			final List<Runnable> snapshot = new ArrayList<Runnable>();
+			for (int lane = 0; lane < mLifoLanes.length; lane++) {
+				for (final Worker worker : mWorkers) {
+					worker.snapshotTo(lane, snapshot);
+				}
+			}
+			return snapshot;
+		}
+
+		@Override
+		public boolean remove(final Object object) {
+			return object instanceof PrioritizableRequest && unlink((PrioritizableRequest) object);
+		}
+	};
+
+	private volatile boolean mStarted;
+	private volatile boolean mShutdown;
+
+	public WorkStealingAuxiliaryExecutor(final int numWorkers, final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer) {
+		this(numWorkers, accessors, observer, null);
+	}
+
+	// The accessors only decide the order each lane is taken in. Requests
+	// are kept on the workers' deques.
+	public WorkStealingAuxiliaryExecutor(final int numWorkers, final PriorityAccessor[] accessors, final AuxiliaryExecutorObserver observer, final ExecutorMetrics metrics) {
+		if (numWorkers <= 0 || accessors == null || accessors.length == 0)
+			throw new IllegalArgumentException("Worker and accessor counts must be positive.");
+
+		mFutures = RequestFutures.forObserver(observer);
+		mMetrics = metrics;
+		mScheduler = new RequestScheduler(this, mFutures);
+		mLifoLanes = new boolean[accessors.length];
+		for (int i = 0; i < accessors.length; i++) {
+			mLifoLanes[i] = accessors[i] instanceof StackPriorityAccessor || accessors[i] instanceof ConcurrentStackPriorityAccessor;
+		}
+		mTerminated = new CountDownLatch(numWorkers);
+		mWorkers = new Worker[numWorkers];
+		for (int i = 0; i < numWorkers; i++) {
+			mWorkers[i] = new Worker(i);
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		if (request.isCancelled()) {
+			notifyCancelled(request);
+			return;
+		}
+
+		if (request.getAccessorIndex() >= mLifoLanes.length) {
+			throw new IllegalArgumentException("The accessor index " + request.getAccessorIndex() + " is out of bounds!");
+		}
+
+		if (mShutdown) {
+			throw new RejectedExecutionException("Executor has been shut down.");
+		}
+
+		mQueuingMaps.put(request);
+
+		if (request.isCancelled()) {
+			notifyCancelled(request);
+			return;
+		}
+
+		mTags.add(request);
+
+		request.setQueuedTime(System.nanoTime());
+
+		if (mMetrics != null) {
+			mMetrics.onSubmitted(request);
+		}
+
+		startWorkers();
+		workerFor(Thread.currentThread()).push(request);
+		mPending.incrementAndGet();
+		signalWork();
+	}
+
+	@Override
+	public RequestFuture<PrioritizableRequest> submit(final Runnable command) {
+		return mFutures.submit(this, command);
+	}
+
+	@Override
+	public void schedule(final Runnable command, final long delay, final TimeUnit unit) {
+		scheduleAt(command, System.nanoTime() + unit.toNanos(delay));
+	}
+
+	@Override
+	public void scheduleAt(final Runnable command, final long time) {
+		if (mShutdown) {
+			throw new RejectedExecutionException("Executor has been shut down.");
+		}
+		final PrioritizableRequest request = (PrioritizableRequest) command;
+		mTags.add(request);
+		mScheduler.schedule(request, time);
+	}
+
+	@Override
+	public void notifyRequestComplete(final Identifier<?> identifier) {
+		mQueuingMaps.onComplete(identifier);
+	}
+
+	@Override
+	public BlockingQueue<Runnable> getQueue() {
+		return mQueueView;
+	}
+
+	@Override
+	public int getActiveCount() {
+		return mActive.get();
+	}
+
+	@Override
+	public boolean remove(final Runnable task) {
+		final PrioritizableRequest request = (PrioritizableRequest) task;
+		mTags.remove(request);
+
+		if (mScheduler.remove(request)) {
+			request.cancel();
+			notifyCancelled(request);
+			return true;
+		}
+
+		final boolean removed = unlink(request);
+		mQueuingMaps.cancel(request);
+
+		if (removed) {
+			notifyCancelled(request);
+		}
+		return removed;
+	}
+
+	@Override
+	public void cancelAll() {
+		mScheduler.cancelAll();
+		mQueuingMaps.cancelAll();
+	}
+
+	@Override
+	public int cancel(final Object tag) {
+		int cancelled = 0;
+		for (final PrioritizableRequest request : mTags.removeGroup(tag)) {
+			if (remove(request)) {
+				cancelled++;
+			}
+		}
+		return cancelled;
+	}
+
+	@Override
+	public ExecutorMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	void setRecycling(final boolean recycling) {
+		mQueuingMaps.setRecycling(recycling);
+	}
+
+	public int getWorkerCount() {
+		return mWorkers.length;
+	}
+
+	// ======================================================
+
+	@Override
+	public void shutdown() {
+		mShutdown = true;
+		synchronized (mIdleLock) {
+			mIdleLock.notifyAll();
+		}
+		if (!mStarted) {
+			for (int i = 0; i < mWorkers.length; i++) {
+				mTerminated.countDown();
+			}
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		mScheduler.cancelAll();
+		mQueuingMaps.cancelAll();
+		shutdown();
+
+		final List<Runnable> pending = new ArrayList<Runnable>();
+		for (final Worker worker : mWorkers) {
+			worker.drainTo(pending);
+			if (worker.mThread != null) {
+				worker.mThread.interrupt();
+			}
+		}
+		mPending.addAndGet(-pending.size());
+		return pending;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return mShutdown;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return mTerminated.getCount() == 0;
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return mTerminated.await(timeout, unit);
+	}
+
+	// ======================================================
+
+	private void startWorkers() {
+		if (!mStarted) {
+			synchronized (mWorkers) {
+				if (!mStarted && !mShutdown) {
+					for (final Worker worker : mWorkers) {
+						worker.start();
+					}
+					mStarted = true;
+				}
+			}
+		}
+	}
+
+	private Worker workerFor(final Thread thread) {
+		if (thread instanceof WorkerThread) {
+			final Worker worker = ((WorkerThread) thread).mWorker;
+			if (worker.getExecutor() == this) {
+				return worker;
+			}
+		}
+		final int next = mNextWorker.getAndIncrement() & Integer.MAX_VALUE;
+		return mWorkers[next % mWorkers.length];
+	}
+
+	// Each worker bumps the idle count before it re-checks for pending work
+	// and submitters bump the pending count before they check for idle
+	// workers, so at least one of the two always sees the other.
+	private void signalWork() {
+		if (mIdle.get() > 0) {
+			synchronized (mIdleLock) {
+				mIdleLock.notify();
+			}
+		}
+	}
+
+	private void awaitWork() throws InterruptedException {
+		synchronized (mIdleLock) {
+			mIdle.incrementAndGet();
+			try {
+				while (mPending.get() <= 0 && !mShutdown) {
+					mIdleLock.wait();
+				}
+			} finally {
+				mIdle.decrementAndGet();
+			}
+		}
+	}
+
+	private PrioritizableRequest findRequest(final Worker self) {
+		PrioritizableRequest request = self.poll();
+		for (int i = 1; request == null && i < mWorkers.length; i++) {
+			request = mWorkers[(self.mIndex + i) % mWorkers.length].steal();
+		}
+		if (request != null) {
+			mPending.decrementAndGet();
+		}
+		return request;
+	}
+
+	private boolean unlink(final PrioritizableRequest request) {
+		for (final Worker worker : mWorkers) {
+			if (worker.remove(request)) {
+				mPending.decrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void runRequest(final PrioritizableRequest request) {
+		mTags.remove(request);
+
+		if (request.isCancelled()) {
+			notifyCancelled(request);
+			return;
+		}
+		if (request.isExpired(System.nanoTime())) {
+			mFutures.onDropped(request, DropReason.EXPIRED);
+			return;
+		}
+
+		mActive.incrementAndGet();
+		request.setStartedTime(System.nanoTime());
+
+		if (mMetrics != null) {
+			mMetrics.onStarted(request);
+		}
+
+		if (!request.isCancelled()) {
+			mQueuingMaps.notifyExecuting(request);
+		}
+
+		try {
+			request.run();
+		} catch (final RuntimeException e) {
+			final Thread thread = Thread.currentThread();
+			final Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+			if (handler != null) {
+				handler.uncaughtException(thread, e);
+			}
+		} finally {
+			request.setFinishedTime(System.nanoTime());
+
+			if (mMetrics != null) {
+				mMetrics.onFinished(request);
+			}
+
+			mActive.decrementAndGet();
+			notifyReferenceManager(request);
+		}
+	}
+
+	private void notifyCancelled(final PrioritizableRequest request) {
+		mTags.remove(request);
+
+		mFutures.onCancelled(request);
+	}
+
+	private void notifyReferenceManager(final PrioritizableRequest request) {
+		if (!request.isCancelled()) {
+			mFutures.onComplete(request);
+		} else {
+			mFutures.onCancelled(request);
+		}
+	}
+
+	// ======================================================
+
+	private static final class WorkerThread extends Thread {
+
+		private final Worker mWorker;
+
+		public WorkerThread(final Worker worker, final String name) {
+			super(worker, name);
+			mWorker = worker;
+		}
+	}
+
+	// One monitor guards all of a worker's lanes, and thieves skip a victim
+	// without taking it while its size reads zero.
+	private final class Worker implements Runnable {
+
+		private final int mIndex;
+		private final ArrayList<ArrayDeque<PrioritizableRequest>> mLanes;
+		private volatile int mSize;
+		private volatile Thread mThread;
+
+		public Worker(final int index) {
+			mIndex = index;
+			mLanes = new ArrayList<ArrayDeque<PrioritizableRequest>>(mLifoLanes.length);
+			for (int i = 0; i < mLifoLanes.length; i++) {
+				mLanes.add(new ArrayDeque<PrioritizableRequest>());
+			}
+		}
+
+		public WorkStealingAuxiliaryExecutor getExecutor() {
+			return WorkStealingAuxiliaryExecutor.this;
+		}
+
+		public void start() {
+			mThread = new WorkerThread(this, "AuxiliaryWorker-" + mIndex);
+			mThread.start();
+		}
+
+		public synchronized void push(final PrioritizableRequest request) {
+			mLanes.get(request.getAccessorIndex()).offerLast(request);
+			mSize++;
+		}
+
+		public synchronized PrioritizableRequest poll() {
+			for (int lane = 0; lane < mLanes.size(); lane++) {
+				final ArrayDeque<PrioritizableRequest> deque = mLanes.get(lane);
+				final PrioritizableRequest request = mLifoLanes[lane] ? deque.pollLast() : deque.pollFirst();
+				if (request != null) {
+					mSize--;
+					return request;
+				}
+			}
+			return null;
+		}
+
+		public PrioritizableRequest steal() {
+			if (mSize == 0) {
+				return null;
+			}
+			synchronized (this) {
+				for (final ArrayDeque<PrioritizableRequest> deque : mLanes) {
+					final PrioritizableRequest request = deque.pollFirst();
+					if (request != null) {
+						mSize--;
+						return request;
+					}
+				}
+				return null;
+			}
+		}
+
+		public synchronized boolean remove(final PrioritizableRequest request) {
+			if (mLanes.get(request.getAccessorIndex()).remove(request)) {
+				mSize--;
+				return true;
+			}
+			return false;
+		}
+
+		public synchronized void drainTo(final Collection<? super PrioritizableRequest> collection) {
+			for (final ArrayDeque<PrioritizableRequest> lane : mLanes) {
+				collection.addAll(lane);
+				lane.clear();
+			}
+			mSize = 0;
+		}
+
+		public synchronized void snapshotTo(final int lane, final Collection<? super PrioritizableRequest> collection) {
+			final ArrayDeque<PrioritizableRequest> deque = mLanes.get(lane);
+			final Iterator<PrioritizableRequest> iterator = mLifoLanes[lane] ? deque.descendingIterator() : deque.iterator();
+			while (iterator.hasNext()) {
+				collection.add(iterator.next());
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					final PrioritizableRequest request = findRequest(this);
+					if (request != null) {
+						runRequest(request);
+					} else if (mShutdown) {
+						return;
+					} else {
+						awaitWork();
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				mTerminated.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AdaptivePoolController;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+public class AdaptivePoolControllerTest extends AndroidTestCase {
+
+	private static final long TARGET_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long EXECUTION_TIME = TimeUnit.MILLISECONDS.toNanos(5);
+
+	public void testGrowsAdditivelyWhileRequestsWait() {
+		final AdaptivePoolController controller = new AdaptivePoolController(1, 4, 10, TimeUnit.MILLISECONDS);
+
+		assertEquals(2, runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME));
+		assertEquals(3, runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME));
+		assertEquals(4, runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME));
+		assertEquals(4, runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME));
+	}
+
+	public void testShrinksMultiplicativelyWhenIdle() {
+		final AdaptivePoolController controller = new AdaptivePoolController(1, 8, 10, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 7; i++) {
+			runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME);
+		}
+		assertEquals(8, controller.getPoolSize());
+
+		int poolSize = 8;
+		for (int i = 0; i < 10; i++) {
+			poolSize = runWindow(controller, 0, EXECUTION_TIME);
+		}
+		assertEquals(1, poolSize);
+	}
+
+	public void testShrinksWhenExecutionSlowsDown() {
+		final AdaptivePoolController controller = new AdaptivePoolController(1, 4, 10, TimeUnit.MILLISECONDS);
+		runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME);
+		runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME);
+		assertEquals(3, controller.getPoolSize());
+
+		int poolSize = 3;
+		for (int i = 0; i < 3; i++) {
+			poolSize = runWindow(controller, TARGET_WAIT * 5, EXECUTION_TIME * 20);
+		}
+		assertTrue(poolSize < 3);
+	}
+
+	public void testInvalidBoundsAreRejected() {
+		try {
+			new AdaptivePoolController(2, 1, 10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+	}
+
+	public void testExecutorGrowsAndNotifiesObserver() throws Exception {
+		final int numRequests = 40;
+		final CountDownLatch latch = new CountDownLatch(numRequests);
+		final AtomicInteger largestSize = new AtomicInteger();
+
+		final AuxiliaryExecutor executor = new AuxiliaryExecutor.Builder(new PriorityAccessor[] { new QueuePriorityAccessor() }, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				latch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+				if (newSize > largestSize.get()) {
+					largestSize.set(newSize);
+				}
+			}
+		}).setPoolController(new AdaptivePoolController(1, 4, 1, TimeUnit.MILLISECONDS)).create();
+
+		for (int i = 0; i < numRequests; i++) {
+			executor.execute(generateRequest("request" + i));
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(largestSize.get() > 1);
+	}
+
+	private static int runWindow(final AdaptivePoolController controller, final long queueWait, final long executionTime) {
+		int poolSize = controller.getPoolSize();
+		for (int i = 0; i < AdaptivePoolController.Defaults.SAMPLE_WINDOW; i++) {
+			controller.onRequestStarted(queueWait);
+			poolSize = controller.onRequestFinished(executionTime);
+		}
+		return poolSize;
+	}
+
+	private static PrioritizableRequest generateRequest(final String request) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				try {
+					Thread.sleep(5);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, 0);
+	}
+}
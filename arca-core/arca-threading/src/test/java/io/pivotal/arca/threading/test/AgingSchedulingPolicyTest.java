@@ -0,0 +1,155 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AgingSchedulingPolicy;
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.SchedulingPolicy;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+import io.pivotal.arca.threading.StrictSchedulingPolicy;
+
+public class AgingSchedulingPolicyTest extends AndroidTestCase {
+
+	private static final int LIVE = 0;
+	private static final int HIGH = 1;
+	private static final int LOW = 3;
+
+	private static final long LOW_MAX_WAIT = 20;
+	private static final long TIMEOUT = 2000;
+
+	public void testLiveRequestsStarveLowWithStrictPolicy() {
+		final AuxiliaryBlockingQueue queue = createQueue(new StrictSchedulingPolicy());
+		final PrioritizableRequest low = generateRequest("low", LOW);
+		queue.offer(low);
+
+		final long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() - start < LOW_MAX_WAIT * 3) {
+			queue.offer(generateRequest("live", LIVE));
+			assertNotSame(low, queue.poll());
+		}
+	}
+
+	public void testLowWaitIsBoundedUnderSustainedLiveLoad() {
+		final AuxiliaryBlockingQueue queue = createQueue(createAgingPolicy());
+		final PrioritizableRequest low = generateRequest("low", LOW);
+		queue.offer(low);
+
+		final long start = System.currentTimeMillis();
+		boolean polled = false;
+		while (!polled && System.currentTimeMillis() - start < TIMEOUT) {
+			queue.offer(generateRequest("live", LIVE));
+			polled = queue.poll() == low;
+		}
+		final long waited = System.currentTimeMillis() - start;
+
+		assertTrue(polled);
+		assertTrue(waited >= LOW_MAX_WAIT - 1);
+	}
+
+	public void testLiveRequestsRunFirstBeforeMaxWait() {
+		final AuxiliaryBlockingQueue queue = createQueue(createAgingPolicy());
+		final PrioritizableRequest low = generateRequest("low", LOW);
+		final PrioritizableRequest live = generateRequest("live", LIVE);
+
+		queue.offer(low);
+		queue.offer(live);
+
+		assertEquals(live, queue.poll());
+		assertEquals(low, queue.poll());
+	}
+
+	public void testOverdueLowOutranksHigh() throws Exception {
+		final AuxiliaryBlockingQueue queue = createQueue(createAgingPolicy());
+		final PrioritizableRequest low = generateRequest("low", LOW);
+		queue.offer(low);
+
+		Thread.sleep(LOW_MAX_WAIT * 2);
+
+		final PrioritizableRequest high = generateRequest("high", HIGH);
+		queue.offer(high);
+
+		assertEquals(low, queue.peek());
+		assertEquals(low, queue.poll());
+		assertEquals(high, queue.poll());
+	}
+
+	public void testMaxWaitIsConvertedToRequestedUnit() {
+		final AgingSchedulingPolicy policy = createAgingPolicy();
+
+		assertEquals(LOW_MAX_WAIT, policy.getMaxWait(LOW, TimeUnit.MILLISECONDS));
+		assertEquals(LOW_MAX_WAIT * 1000, policy.getMaxWait(LOW, TimeUnit.MICROSECONDS));
+	}
+
+	public void testNonPositiveMaxWaitIsRejected() {
+		try {
+			new AgingSchedulingPolicy(new long[] { 1, 0 }, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private static AgingSchedulingPolicy createAgingPolicy() {
+		return new AgingSchedulingPolicy(new long[] { Long.MAX_VALUE, 1000, 1000, LOW_MAX_WAIT }, TimeUnit.MILLISECONDS);
+	}
+
+	private static AuxiliaryBlockingQueue createQueue(final SchedulingPolicy policy) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		return new AuxiliaryBlockingQueue(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}, policy);
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
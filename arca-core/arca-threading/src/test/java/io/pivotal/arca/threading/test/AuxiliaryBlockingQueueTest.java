@@ -0,0 +1,315 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.AuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.RejectionPolicy;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+
+public class AuxiliaryBlockingQueueTest extends AndroidTestCase {
+
+	private AuxiliaryBlockingQueue mQueue;
+	private List<PrioritizableRequest> mCancelled;
+	private List<PrioritizableRequest> mDropped;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mCancelled = new ArrayList<PrioritizableRequest>();
+		mDropped = new ArrayList<PrioritizableRequest>();
+		mQueue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor() }, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.add(request);
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+				mDropped.add(request);
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		});
+	}
+
+	public void testReofferingRequestKeepsSizeExact() {
+		final PrioritizableRequest request = generateRequest("request", 1);
+
+		mQueue.offer(request);
+		mQueue.offer(request);
+
+		assertEquals(1, mQueue.size());
+		assertEquals(request, mQueue.poll());
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testRemoveQueuedRequest() {
+		final PrioritizableRequest first = generateRequest("first", 1);
+		final PrioritizableRequest second = generateRequest("second", 1);
+		final PrioritizableRequest third = generateRequest("third", 1);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+		mQueue.offer(third);
+
+		assertTrue(mQueue.remove(second));
+		assertEquals(2, mQueue.size());
+		assertEquals(first, mQueue.poll());
+		assertEquals(third, mQueue.poll());
+		assertNull(mQueue.poll());
+	}
+
+	public void testRemoveFromStackAccessor() {
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest second = generateRequest("second", 0);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+
+		assertTrue(mQueue.remove(second));
+		assertEquals(1, mQueue.size());
+		assertEquals(first, mQueue.poll());
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testRemoveUnknownRequestFails() {
+		mQueue.offer(generateRequest("queued", 1));
+
+		assertFalse(mQueue.remove(generateRequest("unknown", 1)));
+		assertFalse(mQueue.remove(new Object()));
+		assertEquals(1, mQueue.size());
+	}
+
+	public void testRemoveAll() {
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest second = generateRequest("second", 1);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+
+		assertTrue(mQueue.removeAll(Arrays.asList(first, second)));
+		assertEquals(0, mQueue.size());
+		assertTrue(mQueue.isEmpty());
+	}
+
+	public void testCancelledRequestsAreDiscardedAndCounted() {
+		final PrioritizableRequest cancelled = generateRequest("cancelled", 1);
+		final PrioritizableRequest request = generateRequest("request", 1);
+
+		mQueue.offer(cancelled);
+		mQueue.offer(request);
+		cancelled.cancel();
+
+		assertEquals(request, mQueue.poll());
+		assertEquals(0, mQueue.size());
+		assertEquals(1, mCancelled.size());
+	}
+
+	public void testCancelledRequestsAreReportedOutsideTheQueueLock() throws Exception {
+		final boolean[] unlocked = new boolean[1];
+		final AuxiliaryBlockingQueue[] queue = new AuxiliaryBlockingQueue[1];
+		queue[0] = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new QueuePriorityAccessor() }, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						queue[0].size();
+					}
+				});
+				thread.start();
+				try {
+					thread.join(1000);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				unlocked[0] = !thread.isAlive();
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		});
+
+		final PrioritizableRequest cancelled = generateRequest("cancelled", 0);
+		queue[0].offer(cancelled);
+		cancelled.cancel();
+
+		assertNull(queue[0].poll());
+		assertTrue(unlocked[0]);
+	}
+
+	public void testExpiredRequestsAreDropped() {
+		final PrioritizableRequest expired = generateRequest("expired", 1);
+		final PrioritizableRequest request = generateRequest("request", 1);
+		expired.setDeadline(System.nanoTime() - 1);
+
+		mQueue.offer(expired);
+		mQueue.offer(request);
+
+		assertEquals(request, mQueue.poll());
+		assertEquals(0, mQueue.size());
+		assertEquals(1, mDropped.size());
+		assertEquals(expired, mDropped.get(0));
+	}
+
+	public void testRequestsBeforeDeadlineAreNotDropped() {
+		final PrioritizableRequest request = generateRequest("request", 1);
+		request.setDeadline(1, TimeUnit.MINUTES);
+
+		mQueue.offer(request);
+
+		assertEquals(request, mQueue.poll());
+		assertTrue(mDropped.isEmpty());
+	}
+
+	public void testTimedPollReportsExpiredRequestsWhileWaiting() throws Exception {
+		final PrioritizableRequest expired = generateRequest("expired", 1);
+		expired.setDeadline(System.nanoTime() - 1);
+
+		mQueue.offer(expired);
+
+		assertNull(mQueue.poll(10, TimeUnit.MILLISECONDS));
+		assertEquals(1, mDropped.size());
+	}
+
+	public void testPlainObserverHearsDroppedRequestsAsCancelled() {
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new QueuePriorityAccessor() }, generatePlainObserver(cancelled));
+
+		final PrioritizableRequest expired = generateRequest("expired", 0);
+		final PrioritizableRequest request = generateRequest("request", 0);
+		expired.setDeadline(System.nanoTime() - 1);
+
+		queue.offer(expired);
+		queue.offer(request);
+
+		assertEquals(request, queue.poll());
+		assertEquals(Arrays.asList(expired), cancelled);
+	}
+
+	public void testPlainAccessorKeepsRequestsItCannotRemove() {
+		final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new PlainPriorityAccessor() }, generatePlainObserver(mCancelled));
+		final PrioritizableRequest request = generateRequest("request", 0);
+
+		queue.offer(request);
+
+		assertFalse(queue.remove(request));
+		assertEquals(1, queue.size());
+		assertEquals(0, queue.toArray().length);
+		assertEquals(request, queue.poll());
+	}
+
+	public void testPlainAccessorsCannotEvict() {
+		try {
+			new AuxiliaryExecutor.Builder(new PriorityAccessor[] { new PlainPriorityAccessor() }, generatePlainObserver(mCancelled)).setCapacity(10).setRejectionPolicy(RejectionPolicy.DROP_OLDEST_IN_LANE).create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private static AuxiliaryExecutorObserver generatePlainObserver(final List<PrioritizableRequest> cancelled) {
+		return new AuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				cancelled.add(request);
+			}
+		};
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+
+	private static class PlainPriorityAccessor implements PriorityAccessor {
+
+		private final ArrayDeque<PrioritizableRequest> mQueue = new ArrayDeque<PrioritizableRequest>();
+
+		@Override
+		public void attach(final PrioritizableRequest request) {
+			mQueue.offer(request);
+		}
+
+		@Override
+		public PrioritizableRequest detachHighestPriorityItem() {
+			return mQueue.poll();
+		}
+
+		@Override
+		public PrioritizableRequest peek() {
+			return mQueue.peek();
+		}
+
+		@Override
+		public int size() {
+			return mQueue.size();
+		}
+
+		@Override
+		public void clear() {
+			mQueue.clear();
+		}
+	}
+}
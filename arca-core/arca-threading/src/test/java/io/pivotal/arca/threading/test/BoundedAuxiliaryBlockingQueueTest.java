@@ -0,0 +1,265 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.RejectionPolicy;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+import io.pivotal.arca.threading.StrictSchedulingPolicy;
+
+public class BoundedAuxiliaryBlockingQueueTest extends AndroidTestCase {
+
+	private final List<PrioritizableRequest> mDropped = new ArrayList<PrioritizableRequest>();
+	private final List<DropReason> mReasons = new ArrayList<DropReason>();
+
+	public void testFailFastRejectsWhenFull() {
+		final AuxiliaryBlockingQueue queue = createQueue(2, null, RejectionPolicy.FAIL_FAST);
+
+		assertTrue(queue.offer(generateRequest("first", 1)));
+		assertEquals(1, queue.remainingCapacity());
+		assertTrue(queue.offer(generateRequest("second", 1)));
+		assertFalse(queue.offer(generateRequest("third", 0)));
+
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals(2, queue.size());
+		assertTrue(mDropped.isEmpty());
+	}
+
+	public void testLaneCapacityIsEnforcedPerLane() {
+		final AuxiliaryBlockingQueue queue = createQueue(10, new int[] { 1, 2 }, RejectionPolicy.FAIL_FAST);
+
+		assertTrue(queue.offer(generateRequest("live", 0)));
+		assertFalse(queue.offer(generateRequest("live2", 0)));
+		assertTrue(queue.offer(generateRequest("high", 1)));
+		assertTrue(queue.offer(generateRequest("high2", 1)));
+		assertFalse(queue.offer(generateRequest("high3", 1)));
+		assertTrue(queue.offer(generateRequest("low", 2)));
+
+		assertEquals(4, queue.size());
+	}
+
+	public void testDropLowestPriorityEvictsFromLowestLane() {
+		final AuxiliaryBlockingQueue queue = createQueue(2, null, RejectionPolicy.DROP_LOWEST_PRIORITY);
+		final PrioritizableRequest high = generateRequest("high", 1);
+		final PrioritizableRequest low = generateRequest("low", 2);
+		final PrioritizableRequest live = generateRequest("live", 0);
+
+		queue.offer(high);
+		queue.offer(low);
+		assertTrue(queue.offer(live));
+
+		assertEquals(2, queue.size());
+		assertEquals(1, mDropped.size());
+		assertEquals(low, mDropped.get(0));
+		assertEquals(DropReason.EVICTED, mReasons.get(0));
+		assertEquals(live, queue.poll());
+		assertEquals(high, queue.poll());
+	}
+
+	public void testDropLowestPriorityNeverEvictsHigherPriority() {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.DROP_LOWEST_PRIORITY);
+
+		queue.offer(generateRequest("live", 0));
+
+		assertFalse(queue.offer(generateRequest("low", 2)));
+		assertTrue(mDropped.isEmpty());
+	}
+
+	public void testDropOldestInLaneEvictsLaneHead() {
+		final AuxiliaryBlockingQueue queue = createQueue(10, new int[] { 2, 2 }, RejectionPolicy.DROP_OLDEST_IN_LANE);
+		final PrioritizableRequest first = generateRequest("first", 1);
+		final PrioritizableRequest second = generateRequest("second", 1);
+		final PrioritizableRequest third = generateRequest("third", 1);
+
+		queue.offer(first);
+		queue.offer(second);
+		assertTrue(queue.offer(third));
+
+		assertEquals(first, mDropped.get(0));
+		assertEquals(second, queue.poll());
+		assertEquals(third, queue.poll());
+	}
+
+	public void testDropOldestInLaneEvictsBottomOfStack() {
+		final AuxiliaryBlockingQueue queue = createQueue(10, new int[] { 2 }, RejectionPolicy.DROP_OLDEST_IN_LANE);
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest second = generateRequest("second", 0);
+		final PrioritizableRequest third = generateRequest("third", 0);
+
+		queue.offer(first);
+		queue.offer(second);
+		queue.offer(third);
+
+		assertEquals(first, mDropped.get(0));
+		assertEquals(third, queue.poll());
+		assertEquals(second, queue.poll());
+	}
+
+	public void testTimedOfferHonorsTimeout() throws Exception {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.FAIL_FAST);
+		queue.offer(generateRequest("first", 1));
+
+		final long start = System.currentTimeMillis();
+		assertFalse(queue.offer(generateRequest("second", 1), 50, TimeUnit.MILLISECONDS));
+		assertTrue(System.currentTimeMillis() - start >= 40);
+	}
+
+	public void testTimedOfferSucceedsOnceSpaceFrees() throws Exception {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.FAIL_FAST);
+		queue.offer(generateRequest("first", 1));
+
+		pollLater(queue, 50);
+
+		assertTrue(queue.offer(generateRequest("second", 1), 5, TimeUnit.SECONDS));
+		assertEquals(1, queue.size());
+	}
+
+	public void testBlockCallerWaitsForSpace() throws Exception {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.BLOCK_CALLER);
+		queue.offer(generateRequest("first", 1));
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Thread producer = new Thread() {
+			@Override
+			public void run() {
+				if (queue.offer(generateRequest("second", 1))) {
+					latch.countDown();
+				}
+			}
+		};
+		producer.start();
+
+		assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+		queue.poll();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, queue.size());
+	}
+
+	public void testAwaitRoomForWaitsWithoutInserting() throws Exception {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.BLOCK_CALLER);
+		final PrioritizableRequest second = generateRequest("second", 1);
+		queue.offer(generateRequest("first", 1));
+		assertFalse(queue.hasRoomFor(second));
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Thread waiter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					queue.awaitRoomFor(second);
+					latch.countDown();
+				} catch (final InterruptedException e) {
+				}
+			}
+		};
+		waiter.start();
+
+		assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+		queue.poll();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(queue.hasRoomFor(second));
+		assertEquals(0, queue.size());
+	}
+
+	public void testOtherPoliciesAlwaysHaveRoom() {
+		final AuxiliaryBlockingQueue queue = createQueue(1, null, RejectionPolicy.FAIL_FAST);
+		queue.offer(generateRequest("first", 1));
+
+		assertTrue(queue.hasRoomFor(generateRequest("second", 1)));
+	}
+
+	public void testInvalidCapacitiesAreRejected() {
+		try {
+			createQueue(0, null, RejectionPolicy.FAIL_FAST);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+
+		try {
+			createQueue(10, new int[] { 1, 0 }, RejectionPolicy.FAIL_FAST);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private static void pollLater(final AuxiliaryBlockingQueue queue, final long delay) {
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(delay);
+				} catch (final InterruptedException e) {
+					return;
+				}
+				queue.poll();
+			}
+		}.start();
+	}
+
+	private AuxiliaryBlockingQueue createQueue(final int capacity, final int[] laneCapacities, final RejectionPolicy rejectionPolicy) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		return new AuxiliaryBlockingQueue(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+				mDropped.add(request);
+				mReasons.add(reason);
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}, new StrictSchedulingPolicy(), capacity, laneCapacities, rejectionPolicy);
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
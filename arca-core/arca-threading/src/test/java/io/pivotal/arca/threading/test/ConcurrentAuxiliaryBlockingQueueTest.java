@@ -0,0 +1,347 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.ConcurrentAuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.ConcurrentQueuePriorityAccessor;
+import io.pivotal.arca.threading.ConcurrentStackPriorityAccessor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.ManagedPriorityAccessor;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.RejectionPolicy;
+
+public class ConcurrentAuxiliaryBlockingQueueTest extends AndroidTestCase {
+
+	private ConcurrentAuxiliaryBlockingQueue mQueue;
+	private List<PrioritizableRequest> mCancelled;
+	private ManagedAuxiliaryExecutorObserver mObserver;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mCancelled = new ArrayList<PrioritizableRequest>();
+		mObserver = new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.add(request);
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		};
+		mQueue = new ConcurrentAuxiliaryBlockingQueue(new PriorityAccessor[] { new ConcurrentStackPriorityAccessor(), new ConcurrentQueuePriorityAccessor() }, mObserver);
+	}
+
+	public void testQueueInitiallyEmpty() {
+		assertEquals(0, mQueue.size());
+		assertNull(mQueue.poll());
+		assertNull(mQueue.peek());
+	}
+
+	public void testQueueOrdersByAccessorIndex() {
+		final PrioritizableRequest low = generateRequest("low", 1);
+		final PrioritizableRequest live = generateRequest("live", 0);
+
+		mQueue.offer(low);
+		mQueue.offer(live);
+
+		assertEquals(2, mQueue.size());
+		assertEquals(live, mQueue.peek());
+		assertEquals(live, mQueue.poll());
+		assertEquals(low, mQueue.poll());
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testStackAccessorIsLastInFirstOut() {
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest second = generateRequest("second", 0);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+
+		assertEquals(second, mQueue.poll());
+		assertEquals(first, mQueue.poll());
+	}
+
+	public void testQueueAccessorIsFirstInFirstOut() {
+		final PrioritizableRequest first = generateRequest("first", 1);
+		final PrioritizableRequest second = generateRequest("second", 1);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+
+		assertEquals(first, mQueue.poll());
+		assertEquals(second, mQueue.poll());
+	}
+
+	public void testReofferingRequestDoesNotDuplicateIt() {
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest second = generateRequest("second", 0);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+		mQueue.offer(first);
+
+		assertEquals(2, mQueue.size());
+		assertEquals(first, mQueue.poll());
+		assertEquals(second, mQueue.poll());
+		assertNull(mQueue.poll());
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testRemoveQueuedRequest() {
+		final PrioritizableRequest first = generateRequest("first", 1);
+		final PrioritizableRequest second = generateRequest("second", 1);
+
+		mQueue.offer(first);
+		mQueue.offer(second);
+
+		assertTrue(mQueue.remove(first));
+		assertFalse(mQueue.remove(first));
+		assertEquals(1, mQueue.size());
+		assertEquals(second, mQueue.poll());
+		assertNull(mQueue.poll());
+	}
+
+	public void testCancelledRequestsAreSkipped() {
+		final PrioritizableRequest cancelled = generateRequest("cancelled", 1);
+		final PrioritizableRequest request = generateRequest("request", 1);
+		cancelled.cancel();
+
+		mQueue.offer(cancelled);
+		mQueue.offer(request);
+
+		assertEquals(request, mQueue.poll());
+		assertEquals(1, mCancelled.size());
+		assertEquals(cancelled, mCancelled.get(0));
+	}
+
+	public void testPollTimesOutWhenEmpty() throws Exception {
+		assertNull(mQueue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	public void testTakeWaitsForOffer() throws Exception {
+		final PrioritizableRequest request = generateRequest("request", 1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+					Thread.sleep(20);
+					mQueue.offer(request);
+				} catch (final InterruptedException e) {
+					fail();
+				}
+			}
+		};
+		thread.start();
+		latch.countDown();
+
+		assertEquals(request, mQueue.take());
+		thread.join();
+	}
+
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		final int numThreads = 4;
+		final int numRequests = 2000;
+		final AtomicInteger taken = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(numThreads * 2);
+
+		for (int i = 0; i < numThreads; i++) {
+			final int producer = i;
+			new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < numRequests; j++) {
+						mQueue.offer(generateRequest(producer + ":" + j, j % 2));
+					}
+					done.countDown();
+				}
+			}.start();
+
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (mQueue.poll(500, TimeUnit.MILLISECONDS) != null) {
+							taken.incrementAndGet();
+						}
+					} catch (final InterruptedException e) {
+						fail();
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(numThreads * numRequests, taken.get());
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testRemovedRequestsAreNotRetained() {
+		final List<WeakReference<PrioritizableRequest>> removed = new ArrayList<WeakReference<PrioritizableRequest>>();
+		final PrioritizableRequest kept = generateRequest("kept", 1);
+		mQueue.offer(kept);
+
+		for (int i = 0; i < 10; i++) {
+			final PrioritizableRequest request = generateRequest("removed" + i, i % 2);
+			mQueue.offer(request);
+			assertTrue(mQueue.remove(request));
+			removed.add(new WeakReference<PrioritizableRequest>(request));
+		}
+
+		for (int i = 0; i < 10 && !allCleared(removed); i++) {
+			System.gc();
+		}
+
+		assertTrue(allCleared(removed));
+		assertEquals(kept, mQueue.poll());
+		assertNull(mQueue.poll());
+	}
+
+	public void testConcurrentAccessorsCannotEvict() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new ConcurrentStackPriorityAccessor(), new ConcurrentQueuePriorityAccessor() };
+		try {
+			new AuxiliaryExecutor.Builder(accessors, mObserver).setCapacity(10).setRejectionPolicy(RejectionPolicy.DROP_OLDEST_IN_LANE).create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	public void testConcurrentAccessorsCanBlockWhenFull() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new ConcurrentStackPriorityAccessor(), new ConcurrentQueuePriorityAccessor() };
+		final AuxiliaryExecutor executor = new AuxiliaryExecutor.Builder(accessors, mObserver).setCapacity(10).setRejectionPolicy(RejectionPolicy.BLOCK_CALLER).create();
+
+		assertNotNull(executor);
+	}
+
+	public void testRemovedNodesAreUnlinkedFromQueueAccessor() {
+		assertDeadNodesAreUnlinked(new CountingQueueAccessor());
+	}
+
+	public void testRemovedNodesAreUnlinkedFromStackAccessor() {
+		assertDeadNodesAreUnlinked(new CountingStackAccessor());
+	}
+
+	private static void assertDeadNodesAreUnlinked(final NodeCounter accessor) {
+		final PrioritizableRequest first = generateRequest("first", 0);
+		final PrioritizableRequest last = generateRequest("last", 0);
+		final List<PrioritizableRequest> requests = new ArrayList<PrioritizableRequest>();
+		for (int i = 0; i < 1000; i++) {
+			requests.add(generateRequest("request" + i, 0));
+		}
+
+		final ManagedPriorityAccessor priorityAccessor = (ManagedPriorityAccessor) accessor;
+		priorityAccessor.attach(first);
+		for (final PrioritizableRequest request : requests) {
+			priorityAccessor.attach(request);
+		}
+		priorityAccessor.attach(last);
+
+		for (final PrioritizableRequest request : requests) {
+			assertTrue(priorityAccessor.remove(request));
+		}
+
+		assertEquals(2, priorityAccessor.size());
+		assertTrue(accessor.countNodes() < 100);
+
+		final List<PrioritizableRequest> remaining = new ArrayList<PrioritizableRequest>();
+		priorityAccessor.copyTo(remaining);
+		assertEquals(2, remaining.size());
+		assertTrue(remaining.contains(first));
+		assertTrue(remaining.contains(last));
+	}
+
+	private static boolean allCleared(final List<WeakReference<PrioritizableRequest>> references) {
+		for (final WeakReference<PrioritizableRequest> reference : references) {
+			if (reference.get() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static interface NodeCounter {
+		int countNodes();
+	}
+
+	private static final class CountingQueueAccessor extends ConcurrentQueuePriorityAccessor implements NodeCounter {
+
+		@Override
+		public int countNodes() {
+			return count(nodes());
+		}
+	}
+
+	private static final class CountingStackAccessor extends ConcurrentStackPriorityAccessor implements NodeCounter {
+
+		@Override
+		public int countNodes() {
+			return count(nodes());
+		}
+	}
+
+	private static int count(final Iterator<?> iterator) {
+		int count = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			count++;
+		}
+		return count;
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
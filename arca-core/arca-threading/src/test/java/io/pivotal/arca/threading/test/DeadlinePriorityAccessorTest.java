@@ -0,0 +1,142 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import io.pivotal.arca.threading.DeadlinePriorityAccessor;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.IndexedHeap;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+public class DeadlinePriorityAccessorTest extends AndroidTestCase {
+
+	private DeadlinePriorityAccessor mAccessor;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mAccessor = new DeadlinePriorityAccessor();
+	}
+
+	public void testEarliestDeadlineIsDetachedFirst() {
+		final long now = System.nanoTime();
+		final PrioritizableRequest late = generateRequest("late", now + 3000);
+		final PrioritizableRequest early = generateRequest("early", now + 1000);
+		final PrioritizableRequest middle = generateRequest("middle", now + 2000);
+
+		mAccessor.attach(late);
+		mAccessor.attach(early);
+		mAccessor.attach(middle);
+
+		assertEquals(early, mAccessor.peek());
+		assertEquals(early, mAccessor.detachHighestPriorityItem());
+		assertEquals(middle, mAccessor.detachHighestPriorityItem());
+		assertEquals(late, mAccessor.detachHighestPriorityItem());
+		assertNull(mAccessor.detachHighestPriorityItem());
+	}
+
+	public void testRequestsWithoutDeadlineRunLastInArrivalOrder() {
+		final PrioritizableRequest first = generateRequest("first", PrioritizableRequest.NO_DEADLINE);
+		final PrioritizableRequest second = generateRequest("second", PrioritizableRequest.NO_DEADLINE);
+		final PrioritizableRequest deadline = generateRequest("deadline", System.nanoTime() + 1000);
+
+		mAccessor.attach(first);
+		mAccessor.attach(second);
+		mAccessor.attach(deadline);
+
+		assertEquals(deadline, mAccessor.detachHighestPriorityItem());
+		assertEquals(first, mAccessor.detachHighestPriorityItem());
+		assertEquals(second, mAccessor.detachHighestPriorityItem());
+	}
+
+	public void testRemoveArbitraryRequest() {
+		final long now = System.nanoTime();
+		final PrioritizableRequest first = generateRequest("first", now + 1000);
+		final PrioritizableRequest second = generateRequest("second", now + 2000);
+		final PrioritizableRequest third = generateRequest("third", now + 3000);
+
+		mAccessor.attach(first);
+		mAccessor.attach(second);
+		mAccessor.attach(third);
+
+		assertTrue(mAccessor.remove(first));
+		assertFalse(mAccessor.remove(first));
+		assertEquals(2, mAccessor.size());
+		assertEquals(second, mAccessor.detachHighestPriorityItem());
+		assertEquals(third, mAccessor.detachHighestPriorityItem());
+	}
+
+	public void testReattachUpdatesPosition() {
+		final long now = System.nanoTime();
+		final PrioritizableRequest first = generateRequest("first", now + 1000);
+		final PrioritizableRequest second = generateRequest("second", now + 2000);
+
+		mAccessor.attach(first);
+		mAccessor.attach(second);
+
+		second.setDeadline(now);
+		mAccessor.attach(second);
+
+		assertEquals(2, mAccessor.size());
+		assertEquals(second, mAccessor.detachHighestPriorityItem());
+		assertEquals(first, mAccessor.detachHighestPriorityItem());
+	}
+
+	public void testHeapPollsInOrderAfterRandomRemovals() {
+		final IndexedHeap<Integer> heap = new IndexedHeap<Integer>(new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer lhs, final Integer rhs) {
+				return lhs.compareTo(rhs);
+			}
+		});
+
+		final Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			heap.add(random.nextInt(100000));
+		}
+		for (int i = 0; i < 100; i++) {
+			heap.remove(random.nextInt(100000));
+		}
+
+		int previous = Integer.MIN_VALUE;
+		Integer value;
+		while ((value = heap.poll()) != null) {
+			assertTrue(value >= previous);
+			previous = value;
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final long deadline) {
+		final PrioritizableRequest prioritizableRequest = new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, 0);
+		prioritizableRequest.setDeadline(deadline);
+		return prioritizableRequest;
+	}
+}
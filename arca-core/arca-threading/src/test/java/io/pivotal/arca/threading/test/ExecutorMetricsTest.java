@@ -0,0 +1,156 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.ExecutorMetrics;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.LatencyHistogram;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+public class ExecutorMetricsTest extends AndroidTestCase {
+
+	public void testHistogramPercentilesAreWithinABucket() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean());
+
+		final long median = histogram.getPercentile(50);
+		assertTrue(median >= 500000 && median < 1000000);
+		assertEquals(1000000, histogram.getPercentile(100));
+	}
+
+	public void testHistogramIsEmptyAfterReset() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(42);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	public void testExecutorRecordsTimingsPerLane() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch completed = new CountDownLatch(3);
+		final ManagedAuxiliaryExecutor executor = newExecutor(completed);
+
+		executor.execute(generateRequest("blocking", 0, gate));
+		executor.execute(generateRequest("high", 0, null));
+		executor.execute(generateRequest("low", 1, null));
+
+		Thread.sleep(30);
+		gate.countDown();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+		final ExecutorMetrics metrics = executor.getMetrics();
+		assertEquals(3, metrics.getTotal().getSubmittedCount());
+		assertEquals(3, metrics.getTotal().getCompletedCount());
+		assertEquals(2, metrics.getLane(0).getCompletedCount());
+		assertEquals(1, metrics.getLane(1).getCompletedCount());
+		assertEquals(0, metrics.getTotal().getQueueDepth());
+		assertEquals(0, metrics.getTotal().getRunningCount());
+
+		assertEquals(3, metrics.getTotal().getQueueWait().getCount());
+		assertEquals(3, metrics.getTotal().getEndToEnd().getCount());
+		assertTrue(metrics.getTotal().getRunTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertTrue(metrics.getLane(1).getQueueWait().getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	public void testQueueDepthTracksCancelledRequests() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch completed = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newExecutor(completed);
+
+		executor.execute(generateRequest("blocking", 0, gate));
+		final PrioritizableRequest removed = generateRequest("removed", 0, null);
+		executor.execute(removed);
+		executor.execute(generateRequest("kept", 1, null));
+
+		final ExecutorMetrics metrics = executor.getMetrics();
+		Thread.sleep(20);
+		assertEquals(2, metrics.getTotal().getQueueDepth());
+		assertEquals(1, metrics.getTotal().getRunningCount());
+
+		assertTrue(executor.remove(removed));
+		assertEquals(1, metrics.getTotal().getQueueDepth());
+		assertEquals(1, metrics.getLane(0).getCancelledCount());
+
+		gate.countDown();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+		assertEquals(0, metrics.getTotal().getQueueDepth());
+		assertEquals(2, metrics.getTotal().getCompletedCount());
+	}
+
+	private static ManagedAuxiliaryExecutor newExecutor(final CountDownLatch completed) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		return new AuxiliaryExecutor.Builder(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				completed.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}).create();
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex, final CountDownLatch gate) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				if (gate == null) {
+					return;
+				}
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
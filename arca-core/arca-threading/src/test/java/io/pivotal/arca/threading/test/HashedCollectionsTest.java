@@ -0,0 +1,94 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import io.pivotal.arca.threading.HashedQueue;
+import io.pivotal.arca.threading.HashedStack;
+
+public class HashedCollectionsTest extends AndroidTestCase {
+
+	public void testQueueKeepsOrderWhenReusingNodes() {
+		final HashedQueue<String> queue = new HashedQueue<String>(true);
+		queue.setRecycling(true);
+		final String[] items = { "a", "b", "c", "d" };
+
+		for (int round = 0; round < 3; round++) {
+			for (final String item : items) {
+				queue.add(item);
+			}
+			assertTrue(queue.remove("b"));
+			assertEquals("a", queue.poll());
+			assertEquals("d", queue.pollLast());
+			assertEquals("c", queue.poll());
+			assertNull(queue.poll());
+			assertTrue(queue.isEmpty());
+			assertEquals(0, queue.size());
+		}
+	}
+
+	public void testQueueComparesByIdentity() {
+		final HashedQueue<String> queue = new HashedQueue<String>(true);
+		final String first = new String("request");
+		final String second = new String("request");
+
+		queue.add(first);
+		queue.add(second);
+		assertEquals(2, queue.size());
+		assertSame(first, queue.poll());
+		assertSame(second, queue.poll());
+	}
+
+	public void testQueueComparesByEqualityByDefault() {
+		final HashedQueue<String> queue = new HashedQueue<String>();
+		queue.add(new String("request"));
+		queue.add(new String("request"));
+		assertEquals(1, queue.size());
+	}
+
+	public void testQueueCopiesItsElementsInOrder() {
+		final HashedQueue<String> queue = new HashedQueue<String>();
+		queue.add("a");
+		queue.add("b");
+		queue.add("c");
+
+		assertTrue(Arrays.equals(new Object[] { "a", "b", "c" }, queue.toArray()));
+		assertTrue(Arrays.equals(new String[] { "a", "b", "c" }, queue.toArray(new String[0])));
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(queue));
+	}
+
+	public void testStackKeepsOrderWhenReusingNodes() {
+		final HashedStack<String> stack = new HashedStack<String>(true);
+		stack.setRecycling(true);
+		final String[] items = { "a", "b", "c", "d" };
+
+		for (int round = 0; round < 3; round++) {
+			for (final String item : items) {
+				stack.push(item);
+			}
+			assertTrue(stack.remove("c"));
+			assertEquals("d", stack.pop());
+			assertEquals("a", stack.popBottom());
+			assertEquals("b", stack.pop());
+			assertNull(stack.pop());
+			assertTrue(stack.isEmpty());
+		}
+	}
+}
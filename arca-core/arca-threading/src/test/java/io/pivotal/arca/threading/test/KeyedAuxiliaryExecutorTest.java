@@ -0,0 +1,243 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.KeyedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+public class KeyedAuxiliaryExecutorTest extends AndroidTestCase {
+
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger mCancelled = new AtomicInteger();
+	private CountDownLatch mLatch;
+	private AuxiliaryExecutor mExecutor;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		mExecutor = new AuxiliaryExecutor.Builder(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				mCompleted.add((String) request.getIdentifier().getData());
+				mExecutor.notifyRequestComplete(request.getIdentifier());
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.incrementAndGet();
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}).setCorePoolSize(4).useKeyedLanes().create();
+	}
+
+	public void testRequestsWithTheSameKeyRunInOrder() throws Exception {
+		final int numRequests = 20;
+		mLatch = new CountDownLatch(numRequests);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+
+		for (int i = 0; i < numRequests; i++) {
+			mExecutor.execute(new PrioritizableRequest(new TestPrioritizable("request" + i, "table") {
+				@Override
+				public void execute() {
+					if (running.incrementAndGet() > 1) {
+						overlaps.incrementAndGet();
+					}
+					sleep(2);
+					running.decrementAndGet();
+				}
+			}, i % 2));
+		}
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, overlaps.get());
+		for (int i = 0; i < numRequests; i++) {
+			assertEquals("request" + i, mCompleted.get(i));
+		}
+
+		// The lane is released just after the last completion is reported.
+		final KeyedAuxiliaryExecutor executor = (KeyedAuxiliaryExecutor) mExecutor;
+		for (int i = 0; i < 100 && executor.getLaneCount() > 0; i++) {
+			sleep(1);
+		}
+		assertEquals(0, executor.getLaneCount());
+	}
+
+	public void testRequestsWithDifferentKeysRunConcurrently() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+
+		for (final String key : new String[] { "posts", "users" }) {
+			mExecutor.execute(new PrioritizableRequest(new TestPrioritizable(key, key) {
+				@Override
+				public void execute() {
+					bothStarted.countDown();
+					try {
+						bothStarted.await(5, TimeUnit.SECONDS);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, 0));
+		}
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, bothStarted.getCount());
+	}
+
+	public void testWaitingDuplicatesAndCancelledRequestsAreSkipped() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		mExecutor.execute(generateRequest("blocking", "table", gate));
+		final PrioritizableRequest cancelled = generateRequest("cancelled", "table", null);
+		mExecutor.execute(cancelled);
+		mExecutor.execute(generateRequest("first", "table", null));
+		mExecutor.execute(generateRequest("first", "table", null));
+		mExecutor.execute(generateRequest("second", "table", null));
+		assertEquals(0, mCancelled.get());
+		assertEquals(3, mExecutor.getQueue().size());
+
+		assertTrue(mExecutor.remove(cancelled));
+		assertEquals(1, mCancelled.get());
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, first, second]", mCompleted.toString());
+		assertEquals(2, mCancelled.get());
+	}
+
+	public void testAbsorbedDuplicateTakesThePlaceOfARemovedRequest() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		mExecutor.execute(generateRequest("blocking", "table", gate));
+		final PrioritizableRequest queued = generateRequest("shared", "table", null);
+		mExecutor.execute(queued);
+		final PrioritizableRequest absorbed = generateRequest("shared", "table", null);
+		mExecutor.execute(absorbed);
+		mExecutor.execute(generateRequest("last", "table", null));
+
+		assertTrue(mExecutor.remove(queued));
+		assertFalse(absorbed.isCancelled());
+		assertEquals(2, mExecutor.getQueue().size());
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared, last]", mCompleted.toString());
+		assertEquals(1, mCancelled.get());
+	}
+
+	public void testQueueViewListsWaitingRequests() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		mExecutor.execute(generateRequest("blocking", "table", gate));
+		final PrioritizableRequest first = generateRequest("first", "table", null);
+		final PrioritizableRequest second = generateRequest("second", "table", null);
+		mExecutor.execute(first);
+		mExecutor.execute(second);
+
+		final BlockingQueue<Runnable> queue = mExecutor.getQueue();
+		assertFalse(queue.isEmpty());
+		assertSame(first, queue.peek());
+		assertEquals(Arrays.asList(first, second), Arrays.asList(queue.toArray()));
+		try {
+			queue.offer(generateRequest("offered", "table", null));
+			fail();
+		} catch (final UnsupportedOperationException e) {
+			assertNotNull(e);
+		}
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(queue.isEmpty());
+		assertNull(queue.peek());
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final String key, final CountDownLatch gate) {
+		return new PrioritizableRequest(new TestPrioritizable(request, key) {
+			@Override
+			public void execute() {
+				if (gate == null) {
+					return;
+				}
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, 0);
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static abstract class TestPrioritizable extends Prioritizable {
+
+		private final Identifier<String> mIdentifier;
+		private final String mLaneKey;
+
+		public TestPrioritizable(final String request, final String laneKey) {
+			mIdentifier = new Identifier<String>(request);
+			mLaneKey = laneKey;
+		}
+
+		@Override
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+
+		@Override
+		public Object getLaneKey() {
+			return mLaneKey;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.Prioritizable.State;
+import io.pivotal.arca.threading.PrioritizableRequest;
+
+public class PrioritizableStateTest extends AndroidTestCase {
+
+	public void testRequestStartsQueued() {
+		final PrioritizableRequest request = generateRequest(null);
+
+		assertEquals(State.QUEUED, request.getState());
+		assertTrue(request.getTransitionTime(State.QUEUED) > 0);
+		assertEquals(0, request.getTransitionTime(State.RUNNING));
+	}
+
+	public void testRunMovesThroughRunningToDone() {
+		final PrioritizableRequest request = generateRequest(null);
+		request.run();
+
+		assertEquals(State.DONE, request.getState());
+		assertFalse(request.isCancelled());
+		assertTrue(request.getTransitionTime(State.DONE) >= request.getTransitionTime(State.RUNNING));
+		assertTrue(request.getTransitionTime(State.RUNNING) >= request.getTransitionTime(State.QUEUED));
+	}
+
+	public void testCancelledRequestDoesNotRun() {
+		final CountDownLatch executed = new CountDownLatch(1);
+		final PrioritizableRequest request = generateRequest(executed);
+
+		assertTrue(request.cancel());
+		assertTrue(request.cancel());
+		request.run();
+
+		assertEquals(State.CANCELLED, request.getState());
+		assertEquals(1, executed.getCount());
+		assertTrue(request.getTransitionTime(State.CANCELLED) > 0);
+		assertEquals(0, request.getTransitionTime(State.RUNNING));
+	}
+
+	public void testRunningRequestCannotBeCancelled() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final PrioritizableRequest request = new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				started.countDown();
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>("running");
+			}
+		}, 0);
+
+		final Thread thread = new Thread(request);
+		thread.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		assertEquals(State.RUNNING, request.getState());
+		assertFalse(request.cancel());
+
+		gate.countDown();
+		thread.join();
+		assertEquals(State.DONE, request.getState());
+		assertFalse(request.isCancelled());
+	}
+
+	public void testResetRequestRunsAgain() {
+		final CountDownLatch executed = new CountDownLatch(2);
+		final ReusableRequest request = new ReusableRequest(generateRequest(executed).getPrioritizable());
+		request.setDeadline(1, TimeUnit.SECONDS);
+		request.run();
+		assertEquals(State.DONE, request.getState());
+
+		request.reset(1);
+		assertEquals(State.QUEUED, request.getState());
+		assertEquals(0, request.getTransitionTime(State.DONE));
+		assertEquals(1, request.getAccessorIndex());
+		assertFalse(request.hasDeadline());
+
+		request.run();
+		assertEquals(State.DONE, request.getState());
+		assertEquals(0, executed.getCount());
+	}
+
+	private static PrioritizableRequest generateRequest(final CountDownLatch executed) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				if (executed != null) {
+					executed.countDown();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>("request");
+			}
+		}, 0);
+	}
+
+	private static class ReusableRequest extends PrioritizableRequest {
+
+		public ReusableRequest(final Prioritizable prioritizable) {
+			super(prioritizable, 0);
+		}
+
+		public void reset(final int accessorIndex) {
+			resetForReuse(accessorIndex);
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.ConcurrentQueuePriorityAccessor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.RejectionPolicy;
+import io.pivotal.arca.threading.RequestFuture;
+
+public class PriorityPromotionTest extends AndroidTestCase {
+
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger mCancelled = new AtomicInteger();
+	private final CountDownLatch mGate = new CountDownLatch(1);
+	private CountDownLatch mLatch;
+
+	public void testHigherPriorityDuplicatePromotesQueuedRequest() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final ManagedAuxiliaryExecutor executor = newExecutor(false);
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final PrioritizableRequest queued = generateRequest("shared", 2);
+		executor.execute(queued);
+		executor.execute(generateRequest("other", 1));
+
+		final PrioritizableRequest duplicate = generateRequest("shared", 0);
+		duplicate.setDeadline(1, TimeUnit.HOURS);
+		executor.execute(duplicate);
+
+		assertFalse(duplicate.isCancelled());
+		assertEquals(0, mCancelled.get());
+		assertEquals(0, queued.getAccessorIndex());
+		assertFalse(queued.hasDeadline());
+		assertEquals(2, executor.getQueue().size());
+		assertEquals(1, executor.getMetrics().getLane(0).getQueueDepth());
+		assertEquals(0, executor.getMetrics().getLane(2).getQueueDepth());
+
+		mGate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared, other]", mCompleted.toString());
+		assertTrue(duplicate.isCancelled());
+		assertEquals(1, mCancelled.get());
+	}
+
+	public void testConcurrentQueuePromotesQueuedRequest() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final ManagedAuxiliaryExecutor executor = newExecutor(true);
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final PrioritizableRequest queued = generateRequest("shared", 2);
+		executor.execute(queued);
+		executor.execute(generateRequest("other", 1));
+		executor.execute(generateRequest("shared", 0));
+
+		assertEquals(0, queued.getAccessorIndex());
+
+		mGate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared, other]", mCompleted.toString());
+	}
+
+	public void testLowerPriorityDuplicateIsQueuedAsBefore() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newExecutor(false);
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final PrioritizableRequest queued = generateRequest("shared", 0);
+		executor.execute(queued);
+		final PrioritizableRequest duplicate = generateRequest("shared", 2);
+		executor.execute(duplicate);
+
+		assertFalse(duplicate.isCancelled());
+		assertEquals(0, queued.getAccessorIndex());
+		assertEquals(2, executor.getQueue().size());
+
+		mGate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared]", mCompleted.toString());
+	}
+
+	public void testAbsorbedDuplicateIsQueuedAgainWhenItsRequestIsEvicted() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newBuilder(false).setLaneCapacities(1, 10, 10).setRejectionPolicy(RejectionPolicy.DROP_OLDEST_IN_LANE).create();
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final RequestFuture<PrioritizableRequest> queued = executor.submit(generateRequest("shared", 2));
+		final RequestFuture<PrioritizableRequest> absorbed = executor.submit(generateRequest("shared", 0));
+		executor.execute(generateRequest("other", 0));
+
+		assertTrue(queued.isDone());
+		assertFalse(absorbed.isDone());
+		assertEquals(1, executor.getQueue().size());
+
+		mGate.countDown();
+		assertNotNull(absorbed.get(5, TimeUnit.SECONDS));
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared]", mCompleted.toString());
+	}
+
+	public void testAbsorbedDuplicateIsQueuedAgainWhenItsRequestIsRemoved() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newExecutor(false);
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final PrioritizableRequest queued = generateRequest("shared", 2);
+		executor.execute(queued);
+		final PrioritizableRequest absorbed = generateRequest("shared", 0);
+		executor.execute(absorbed);
+
+		assertTrue(executor.remove(queued));
+		assertFalse(absorbed.isCancelled());
+		assertEquals(1, executor.getQueue().size());
+
+		mGate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared]", mCompleted.toString());
+	}
+
+	public void testAbsorbedDuplicateCanBeRemoved() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newExecutor(false);
+
+		executor.execute(generateRequest("blocking", 0));
+		Thread.sleep(20);
+
+		final PrioritizableRequest queued = generateRequest("shared", 2);
+		executor.execute(queued);
+		final PrioritizableRequest absorbed = generateRequest("shared", 0);
+		executor.execute(absorbed);
+
+		assertTrue(executor.remove(absorbed));
+		assertTrue(absorbed.isCancelled());
+		assertFalse(queued.isCancelled());
+		assertEquals(1, mCancelled.get());
+
+		mGate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, shared]", mCompleted.toString());
+	}
+
+	private ManagedAuxiliaryExecutor newExecutor(final boolean concurrent) {
+		return newBuilder(concurrent).create();
+	}
+
+	private AuxiliaryExecutor.Builder newBuilder(final boolean concurrent) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[3];
+		for (int i = 0; i < accessors.length; i++) {
+			accessors[i] = concurrent ? new ConcurrentQueuePriorityAccessor() : new QueuePriorityAccessor();
+		}
+
+		final AuxiliaryExecutor.Builder builder = new AuxiliaryExecutor.Builder(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				mCompleted.add((String) request.getIdentifier().getData());
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.incrementAndGet();
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		});
+		if (concurrent) {
+			builder.useConcurrentQueue();
+		}
+		return builder;
+	}
+
+	private PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				if (!"blocking".equals(request)) {
+					return;
+				}
+				try {
+					mGate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
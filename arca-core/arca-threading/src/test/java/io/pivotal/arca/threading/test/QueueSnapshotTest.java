@@ -0,0 +1,167 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.ConcurrentAuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.ConcurrentQueuePriorityAccessor;
+import io.pivotal.arca.threading.ConcurrentStackPriorityAccessor;
+import io.pivotal.arca.threading.DeadlinePriorityAccessor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.QueueSnapshot;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+import io.pivotal.arca.threading.StrictSchedulingPolicy;
+
+public class QueueSnapshotTest extends AndroidTestCase {
+
+	private static final ManagedAuxiliaryExecutorObserver OBSERVER = new ManagedAuxiliaryExecutorObserver() {
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {
+		}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+		}
+	};
+
+	public void testSnapshotListsEachLaneInOrder() throws Exception {
+		final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor(), new DeadlinePriorityAccessor() }, OBSERVER);
+		queue.offer(generateRequest("first", 0));
+		queue.offer(generateRequest("second", 0));
+		queue.offer(generateRequest("third", 1));
+		queue.offer(generateRequest("fourth", 1));
+		final PrioritizableRequest cancelled = generateRequest("cancelled", 1);
+		queue.offer(cancelled);
+		cancelled.cancel();
+		Thread.sleep(5);
+
+		final QueueSnapshot snapshot = queue.snapshot();
+		assertEquals(3, snapshot.getLaneCount());
+		assertEquals(5, snapshot.size());
+		assertEquals(Arrays.asList("second", "first"), identifiers(snapshot.getLane(0)));
+		assertEquals(Arrays.asList("third", "fourth", "cancelled"), identifiers(snapshot.getLane(1)));
+		assertTrue(snapshot.getLane(2).isEmpty());
+
+		final QueueSnapshot.Entry entry = snapshot.getLane(1).get(2);
+		assertTrue(entry.isCancelled());
+		assertEquals(1, entry.getAccessorIndex());
+		assertTrue(entry.getAge(TimeUnit.MILLISECONDS) >= 5);
+		assertFalse(snapshot.getLane(1).get(0).isCancelled());
+		assertTrue(snapshot.toString().contains("cancelled age="));
+	}
+
+	public void testSnapshotIsNotAffectedByLaterChanges() throws Exception {
+		final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new QueuePriorityAccessor() }, OBSERVER);
+		queue.offer(generateRequest("first", 0));
+		queue.offer(generateRequest("second", 0));
+
+		final QueueSnapshot snapshot = queue.snapshot();
+		queue.poll();
+		queue.offer(generateRequest("third", 0));
+
+		assertEquals(Arrays.asList("first", "second"), identifiers(snapshot.getLane(0)));
+	}
+
+	public void testIteratorCopiesQueueAndRemovesThroughIt() throws Exception {
+		final AuxiliaryBlockingQueue queue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor() }, OBSERVER);
+		final PrioritizableRequest first = generateRequest("first", 1);
+		final PrioritizableRequest second = generateRequest("second", 0);
+		queue.offer(first);
+		queue.offer(second);
+
+		assertEquals(Arrays.asList(second, first), Arrays.asList(queue.toArray()));
+
+		final Iterator<Runnable> iterator = queue.iterator();
+		assertSame(second, iterator.next());
+		iterator.remove();
+		assertSame(first, iterator.next());
+		assertFalse(iterator.hasNext());
+
+		assertEquals(1, queue.size());
+		assertSame(first, queue.poll());
+	}
+
+	public void testConcurrentQueueSnapshot() throws Exception {
+		final ConcurrentAuxiliaryBlockingQueue queue = new ConcurrentAuxiliaryBlockingQueue(new PriorityAccessor[] { new ConcurrentQueuePriorityAccessor(), new ConcurrentStackPriorityAccessor() }, OBSERVER,
+				new StrictSchedulingPolicy());
+		final PrioritizableRequest removed = generateRequest("removed", 0);
+		queue.offer(generateRequest("first", 0));
+		queue.offer(removed);
+		queue.offer(generateRequest("second", 0));
+		queue.offer(generateRequest("bottom", 1));
+		queue.offer(generateRequest("top", 1));
+		queue.remove(removed);
+
+		final QueueSnapshot snapshot = queue.snapshot();
+		assertEquals(4, snapshot.size());
+		assertEquals(Arrays.asList("first", "second"), identifiers(snapshot.getLane(0)));
+		assertEquals(Arrays.asList("top", "bottom"), identifiers(snapshot.getLane(1)));
+
+		int count = 0;
+		for (final Runnable runnable : queue) {
+			assertNotNull(runnable);
+			count++;
+		}
+		assertEquals(4, count);
+	}
+
+	// ======================================================
+
+	private static List<Object> identifiers(final List<QueueSnapshot.Entry> lane) {
+		final List<Object> identifiers = new ArrayList<Object>();
+		for (final QueueSnapshot.Entry entry : lane) {
+			identifiers.add(entry.getIdentifier().getData());
+		}
+		return identifiers;
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
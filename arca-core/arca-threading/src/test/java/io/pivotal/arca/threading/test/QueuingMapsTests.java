@@ -17,6 +17,15 @@ package io.pivotal.arca.threading.test;
 
 import android.test.AndroidTestCase;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import io.pivotal.arca.threading.Identifier;
 import io.pivotal.arca.threading.Prioritizable;
 import io.pivotal.arca.threading.PrioritizableRequest;
@@ -48,6 +57,17 @@ public class QueuingMapsTests extends AndroidTestCase {
 		assertTrue(r1.hashCode() == r2.hashCode());
 	}
 
+	public void testGetWaitingReturnsOldestQueuedDuplicate() {
+		assertNull(mMaps.getWaiting(mTestPrioritizable1.getIdentifier()));
+
+		mMaps.put(mTestPrioritizable1);
+		mMaps.put(mTestPrioritizable2);
+		assertSame(mTestPrioritizable1, mMaps.getWaiting(mTestPrioritizable2.getIdentifier()));
+
+		mMaps.notifyExecuting(mTestPrioritizable1);
+		assertNull(mMaps.getWaiting(mTestPrioritizable1.getIdentifier()));
+	}
+
 	public void testingNotifySingleRequest() {
 		mMaps.put(mTestPrioritizable1);
 		mMaps.put(mTestPrioritizable2);
@@ -95,6 +115,137 @@ public class QueuingMapsTests extends AndroidTestCase {
 		assertTrue(mTestPrioritizable1.isCancelled());
 	}
 
+	public void testingListenerNotifiedOfCancelledDuplicates() {
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		mMaps = new QueuingMaps(new QueuingMaps.OnRequestCancelledListener() {
+			@Override
+			public void onRequestCancelled(final PrioritizableRequest request) {
+				cancelled.add(request);
+			}
+		});
+
+		mMaps.put(mTestPrioritizable1);
+		mMaps.put(mTestPrioritizable2);
+		mMaps.notifyExecuting(mTestPrioritizable1);
+
+		assertEquals(1, cancelled.size());
+		assertEquals(mTestPrioritizable2, cancelled.get(0));
+	}
+
+	public void testingListenerNotifiedOfCancelledRequest() {
+		final List<PrioritizableRequest> cancelled = new ArrayList<PrioritizableRequest>();
+		mMaps = new QueuingMaps(new QueuingMaps.OnRequestCancelledListener() {
+			@Override
+			public void onRequestCancelled(final PrioritizableRequest request) {
+				cancelled.add(request);
+			}
+		});
+
+		mMaps.put(mTestPrioritizable3);
+		mMaps.cancel(mTestPrioritizable3);
+
+		assertEquals(1, cancelled.size());
+		assertEquals(mTestPrioritizable3, cancelled.get(0));
+	}
+
+	public void testingAbsorbedRequestsAreReleasedWithTheirCarrier() {
+		mMaps.put(mTestPrioritizable1);
+		assertTrue(mMaps.absorb(mTestPrioritizable1, mTestPrioritizable2));
+
+		assertEquals(Collections.singletonList(mTestPrioritizable2), mMaps.release(mTestPrioritizable1));
+		assertFalse(mTestPrioritizable2.isCancelled());
+		assertTrue(mMaps.isEmpty());
+	}
+
+	public void testingAbsorbedRequestsAreCancelledWhenADuplicateExecutes() {
+		mMaps.put(mTestPrioritizable1);
+		assertTrue(mMaps.absorb(mTestPrioritizable1, mTestPrioritizable2));
+		mMaps.notifyExecuting(mTestPrioritizable1);
+
+		assertTrue(mTestPrioritizable2.isCancelled());
+		assertTrue(mMaps.release(mTestPrioritizable1).isEmpty());
+		assertFalse(mMaps.absorb(mTestPrioritizable1, mTestPrioritizable2));
+	}
+
+	public void testingCancelAllCancelsEveryWaitingRequest() {
+		mMaps.put(mTestPrioritizable1);
+		mMaps.put(mTestPrioritizable2);
+		mMaps.put(mTestPrioritizable3);
+		mMaps.cancelAll();
+
+		assertTrue(mTestPrioritizable1.isCancelled());
+		assertTrue(mTestPrioritizable2.isCancelled());
+		assertTrue(mTestPrioritizable3.isCancelled());
+		assertTrue(mMaps.isEmpty());
+	}
+
+	public void testingMapsAreEmptyAfterCompletion() {
+		mMaps.put(mTestPrioritizable1);
+		mMaps.put(mTestPrioritizable2);
+		mMaps.notifyExecuting(mTestPrioritizable1);
+		mMaps.onComplete(new Identifier<String>("request1"));
+
+		assertTrue(mMaps.isEmpty());
+	}
+
+	public void testingConcurrentRequestsWithOverlappingIdentifiers() throws Exception {
+		final int numThreads = 8;
+		final int numIdentifiers = 16;
+		final int numIterations = 5000;
+
+		final AtomicInteger[] executing = new AtomicInteger[numIdentifiers];
+		for (int i = 0; i < numIdentifiers; i++) {
+			executing[i] = new AtomicInteger();
+		}
+
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(numThreads);
+
+		for (int t = 0; t < numThreads; t++) {
+			final Random random = new Random(t);
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < numIterations; i++) {
+							final int id = random.nextInt(numIdentifiers);
+							final PrioritizableRequest request = generatePrioritizable("request" + id);
+							mMaps.put(request);
+
+							if (random.nextInt(4) == 0) {
+								mMaps.cancel(request);
+								continue;
+							}
+
+							if (!request.isCancelled()) {
+								mMaps.notifyExecuting(request);
+							}
+
+							if (!request.isCancelled()) {
+								if (executing[id].incrementAndGet() != 1) {
+									throw new AssertionError("Identifier " + id + " executed concurrently.");
+								}
+								executing[id].decrementAndGet();
+								mMaps.onComplete(request.getIdentifier());
+							}
+						}
+					} catch (final Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertNull(failure.get());
+		assertTrue(mMaps.isEmpty());
+	}
+
 	private static PrioritizableRequest generatePrioritizable(final String request) {
 		return new PrioritizableRequest(new Prioritizable() {
 			@Override
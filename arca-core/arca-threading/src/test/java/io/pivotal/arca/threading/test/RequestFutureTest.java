@@ -0,0 +1,243 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DefaultAuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.RejectionPolicy;
+import io.pivotal.arca.threading.RequestDroppedException;
+import io.pivotal.arca.threading.RequestFuture;
+
+public class RequestFutureTest extends AndroidTestCase {
+
+	private final List<String> mCancelled = Collections.synchronizedList(new ArrayList<String>());
+	private final CountDownLatch mGate = new CountDownLatch(1);
+
+	@Override
+	protected void tearDown() throws Exception {
+		mGate.countDown();
+		super.tearDown();
+	}
+
+	public void testFutureCompletesWithTheRequest() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		final PrioritizableRequest request = generateRequest("request", null);
+
+		final RequestFuture<PrioritizableRequest> future = executor.submit(request);
+		assertSame(request, future.get(5, TimeUnit.SECONDS));
+		assertTrue(future.isDone());
+		assertFalse(future.isCancelled());
+	}
+
+	public void testDuplicatesCompleteWithTheRequestThatRan() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		executor.execute(generateRequest("blocking", mGate));
+		Thread.sleep(20);
+
+		final PrioritizableRequest request = generateRequest("shared", null);
+		final PrioritizableRequest duplicate = generateRequest("shared", null);
+		final RequestFuture<PrioritizableRequest> first = executor.submit(request);
+		final RequestFuture<PrioritizableRequest> second = executor.submit(duplicate);
+		assertFalse(second.isDone());
+
+		mGate.countDown();
+		assertSame(request, first.get(5, TimeUnit.SECONDS));
+		assertSame(request, second.get(5, TimeUnit.SECONDS));
+	}
+
+	public void testCallbacksRunOnceTheFutureSettles() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		executor.execute(generateRequest("blocking", mGate));
+
+		final RequestFuture<PrioritizableRequest> future = executor.submit(generateRequest("request", null));
+		final CountDownLatch latch = new CountDownLatch(2);
+		final RequestFuture.Callback<PrioritizableRequest> callback = new RequestFuture.Callback<PrioritizableRequest>() {
+			@Override
+			public void onComplete(final RequestFuture<PrioritizableRequest> settled) {
+				assertEquals("request", settled.getValue().getIdentifier().getData());
+				latch.countDown();
+			}
+		};
+		future.addCallback(callback);
+		assertEquals(2, latch.getCount());
+
+		mGate.countDown();
+		future.get(5, TimeUnit.SECONDS);
+		future.addCallback(callback);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testGetTimesOutWhileTheRequestWaits() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		executor.execute(generateRequest("blocking", mGate));
+
+		final RequestFuture<PrioritizableRequest> future = executor.submit(generateRequest("request", null));
+		try {
+			future.get(10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (final TimeoutException e) {
+			assertFalse(future.isDone());
+		}
+	}
+
+	public void testCancelRemovesTheQueuedRequest() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		executor.execute(generateRequest("blocking", mGate));
+		Thread.sleep(20);
+
+		final RequestFuture<PrioritizableRequest> future = executor.submit(generateRequest("queued", null));
+		assertTrue(future.cancel(false));
+		assertFalse(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertEquals(0, executor.getQueue().size());
+		assertEquals(Collections.singletonList("queued"), mCancelled);
+
+		try {
+			future.get();
+			fail();
+		} catch (final CancellationException e) {
+			// expected
+		}
+	}
+
+	public void testCancellingAWaitingRequestLeavesItsDuplicatesWaiting() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().useKeyedLanes().create();
+		executor.execute(generateRequest("blocking", mGate));
+		Thread.sleep(20);
+
+		final RequestFuture<PrioritizableRequest> first = executor.submit(generateRequest("waiting", null));
+		final RequestFuture<PrioritizableRequest> second = executor.submit(generateRequest("waiting", null));
+		assertFalse(second.isDone());
+
+		assertTrue(first.cancel(false));
+		assertFalse(second.isDone());
+		assertEquals(Collections.singletonList("waiting"), mCancelled);
+
+		mGate.countDown();
+		assertNotNull(second.get(5, TimeUnit.SECONDS));
+		assertFalse(second.isCancelled());
+	}
+
+	public void testEvictedRequestFailsItsFuture() throws Exception {
+		final ManagedAuxiliaryExecutor executor = newBuilder().setCapacity(1).setRejectionPolicy(RejectionPolicy.DROP_OLDEST_IN_LANE).create();
+		executor.execute(generateRequest("blocking", mGate));
+		Thread.sleep(20);
+
+		final RequestFuture<PrioritizableRequest> future = executor.submit(generateRequest("oldest", null));
+		executor.execute(generateRequest("newest", null));
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (final ExecutionException e) {
+			assertEquals(DropReason.EVICTED, ((RequestDroppedException) e.getCause()).getReason());
+		}
+		assertTrue(future.isFailed());
+	}
+
+	public void testKeyedAndWorkStealingExecutorsSupportSubmit() throws Exception {
+		mGate.countDown();
+		for (final ManagedAuxiliaryExecutor executor : new ManagedAuxiliaryExecutor[] { newBuilder().useKeyedLanes().create(), newBuilder().useWorkStealing().create() }) {
+			final PrioritizableRequest request = generateRequest("request", null);
+			assertSame(request, executor.submit(request).get(5, TimeUnit.SECONDS));
+		}
+	}
+
+	public void testExecutorsBuiltWithoutBuilderSupportSubmit() throws Exception {
+		mGate.countDown();
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor() };
+		final ManagedAuxiliaryExecutorObserver observer = newObserver();
+		final ManagedAuxiliaryExecutor executor = new DefaultAuxiliaryExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new AuxiliaryBlockingQueue(accessors, observer), observer);
+
+		final PrioritizableRequest request = generateRequest("request", null);
+		assertSame(request, executor.submit(request).get(5, TimeUnit.SECONDS));
+	}
+
+	// ======================================================
+
+	private AuxiliaryExecutor.Builder newBuilder() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor() };
+		return new AuxiliaryExecutor.Builder(accessors, newObserver()).setCorePoolSize(1);
+	}
+
+	private ManagedAuxiliaryExecutorObserver newObserver() {
+		return new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.add((String) request.getIdentifier().getData());
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		};
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final CountDownLatch gate) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				if (gate == null) {
+					return;
+				}
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+
+			@Override
+			public Object getLaneKey() {
+				return "lane";
+			}
+		}, 0);
+	}
+}
@@ -0,0 +1,210 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.ExecutorMetrics;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.WeightedSchedulingPolicy;
+
+public class ReservedThreadsTest extends AndroidTestCase {
+
+	private static final int LIVE = 0;
+	private static final int LOW = 1;
+
+	private CountDownLatch mLatch;
+
+	public void testReservedThreadRunsHighPriorityWhileLowPriorityHoldsTheRest() throws Exception {
+		mLatch = new CountDownLatch(3);
+		final ManagedAuxiliaryExecutor executor = newBuilder().setCorePoolSize(2).reserveThreads(LIVE, 1).create();
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger lowRunning = new AtomicInteger();
+		executor.execute(generateRequest("low1", LOW, gate, lowRunning));
+		executor.execute(generateRequest("low2", LOW, gate, lowRunning));
+		Thread.sleep(50);
+
+		assertEquals(1, lowRunning.get());
+		assertEquals(1, executor.getQueue().size());
+
+		final CountDownLatch liveDone = new CountDownLatch(1);
+		executor.execute(generateRequest("live", LIVE, liveDone));
+		assertTrue(liveDone.await(5, TimeUnit.SECONDS));
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+
+		final ExecutorMetrics metrics = executor.getMetrics();
+		assertEquals(1, metrics.getLane(LIVE).getReservedStartedCount());
+		assertEquals(0, metrics.getLane(LOW).getReservedStartedCount());
+		assertEquals(2, metrics.getLane(LOW).getQueueWait().getCount());
+	}
+
+	public void testThreadsStartedWithLowPriorityWorkAreNotReserved() throws Exception {
+		mLatch = new CountDownLatch(4);
+		final ManagedAuxiliaryExecutor executor = newBuilder().setCorePoolSize(2).reserveThreads(LIVE, 1).setKeepAliveTime(20, TimeUnit.MILLISECONDS).allowCoreThreadTimeOut().create();
+
+		executor.execute(generateRequest("warm up", LOW, new CountDownLatch(1)));
+		Thread.sleep(200);
+
+		// Every thread has timed out, so both are created again on submit.
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger lowRunning = new AtomicInteger();
+		executor.execute(generateRequest("low1", LOW, gate, lowRunning));
+		executor.execute(generateRequest("low2", LOW, gate, lowRunning));
+		Thread.sleep(50);
+		assertEquals(1, lowRunning.get());
+
+		final CountDownLatch liveDone = new CountDownLatch(1);
+		executor.execute(generateRequest("live", LIVE, liveDone));
+		assertTrue(liveDone.await(5, TimeUnit.SECONDS));
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, executor.getMetrics().getLane(LOW).getReservedStartedCount());
+	}
+
+	public void testUnreservedThreadsStillRunHighPriorityRequests() throws Exception {
+		mLatch = new CountDownLatch(2);
+		final ManagedAuxiliaryExecutor executor = newBuilder().setCorePoolSize(2).reserveThreads(LIVE, 1).create();
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger running = new AtomicInteger();
+		executor.execute(generateRequest("live1", LIVE, gate, running));
+		executor.execute(generateRequest("live2", LIVE, gate, running));
+		Thread.sleep(50);
+
+		assertEquals(2, running.get());
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testReservedThreadsFollowWeightedScheduling() throws Exception {
+		final int numRequests = 200;
+		mLatch = new CountDownLatch(numRequests * 2);
+		final ManagedAuxiliaryExecutor executor = newBuilder().setCorePoolSize(3).reserveThreads(LIVE, 2).setSchedulingPolicy(new WeightedSchedulingPolicy(new int[] { 1, 1 })).create();
+
+		final CountDownLatch done = new CountDownLatch(numRequests * 2);
+		for (int i = 0; i < numRequests; i++) {
+			executor.execute(generateRequest("live" + i, LIVE, done));
+			executor.execute(generateRequest("low" + i, LOW, done));
+		}
+		assertTrue(mLatch.await(10, TimeUnit.SECONDS));
+
+		// The unreserved thread still takes its turns at the live lane.
+		final ExecutorMetrics.Metrics live = executor.getMetrics().getLane(LIVE);
+		assertTrue(live.getQueueWait().getCount() > live.getReservedStartedCount());
+		assertEquals(0, executor.getQueue().size());
+	}
+
+	public void testReservingEveryCoreThreadFails() {
+		try {
+			newBuilder().setCorePoolSize(2).reserveThreads(LIVE, 2).create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	public void testReservedThreadsAreNotSupportedByWorkStealing() {
+		try {
+			newBuilder().setCorePoolSize(2).reserveThreads(LIVE, 1).useWorkStealing().create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	public void testReservingForUnknownAccessorFails() {
+		try {
+			newBuilder().reserveThreads(2, 1);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+	}
+
+	// ======================================================
+
+	private AuxiliaryExecutor.Builder newBuilder() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		return new AuxiliaryExecutor.Builder(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		});
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex, final CountDownLatch done) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				done.countDown();
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex, final CountDownLatch gate, final AtomicInteger running) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				running.incrementAndGet();
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
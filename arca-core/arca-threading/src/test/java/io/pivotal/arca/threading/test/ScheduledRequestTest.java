@@ -0,0 +1,260 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+public class ScheduledRequestTest extends AndroidTestCase {
+
+	private static final long DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+	public void testScheduledRequestDoesNotRunBeforeItsDelay() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(1);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 1);
+
+		final AtomicLong ranAt = new AtomicLong();
+		final long scheduledAt = System.nanoTime();
+		executor.schedule(generateRequest("request", 0, ranAt), DELAY, TimeUnit.NANOSECONDS);
+
+		assertEquals(0, executor.getActiveCount());
+		assertTrue(observer.await());
+		assertTrue(ranAt.get() - scheduledAt >= DELAY);
+	}
+
+	public void testScheduledRequestDoesNotHoldAWorker() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(1);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 1);
+
+		final AtomicLong scheduledRanAt = new AtomicLong();
+		final AtomicLong immediateRanAt = new AtomicLong();
+		executor.schedule(generateRequest("scheduled", 0, scheduledRanAt), DELAY * 10, TimeUnit.NANOSECONDS);
+		executor.execute(generateRequest("immediate", 0, immediateRanAt));
+
+		assertTrue(observer.await());
+		assertTrue(immediateRanAt.get() > 0);
+		assertEquals(0, scheduledRanAt.get());
+
+		executor.cancelAll();
+	}
+
+	public void testDuplicateScheduledRequestKeepsEarliestTimeAndHighestPriority() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(2);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 2);
+
+		final AtomicLong lateRanAt = new AtomicLong();
+		final AtomicLong earlyRanAt = new AtomicLong();
+		final PrioritizableRequest late = generateRequest("request", 0, lateRanAt);
+		final PrioritizableRequest early = generateRequest("request", 1, earlyRanAt);
+
+		executor.schedule(late, DELAY * 10, TimeUnit.NANOSECONDS);
+		executor.schedule(early, DELAY, TimeUnit.NANOSECONDS);
+
+		assertTrue(observer.await());
+		assertEquals(Collections.singletonList(early), observer.getCancelled());
+		assertEquals(late, observer.getCompleted().get(0));
+		assertTrue(lateRanAt.get() > 0);
+		assertEquals(0, late.getAccessorIndex());
+	}
+
+	public void testRemovingScheduledRequestCancelsIt() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(1);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 1);
+
+		final AtomicLong ranAt = new AtomicLong();
+		final PrioritizableRequest request = generateRequest("request", 0, ranAt);
+		executor.schedule(request, DELAY, TimeUnit.NANOSECONDS);
+
+		assertTrue(executor.remove(request));
+		assertTrue(observer.await());
+		assertEquals(Collections.singletonList(request), observer.getCancelled());
+
+		Thread.sleep(TimeUnit.NANOSECONDS.toMillis(DELAY * 2));
+		assertEquals(0, ranAt.get());
+	}
+
+	public void testMergedDuplicateRunsWhenTheScheduledRequestIsRemoved() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(2);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 2);
+
+		final AtomicLong removedRanAt = new AtomicLong();
+		final AtomicLong mergedRanAt = new AtomicLong();
+		final PrioritizableRequest removed = generateRequest("request", 0, removedRanAt);
+		final PrioritizableRequest merged = generateRequest("request", 1, mergedRanAt);
+
+		executor.schedule(removed, DELAY, TimeUnit.NANOSECONDS);
+		executor.schedule(merged, DELAY * 10, TimeUnit.NANOSECONDS);
+		assertFalse(merged.isCancelled());
+		assertTrue(executor.remove(removed));
+
+		assertTrue(observer.await());
+		assertEquals(Collections.singletonList(removed), observer.getCancelled());
+		assertEquals(Collections.singletonList(merged), observer.getCompleted());
+		assertEquals(0, removedRanAt.get());
+		assertTrue(mergedRanAt.get() > 0);
+	}
+
+	public void testDueRequestIsDeduplicatedWithQueuedRequest() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(3);
+		final ManagedAuxiliaryExecutor executor = createExecutor(observer, 1);
+
+		final CountDownLatch blocker = new CountDownLatch(1);
+		executor.execute(generateBlockingRequest(blocker));
+
+		final AtomicLong queuedRanAt = new AtomicLong();
+		final AtomicLong scheduledRanAt = new AtomicLong();
+		executor.execute(generateRequest("request", 0, queuedRanAt));
+		executor.schedule(generateRequest("request", 0, scheduledRanAt), 0, TimeUnit.NANOSECONDS);
+
+		Thread.sleep(TimeUnit.NANOSECONDS.toMillis(DELAY));
+		blocker.countDown();
+
+		assertTrue(observer.await());
+		assertTrue(queuedRanAt.get() > 0);
+		assertEquals(0, scheduledRanAt.get());
+	}
+
+	public void testWorkStealingExecutorRunsScheduledRequest() throws Exception {
+		final RecordingObserver observer = new RecordingObserver(1);
+		final ManagedAuxiliaryExecutor executor = new AuxiliaryExecutor.Builder(generateAccessors(1), observer).setCorePoolSize(2).useWorkStealing().create();
+
+		final AtomicLong ranAt = new AtomicLong();
+		final long scheduledAt = System.nanoTime();
+		executor.schedule(generateRequest("request", 0, ranAt), DELAY, TimeUnit.NANOSECONDS);
+
+		assertTrue(observer.await());
+		assertTrue(ranAt.get() - scheduledAt >= DELAY);
+	}
+
+	public void testShutdownExecutorRejectsScheduledRequests() {
+		final ManagedAuxiliaryExecutor executor = createExecutor(new RecordingObserver(0), 1);
+		((ExecutorService) executor).shutdown();
+
+		try {
+			executor.schedule(generateRequest("request", 0, new AtomicLong()), DELAY, TimeUnit.NANOSECONDS);
+			fail();
+		} catch (final RejectedExecutionException e) {
+			assertNotNull(e);
+		}
+	}
+
+	// ======================================================
+
+	private static ManagedAuxiliaryExecutor createExecutor(final ManagedAuxiliaryExecutorObserver observer, final int numAccessors) {
+		return new AuxiliaryExecutor.Builder(generateAccessors(numAccessors), observer).setCorePoolSize(1).create();
+	}
+
+	private static PriorityAccessor[] generateAccessors(final int numAccessors) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[numAccessors];
+		for (int i = 0; i < numAccessors; i++) {
+			accessors[i] = new QueuePriorityAccessor();
+		}
+		return accessors;
+	}
+
+	private static PrioritizableRequest generateRequest(final String identifier, final int accessorIndex, final AtomicLong ranAt) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				ranAt.set(System.nanoTime());
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(identifier);
+			}
+		}, accessorIndex);
+	}
+
+	private static PrioritizableRequest generateBlockingRequest(final CountDownLatch latch) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				try {
+					latch.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>("blocker");
+			}
+		}, 0);
+	}
+
+	private static class RecordingObserver implements ManagedAuxiliaryExecutorObserver {
+
+		private final List<PrioritizableRequest> mCompleted = Collections.synchronizedList(new ArrayList<PrioritizableRequest>());
+		private final List<PrioritizableRequest> mCancelled = Collections.synchronizedList(new ArrayList<PrioritizableRequest>());
+		private final CountDownLatch mLatch;
+
+		public RecordingObserver(final int count) {
+			mLatch = new CountDownLatch(count);
+		}
+
+		public boolean await() throws InterruptedException {
+			return mLatch.await(5, TimeUnit.SECONDS);
+		}
+
+		public List<PrioritizableRequest> getCompleted() {
+			return mCompleted;
+		}
+
+		public List<PrioritizableRequest> getCancelled() {
+			return mCancelled;
+		}
+
+		@Override
+		public void onComplete(final PrioritizableRequest request) {
+			mCompleted.add(request);
+			mLatch.countDown();
+		}
+
+		@Override
+		public void onCancelled(final PrioritizableRequest request) {
+			mCancelled.add(request);
+			mLatch.countDown();
+		}
+
+		@Override
+		public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+		}
+
+		@Override
+		public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+		}
+	}
+}
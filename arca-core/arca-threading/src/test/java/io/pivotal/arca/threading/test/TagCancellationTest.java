@@ -0,0 +1,165 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+
+public class TagCancellationTest extends AndroidTestCase {
+
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> mCancelled = Collections.synchronizedList(new ArrayList<String>());
+	private CountDownLatch mLatch;
+
+	public void testCancelRemovesQueuedRequestsWithTheTag() throws Exception {
+		assertCancelsTaggedRequests(newBuilder());
+	}
+
+	public void testCancelRemovesTaggedRequestsFromConcurrentQueue() throws Exception {
+		assertCancelsTaggedRequests(newBuilder().useConcurrentQueue());
+	}
+
+	public void testCancelRemovesTaggedRequestsFromWorkStealingExecutor() throws Exception {
+		assertCancelsTaggedRequests(newBuilder().useWorkStealing());
+	}
+
+	public void testCancelRemovesTaggedRequestsFromKeyedExecutor() throws Exception {
+		assertCancelsTaggedRequests(newBuilder().useKeyedLanes());
+	}
+
+	public void testCancelRemovesScheduledRequestsWithTheTag() throws Exception {
+		mLatch = new CountDownLatch(1);
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+
+		executor.schedule(generateRequest("scheduled", null, "screen"), 1, TimeUnit.SECONDS);
+		assertEquals(1, executor.cancel("screen"));
+		assertEquals(Arrays.asList("scheduled"), mCancelled);
+	}
+
+	public void testRunningRequestIsNotCancelled() throws Exception {
+		mLatch = new CountDownLatch(1);
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		executor.execute(generateRequest("running", gate, "screen"));
+		Thread.sleep(20);
+
+		assertEquals(0, executor.cancel("screen"));
+		gate.countDown();
+
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("running"), mCompleted);
+		assertTrue(mCancelled.isEmpty());
+	}
+
+	public void testCancelUnknownTagDoesNothing() {
+		final ManagedAuxiliaryExecutor executor = newBuilder().create();
+		assertEquals(0, executor.cancel("unknown"));
+	}
+
+	// ======================================================
+
+	private void assertCancelsTaggedRequests(final AuxiliaryExecutor.Builder builder) throws Exception {
+		mLatch = new CountDownLatch(3);
+		final ManagedAuxiliaryExecutor executor = builder.create();
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		executor.execute(generateRequest("blocking", gate));
+		Thread.sleep(20);
+
+		executor.execute(generateRequest("first", null, "screen", "account"));
+		executor.execute(generateRequest("kept", null, "account"));
+		executor.execute(generateRequest("second", null, "screen"));
+		executor.execute(generateRequest("untagged", null));
+
+		assertEquals(2, executor.cancel("screen"));
+		assertEquals(0, executor.cancel("screen"));
+		assertTrue(mCancelled.containsAll(Arrays.asList("first", "second")));
+
+		gate.countDown();
+		assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(mCompleted.containsAll(Arrays.asList("blocking", "kept", "untagged")));
+		assertEquals(3, mCompleted.size());
+	}
+
+	private AuxiliaryExecutor.Builder newBuilder() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor() };
+		return new AuxiliaryExecutor.Builder(accessors, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				mCompleted.add((String) request.getIdentifier().getData());
+				mLatch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.add((String) request.getIdentifier().getData());
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}).setCorePoolSize(1);
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final CountDownLatch gate, final Object... tags) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+				if (gate == null) {
+					return;
+				}
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+
+			@Override
+			public Collection<?> getTags() {
+				return Arrays.asList(tags);
+			}
+		}, 0);
+	}
+}
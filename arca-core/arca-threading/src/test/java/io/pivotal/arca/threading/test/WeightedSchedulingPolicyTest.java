@@ -0,0 +1,188 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import io.pivotal.arca.threading.AuxiliaryBlockingQueue;
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+import io.pivotal.arca.threading.WeightedSchedulingPolicy;
+
+public class WeightedSchedulingPolicyTest extends AndroidTestCase {
+
+	private static final int[] WEIGHTS = { 60, 25, 10, 5 };
+	private static final int REQUESTS_PER_LANE = 1000;
+
+	private WeightedSchedulingPolicy mPolicy;
+	private AuxiliaryBlockingQueue mQueue;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mPolicy = new WeightedSchedulingPolicy(WEIGHTS);
+		mQueue = new AuxiliaryBlockingQueue(new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor() }, new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		}, mPolicy);
+	}
+
+	public void testThroughputMatchesWeightsWhenAllLanesAreBacklogged() {
+		fillLanes(0, 1, 2, 3);
+
+		for (int i = 0; i < 1000; i++) {
+			assertNotNull(mQueue.poll());
+		}
+
+		assertEquals(600, mPolicy.getDispatchedCount(0));
+		assertEquals(250, mPolicy.getDispatchedCount(1));
+		assertEquals(100, mPolicy.getDispatchedCount(2));
+		assertEquals(50, mPolicy.getDispatchedCount(3));
+		assertEquals(0.05, mPolicy.getDispatchedShare(3), 0.001);
+	}
+
+	public void testIdleLaneSharesAreRedistributed() {
+		fillLanes(1, 3);
+
+		for (int i = 0; i < 300; i++) {
+			assertNotNull(mQueue.poll());
+		}
+
+		assertEquals(0, mPolicy.getDispatchedCount(0));
+		assertEquals(250, mPolicy.getDispatchedCount(1));
+		assertEquals(50, mPolicy.getDispatchedCount(3));
+	}
+
+	public void testLowLaneRunsDespiteLiveBacklog() {
+		fillLanes(0);
+		final PrioritizableRequest low = generateRequest("low", 3);
+		mQueue.offer(low);
+
+		boolean polled = false;
+		for (int i = 0; i < 100 && !polled; i++) {
+			polled = mQueue.poll() == low;
+		}
+		assertTrue(polled);
+	}
+
+	public void testQueueDrainsCompletely() {
+		fillLanes(0, 1, 2, 3);
+
+		int numPolled = 0;
+		while (mQueue.poll() != null) {
+			numPolled++;
+		}
+
+		assertEquals(REQUESTS_PER_LANE * 4, numPolled);
+		assertEquals(0, mQueue.size());
+	}
+
+	public void testCancelledRequestsAreNotCounted() {
+		final PrioritizableRequest cancelled = generateRequest("cancelled", 2);
+		final PrioritizableRequest request = generateRequest("request", 2);
+		mQueue.offer(cancelled);
+		mQueue.offer(request);
+		cancelled.cancel();
+
+		assertEquals(request, mQueue.poll());
+		assertEquals(1, mPolicy.getDispatchedCount(2));
+	}
+
+	public void testResetDispatchedCounts() {
+		fillLanes(1);
+		mQueue.poll();
+		mPolicy.resetDispatchedCounts();
+
+		assertEquals(0, mPolicy.getDispatchedCount(1));
+		assertEquals(0.0, mPolicy.getDispatchedShare(1), 0.0);
+	}
+
+	public void testReservedDispatchesKeepTheRotationGoing() {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		for (int i = 0; i < REQUESTS_PER_LANE; i++) {
+			accessors[0].attach(generateRequest("0:" + i, 0));
+			accessors[1].attach(generateRequest("1:" + i, 1));
+		}
+
+		int numPolled = 0;
+		while (numPolled < REQUESTS_PER_LANE * 2) {
+			final boolean reserved = numPolled % 2 == 0 && accessors[0].peek() != null;
+			final int index = reserved ? mPolicy.nextAccessorIndex(accessors, 0, System.nanoTime()) : mPolicy.nextAccessorIndex(accessors, System.nanoTime());
+
+			assertTrue(index >= 0);
+			if (reserved) {
+				assertEquals(0, index);
+			}
+			mPolicy.onDispatched(index, accessors[index].detachHighestPriorityItem());
+			numPolled++;
+		}
+
+		assertEquals(-1, mPolicy.nextAccessorIndex(accessors, System.nanoTime()));
+		assertEquals(REQUESTS_PER_LANE, mPolicy.getDispatchedCount(1));
+	}
+
+	public void testNonPositiveWeightIsRejected() {
+		try {
+			new WeightedSchedulingPolicy(new int[] { 1, 0 });
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private void fillLanes(final int... lanes) {
+		for (final int lane : lanes) {
+			for (int i = 0; i < REQUESTS_PER_LANE; i++) {
+				mQueue.offer(generateRequest(lane + ":" + i, lane));
+			}
+		}
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex) {
+		return new PrioritizableRequest(new Prioritizable() {
+			@Override
+			public void execute() {
+			}
+
+			@Override
+			public Identifier<?> getIdentifier() {
+				return new Identifier<String>(request);
+			}
+		}, accessorIndex);
+	}
+}
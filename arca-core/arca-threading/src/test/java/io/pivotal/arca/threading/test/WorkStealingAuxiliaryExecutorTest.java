@@ -0,0 +1,236 @@
+/* 
+ * Copyright (C) 2014 Pivotal Software, Inc. 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.arca.threading.test;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.arca.threading.AuxiliaryExecutor;
+import io.pivotal.arca.threading.DropReason;
+import io.pivotal.arca.threading.Identifier;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutor;
+import io.pivotal.arca.threading.ManagedAuxiliaryExecutorObserver;
+import io.pivotal.arca.threading.Prioritizable;
+import io.pivotal.arca.threading.PrioritizableRequest;
+import io.pivotal.arca.threading.PriorityAccessor;
+import io.pivotal.arca.threading.QueuePriorityAccessor;
+import io.pivotal.arca.threading.StackPriorityAccessor;
+
+public class WorkStealingAuxiliaryExecutorTest extends AndroidTestCase {
+
+	private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger mCancelled = new AtomicInteger();
+	private ManagedAuxiliaryExecutor mExecutor;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (mExecutor != null) {
+			((ExecutorService) mExecutor).shutdownNow();
+		}
+		super.tearDown();
+	}
+
+	public void testFanOutFromWorkersCompletes() throws Exception {
+		final int width = 64;
+		final CountDownLatch latch = new CountDownLatch(width + 1);
+		mExecutor = newExecutor(4, latch);
+
+		mExecutor.execute(new PrioritizableRequest(new TestPrioritizable("root") {
+			@Override
+			public void execute() {
+				for (int i = 0; i < width; i++) {
+					mExecutor.execute(generateRequest("child" + i, i % 2, null));
+				}
+			}
+		}, 0));
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(width + 1, mCompleted.size());
+		assertEquals(width + 1, mExecutor.getMetrics().getTotal().getCompletedCount());
+		assertEquals(0, mExecutor.getQueue().size());
+	}
+
+	public void testHigherPriorityRunsFirst() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(4);
+		mExecutor = newExecutor(1, latch);
+
+		mExecutor.execute(generateRequest("blocking", 0, gate));
+		Thread.sleep(20);
+		mExecutor.execute(generateRequest("low1", 1, null));
+		mExecutor.execute(generateRequest("low2", 1, null));
+		mExecutor.execute(generateRequest("high", 0, null));
+		assertEquals(3, mExecutor.getQueue().size());
+
+		gate.countDown();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, high, low1, low2]", mCompleted.toString());
+	}
+
+	public void testStackLaneRunsNewestFirst() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(4);
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new StackPriorityAccessor(), new QueuePriorityAccessor() };
+		mExecutor = new AuxiliaryExecutor.Builder(accessors, newObserver(latch)).setCorePoolSize(1).useWorkStealing().create();
+
+		mExecutor.execute(generateRequest("blocking", 1, gate));
+		Thread.sleep(20);
+		mExecutor.execute(generateRequest("live1", 0, null));
+		mExecutor.execute(generateRequest("live2", 0, null));
+		mExecutor.execute(generateRequest("live3", 0, null));
+
+		gate.countDown();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, live3, live2, live1]", mCompleted.toString());
+	}
+
+	public void testQueueViewListsRequestsInTheOrderTheyRun() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(3);
+		mExecutor = newExecutor(1, latch);
+
+		mExecutor.execute(generateRequest("blocking", 0, gate));
+		Thread.sleep(20);
+		final PrioritizableRequest low = generateRequest("low", 1, null);
+		final PrioritizableRequest high = generateRequest("high", 0, null);
+		mExecutor.execute(low);
+		mExecutor.execute(high);
+
+		final BlockingQueue<Runnable> queue = mExecutor.getQueue();
+		assertEquals(2, queue.size());
+		assertSame(high, queue.peek());
+		assertEquals(Arrays.asList(high, low), Arrays.asList(queue.toArray()));
+
+		gate.countDown();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(queue.isEmpty());
+	}
+
+	public void testDuplicateIdentifiersAreCancelled() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		mExecutor = newExecutor(2, latch);
+
+		mExecutor.execute(generateRequest("request", 0, gate));
+		Thread.sleep(20);
+		final PrioritizableRequest duplicate = generateRequest("request", 0, null);
+		mExecutor.execute(duplicate);
+
+		assertTrue(duplicate.isCancelled());
+		assertEquals(1, mCancelled.get());
+
+		gate.countDown();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, mCompleted.size());
+	}
+
+	public void testRemoveUnlinksQueuedRequest() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(2);
+		mExecutor = newExecutor(1, latch);
+
+		mExecutor.execute(generateRequest("blocking", 0, gate));
+		final PrioritizableRequest removed = generateRequest("removed", 0, null);
+		mExecutor.execute(removed);
+		mExecutor.execute(generateRequest("kept", 0, null));
+
+		assertTrue(mExecutor.remove(removed));
+		assertFalse(mExecutor.remove(removed));
+		assertEquals(1, mCancelled.get());
+
+		gate.countDown();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals("[blocking, kept]", mCompleted.toString());
+	}
+
+	public void testSharedQueueOptionsAreRejected() {
+		try {
+			new AuxiliaryExecutor.Builder(new PriorityAccessor[] { new QueuePriorityAccessor() }, newObserver(null)).useWorkStealing().setCapacity(10).create();
+			fail();
+		} catch (final IllegalStateException e) {
+			assertNotNull(e);
+		}
+	}
+
+	private ManagedAuxiliaryExecutor newExecutor(final int numWorkers, final CountDownLatch latch) {
+		final PriorityAccessor[] accessors = new PriorityAccessor[] { new QueuePriorityAccessor(), new QueuePriorityAccessor() };
+		return new AuxiliaryExecutor.Builder(accessors, newObserver(latch)).setCorePoolSize(numWorkers).useWorkStealing().create();
+	}
+
+	private ManagedAuxiliaryExecutorObserver newObserver(final CountDownLatch latch) {
+		return new ManagedAuxiliaryExecutorObserver() {
+
+			@Override
+			public void onComplete(final PrioritizableRequest request) {
+				mCompleted.add((String) request.getIdentifier().getData());
+				mExecutor.notifyRequestComplete(request.getIdentifier());
+				latch.countDown();
+			}
+
+			@Override
+			public void onCancelled(final PrioritizableRequest request) {
+				mCancelled.incrementAndGet();
+			}
+
+			@Override
+			public void onDropped(final PrioritizableRequest request, final DropReason reason) {
+			}
+
+			@Override
+			public void onPoolSizeChanged(final AuxiliaryExecutor executor, final int previousSize, final int newSize) {
+			}
+		};
+	}
+
+	private static PrioritizableRequest generateRequest(final String request, final int accessorIndex, final CountDownLatch gate) {
+		return new PrioritizableRequest(new TestPrioritizable(request) {
+			@Override
+			public void execute() {
+				if (gate == null) {
+					return;
+				}
+				try {
+					gate.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, accessorIndex);
+	}
+
+	private static abstract class TestPrioritizable extends Prioritizable {
+
+		private final Identifier<String> mIdentifier;
+
+		public TestPrioritizable(final String request) {
+			mIdentifier = new Identifier<String>(request);
+		}
+
+		@Override
+		public Identifier<?> getIdentifier() {
+			return mIdentifier;
+		}
+	}
+}